@@ -0,0 +1,144 @@
+package io.github.mcengine.extension.addon.essential.vault.benchmark;
+
+import io.github.mcengine.extension.addon.essential.vault.model.VaultItem;
+import org.bukkit.Material;
+import org.bukkit.block.ShulkerBox;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.BlockStateMeta;
+import org.bukkit.inventory.meta.BookMeta;
+import org.bukkit.inventory.meta.Damageable;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.mockbukkit.mockbukkit.MockBukkit;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Realistic item mixes shared by the benchmarks.
+ *
+ * <p>Items need a running server for their factory and registries, so a MockBukkit
+ * server is started on first use. Mixes are deterministic so runs stay comparable.</p>
+ */
+final class BenchmarkItems {
+
+    // Mix names accepted by mix(String, int)
+    static final String PLAIN = "plain";
+    static final String ENCHANTED = "enchanted";
+    static final String BOOKS = "books";
+    static final String SHULKERS = "shulkers";
+    static final String MIXED = "mixed";
+
+    /**
+     * Materials used for plain stacks.
+     */
+    private static final Material[] PLAIN_MATERIALS = {
+            Material.STONE, Material.OAK_LOG, Material.DIAMOND, Material.IRON_INGOT,
+            Material.COBBLESTONE, Material.REDSTONE, Material.GOLDEN_CARROT, Material.TORCH
+    };
+
+    private BenchmarkItems() {}
+
+    /**
+     * Starts the mock server if it is not running yet.
+     */
+    static synchronized void ensureServer() {
+        if (!MockBukkit.isMocked()) MockBukkit.mock();
+    }
+
+    /**
+     * Builds {@code count} items of the named mix.
+     *
+     * @param mix   one of the mix names
+     * @param count number of items
+     * @return items in slot order
+     */
+    static ItemStack[] mix(String mix, int count) {
+        ensureServer();
+        ItemStack[] items = new ItemStack[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = switch (mix) {
+                case PLAIN -> plain(i);
+                case ENCHANTED -> enchanted(i);
+                case BOOKS -> book(i);
+                case SHULKERS -> shulker(i);
+                case MIXED -> switch (i % 4) {
+                    case 0 -> plain(i);
+                    case 1 -> enchanted(i);
+                    case 2 -> book(i);
+                    default -> shulker(i);
+                };
+                default -> throw new IllegalArgumentException("Unknown item mix: " + mix);
+            };
+        }
+        return items;
+    }
+
+    /**
+     * Builds a slot map of {@code count} items of the named mix.
+     *
+     * @param mix   one of the mix names
+     * @param count number of items (at most 54)
+     * @return slot to item map
+     */
+    static Map<Integer, VaultItem> vaultItems(String mix, int count) {
+        ItemStack[] items = mix(mix, count);
+        Map<Integer, VaultItem> map = new HashMap<>();
+        for (int i = 0; i < items.length; i++) map.put(i, new VaultItem(i, items[i]));
+        return map;
+    }
+
+    /** Full or partial stack of a common material. */
+    private static ItemStack plain(int i) {
+        Material material = PLAIN_MATERIALS[i % PLAIN_MATERIALS.length];
+        return new ItemStack(material, Math.min(material.getMaxStackSize(), 1 + (i * 7) % 64));
+    }
+
+    /** Named, damaged gear with several enchantments and lore. */
+    private static ItemStack enchanted(int i) {
+        boolean sword = i % 2 == 0;
+        ItemStack item = new ItemStack(sword ? Material.DIAMOND_SWORD : Material.NETHERITE_CHESTPLATE);
+        ItemMeta meta = item.getItemMeta();
+        meta.setDisplayName("Relic #" + i);
+        meta.setLore(List.of("Forged in the nether", "Owner: player" + i));
+        if (sword) {
+            meta.addEnchant(Enchantment.SHARPNESS, 5, true);
+            meta.addEnchant(Enchantment.LOOTING, 3, true);
+        } else {
+            meta.addEnchant(Enchantment.PROTECTION, 4, true);
+            meta.addEnchant(Enchantment.THORNS, 3, true);
+        }
+        meta.addEnchant(Enchantment.UNBREAKING, 3, true);
+        meta.addEnchant(Enchantment.MENDING, 1, true);
+        if (meta instanceof Damageable damageable) damageable.setDamage(17 + i);
+        item.setItemMeta(meta);
+        return item;
+    }
+
+    /** Signed book with ten pages of text. */
+    private static ItemStack book(int i) {
+        ItemStack item = new ItemStack(Material.WRITTEN_BOOK);
+        BookMeta meta = (BookMeta) item.getItemMeta();
+        meta.setTitle("Journal " + i);
+        meta.setAuthor("player" + i);
+        for (int page = 0; page < 10; page++) {
+            meta.addPage(("Day " + page + ": went mining, found diamonds, built a farm. ").repeat(4));
+        }
+        item.setItemMeta(meta);
+        return item;
+    }
+
+    /** Shulker box filled with a mix of plain stacks and gear. */
+    private static ItemStack shulker(int i) {
+        ItemStack item = new ItemStack(Material.SHULKER_BOX);
+        if (item.getItemMeta() instanceof BlockStateMeta meta && meta.getBlockState() instanceof ShulkerBox box) {
+            for (int slot = 0; slot < box.getInventory().getSize(); slot++) {
+                box.getInventory().setItem(slot, slot % 3 == 0 ? enchanted(i + slot) : plain(i + slot));
+            }
+            meta.setBlockState(box);
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
+}
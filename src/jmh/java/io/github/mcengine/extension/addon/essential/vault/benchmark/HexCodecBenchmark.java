@@ -0,0 +1,52 @@
+package io.github.mcengine.extension.addon.essential.vault.benchmark;
+
+import io.github.mcengine.extension.addon.essential.vault.util.HexCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hex conversion of item blobs, as done for every SQL literal and facade read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HexCodecBenchmark {
+
+    /**
+     * Blob size in bytes: a plain stack, a piece of gear, a filled shulker box.
+     */
+    @Param({"64", "1024", "16384"})
+    public int size;
+
+    /** Random payload. */
+    private byte[] bytes;
+
+    /** Hex form of {@link #bytes}. */
+    private String hex;
+
+    @Setup
+    public void setup() {
+        bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        hex = HexCodec.toHex(bytes);
+    }
+
+    @Benchmark
+    public String toHex() {
+        return HexCodec.toHex(bytes);
+    }
+
+    @Benchmark
+    public byte[] fromHex() {
+        return HexCodec.fromHex(hex);
+    }
+}
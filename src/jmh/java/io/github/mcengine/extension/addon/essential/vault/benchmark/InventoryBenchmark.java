@@ -0,0 +1,91 @@
+package io.github.mcengine.extension.addon.essential.vault.benchmark;
+
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import org.bukkit.inventory.Inventory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Main-thread cost of turning a vault into an inventory and back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InventoryBenchmark {
+
+    /**
+     * Item mix filling the page.
+     */
+    @Param({BenchmarkItems.PLAIN, BenchmarkItems.MIXED})
+    public String mix;
+
+    /**
+     * Only the inventory helpers are exercised; persistence is never called.
+     */
+    private static final VaultDB HELPERS = new VaultDB() {
+        @Override
+        public void ensureSchema() {}
+
+        @Override
+        public PlayerVault loadPlayerVault(UUID playerId, int page, int defaultRows, String defaultTitle) {
+            return null;
+        }
+
+        @Override
+        public boolean savePlayerVault(VaultSnapshot snapshot) {
+            return true;
+        }
+
+        @Override
+        public boolean clearPlayerVault(UUID playerId) {
+            return true;
+        }
+
+        @Override
+        public boolean replacePlayerVault(UUID playerId, List<VaultSnapshot> pages) {
+            return true;
+        }
+    };
+
+    /** Full six-row page. */
+    private PlayerVault vault;
+
+    /** Inventory holding {@link #vault}. */
+    private Inventory inventory;
+
+    @Setup
+    public void setup() {
+        vault = new PlayerVault(UUID.randomUUID(), 6, "Vault", 0, BenchmarkItems.vaultItems(mix, 54));
+        inventory = HELPERS.createInventoryFor(vault);
+    }
+
+    @Benchmark
+    public Inventory createInventoryFor() {
+        return HELPERS.createInventoryFor(vault);
+    }
+
+    @Benchmark
+    public PlayerVault captureInventory() {
+        PlayerVault target = new PlayerVault(vault.getPlayerId(), 6, "Vault", 0, new HashMap<>());
+        HELPERS.captureInventory(target, inventory);
+        return target;
+    }
+
+    @Benchmark
+    public VaultSnapshot snapshotCapture() {
+        return VaultSnapshot.capture(vault.getPlayerId(), 6, "Vault", 0, inventory);
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.mcengine.extension.addon.essential.vault.benchmark;
+
+import io.github.mcengine.extension.addon.essential.vault.util.ItemIO;
+import io.github.mcengine.extension.addon.essential.vault.util.ItemTemplateCache;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item (de)serialization cost for one full vault page (54 items).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ItemIOBenchmark {
+
+    /**
+     * Item mix to encode.
+     */
+    @Param({BenchmarkItems.PLAIN, BenchmarkItems.ENCHANTED, BenchmarkItems.BOOKS, BenchmarkItems.SHULKERS, BenchmarkItems.MIXED})
+    public String mix;
+
+    /**
+     * Whether decodes go through an {@link ItemTemplateCache}.
+     */
+    @Param({"false", "true"})
+    public boolean templates;
+
+    /** Items of one page. */
+    private ItemStack[] items;
+
+    /** Encoded form of {@link #items}. */
+    private byte[][] encoded;
+
+    @Setup
+    public void setup() {
+        ItemIO.setTemplateCache(templates ? new ItemTemplateCache(2048, 1024) : null);
+        items = BenchmarkItems.mix(mix, 54);
+        encoded = new byte[items.length][];
+        for (int i = 0; i < items.length; i++) encoded[i] = ItemIO.toBytes(items[i]);
+    }
+
+    @Benchmark
+    public void toBytes(Blackhole bh) {
+        for (ItemStack item : items) bh.consume(ItemIO.toBytes(item));
+    }
+
+    @Benchmark
+    public void fromBytes(Blackhole bh) {
+        for (byte[] bytes : encoded) bh.consume(ItemIO.fromBytes(bytes));
+    }
+}
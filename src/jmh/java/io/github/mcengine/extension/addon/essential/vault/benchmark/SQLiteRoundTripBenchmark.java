@@ -0,0 +1,148 @@
+package io.github.mcengine.extension.addon.essential.vault.benchmark;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultConnectionSource;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDBOptions;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDialect;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultStorageLayout;
+import io.github.mcengine.extension.addon.essential.vault.database.sqlite.VaultDBSQLite;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultItem;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end save and load of one full vault page against a file-backed SQLite
+ * database, through the vault connection pool as configured in production.
+ *
+ * <p>Each save encodes a fresh snapshot; consecutive saves alternate between two
+ * contents that differ in every third slot, so the slot diff always has work to do.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SQLiteRoundTripBenchmark {
+
+    /**
+     * Item storage layout ({@code slot}, {@code page} or {@code dedup}).
+     */
+    @Param({"slot", "page", "dedup"})
+    public String layout;
+
+    /**
+     * Item mix filling the page.
+     */
+    @Param({BenchmarkItems.PLAIN, BenchmarkItems.MIXED})
+    public String mix;
+
+    /** Temporary directory holding the database file. */
+    private Path directory;
+
+    /** Pool over the database file. */
+    private HikariDataSource dataSource;
+
+    /** Backend under test. */
+    private VaultDB vaultDB;
+
+    /** Player whose page is loaded. */
+    private final UUID loadedPlayer = UUID.randomUUID();
+
+    /** Player whose page is saved. */
+    private final UUID savedPlayer = UUID.randomUUID();
+
+    /** The two alternating contents for saves. */
+    private final Map<Integer, VaultItem>[] contents = newContents();
+
+    /** Selects the next content to save. */
+    private int flip;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        directory = Files.createTempDirectory("vault-bench");
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:sqlite:" + directory.resolve("vault.db"));
+        config.setMaximumPoolSize(1);
+        dataSource = new HikariDataSource(config);
+        createSchema();
+
+        VaultConnectionSource connections = new VaultConnectionSource(dataSource, 0, null);
+        vaultDB = new VaultDBSQLite(null, VaultDBOptions.DEFAULTS.withLayout(VaultStorageLayout.fromConfig(layout)).withConnections(connections));
+
+        Map<Integer, VaultItem> items = BenchmarkItems.vaultItems(mix, 54);
+        contents[0] = items;
+        contents[1] = new HashMap<>(items);
+        Map<Integer, VaultItem> other = BenchmarkItems.vaultItems(BenchmarkItems.ENCHANTED, 54);
+        for (int slot = 0; slot < 54; slot += 3) contents[1].put(slot, other.get(slot));
+
+        vaultDB.savePlayerVault(snapshot(loadedPlayer, items));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dataSource.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public boolean save() {
+        flip ^= 1;
+        return vaultDB.savePlayerVault(snapshot(savedPlayer, contents[flip]));
+    }
+
+    @Benchmark
+    public PlayerVault load() {
+        return vaultDB.loadPlayerVault(loadedPlayer, 0, 6, "Vault");
+    }
+
+    /** Builds an unencoded snapshot, as the close listener does. */
+    private static VaultSnapshot snapshot(UUID playerId, Map<Integer, VaultItem> items) {
+        return new VaultSnapshot(playerId, 6, "Vault", 0, items, System.currentTimeMillis());
+    }
+
+    /** Creates the vault tables; mirrors {@link VaultDBSQLite#ensureSchema()}, which needs the shared facade. */
+    private void createSchema() throws SQLException {
+        try (Connection c = dataSource.getConnection(); Statement st = c.createStatement()) {
+            st.execute(VaultDialect.SQLITE.createMetaTable());
+            st.execute(VaultDialect.SQLITE.createItemTable());
+            st.execute("CREATE TABLE IF NOT EXISTS essential_vault_page (player_uuid VARCHAR(36) NOT NULL, "
+                    + "page INT NOT NULL DEFAULT 0, slot_bitmap BIGINT NOT NULL, payload BLOB NOT NULL, PRIMARY KEY (player_uuid, page))");
+            st.execute("CREATE TABLE IF NOT EXISTS essential_vault_blob (hash CHAR(64) PRIMARY KEY, "
+                    + "refcount INT NOT NULL, item_bytes BLOB NOT NULL)");
+            st.execute("CREATE TABLE IF NOT EXISTS essential_vault_slot_ref (player_uuid VARCHAR(36) NOT NULL, "
+                    + "page INT NOT NULL DEFAULT 0, slot INT NOT NULL, blob_hash CHAR(64) NOT NULL, PRIMARY KEY (player_uuid, page, slot))");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_essential_vault_slot_ref_blob ON essential_vault_slot_ref (blob_hash)");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, VaultItem>[] newContents() {
+        return (Map<Integer, VaultItem>[]) new Map[2];
+    }
+}
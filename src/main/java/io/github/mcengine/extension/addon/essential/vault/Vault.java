@@ -1,148 +1,466 @@
-package io.github.mcengine.extension.addon.essential.vault;
-
-import io.github.mcengine.api.core.MCEngineCoreApi;
-import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
-import io.github.mcengine.api.essential.extension.addon.IMCEngineEssentialAddOn;
-import io.github.mcengine.common.essential.MCEngineEssentialCommon;
-import io.github.mcengine.extension.addon.essential.vault.command.VaultCommand;
-import io.github.mcengine.extension.addon.essential.vault.listener.VaultListener;
-import io.github.mcengine.extension.addon.essential.vault.tabcompleter.VaultTabCompleter;
-import io.github.mcengine.extension.addon.essential.vault.util.VaultConfigUtil;
-import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
-import io.github.mcengine.extension.addon.essential.vault.database.mysql.VaultDBMySQL;
-import io.github.mcengine.extension.addon.essential.vault.database.postgresql.VaultDBPostgreSQL;
-import io.github.mcengine.extension.addon.essential.vault.database.sqlite.VaultDBSQLite;
-import org.bukkit.Bukkit;
-import org.bukkit.command.Command;
-import org.bukkit.command.CommandMap;
-import org.bukkit.command.CommandSender;
-import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.plugin.Plugin;
-import org.bukkit.plugin.PluginManager;
-
-import java.io.File;
-import java.lang.reflect.Field;
-import java.util.List;
-
-/**
- * Main class for the Vault extension.
- * <p>
- * Creates a default config (with {@code license: free}) if missing, validates the license,
- * wires a database accessor based on {@code database.type}, and registers the
- * {@code /vault} command and event listeners.
- */
-public class Vault implements IMCEngineEssentialAddOn {
-
-    /**
-     * Logger instance for the Vault extension.
-     * <p>
-     * Used for initialization messages and error reporting.
-     */
-    private MCEngineExtensionLogger logger;
-
-    /**
-     * Database accessor used by commands and listeners.
-     */
-    private VaultDB vaultDB;
-
-    /**
-     * Configuration folder path for the Vault AddOn.
-     * Used as the base for {@code config.yml}.
-     */
-    private final String folderPath = "extensions/addons/configs/MCEngineVault";
-
-    /**
-     * Initializes the Vault extension.
-     * Called automatically by the MCEngine core plugin.
-     *
-     * @param plugin The Bukkit plugin instance.
-     */
-    @Override
-    public void onLoad(Plugin plugin) {
-        logger = new MCEngineExtensionLogger(plugin, "AddOn", "EssentialVault");
-
-        try {
-            // Ensure config.yml exists (with license: free)
-            VaultConfigUtil.createConfig(plugin, folderPath, logger);
-
-            // Load and validate license
-            File configFile = new File(plugin.getDataFolder(), folderPath + "/config.yml");
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(configFile);
-            String licenseType = config.getString("license", "free");
-            if (!"free".equalsIgnoreCase(licenseType)) {
-                logger.warning("License is not 'free'. Disabling Essential Vault AddOn.");
-                return;
-            }
-
-            // Pick DB implementation from main config: database.type = sqlite|mysql|postgresql
-            String dbType;
-            try {
-                dbType = plugin.getConfig().getString("database.type", "sqlite");
-            } catch (Throwable t) {
-                dbType = "sqlite";
-            }
-            switch (dbType == null ? "sqlite" : dbType.toLowerCase()) {
-                case "mysql" -> vaultDB = new VaultDBMySQL(logger);
-                case "postgresql", "postgres" -> vaultDB = new VaultDBPostgreSQL(logger);
-                case "sqlite" -> vaultDB = new VaultDBSQLite(logger);
-                default -> {
-                    logger.warning("Unknown database.type='" + dbType + "', defaulting to SQLite for Vault.");
-                    vaultDB = new VaultDBSQLite(logger);
-                }
-            }
-
-            // Ensure DB schema for the vault is present before usage.
-            vaultDB.ensureSchema();
-
-            // Register event listener
-            PluginManager pluginManager = Bukkit.getPluginManager();
-            pluginManager.registerEvents(new VaultListener(plugin, logger, vaultDB), plugin);
-
-            // Reflectively access Bukkit's CommandMap
-            Field commandMapField = Bukkit.getServer().getClass().getDeclaredField("commandMap");
-            commandMapField.setAccessible(true);
-            CommandMap commandMap = (CommandMap) commandMapField.get(Bukkit.getServer());
-
-            // Define the /vault command
-            Command vaultCommand = new Command("vault") {
-
-                /** Handles command execution for {@code /vault}. */
-                private final VaultCommand handler = new VaultCommand(vaultDB);
-
-                /** Handles tab-completion for {@code /vault}. */
-                private final VaultTabCompleter completer = new VaultTabCompleter();
-
-                @Override
-                public boolean execute(CommandSender sender, String label, String[] args) {
-                    return handler.onCommand(sender, this, label, args);
-                }
-
-                @Override
-                public List<String> tabComplete(CommandSender sender, String alias, String[] args) {
-                    return completer.onTabComplete(sender, this, alias, args);
-                }
-            };
-
-            vaultCommand.setDescription("Vault command for the essential add-on.");
-            vaultCommand.setUsage("/vault");
-
-            // Dynamically register the /vault command
-            commandMap.register(plugin.getName().toLowerCase(), vaultCommand);
-
-            logger.info("Enabled successfully.");
-        } catch (Exception e) {
-            logger.warning("Failed to initialize Vault: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
-    @Override
-    public void onDisload(Plugin plugin) {
-        // No specific unload logic
-    }
-
-    @Override
-    public void setId(String id) {
-        MCEngineCoreApi.setId("mcengine-essential-addon-vault");
-    }
-}
+package io.github.mcengine.extension.addon.essential.vault;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.mcengine.api.core.MCEngineCoreApi;
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.api.essential.extension.addon.IMCEngineEssentialAddOn;
+import io.github.mcengine.common.essential.MCEngineEssentialCommon;
+import io.github.mcengine.extension.addon.essential.vault.command.VaultCommand;
+import io.github.mcengine.extension.addon.essential.vault.listener.VaultListener;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultBackendMigration;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultBackup;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultBlobGcJob;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultChangeFeed;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultJournal;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultLoader;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultLayoutMigrationJob;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultReencodeJob;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultWriteBehind;
+import io.github.mcengine.extension.addon.essential.vault.tabcompleter.VaultTabCompleter;
+import io.github.mcengine.extension.addon.essential.vault.util.ItemIO;
+import io.github.mcengine.extension.addon.essential.vault.util.ItemTemplateCache;
+import io.github.mcengine.extension.addon.essential.vault.util.VaultConfigUtil;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultConflicts;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultConnectionSource;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDBOptions;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultStorageLayout;
+import io.github.mcengine.extension.addon.essential.vault.database.cache.VaultDBCache;
+import io.github.mcengine.extension.addon.essential.vault.database.metrics.VaultDBMetrics;
+import io.github.mcengine.extension.addon.essential.vault.database.mysql.VaultDBMySQL;
+import io.github.mcengine.extension.addon.essential.vault.database.postgresql.VaultDBPostgreSQL;
+import io.github.mcengine.extension.addon.essential.vault.database.sqlite.VaultDBSQLite;
+import io.github.mcengine.extension.addon.essential.vault.metrics.VaultMetrics;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandMap;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Main class for the Vault extension.
+ * <p>
+ * Creates a default config (with {@code license: free}) if missing, validates the license,
+ * wires a database accessor based on {@code database.type}, and registers the
+ * {@code /vault} command and event listeners.
+ */
+public class Vault implements IMCEngineEssentialAddOn {
+
+    /**
+     * Logger instance for the Vault extension.
+     * <p>
+     * Used for initialization messages and error reporting.
+     */
+    private MCEngineExtensionLogger logger;
+
+    /**
+     * Database accessor used by commands and listeners.
+     */
+    private VaultDB vaultDB;
+
+    /**
+     * Optional AddOn-owned connection pool for vault loads and saves; {@code null} when not configured.
+     */
+    private VaultConnectionSource connections;
+
+    /**
+     * Load, save and clear metrics shown by {@code /vault stats}.
+     */
+    private VaultMetrics metrics;
+
+    /**
+     * Periodic metrics dump; {@code null} when disabled in config.
+     */
+    private BukkitTask metricsDumpTask;
+
+    /**
+     * Decoded-item templates shared by all loads; {@code null} when disabled in config.
+     */
+    private ItemTemplateCache itemTemplates;
+
+    /**
+     * In-memory cache wrapping {@link #vaultDB}; {@code null} when disabled in config.
+     */
+    private VaultDBCache vaultCache;
+
+    /**
+     * Background writer that persists vault snapshots off the main thread.
+     */
+    private VaultWriteBehind writeBehind;
+
+    /**
+     * Local journal written before the database; {@code null} when disabled or unavailable.
+     */
+    private VaultJournal journal;
+
+    /**
+     * Async vault loader; stopped first on shutdown so no new vault is opened.
+     */
+    private VaultLoader loader;
+
+    /**
+     * Listener that saves vaults on close; also saves vaults still open on shutdown.
+     */
+    private VaultListener listener;
+
+    /**
+     * Time allowed on shutdown for queued vault saves to be written, in milliseconds.
+     */
+    private long drainTimeoutMillis = 10_000L;
+
+    /**
+     * Background job converting legacy-encoded item rows; {@code null} when disabled.
+     */
+    private VaultReencodeJob reencodeJob;
+
+    /**
+     * Background migration out of per-slot rows; {@code null} unless {@code storage.layout} is page or dedup.
+     */
+    private VaultLayoutMigrationJob layoutMigrationJob;
+
+    /**
+     * Periodic deletion of unreferenced item blobs; {@code null} unless {@code storage.layout} is dedup.
+     */
+    private VaultBlobGcJob blobGcJob;
+
+    /**
+     * Copy of all vaults to another database, started by {@code /vault migrate}.
+     */
+    private VaultBackendMigration backendMigration;
+
+    /**
+     * Export/import of vault backups, started by {@code /vault export} and {@code /vault import}.
+     */
+    private VaultBackup backup;
+
+    /**
+     * Follower of the change feed that drops vaults other servers saved; {@code null} unless {@code change-feed.enabled}.
+     */
+    private VaultChangeFeed changeFeed;
+
+    /**
+     * Configuration folder path for the Vault AddOn.
+     * Used as the base for {@code config.yml}.
+     */
+    private final String folderPath = "extensions/addons/configs/MCEngineVault";
+
+    /**
+     * Initializes the Vault extension.
+     * Called automatically by the MCEngine core plugin.
+     *
+     * @param plugin The Bukkit plugin instance.
+     */
+    @Override
+    public void onLoad(Plugin plugin) {
+        logger = new MCEngineExtensionLogger(plugin, "AddOn", "EssentialVault");
+
+        try {
+            // Ensure config.yml exists (with license: free)
+            VaultConfigUtil.createConfig(plugin, folderPath, logger);
+
+            // Load and validate license
+            File configFile = new File(plugin.getDataFolder(), folderPath + "/config.yml");
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(configFile);
+            String licenseType = config.getString("license", "free");
+            if (!"free".equalsIgnoreCase(licenseType)) {
+                logger.warning("License is not 'free'. Disabling Essential Vault AddOn.");
+                return;
+            }
+
+            // Pick DB implementation from main config: database.type = sqlite|mysql|postgresql
+            String dbType;
+            try {
+                dbType = plugin.getConfig().getString("database.type", "sqlite");
+            } catch (Throwable t) {
+                dbType = "sqlite";
+            }
+            VaultStorageLayout layout = VaultStorageLayout.fromConfig(config.getString("storage.layout", "slot"));
+            HikariDataSource dataSource = VaultConfigUtil.createDataSource(config, logger);
+            if (dataSource != null) {
+                connections = new VaultConnectionSource(dataSource, config.getInt("database.pool.query-timeout-seconds", 10), logger);
+            }
+            // Clone common items from decoded templates instead of deserializing each copy
+            int templateEntries = config.getInt("codec.item-cache.max-entries", 2048);
+            if (templateEntries > 0) {
+                itemTemplates = new ItemTemplateCache(templateEntries, config.getInt("codec.item-cache.max-item-bytes", 1024));
+                ItemIO.setTemplateCache(itemTemplates);
+            }
+
+            metrics = new VaultMetrics(new File(plugin.getDataFolder(), folderPath + "/metrics.json"));
+            VaultConflicts conflicts = new VaultConflicts(VaultConflicts.Resolution.fromConfig(config.getString("storage.conflict-resolution", "merge")));
+            String changeOrigin = null;
+            if (config.getBoolean("change-feed.enabled", false)) {
+                changeOrigin = config.getString("change-feed.node-id", "");
+                if (changeOrigin == null || changeOrigin.isBlank()) changeOrigin = UUID.randomUUID().toString();
+                if (changeOrigin.length() > 64) changeOrigin = changeOrigin.substring(0, 64);
+            }
+            VaultDBOptions options = new VaultDBOptions(layout, connections, metrics, conflicts, changeOrigin);
+            switch (dbType == null ? "sqlite" : dbType.toLowerCase()) {
+                case "mysql" -> vaultDB = new VaultDBMySQL(logger, options);
+                case "postgresql", "postgres" -> vaultDB = new VaultDBPostgreSQL(logger, options);
+                case "sqlite" -> vaultDB = new VaultDBSQLite(logger, options);
+                default -> {
+                    logger.warning("Unknown database.type='" + dbType + "', defaulting to SQLite for Vault.");
+                    vaultDB = new VaultDBSQLite(logger, options);
+                }
+            }
+            // Time every operation that reaches the database (below the cache)
+            vaultDB = new VaultDBMetrics(vaultDB, metrics);
+
+            // Ensure DB schema for the vault is present before usage.
+            vaultDB.ensureSchema();
+            // Backups read below the cache so a full export does not evict it
+            VaultDB storeDB = vaultDB;
+
+            // Serve repeated opens from memory unless disabled in config
+            if (config.getBoolean("cache.enabled", true)) {
+                vaultCache = new VaultDBCache(
+                        vaultDB,
+                        config.getInt("cache.max-entries", 1000),
+                        config.getLong("cache.expire-after-access-seconds", 600L) * 1000L
+                );
+                vaultDB = vaultCache;
+            }
+            // A save that lost against another server leaves the cached vault stale; tell the owner
+            conflicts.addListener(outcome -> {
+                if (vaultCache != null) vaultCache.invalidate(outcome.playerId());
+                if (!plugin.isEnabled()) return;
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    Player player = Bukkit.getPlayer(outcome.playerId());
+                    if (player == null || !player.isOnline()) return;
+                    player.sendMessage(outcome.merged()
+                            ? ChatColor.YELLOW + "Your vault was changed on another server at the same time; both changes were kept."
+                            : ChatColor.RED + "Your vault was changed on another server at the same time; your last change could not be kept.");
+                });
+            });
+
+            // Recover saves a previous run journaled but did not write to the database
+            List<VaultJournal.Entry> recovered = List.of();
+            if (config.getBoolean("journal.enabled", true)) {
+                journal = new VaultJournal(
+                        new File(plugin.getDataFolder(), folderPath + "/journal/vault.journal"),
+                        config.getLong("journal.max-size-mb", 64L) << 20,
+                        logger
+                );
+                try {
+                    recovered = journal.recover();
+                } catch (IOException e) {
+                    logger.warning("Vault journal unavailable, saving directly to the database: " + e.getMessage());
+                    journal.close();
+                    journal = null;
+                }
+            }
+
+            // Start the background writer that batches vault saves across players
+            writeBehind = new VaultWriteBehind(
+                    plugin,
+                    logger,
+                    vaultDB,
+                    config.getInt("write-behind.batch-size", 100),
+                    config.getLong("write-behind.max-delay-ms", 250L),
+                    config.getLong("write-behind.debounce-ms", 500L),
+                    config.getLong("write-behind.max-staleness-ms", 5000L),
+                    journal
+            );
+            writeBehind.replay(recovered);
+            // Only the viewed page is loaded; neighbours are prefetched into the cache
+            int maxPages = Math.max(1, config.getInt("pages.max", 3));
+            boolean prefetch = vaultCache != null && config.getBoolean("pages.prefetch-adjacent", true);
+            loader = new VaultLoader(plugin, logger, vaultDB, writeBehind, prefetch);
+            drainTimeoutMillis = Math.max(1000L, config.getLong("shutdown.drain-timeout-ms", 10_000L));
+
+            // Convert items still stored with Java serialization to the compact codec
+            if (config.getBoolean("codec.reencode-legacy", true)) {
+                reencodeJob = new VaultReencodeJob(plugin, logger, vaultDB, config.getInt("codec.reencode-rows-per-second", 100));
+                reencodeJob.start();
+            }
+
+            // Move per-slot rows into packed page rows or blob references when another layout is selected
+            if (layout != VaultStorageLayout.SLOT) {
+                layoutMigrationJob = new VaultLayoutMigrationJob(plugin, logger, vaultDB, config.getInt("storage.migrate-pages-per-second", 20));
+                layoutMigrationJob.start();
+            }
+
+            // Shared item blobs are deleted once no slot references them
+            if (layout == VaultStorageLayout.DEDUP) {
+                blobGcJob = new VaultBlobGcJob(plugin, logger, vaultDB,
+                        config.getLong("storage.dedup.gc-interval-seconds", 300L), config.getInt("storage.dedup.gc-batch-size", 500));
+                blobGcJob.start();
+            }
+
+            // Saves of other servers invalidate this server's cached copy; without a cache there is nothing to drop
+            if (changeOrigin != null && vaultCache != null) {
+                boolean postgres = "postgresql".equalsIgnoreCase(dbType) || "postgres".equalsIgnoreCase(dbType);
+                VaultDBCache cache = vaultCache;
+                changeFeed = new VaultChangeFeed(plugin, logger, storeDB, changeOrigin,
+                        change -> cache.invalidate(change.playerId()),
+                        config.getLong("change-feed.poll-interval-ms", 1000L), config.getInt("change-feed.batch-size", 200),
+                        config.getLong("change-feed.retention-seconds", 3600L), config.getLong("change-feed.gap-timeout-ms", 10000L),
+                        postgres && config.getBoolean("change-feed.listen", true) ? connections : null);
+                changeFeed.start();
+            }
+
+            // Live values reported next to the counters by /vault stats
+            metrics.registerGauge("write-behind.queue-depth", writeBehind::queueDepth);
+            metrics.registerGauge("write-behind.coalesced", writeBehind::coalescedCount);
+            metrics.registerGauge("conflicts.detected", conflicts::detectedCount);
+            metrics.registerGauge("conflicts.merged", conflicts::mergedCount);
+            metrics.registerGauge("conflicts.reloaded", conflicts::reloadedCount);
+            metrics.registerGauge("codec.compact-writes", ItemIO::compactWriteCount);
+            metrics.registerGauge("codec.legacy-fallbacks", ItemIO::legacyFallbackCount);
+            if (journal != null) {
+                metrics.registerGauge("journal.pending", journal::pendingCount);
+            }
+            if (blobGcJob != null) {
+                metrics.registerGauge("storage.blobs-collected", blobGcJob::collectedCount);
+            }
+            if (changeFeed != null) {
+                metrics.registerGauge("change-feed.received", changeFeed::receivedCount);
+                metrics.registerGauge("change-feed.position", changeFeed::position);
+            }
+            if (vaultCache != null) {
+                metrics.registerGauge("cache.size", vaultCache::size);
+                metrics.registerGauge("cache.hit-rate", vaultCache::hitRate);
+                metrics.registerGauge("cache.evictions", vaultCache::evictionCount);
+            }
+            if (itemTemplates != null) {
+                metrics.registerGauge("item-cache.size", itemTemplates::size);
+                metrics.registerGauge("item-cache.hit-rate", itemTemplates::hitRate);
+                metrics.registerGauge("item-cache.evictions", itemTemplates::evictionCount);
+            }
+            if (connections != null) {
+                metrics.registerGauge("pool.active", () -> connections.stats().active());
+                metrics.registerGauge("pool.idle", () -> connections.stats().idle());
+                metrics.registerGauge("pool.waiting", () -> connections.stats().waiting());
+                metrics.registerGauge("pool.failures", () -> connections.stats().failures());
+            }
+
+            // Optionally write the metrics as JSON at a fixed interval for external collectors
+            long dumpTicks = config.getLong("metrics.dump-interval-seconds", 0L) * 20L;
+            if (dumpTicks > 0) {
+                metricsDumpTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+                    try {
+                        metrics.dump();
+                    } catch (IOException e) {
+                        logger.warning("Failed to write vault metrics: " + e.getMessage());
+                    }
+                }, dumpTicks, dumpTicks);
+            }
+
+            // Backend-to-backend copy; idle until started by /vault migrate
+            backendMigration = new VaultBackendMigration(logger, config,
+                    new File(plugin.getDataFolder(), folderPath + "/migration.checkpoint"));
+            backup = new VaultBackup(plugin, logger, storeDB, vaultDB, writeBehind,
+                    new File(plugin.getDataFolder(), folderPath + "/backups"));
+
+            // Register event listener
+            PluginManager pluginManager = Bukkit.getPluginManager();
+            listener = new VaultListener(plugin, logger, writeBehind);
+            pluginManager.registerEvents(listener, plugin);
+
+            // Reflectively access Bukkit's CommandMap
+            Field commandMapField = Bukkit.getServer().getClass().getDeclaredField("commandMap");
+            commandMapField.setAccessible(true);
+            CommandMap commandMap = (CommandMap) commandMapField.get(Bukkit.getServer());
+
+            // Define the /vault command
+            Command vaultCommand = new Command("vault") {
+
+                /** Handles command execution for {@code /vault}. */
+                private final VaultCommand handler = new VaultCommand(vaultDB, loader, maxPages, metrics, backendMigration, backup);
+
+                /** Handles tab-completion for {@code /vault}. */
+                private final VaultTabCompleter completer = new VaultTabCompleter();
+
+                @Override
+                public boolean execute(CommandSender sender, String label, String[] args) {
+                    return handler.onCommand(sender, this, label, args);
+                }
+
+                @Override
+                public List<String> tabComplete(CommandSender sender, String alias, String[] args) {
+                    return completer.onTabComplete(sender, this, alias, args);
+                }
+            };
+
+            vaultCommand.setDescription("Vault command for the essential add-on.");
+            vaultCommand.setUsage("/vault");
+
+            // Dynamically register the /vault command
+            commandMap.register(plugin.getName().toLowerCase(), vaultCommand);
+
+            logger.info("Enabled successfully.");
+        } catch (Exception e) {
+            logger.warning("Failed to initialize Vault: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void onDisload(Plugin plugin) {
+        // Refuse new opens first so nothing changes while open vaults are saved
+        if (loader != null) loader.stop();
+        if (reencodeJob != null) reencodeJob.stop();
+        if (layoutMigrationJob != null) layoutMigrationJob.stop();
+        if (blobGcJob != null) blobGcJob.stop();
+        if (changeFeed != null) changeFeed.stop();
+        if (backendMigration != null) backendMigration.shutdown(drainTimeoutMillis);
+        if (backup != null) backup.shutdown(drainTimeoutMillis);
+        if (metricsDumpTask != null) metricsDumpTask.cancel();
+
+        // Open vaults get no close event once the plugin is disabled; save them now
+        if (listener != null && writeBehind != null) {
+            int open = listener.saveOpenVaults();
+            if (open > 0) logger.info("Saving " + open + " open vault(s) before shutdown.");
+        }
+
+        // Let queued vault saves finish before the plugin goes away, then name anything left over
+        if (writeBehind != null) {
+            if (!writeBehind.shutdown(drainTimeoutMillis)) {
+                logger.warning("Timed out after " + drainTimeoutMillis + " ms waiting for pending vault saves to finish.");
+            }
+            for (VaultKey key : writeBehind.unflushed()) {
+                String name = Bukkit.getOfflinePlayer(key.playerId()).getName();
+                logger.warning("Vault page " + (key.page() + 1) + " of " + (name != null ? name : "?") + " (" + key.playerId()
+                        + ") was not confirmed written to the database.");
+            }
+            logger.info("Vault writer: " + writeBehind.coalescedCount() + " saves coalesced.");
+        }
+        if (journal != null) {
+            if (journal.pendingCount() > 0) {
+                logger.warning(journal.pendingCount() + " vault save(s) kept in the journal for the next start.");
+            }
+            journal.close();
+        }
+        if (vaultCache != null) {
+            logger.info("Vault cache: " + vaultCache.hitCount() + " hits, " + vaultCache.missCount()
+                    + " misses, " + vaultCache.evictionCount() + " evictions.");
+        }
+        if (itemTemplates != null) {
+            logger.info("Vault item cache: " + itemTemplates.hitCount() + " hits, " + itemTemplates.missCount()
+                    + " misses, " + itemTemplates.size() + " templates.");
+            ItemIO.setTemplateCache(null);
+        }
+        if (connections != null) {
+            logger.info("Vault connection pool: " + connections.stats() + ".");
+            connections.close();
+        }
+    }
+
+    @Override
+    public void setId(String id) {
+        MCEngineCoreApi.setId("mcengine-essential-addon-vault");
+    }
+}
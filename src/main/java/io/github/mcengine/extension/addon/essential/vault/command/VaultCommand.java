@@ -1,131 +1,492 @@
-package io.github.mcengine.extension.addon.essential.vault.command;
-
-import io.github.mcengine.common.essential.MCEngineEssentialCommon;
-import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
-import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
-import org.bukkit.Bukkit;
-import org.bukkit.ChatColor;
-import org.bukkit.command.Command;
-import org.bukkit.command.CommandExecutor;
-import org.bukkit.command.CommandSender;
-import org.bukkit.entity.Player;
-import org.bukkit.inventory.Inventory;
-import org.bukkit.metadata.FixedMetadataValue;
-import org.bukkit.plugin.Plugin;
-
-/**
- * Handles {@code /vault} command logic for the Vault extension.
- *
- * <p>Supported usage:</p>
- * <ul>
- *   <li>{@code /vault} – open the player's vault (requires {@code mcengine.essential.vault.use})</li>
- *   <li>{@code /vault open} – same as above</li>
- * </ul>
- */
-public class VaultCommand implements CommandExecutor {
-
-    /**
-     * Metadata key stored on a player to indicate the next closed inventory
-     * should be treated as a Vault inventory to be persisted.
-     */
-    private static final String META_VAULT_OPEN = "mcengine_vault_open";
-
-    /**
-     * Permission node required to open a vault.
-     */
-    private static final String PERM_USE = "mcengine.essential.vault.use";
-
-    /**
-     * Database accessor for vault operations.
-     */
-    private final VaultDB vaultDB;
-
-    /**
-     * Constructs a {@link VaultCommand} with a DB accessor.
-     *
-     * @param vaultDB database accessor
-     */
-    public VaultCommand(VaultDB vaultDB) {
-        this.vaultDB = vaultDB;
-    }
-
-    /**
-     * Executes the {@code /vault} command.
-     *
-     * @param sender  The source of the command.
-     * @param command The command which was executed.
-     * @param label   The alias used.
-     * @param args    The command arguments.
-     * @return true if command executed successfully.
-     */
-    @Override
-    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        if (!(sender instanceof Player player)) {
-            sender.sendMessage(ChatColor.RED + "Only players can use /vault.");
-            return true;
-        }
-
-        Plugin plugin = MCEngineEssentialCommon.getApi() != null ? MCEngineEssentialCommon.getApi().getPlugin() : null;
-        if (plugin == null) {
-            sender.sendMessage(ChatColor.RED + "Vault is not initialized yet.");
-            return true;
-        }
-
-        if (!player.hasPermission(PERM_USE)) {
-            player.sendMessage(ChatColor.RED + "You do not have permission to use the vault.");
-            return true;
-        }
-
-        // Defaults from config if present
-        int defaultRows = plugin.getConfig().getInt("vault.rows", 6);
-        if (defaultRows < 1) defaultRows = 1;
-        if (defaultRows > 6) defaultRows = 6;
-        String defaultTitle = plugin.getConfig().getString("vault.title", "Vault");
-
-        String sub = (args.length == 0) ? "open" : args[0].toLowerCase();
-
-        switch (sub) {
-            case "open" -> {
-                openVault(player, defaultRows, defaultTitle, plugin);
-                return true;
-            }
-            default -> {
-                // Minimal help now that setrows/settitle are removed
-                player.sendMessage(ChatColor.AQUA + "Vault commands:");
-                player.sendMessage(ChatColor.GRAY + " • /vault" + ChatColor.DARK_GRAY + " – open your vault");
-                player.sendMessage(ChatColor.GRAY + " • /vault open");
-                return true;
-            }
-        }
-    }
-
-    /**
-     * Opens the player's vault inventory and tags the player with a metadata flag
-     * so the listener can persist it on close.
-     *
-     * @param player       the player
-     * @param rows         number of rows to open with (1..6)
-     * @param title        inventory title
-     * @param owningPlugin plugin instance for metadata association
-     */
-    private void openVault(Player player, int rows, String title, Plugin owningPlugin) {
-        PlayerVault pv = vaultDB.loadPlayerVault(player.getUniqueId(), rows, title);
-        Inventory inv = vaultDB.createInventoryFor(pv);
-
-        // Flag this player so InventoryCloseEvent knows to persist.
-        player.setMetadata(META_VAULT_OPEN, new FixedMetadataValue(owningPlugin, true));
-
-        player.openInventory(inv);
-        player.sendMessage(ChatColor.GREEN + "Vault opened (" + (rows * 9) + " slots).");
-        Bukkit.getScheduler().runTaskLater(owningPlugin, () -> { /* no-op hook */ }, 1L);
-    }
-
-    /**
-     * Exposes the metadata key used by the listener to detect a "vault session".
-     *
-     * @return metadata key for a vault-open session
-     */
-    public static String metaKey() {
-        return META_VAULT_OPEN;
-    }
-}
+package io.github.mcengine.extension.addon.essential.vault.command;
+
+import io.github.mcengine.common.essential.MCEngineEssentialCommon;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.metrics.VaultMetrics;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultBackendMigration;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultBackup;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultLoader;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.metadata.FixedMetadataValue;
+import org.bukkit.metadata.MetadataValue;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Handles {@code /vault} command logic for the Vault extension.
+ *
+ * <p>Supported usage:</p>
+ * <ul>
+ *   <li>{@code /vault} – open the first page of the player's vault (requires {@code mcengine.essential.vault.use})</li>
+ *   <li>{@code /vault open [page]} – open a page (first page by default)</li>
+ *   <li>{@code /vault <page>} – open a page (1-based)</li>
+ *   <li>{@code /vault next} / {@code /vault prev} – open the page after/before the one viewed last</li>
+ *   <li>{@code /vault stats [dump]} – show load/save metrics, or write them to {@code metrics.json}
+ *       (requires {@code mcengine.essential.vault.stats}; also works from the console)</li>
+ *   <li>{@code /vault migrate <start [fresh]|status|cancel>} – copy all vaults to the database set under
+ *       {@code migration.target} (requires {@code mcengine.essential.vault.migrate}; also works from the console)</li>
+ *   <li>{@code /vault export <all|player|uuid..uuid> [gzip]} – write vaults to a new backup file</li>
+ *   <li>{@code /vault import [file [all|player|uuid..uuid]]} – restore vaults from a backup file, or list the backups
+ *       (both require {@code mcengine.essential.vault.backup}; also work from the console)</li>
+ * </ul>
+ */
+public class VaultCommand implements CommandExecutor {
+
+    /**
+     * Metadata key stored on a player to indicate the next closed inventory
+     * should be treated as a Vault inventory to be persisted.
+     */
+    private static final String META_VAULT_OPEN = "mcengine_vault_open";
+
+    /**
+     * Metadata key holding the 0-based page the player viewed last, for {@code next}/{@code prev}.
+     */
+    private static final String META_VAULT_PAGE = "mcengine_vault_page";
+
+    /**
+     * Metadata key holding the meta version the open page was loaded at ({@link Long}); absent if unknown.
+     */
+    private static final String META_VAULT_VERSION = "mcengine_vault_version";
+
+    /**
+     * Permission node required to open a vault.
+     */
+    private static final String PERM_USE = "mcengine.essential.vault.use";
+
+    /**
+     * Permission node required for {@code /vault stats}.
+     */
+    private static final String PERM_STATS = "mcengine.essential.vault.stats";
+
+    /**
+     * Permission node required for {@code /vault migrate}.
+     */
+    private static final String PERM_MIGRATE = "mcengine.essential.vault.migrate";
+
+    /**
+     * Permission node required for {@code /vault export} and {@code /vault import}.
+     */
+    private static final String PERM_BACKUP = "mcengine.essential.vault.backup";
+
+    /**
+     * Database accessor for vault operations.
+     */
+    private final VaultDB vaultDB;
+
+    /**
+     * Asynchronous loader used to fetch vaults off the main thread.
+     */
+    private final VaultLoader loader;
+
+    /**
+     * Number of pages each player can use.
+     */
+    private final int maxPages;
+
+    /**
+     * Metrics shown by {@code /vault stats}; may be {@code null}.
+     */
+    private final VaultMetrics metrics;
+
+    /**
+     * Backend-to-backend copy driven by {@code /vault migrate}; may be {@code null}.
+     */
+    private final VaultBackendMigration migration;
+
+    /**
+     * Backup export/import driven by {@code /vault export} and {@code /vault import}; may be {@code null}.
+     */
+    private final VaultBackup backup;
+
+    /**
+     * Constructs a {@link VaultCommand} with a DB accessor and async loader.
+     *
+     * @param vaultDB  database accessor
+     * @param loader   asynchronous vault loader
+     * @param maxPages number of pages each player can use (at least 1)
+     * @param metrics   metrics shown by {@code /vault stats} (nullable)
+     * @param migration backend copy driven by {@code /vault migrate} (nullable)
+     * @param backup    backup export/import (nullable)
+     */
+    public VaultCommand(VaultDB vaultDB, VaultLoader loader, int maxPages, VaultMetrics metrics, VaultBackendMigration migration,
+            VaultBackup backup) {
+        this.vaultDB = vaultDB;
+        this.loader = loader;
+        this.maxPages = Math.max(1, maxPages);
+        this.metrics = metrics;
+        this.migration = migration;
+        this.backup = backup;
+    }
+
+    /**
+     * Executes the {@code /vault} command.
+     *
+     * @param sender  The source of the command.
+     * @param command The command which was executed.
+     * @param label   The alias used.
+     * @param args    The command arguments.
+     * @return true if command executed successfully.
+     */
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        // Admin metrics work from the console too
+        if (args.length > 0 && "stats".equalsIgnoreCase(args[0])) return showStats(sender, args);
+        if (args.length > 0 && "migrate".equalsIgnoreCase(args[0])) return migrate(sender, args);
+        if (args.length > 0 && ("export".equalsIgnoreCase(args[0]) || "import".equalsIgnoreCase(args[0]))) return backup(sender, args);
+
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(ChatColor.RED + "Only players can use /vault.");
+            return true;
+        }
+
+        Plugin plugin = MCEngineEssentialCommon.getApi() != null ? MCEngineEssentialCommon.getApi().getPlugin() : null;
+        if (plugin == null) {
+            sender.sendMessage(ChatColor.RED + "Vault is not initialized yet.");
+            return true;
+        }
+
+        if (!player.hasPermission(PERM_USE)) {
+            player.sendMessage(ChatColor.RED + "You do not have permission to use the vault.");
+            return true;
+        }
+
+        // Defaults from config if present
+        int defaultRows = plugin.getConfig().getInt("vault.rows", 6);
+        if (defaultRows < 1) defaultRows = 1;
+        if (defaultRows > 6) defaultRows = 6;
+        String defaultTitle = plugin.getConfig().getString("vault.title", "Vault");
+
+        String sub = (args.length == 0) ? "open" : args[0].toLowerCase();
+
+        switch (sub) {
+            case "open" -> {
+                int page = args.length > 1 ? parsePage(args[1]) : 0;
+                if (page < 0) return pageOutOfRange(player);
+                openVault(player, page, defaultRows, defaultTitle, plugin);
+                return true;
+            }
+            case "next", "prev" -> {
+                int page = lastPage(player) + ("next".equals(sub) ? 1 : -1);
+                if (page < 0 || page >= maxPages) return pageOutOfRange(player);
+                openVault(player, page, defaultRows, defaultTitle, plugin);
+                return true;
+            }
+            default -> {
+                int page = parsePage(sub);
+                if (page >= 0) {
+                    openVault(player, page, defaultRows, defaultTitle, plugin);
+                    return true;
+                }
+                if (!sub.isEmpty() && sub.chars().allMatch(Character::isDigit)) return pageOutOfRange(player);
+
+                // Minimal help now that setrows/settitle are removed
+                player.sendMessage(ChatColor.AQUA + "Vault commands:");
+                player.sendMessage(ChatColor.GRAY + " • /vault" + ChatColor.DARK_GRAY + " – open your vault");
+                player.sendMessage(ChatColor.GRAY + " • /vault open [page]");
+                if (maxPages > 1) {
+                    player.sendMessage(ChatColor.GRAY + " • /vault <1-" + maxPages + ">" + ChatColor.DARK_GRAY + " – open a page");
+                    player.sendMessage(ChatColor.GRAY + " • /vault next" + ChatColor.DARK_GRAY + ", " + ChatColor.GRAY + "/vault prev");
+                }
+                if (player.hasPermission(PERM_STATS)) {
+                    player.sendMessage(ChatColor.GRAY + " • /vault stats [dump]" + ChatColor.DARK_GRAY + " – performance metrics");
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Parses a 1-based page argument.
+     *
+     * @param arg command argument
+     * @return 0-based page index, or -1 if not a number or out of range
+     */
+    private int parsePage(String arg) {
+        try {
+            int page = Integer.parseInt(arg) - 1;
+            return page >= 0 && page < maxPages ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Tells the player which pages exist.
+     *
+     * @param player the player
+     * @return always {@code true} (command handled)
+     */
+    private boolean pageOutOfRange(Player player) {
+        player.sendMessage(ChatColor.RED + "There is no such vault page. Pages: 1-" + maxPages + ".");
+        return true;
+    }
+
+    /**
+     * @param player the player
+     * @return 0-based page the player viewed last, or 0 if none
+     */
+    private static int lastPage(Player player) {
+        for (MetadataValue m : player.getMetadata(META_VAULT_PAGE)) {
+            if (m != null && m.value() instanceof Integer page) return page;
+        }
+        return 0;
+    }
+
+    /**
+     * Loads one page of the player's vault in the background, then opens it on the main
+     * thread and tags the player with the open page so the listener can persist it on close.
+     * The neighbouring pages are prefetched afterwards so flipping to them is instant.
+     *
+     * <p>If the player has opened another inventory by the time the load completes,
+     * the vault is not forced open over it.</p>
+     *
+     * @param player       the player
+     * @param page         page index (0-based)
+     * @param rows         number of rows to open with (1..6)
+     * @param title        inventory title
+     * @param owningPlugin plugin instance for metadata association
+     */
+    private void openVault(Player player, int page, int rows, String title, Plugin owningPlugin) {
+        if (!loader.isAccepting()) {
+            player.sendMessage(ChatColor.RED + "Vaults are unavailable while the server is shutting down.");
+            return;
+        }
+        loader.load(player, page, rows, title, pv -> {
+            if (isViewingOtherInventory(player)) {
+                player.sendMessage(ChatColor.YELLOW + "Vault not opened: close your current inventory and try again.");
+                return;
+            }
+            Inventory inv = vaultDB.createInventoryFor(pv);
+
+            // Flag this player with the open page so InventoryCloseEvent knows what to persist.
+            player.setMetadata(META_VAULT_OPEN, new FixedMetadataValue(owningPlugin, page));
+            player.setMetadata(META_VAULT_PAGE, new FixedMetadataValue(owningPlugin, page));
+            // The save on close is conditional on the version the page was loaded at
+            if (pv.getVersion() != null) {
+                player.setMetadata(META_VAULT_VERSION, new FixedMetadataValue(owningPlugin, pv.getVersion()));
+            } else {
+                player.removeMetadata(META_VAULT_VERSION, owningPlugin);
+            }
+
+            player.openInventory(inv);
+            if (maxPages > 1) {
+                player.sendMessage(ChatColor.GREEN + "Vault page " + (page + 1) + "/" + maxPages + " opened (" + inv.getSize() + " slots).");
+            } else {
+                player.sendMessage(ChatColor.GREEN + "Vault opened (" + inv.getSize() + " slots).");
+            }
+
+            if (page + 1 < maxPages) loader.prefetch(player.getUniqueId(), page + 1, rows, title);
+            if (page > 0) loader.prefetch(player.getUniqueId(), page - 1, rows, title);
+        });
+    }
+
+    /**
+     * @param player the player
+     * @return {@code true} if the player currently has a container (or another vault) open
+     */
+    private static boolean isViewingOtherInventory(Player player) {
+        InventoryType type = player.getOpenInventory().getType();
+        return type != InventoryType.CRAFTING && type != InventoryType.CREATIVE;
+    }
+
+    /**
+     * Shows the vault metrics, or writes them as JSON with {@code /vault stats dump}.
+     *
+     * @param sender command sender (player or console)
+     * @param args   command arguments, starting with {@code stats}
+     * @return always {@code true} (command handled)
+     */
+    private boolean showStats(CommandSender sender, String[] args) {
+        if (!sender.hasPermission(PERM_STATS)) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to view vault stats.");
+            return true;
+        }
+        if (metrics == null) {
+            sender.sendMessage(ChatColor.RED + "Vault metrics are not available.");
+            return true;
+        }
+        if (args.length > 1 && "dump".equalsIgnoreCase(args[1])) {
+            try {
+                File file = metrics.dump();
+                sender.sendMessage(ChatColor.GREEN + "Vault metrics written to " + file.getPath() + ".");
+            } catch (IOException e) {
+                sender.sendMessage(ChatColor.RED + "Could not write vault metrics: " + e.getMessage());
+            }
+            return true;
+        }
+        sender.sendMessage(ChatColor.AQUA + "Vault stats:");
+        for (String line : metrics.describe()) {
+            sender.sendMessage(ChatColor.GRAY + " " + line);
+        }
+        return true;
+    }
+
+    /**
+     * Handles {@code /vault migrate <start [fresh]|status|cancel>}.
+     *
+     * @param sender command sender
+     * @param args   command arguments
+     * @return always {@code true}
+     */
+    private boolean migrate(CommandSender sender, String[] args) {
+        if (!sender.hasPermission(PERM_MIGRATE)) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to migrate vaults.");
+            return true;
+        }
+        if (migration == null) {
+            sender.sendMessage(ChatColor.RED + "Vault migration is not available.");
+            return true;
+        }
+        String action = args.length > 1 ? args[1].toLowerCase() : "status";
+        switch (action) {
+            case "start" -> {
+                boolean fresh = args.length > 2 && "fresh".equalsIgnoreCase(args[2]);
+                if (migration.start(fresh)) {
+                    sender.sendMessage(ChatColor.GREEN + "Vault migration started" + (fresh ? " from the beginning" : "") + "; progress is logged to the console.");
+                } else {
+                    sender.sendMessage(ChatColor.RED + "A vault migration is already running.");
+                }
+            }
+            case "cancel" -> {
+                if (migration.isRunning()) {
+                    migration.cancel();
+                    sender.sendMessage(ChatColor.YELLOW + "Vault migration stopping; /vault migrate start resumes it.");
+                } else {
+                    sender.sendMessage(ChatColor.RED + "No vault migration is running.");
+                }
+            }
+            case "status" -> {
+                sender.sendMessage(ChatColor.AQUA + "Vault migration:");
+                for (String line : migration.describe()) {
+                    sender.sendMessage(ChatColor.GRAY + " " + line);
+                }
+            }
+            default -> sender.sendMessage(ChatColor.RED + "Usage: /vault migrate <start [fresh]|status|cancel>");
+        }
+        return true;
+    }
+
+    /**
+     * Handles {@code /vault export} and {@code /vault import}.
+     *
+     * @param sender command sender
+     * @param args   command arguments
+     * @return always {@code true}
+     */
+    private boolean backup(CommandSender sender, String[] args) {
+        if (!sender.hasPermission(PERM_BACKUP)) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to back up vaults.");
+            return true;
+        }
+        if (backup == null) {
+            sender.sendMessage(ChatColor.RED + "Vault backups are not available.");
+            return true;
+        }
+        boolean export = "export".equalsIgnoreCase(args[0]);
+        if (!export && args.length < 2) {
+            sender.sendMessage(ChatColor.AQUA + "Vault backups (last run: " + backup.describe() + "):");
+            for (String name : backup.listFiles()) {
+                sender.sendMessage(ChatColor.GRAY + " " + name);
+            }
+            return true;
+        }
+        if (export && args.length < 2) {
+            sender.sendMessage(ChatColor.RED + "Usage: /vault export <all|player|uuid..uuid> [gzip]");
+            return true;
+        }
+
+        UUID[] range = parseRange(export ? args[1] : (args.length > 2 ? args[2] : "all"));
+        if (range == null) {
+            sender.sendMessage(ChatColor.RED + "Unknown player; use an online player's name, a UUID or uuid..uuid.");
+            return true;
+        }
+        boolean started;
+        try {
+            started = export
+                    ? backup.startExport(range[0], range[1], args.length > 2 && "gzip".equalsIgnoreCase(args[2]), sender)
+                    : backup.startImport(args[1], range[0], range[1], sender);
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage(ChatColor.RED + e.getMessage());
+            return true;
+        }
+        if (started) {
+            sender.sendMessage(ChatColor.GREEN + "Vault " + (export ? "export" : "import") + " started; you will be told when it finishes.");
+        } else {
+            sender.sendMessage(ChatColor.RED + "A vault export or import is already running.");
+        }
+        return true;
+    }
+
+    /**
+     * Parses {@code all}, a player, or an inclusive {@code uuid..uuid} range.
+     *
+     * @param arg argument to parse
+     * @return {@code [lower, upper]} (elements {@code null} when unbounded), or {@code null} if invalid
+     */
+    private static UUID[] parseRange(String arg) {
+        if ("all".equalsIgnoreCase(arg)) return new UUID[2];
+        try {
+            int sep = arg.indexOf("..");
+            if (sep >= 0) {
+                return new UUID[]{UUID.fromString(arg.substring(0, sep)), UUID.fromString(arg.substring(sep + 2))};
+            }
+            UUID id = UUID.fromString(arg);
+            return new UUID[]{id, id};
+        } catch (IllegalArgumentException e) {
+            Player online = Bukkit.getPlayerExact(arg);
+            return online == null ? null : new UUID[]{online.getUniqueId(), online.getUniqueId()};
+        }
+    }
+
+    /**
+     * @return permission node required for {@code /vault stats}
+     */
+    public static String statsPermission() {
+        return PERM_STATS;
+    }
+
+    /**
+     * @return permission node required for {@code /vault migrate}
+     */
+    public static String migratePermission() {
+        return PERM_MIGRATE;
+    }
+
+    /**
+     * @return permission node required for {@code /vault export} and {@code /vault import}
+     */
+    public static String backupPermission() {
+        return PERM_BACKUP;
+    }
+
+    /**
+     * Exposes the metadata key used by the listener to detect a "vault session".
+     * Its value is the open page index ({@link Integer}).
+     *
+     * @return metadata key for a vault-open session
+     */
+    public static String metaKey() {
+        return META_VAULT_OPEN;
+    }
+
+    /**
+     * Exposes the metadata key holding the meta version the open page was loaded at
+     * ({@link Long}), so the listener can save it conditionally.
+     *
+     * @return metadata key for the loaded version
+     */
+    public static String versionKey() {
+        return META_VAULT_VERSION;
+    }
+}
@@ -0,0 +1,1126 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.common.essential.MCEngineEssentialCommon;
+import io.github.mcengine.extension.addon.essential.vault.metrics.VaultMetrics;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.StoredItem;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSlots;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import io.github.mcengine.extension.addon.essential.vault.util.HexCodec;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.LongFunction;
+
+/**
+ * Shared implementation of the SQL {@link VaultDB} backends.
+ *
+ * <p>Loads, versioned saves and their conflict resolution, the page and deduplicated
+ * layouts, layout migration, legacy re-encoding, backups and the change feed are written
+ * once here. Statements are built from {@link VaultDialect} fragments, so subclasses only
+ * provide their dialect and schema migrations, plus the odd statement a database needs
+ * written differently.</p>
+ */
+public abstract class AbstractVaultDB implements VaultDB {
+
+    /** Logger for reporting status and problems. */
+    protected final MCEngineExtensionLogger logger;
+
+    /** SQL dialect of the backend. */
+    protected final VaultDialect dialect;
+
+    /** Last persisted state per page, used to write only changed slots. */
+    private final VaultSlotTracker tracker = new VaultSlotTracker(10_000);
+
+    /** Physical layout used for item storage. */
+    private final VaultStorageLayout layout;
+
+    /** Vault-owned connection pool, or {@code null} to use the facade for everything. */
+    private final VaultConnectionSource connections;
+
+    /** Streaming binary reads over {@link #connections}, or {@code null}. */
+    private final VaultRowStream rowStream;
+
+    /** Receives bytes read and load failures, or {@code null}. */
+    private final VaultMetrics metrics;
+
+    /** Resolution of saves that lost against another server's write. */
+    private final VaultConflicts conflicts;
+
+    /** Attempts to merge and save again before a conflicting save is given up. */
+    private static final int MAX_CONFLICT_ATTEMPTS = 3;
+
+    /** Rows asked for by the first chunk of a read where aggregates truncate; a full page fits. */
+    private static final int READ_CHUNK_ROWS = 64;
+
+    /** First two bytes of a Java-serialized (legacy) item payload. */
+    private static final byte[] LEGACY_MAGIC = {(byte) 0xAC, (byte) 0xED};
+
+    /** Node id appended to the change feed with every save, or {@code null} if this server does not publish changes. */
+    private final String changeOrigin;
+
+    /**
+     * Constructs the backend.
+     *
+     * @param dialect SQL dialect of the backend
+     * @param logger  logger wrapper
+     * @param options backend settings (nullable: {@link VaultDBOptions#DEFAULTS})
+     */
+    protected AbstractVaultDB(VaultDialect dialect, MCEngineExtensionLogger logger, VaultDBOptions options) {
+        VaultDBOptions o = options == null ? VaultDBOptions.DEFAULTS : options;
+        this.dialect = dialect;
+        this.logger = logger;
+        this.changeOrigin = o.changeOrigin();
+        this.metrics = o.metrics();
+        this.conflicts = o.conflicts() == null ? new VaultConflicts(VaultConflicts.Resolution.MERGE) : o.conflicts();
+        this.layout = o.layout() == null ? VaultStorageLayout.SLOT : o.layout();
+        this.connections = o.connections();
+        this.rowStream = connections == null ? null : new VaultRowStream(connections);
+    }
+
+    /** DB facade shortcut. */
+    protected static MCEngineEssentialCommon db() {
+        return MCEngineEssentialCommon.getApi();
+    }
+
+    /** Escape single quotes for SQL string literal. */
+    protected static String q(String s) {
+        if (s == null) return "NULL";
+        return "'" + s.replace("'", "''") + "'";
+    }
+
+    /** Join slot indexes into a comma-separated SQL list. */
+    private static String joinSlots(Collection<Integer> slots) {
+        StringBuilder sb = new StringBuilder();
+        for (Integer slot : slots) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(slot);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Runs write statements: as one transaction on the vault pool if configured (falling
+     * back to the facade if the pool is unavailable), otherwise one by one through the facade.
+     */
+    private void execute(List<String> statements) throws SQLException {
+        if (connections != null) {
+            try {
+                connections.executeInTransaction(statements);
+                return;
+            } catch (SQLException e) {
+                // Rolled back, so nothing was applied; replay through the facade
+                if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " pooled write failed, using shared connection: " + e.getMessage());
+            }
+        }
+        for (String sql : statements) db().executeQuery(sql);
+    }
+
+    /**
+     * Builds the meta write of a save, which doubles as its version guard: an update of the
+     * expected version, or an insert that only succeeds if the player has no meta row yet.
+     * Without an expected version it is an unconditional upsert, which only
+     * {@link #replacePlayerVault} uses; a save whose version is unknown is handled as a
+     * conflict instead. Every form bumps the version and stores the save's token, which
+     * tells a facade save whether the meta row it reads back is its own.
+     *
+     * @param vault    snapshot whose rows/title are written
+     * @param expected version the save must find, {@link VaultSlotTracker#NO_ROW}, or {@code null} to overwrite
+     * @param token    unique token of this save
+     */
+    private String metaWrite(VaultSnapshot vault, Long expected, String token) {
+        String uuid = q(vault.getPlayerId().toString());
+        String values = uuid + ", " + vault.getRows() + ", " + q(vault.getTitle()) + ", CURRENT_TIMESTAMP, 1, " + q(token) + ")";
+        if (expected == null) {
+            return "INSERT INTO essential_vault_meta (player_uuid, rows, title, updated_at, version, save_token) VALUES (" + values +
+                    dialect.onConflictUpdate("player_uuid", "rows=" + dialect.excluded("rows") + ", title=" + dialect.excluded("title") +
+                            ", updated_at=" + dialect.excluded("updated_at") + ", version=essential_vault_meta.version + 1" +
+                            ", save_token=" + dialect.excluded("save_token"));
+        }
+        if (expected == VaultSlotTracker.NO_ROW) {
+            return "INSERT INTO essential_vault_meta (player_uuid, rows, title, updated_at, version, save_token) VALUES (" + values +
+                    dialect.onConflictIgnore("player_uuid");
+        }
+        return "UPDATE essential_vault_meta SET rows = " + vault.getRows() + ", title = " + q(vault.getTitle()) +
+                ", updated_at = CURRENT_TIMESTAMP, version = version + 1, save_token = " + q(token) +
+                " WHERE player_uuid = " + uuid + " AND version = " + expected;
+    }
+
+    /**
+     * Runs a save: the version guards first, then the other statements, in one transaction
+     * on the vault pool if configured.
+     *
+     * <p>Through the facade there is no transaction. Each guard is checked by reading the meta
+     * row back: if it does not carry this save's token, another server's write got there
+     * first, and nothing else is written. Once the guards have passed, the item statements
+     * still run one by one, so a save from another server that starts in that window can
+     * interleave with them; facade saves are therefore last-writer-wins for the items. Set
+     * {@code database.jdbc.url} to use the vault pool when several servers share a database.</p>
+     *
+     * @param expected   version each guarded player must have, in guard order
+     * @param guards     meta writes from {@link #metaWrite}, one per player
+     * @param token      token the guards store
+     * @param statements item statements
+     * @return version each player has after the write
+     * @throws VaultConflictException if another server changed one of the players
+     */
+    private Map<UUID, Long> executeGuarded(Map<UUID, Long> expected, List<String> guards, String token, List<String> statements) throws SQLException {
+        Map<UUID, Long> versions = new HashMap<>();
+        if (connections != null) {
+            try {
+                connections.executeGuarded(guards, statements);
+                for (Map.Entry<UUID, Long> e : expected.entrySet()) versions.put(e.getKey(), nextVersion(e.getValue()));
+                return versions;
+            } catch (VaultConflictException e) {
+                throw e;
+            } catch (SQLException e) {
+                // Rolled back, so nothing was applied; replay through the facade
+                if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " pooled write failed, using shared connection: " + e.getMessage());
+            }
+        }
+        int i = 0;
+        for (Map.Entry<UUID, Long> e : expected.entrySet()) {
+            db().executeQuery(guards.get(i++));
+            // The version alone cannot tell this write from another server's write of the same version
+            String[] stored = readVersionAndToken(e.getKey());
+            if (stored == null || !token.equals(stored[1])) {
+                throw new VaultConflictException("Vault of " + e.getKey() + " was changed by another server");
+            }
+            long version = Long.parseLong(stored[0]);
+            // Later guards may still fail; a retry must expect the version this one left
+            tracker.advanceVersion(e.getKey(), version);
+            versions.put(e.getKey(), version);
+        }
+        for (String sql : statements) db().executeQuery(sql);
+        return versions;
+    }
+
+    /** Change-feed entry for a saved page, or the whole vault with {@code page} {@code -1}. */
+    private String changeRow(UUID playerId, int page) {
+        return "INSERT INTO essential_vault_change (player_uuid, page, origin, changed_at) VALUES (" +
+                q(playerId.toString()) + ", " + page + ", " + q(changeOrigin) + ", CURRENT_TIMESTAMP)";
+    }
+
+    /** @return version a guarded write leaves behind when it finds {@code expected} */
+    private static long nextVersion(long expected) {
+        return expected == VaultSlotTracker.NO_ROW ? 1L : expected + 1L;
+    }
+
+    /** Reads a player's meta version and save token through the facade, or {@code null} without a meta row. */
+    private String[] readVersionAndToken(UUID playerId) {
+        String packed = db().getValue("SELECT " + dialect.concat("|", "version", "COALESCE(save_token,'')") +
+                " FROM essential_vault_meta WHERE player_uuid = " + q(playerId.toString()), String.class);
+        if (packed == null || packed.isBlank()) return null;
+        String[] parts = packed.trim().split("\\|", 2);
+        return parts.length == 2 ? parts : null;
+    }
+
+    /**
+     * Resolves a save that lost against another server's write: reloads the page, then merges
+     * and saves again or keeps the stored page, as configured (see {@link VaultConflicts}).
+     *
+     * @return {@code true} once the conflict is resolved
+     */
+    private boolean resolveConflict(VaultSnapshot ours) {
+        conflicts.recordDetected();
+        UUID playerId = ours.getPlayerId();
+        VaultKey key = VaultKey.of(ours);
+        for (int attempt = 1; attempt <= MAX_CONFLICT_ATTEMPTS; attempt++) {
+            Map<Integer, byte[]> base = tracker.baseline(key);
+            boolean metaChanged = tracker.metaChanged(playerId, ours.getRows(), ours.getTitle());
+
+            // Reload what is stored now; records fresh baselines and the current version
+            tracker.forget(playerId);
+            PlayerVault theirs;
+            try {
+                theirs = loadPlayerVault(playerId, ours.getPage(), ours.getRows(), ours.getTitle());
+            } catch (VaultLoadException e) {
+                // Nothing to merge with; the save is retried later
+                return false;
+            }
+            // Once reloaded, this server's change is applied on top of the stored version
+            Long loaded = theirs.getVersion();
+            Map<Integer, byte[]> merged = conflicts.resolution() == VaultConflicts.Resolution.RELOAD ? null
+                    : VaultConflicts.merge(base, ours.getSlotBytes(), VaultSnapshot.of(theirs, 0L).getSlotBytes(), ours.getRows() * 9);
+            if (merged == null) {
+                if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " vault of " + playerId + " page " + ours.getPage() +
+                        " was changed by another server; kept the stored page and dropped this server's change.");
+                conflicts.resolved(playerId, ours.getPage(), false);
+                return true;
+            }
+
+            int rows = metaChanged ? ours.getRows() : theirs.getRows();
+            String title = metaChanged ? ours.getTitle() : theirs.getTitle();
+            try {
+                if (!write(VaultSnapshot.fromStored(playerId, rows, title, ours.getPage(), merged, loaded, ours.getCapturedAt()))) return false;
+                if (logger != null) logger.info("[VaultDB] " + dialect.displayName() + " vault of " + playerId + " page " + ours.getPage() +
+                        " was changed by another server; merged both changes.");
+                conflicts.resolved(playerId, ours.getPage(), true);
+                return true;
+            } catch (VaultConflictException e) {
+                // Changed again in the meantime; merge with the newer state
+            }
+        }
+        if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " vault of " + playerId + " kept changing on another server; save retried later.");
+        return false;
+    }
+
+    @Override
+    public void ensureSchema() {
+        try {
+            int version = VaultSchemaMigrator.migrate(dialect, schemaSteps(), logger);
+            if (logger != null) logger.info("[VaultDB] " + dialect.displayName() + " schema ensured (version " + version + ").");
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " schema ensure failed: " + e.getMessage());
+        }
+        String raise = dialect.raiseAggregateLimit();
+        if (raise != null) {
+            try {
+                // Larger chunks per read; reads stay correct if the session loses it (see readChunked)
+                db().executeQuery(raise);
+            } catch (Exception e) {
+                if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " could not raise the aggregate limit: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Ordered schema migrations of the backend (see {@link VaultSchemaMigrator}). Append new
+     * steps at the end; never change a step once released.
+     *
+     * @return migration steps in version order
+     */
+    protected abstract List<VaultSchemaMigrator.Step> schemaSteps();
+
+    @Override
+    public PlayerVault loadPlayerVault(UUID playerId, int page, int defaultRows, String defaultTitle) {
+        if (rowStream != null) {
+            PlayerVault streamed = loadStreamed(playerId, page, defaultRows, defaultTitle);
+            if (streamed != null) return streamed;
+        }
+
+        int rows = defaultRows;
+        String title = defaultTitle;
+        Long version = null;
+        Map<Integer, byte[]> payloads = new HashMap<>();
+
+        try {
+            String packed = db().getValue(
+                "SELECT " + dialect.concat("|", "rows", "version", "COALESCE(title,'')") + " FROM essential_vault_meta WHERE player_uuid = " + q(playerId.toString()),
+                String.class
+            );
+            if (packed != null) {
+                // rows|version|title
+                int sep = packed.indexOf('|');
+                int sep2 = packed.indexOf('|', sep + 1);
+                if (sep >= 0 && sep2 > sep) {
+                    rows = Integer.parseInt(packed.substring(0, sep));
+                    version = Long.parseLong(packed.substring(sep + 1, sep2));
+                    String t = packed.substring(sep2 + 1);
+                    if (!t.isBlank()) title = t;
+                    tracker.recordLoadedMeta(playerId, rows, t.isEmpty() ? null : t, version);
+                }
+            } else {
+                version = VaultSlotTracker.NO_ROW;
+                tracker.recordLoadedMeta(playerId, -1, null, VaultSlotTracker.NO_ROW);
+            }
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " load meta failed: " + e.getMessage());
+            if (metrics != null) metrics.recordError(VaultMetrics.Operation.LOAD);
+            throw new VaultLoadException("Could not read the vault of " + playerId, e);
+        }
+
+        try {
+            // Items stay serialized until the vault is shown
+            Map<Integer, byte[]> stored = readStoredSlots(playerId, page, (slot, data) -> {
+                if (metrics != null) metrics.recordBytesRead(data.length);
+                payloads.put(slot, data);
+            });
+            // Baseline includes undecodable rows so a later save never deletes them by accident
+            if (stored != null) tracker.recordLoaded(new VaultKey(playerId, page), stored);
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " load items failed: " + e.getMessage());
+            if (metrics != null) metrics.recordError(VaultMetrics.Operation.LOAD);
+            throw new VaultLoadException("Could not read page " + page + " of the vault of " + playerId, e);
+        }
+
+        PlayerVault vault = new PlayerVault(playerId, rows, title, page, VaultSlots.of(payloads));
+        vault.setVersion(version);
+        return vault;
+    }
+
+    @Override
+    public boolean savePlayerVault(VaultSnapshot vault) {
+        try {
+            return write(vault);
+        } catch (VaultConflictException e) {
+            return resolveConflict(vault);
+        }
+    }
+
+    /**
+     * Saves one page, conditional on the version it was loaded at (see
+     * {@link VaultSlotTracker#expectedVersion(UUID, Long)}).
+     *
+     * @throws VaultConflictException if another server changed the vault since, or the version
+     *                                is unknown (nothing was written)
+     */
+    private boolean write(VaultSnapshot vault) throws VaultConflictException {
+        VaultKey key = VaultKey.of(vault);
+        Map<Integer, byte[]> current = vault.getSlotBytes();
+        VaultSlotTracker.Diff diff = tracker.diff(key, current);
+        if (diff.isEmpty() && !tracker.metaChanged(vault.getPlayerId(), vault.getRows(), vault.getTitle())) {
+            return true; // Unchanged since last persisted
+        }
+
+        String uuid = q(vault.getPlayerId().toString());
+        try {
+            List<String> statements = new ArrayList<>();
+
+            // The meta write is the version guard: it only applies to the version the page was loaded at
+            Long expected = tracker.expectedVersion(vault.getPlayerId(), vault.getVersion());
+            if (expected == null) throw new VaultConflictException("Version of the vault of " + vault.getPlayerId() + " is unknown");
+            String token = UUID.randomUUID().toString();
+            List<String> guards = List.of(metaWrite(vault, expected, token));
+
+            if (layout == VaultStorageLayout.PAGE) {
+                writePageRows(List.of(vault), statements);
+            } else if (layout == VaultStorageLayout.DEDUP) {
+                writeBlobRefs(List.of(vault), List.of(diff), statements);
+            } else {
+                if (diff.full()) {
+                    // No known baseline: clear page items and insert every slot
+                    statements.add("DELETE FROM essential_vault_item WHERE player_uuid = " + uuid + " AND page = " + vault.getPage());
+                } else if (!diff.deletes().isEmpty()) {
+                    // Remove slots that were emptied
+                    statements.add("DELETE FROM essential_vault_item WHERE player_uuid = " + uuid + " AND page = " + vault.getPage() +
+                            " AND slot IN (" + joinSlots(diff.deletes()) + ")");
+                }
+
+                // Insert items as blob literals
+                for (Map.Entry<Integer, byte[]> e : diff.upserts().entrySet()) {
+                    String sql = "INSERT INTO essential_vault_item (player_uuid, page, slot, item_bytes) VALUES (" +
+                            uuid + ", " + vault.getPage() + ", " + e.getKey() + ", " + dialect.blobLiteral(e.getValue()) + ")" +
+                            (diff.full() ? "" : dialect.onConflictUpdate("player_uuid, page, slot", "item_bytes=" + dialect.excluded("item_bytes")));
+                    statements.add(sql);
+                }
+            }
+
+            if (changeOrigin != null) statements.add(changeRow(vault.getPlayerId(), vault.getPage()));
+
+            long version = executeGuarded(Map.of(vault.getPlayerId(), expected), guards, token, statements).get(vault.getPlayerId());
+            tracker.commit(key, current, vault.getRows(), vault.getTitle(), expected, version);
+            if (logger != null) logger.info("[VaultDB] " + dialect.displayName() + " saved vault for " + vault.getPlayerId() +
+                    " (" + diff.upserts().size() + " written, " + diff.deletes().size() + " removed).");
+            return true;
+        } catch (VaultConflictException e) {
+            throw e;
+        } catch (Exception e) {
+            // Stored state is unknown after a partial write; rewrite fully next time
+            tracker.forget(key);
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " save failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean saveBatch(List<VaultSnapshot> snapshots) {
+        if (snapshots.size() == 1) return savePlayerVault(snapshots.get(0));
+
+        List<VaultSnapshot> changed = new ArrayList<>();
+        List<VaultSlotTracker.Diff> diffs = new ArrayList<>();
+        for (VaultSnapshot s : snapshots) {
+            VaultSlotTracker.Diff d = tracker.diff(VaultKey.of(s), s.getSlotBytes());
+            if (d.isEmpty() && !tracker.metaChanged(s.getPlayerId(), s.getRows(), s.getTitle())) continue;
+            changed.add(s);
+            diffs.add(d);
+        }
+        if (changed.isEmpty()) return true;
+
+        try {
+            List<String> statements = new ArrayList<>();
+
+            // One meta write per player (last snapshot wins), each guarded by the player's version
+            Map<UUID, VaultSnapshot> metaRows = new LinkedHashMap<>();
+            Map<UUID, Long> expected = new LinkedHashMap<>();
+            for (VaultSnapshot s : changed) {
+                metaRows.put(s.getPlayerId(), s);
+                Long version = tracker.expectedVersion(s.getPlayerId(), s.getVersion());
+                Long other = expected.put(s.getPlayerId(), version);
+                // Unknown, or pages of one player loaded at different versions: resolved page by page
+                if (version == null || (other != null && !other.equals(version))) {
+                    throw new VaultConflictException("Versions of the vault of " + s.getPlayerId() + " differ or are unknown");
+                }
+            }
+            List<String> guards = new ArrayList<>();
+            String token = UUID.randomUUID().toString();
+            for (VaultSnapshot s : metaRows.values()) guards.add(metaWrite(s, expected.get(s.getPlayerId()), token));
+
+            if (layout == VaultStorageLayout.PAGE) {
+                // One packed row per page
+                writePageRows(changed, statements);
+            } else if (layout == VaultStorageLayout.DEDUP) {
+                // Changed slots point at shared blobs
+                writeBlobRefs(changed, diffs, statements);
+            } else {
+                // One DELETE for pages without a baseline and for emptied slots
+                StringBuilder where = new StringBuilder();
+                for (int i = 0; i < changed.size(); i++) {
+                    VaultSnapshot s = changed.get(i);
+                    VaultSlotTracker.Diff d = diffs.get(i);
+                    if (!d.full() && d.deletes().isEmpty()) continue;
+                    if (where.length() > 0) where.append(" OR ");
+                    where.append("(player_uuid = ").append(q(s.getPlayerId().toString())).append(" AND page = ").append(s.getPage());
+                    if (!d.full()) where.append(" AND slot IN (").append(joinSlots(d.deletes())).append(')');
+                    where.append(')');
+                }
+                if (where.length() > 0) statements.add("DELETE FROM essential_vault_item WHERE " + where);
+
+                // Changed slots of every vault as bounded multi-row upserts
+                VaultSqlBatch items = new VaultSqlBatch(
+                        "INSERT INTO essential_vault_item (player_uuid, page, slot, item_bytes) VALUES ",
+                        dialect.onConflictUpdate("player_uuid, page, slot", "item_bytes=" + dialect.excluded("item_bytes")));
+                for (int i = 0; i < changed.size(); i++) {
+                    VaultSnapshot s = changed.get(i);
+                    String uuid = q(s.getPlayerId().toString());
+                    for (Map.Entry<Integer, byte[]> e : diffs.get(i).upserts().entrySet()) {
+                        items.addRow("(" + uuid + ", " + s.getPage() + ", " + e.getKey() + ", " + dialect.blobLiteral(e.getValue()) + ")");
+                    }
+                }
+                statements.addAll(items.statements());
+            }
+
+            if (changeOrigin != null) {
+                VaultSqlBatch feed = new VaultSqlBatch("INSERT INTO essential_vault_change (player_uuid, page, origin, changed_at) VALUES ", "");
+                for (VaultSnapshot s : changed) {
+                    feed.addRow("(" + q(s.getPlayerId().toString()) + ", " + s.getPage() + ", " + q(changeOrigin) + ", CURRENT_TIMESTAMP)");
+                }
+                statements.addAll(feed.statements());
+            }
+
+            Map<UUID, Long> versions = executeGuarded(expected, guards, token, statements);
+            for (VaultSnapshot s : changed) {
+                tracker.commit(VaultKey.of(s), s.getSlotBytes(), s.getRows(), s.getTitle(), expected.get(s.getPlayerId()), versions.get(s.getPlayerId()));
+            }
+            if (logger != null) logger.info("[VaultDB] " + dialect.displayName() + " saved " + changed.size() + " vaults in one batch.");
+            return true;
+        } catch (VaultConflictException e) {
+            // Another server changed one of the vaults: save one by one so only that one is resolved
+            boolean saved = true;
+            for (VaultSnapshot s : changed) saved &= savePlayerVault(s);
+            return saved;
+        } catch (Exception e) {
+            // Stored state is unknown after a partial write; rewrite fully next time
+            for (VaultSnapshot s : changed) tracker.forget(VaultKey.of(s));
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " batch save failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean clearPlayerVault(UUID playerId) {
+        try {
+            db().executeQuery("DELETE FROM essential_vault_item WHERE player_uuid = " + q(playerId.toString()));
+            db().executeQuery("DELETE FROM essential_vault_page WHERE player_uuid = " + q(playerId.toString()));
+            db().executeQuery(VaultBlobRefs.releaseStatement("player_uuid = " + q(playerId.toString())));
+            db().executeQuery("DELETE FROM essential_vault_slot_ref WHERE player_uuid = " + q(playerId.toString()));
+            db().executeQuery("DELETE FROM essential_vault_meta WHERE player_uuid = " + q(playerId.toString()));
+            if (changeOrigin != null) db().executeQuery(changeRow(playerId, -1));
+            tracker.forget(playerId);
+            return true;
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " clear failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean replacePlayerVault(UUID playerId, List<VaultSnapshot> pages) {
+        if (pages.isEmpty()) return clearPlayerVault(playerId);
+        String uuid = q(playerId.toString());
+        try {
+            // Without baselines every page is rewritten fully, whatever this server saw before
+            tracker.forget(playerId);
+            List<VaultSlotTracker.Diff> diffs = new ArrayList<>();
+            Set<Integer> kept = new TreeSet<>();
+            for (VaultSnapshot s : pages) {
+                diffs.add(tracker.diff(VaultKey.of(s), s.getSlotBytes()));
+                kept.add(s.getPage());
+            }
+
+            // New pages first, so a facade write that stops halfway never leaves the vault empty
+            List<String> statements = new ArrayList<>();
+            statements.add(metaWrite(pages.get(0), null, UUID.randomUUID().toString()));
+            if (layout == VaultStorageLayout.PAGE) {
+                writePageRows(pages, statements);
+            } else if (layout == VaultStorageLayout.DEDUP) {
+                writeBlobRefs(pages, diffs, statements);
+            } else {
+                // Page by page, so at most the page being written is affected
+                for (VaultSnapshot s : pages) {
+                    statements.add("DELETE FROM essential_vault_item WHERE player_uuid = " + uuid + " AND page = " + s.getPage());
+                    VaultSqlBatch items = new VaultSqlBatch("INSERT INTO essential_vault_item (player_uuid, page, slot, item_bytes) VALUES ", "");
+                    for (Map.Entry<Integer, byte[]> e : s.getSlotBytes().entrySet()) {
+                        items.addRow("(" + uuid + ", " + s.getPage() + ", " + e.getKey() + ", " + dialect.blobLiteral(e.getValue()) + ")");
+                    }
+                    statements.addAll(items.statements());
+                }
+            }
+
+            // Then every page the new vault does not have, in any layout
+            String dropped = "player_uuid = " + uuid + " AND page NOT IN (" + joinSlots(kept) + ")";
+            statements.add("DELETE FROM essential_vault_item WHERE " + dropped);
+            statements.add("DELETE FROM essential_vault_page WHERE " + dropped);
+            statements.add(VaultBlobRefs.releaseStatement(dropped));
+            statements.add("DELETE FROM essential_vault_slot_ref WHERE " + dropped);
+            if (changeOrigin != null) statements.add(changeRow(playerId, -1));
+
+            execute(statements);
+            tracker.forget(playerId);
+            if (logger != null) logger.info("[VaultDB] " + dialect.displayName() + " replaced vault for " + playerId + " (" + pages.size() + " pages).");
+            return true;
+        } catch (Exception e) {
+            tracker.forget(playerId);
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " replace failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public StoredItem nextLegacyItem(StoredItem after) {
+        try {
+            String cursor = "";
+            if (after != null) {
+                String uuid = q(after.playerId().toString());
+                cursor = " AND (player_uuid > " + uuid + " OR (player_uuid = " + uuid + " AND (page > " + after.page() +
+                        " OR (page = " + after.page() + " AND slot > " + after.slot() + "))))";
+            }
+            // uuid:page:slot:HEX of the first legacy (0xACED-prefixed) row after the cursor
+            String packed = db().getValue(
+                "SELECT " + dialect.concat(":", "player_uuid", "page", "slot", dialect.hex("item_bytes")) + " FROM essential_vault_item " +
+                "WHERE " + dialect.prefix("item_bytes", 2) + " = " + dialect.blobLiteral(LEGACY_MAGIC) + cursor + " ORDER BY player_uuid, page, slot LIMIT 1",
+                String.class
+            );
+            if (packed == null || packed.isBlank()) return null;
+            String[] parts = packed.split(":", 4);
+            return new StoredItem(UUID.fromString(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), HexCodec.fromHex(parts[3]));
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " legacy item scan failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public boolean replaceItemBytes(StoredItem row, byte[] replacement) {
+        try {
+            db().executeQuery("UPDATE essential_vault_item SET item_bytes = " + dialect.blobLiteral(replacement) +
+                    " WHERE player_uuid = " + q(row.playerId().toString()) + " AND page = " + row.page() +
+                    " AND slot = " + row.slot() + " AND item_bytes = " + dialect.blobLiteral(row.bytes()));
+            return true;
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " item re-encode failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public VaultKey migrateNextSlotPage() {
+        try {
+            String next = db().getValue("SELECT " + dialect.concat(":", "player_uuid", "page") + " FROM essential_vault_item ORDER BY player_uuid, page LIMIT 1", String.class);
+            if (next == null || next.isBlank()) return null;
+            int sep = next.lastIndexOf(':');
+            VaultKey key = new VaultKey(UUID.fromString(next.substring(0, sep)), Integer.parseInt(next.substring(sep + 1)));
+            String where = " WHERE player_uuid = " + q(key.playerId().toString()) + " AND page = " + key.page();
+
+            // Read row by row (no aggregate that could truncate), then make sure nothing was missed
+            Map<Integer, byte[]> slots = new TreeMap<>();
+            int cursor = -1;
+            while (true) {
+                String row = db().getValue("SELECT " + dialect.concat(":", "slot", dialect.hex("item_bytes")) + " FROM essential_vault_item" + where + " AND slot > " + cursor + " ORDER BY slot LIMIT 1", String.class);
+                if (row == null || row.isBlank()) break;
+                int idx = row.indexOf(':');
+                cursor = Integer.parseInt(row.substring(0, idx));
+                slots.put(cursor, HexCodec.fromHex(row.substring(idx + 1)));
+            }
+            String count = db().getValue("SELECT " + dialect.asText("COUNT(*)") + " FROM essential_vault_item" + where, String.class);
+            if (count == null || Integer.parseInt(count.trim()) != slots.size()) {
+                throw new IllegalStateException("slot rows of " + key + " changed while copying");
+            }
+
+            if (layout == VaultStorageLayout.DEDUP) {
+                moveToBlobRefs(key, slots, where);
+                return key;
+            }
+
+            // A page row written since the switch to the page layout is newer; keep it
+            if (!slots.isEmpty()) {
+                db().executeQuery("INSERT INTO essential_vault_page (player_uuid, page, slot_bitmap, payload) VALUES (" +
+                        q(key.playerId().toString()) + ", " + key.page() + ", " + VaultPagePacker.bitmap(slots) + ", " + dialect.blobLiteral(VaultPagePacker.pack(slots)) + ")" +
+                        dialect.onConflictIgnore("player_uuid, page"));
+            }
+            db().executeQuery("DELETE FROM essential_vault_item" + where);
+            return key;
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " layout migration failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public int collectUnreferencedBlobs(int limit) {
+        try {
+            String unreferenced = "SELECT b.hash FROM essential_vault_blob b WHERE b.refcount <= 0 AND NOT EXISTS " +
+                    "(SELECT 1 FROM essential_vault_slot_ref r WHERE r.blob_hash = b.hash) LIMIT " + limit;
+            String count = db().getValue("SELECT " + dialect.asText("COUNT(*)") + " FROM (" + unreferenced + ") c", String.class);
+            int found = count == null ? 0 : Integer.parseInt(count.trim());
+            if (found == 0) return 0;
+            db().executeQuery(deleteUnreferencedBlobs(unreferenced, limit));
+            return found;
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " blob garbage collection failed: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Builds the statement that deletes the blobs found by {@code unreferenced}; the reference
+     * check runs again as part of the delete.
+     *
+     * @param unreferenced query selecting the hashes of at most {@code limit} unreferenced blobs
+     * @param limit        maximum blobs deleted
+     * @return delete statement
+     */
+    protected String deleteUnreferencedBlobs(String unreferenced, int limit) {
+        return "DELETE FROM essential_vault_blob WHERE hash IN (" + unreferenced + ")";
+    }
+
+    @Override
+    public UUID nextVaultOwner(UUID lower, boolean inclusive, UUID upper) {
+        try {
+            StringBuilder where = new StringBuilder();
+            if (lower != null) where.append(" WHERE player_uuid ").append(inclusive ? ">= " : "> ").append(q(lower.toString()));
+            if (upper != null) where.append(lower != null ? " AND" : " WHERE").append(" player_uuid <= ").append(q(upper.toString()));
+            String next = db().getValue("SELECT player_uuid FROM essential_vault_meta" + where + " ORDER BY player_uuid LIMIT 1", String.class);
+            return next == null || next.isBlank() ? null : UUID.fromString(next.trim());
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " next vault owner lookup failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public List<Integer> storedPages(UUID playerId) {
+        try {
+            String where = " WHERE player_uuid = " + q(playerId.toString());
+            // Pages may still be split across layouts while a layout migration runs
+            String pages = "(SELECT page FROM essential_vault_item" + where +
+                    " UNION SELECT page FROM essential_vault_page" + where +
+                    " UNION SELECT page FROM essential_vault_slot_ref" + where + ") p";
+            List<Integer> pooled = readPooled("SELECT page FROM " + pages + " ORDER BY page", rs -> rs.getInt(1), "stored page lookup");
+            if (pooled != null) return pooled;
+
+            List<String> rows;
+            if (dialect.truncatesAggregates()) {
+                rows = readChunked(dialect.asText("page"), "page", after -> pages + " WHERE page > " + after, -1L, Integer.MAX_VALUE);
+            } else {
+                String packed = db().getValue("SELECT " + dialect.aggregate(dialect.asText("page"), ",") + " FROM " + pages, String.class);
+                rows = packed == null || packed.isBlank() ? List.of() : List.of(packed.split(","));
+            }
+            Set<Integer> sorted = new TreeSet<>();
+            for (String page : rows) sorted.add(Integer.parseInt(page.trim()));
+            return new ArrayList<>(sorted);
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " stored page lookup failed: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    @Override
+    public long latestChangeId() {
+        try {
+            String latest = db().getValue("SELECT " + dialect.asText("COALESCE(MAX(id), 0)") + " FROM essential_vault_change", String.class);
+            return latest == null || latest.isBlank() ? 0L : Long.parseLong(latest.trim());
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " change feed position lookup failed: " + e.getMessage());
+            return -1L;
+        }
+    }
+
+    @Override
+    public List<VaultChange> changesSince(long afterId, int limit) {
+        try {
+            List<VaultChange> pooled = readPooled(
+                "SELECT id, player_uuid, page, origin FROM essential_vault_change WHERE id > " + afterId + " ORDER BY id LIMIT " + limit,
+                rs -> new VaultChange(rs.getLong(1), UUID.fromString(rs.getString(2)), rs.getInt(3), rs.getString(4)),
+                "change feed read"
+            );
+            if (pooled != null) return pooled;
+
+            // id|uuid|page|origin per entry
+            String entry = dialect.concat("|", "id", "player_uuid", "page", "origin");
+            List<String> rows;
+            if (dialect.truncatesAggregates()) {
+                rows = readChunked(entry, "id", after -> "essential_vault_change WHERE id > " + after, afterId, limit);
+            } else {
+                String packed = db().getValue(
+                    "SELECT " + dialect.aggregate("e", ";") + " FROM (SELECT " + entry + " AS e " +
+                    "FROM essential_vault_change WHERE id > " + afterId + " ORDER BY id LIMIT " + limit + ") c",
+                    String.class
+                );
+                rows = packed == null || packed.isBlank() ? List.of() : List.of(packed.split(";"));
+            }
+            List<VaultChange> changes = new ArrayList<>();
+            for (String row : rows) {
+                String[] parts = row.split("\\|", 4);
+                if (parts.length < 4) continue;
+                changes.add(new VaultChange(Long.parseLong(parts[0].trim()), UUID.fromString(parts[1].trim()),
+                        Integer.parseInt(parts[2].trim()), parts[3]));
+            }
+            changes.sort(Comparator.comparingLong(VaultChange::id));
+            return changes;
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " change feed read failed: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    @Override
+    public boolean purgeChanges(long retentionSeconds) {
+        try {
+            db().executeQuery("DELETE FROM essential_vault_change WHERE changed_at < " + dialect.secondsAgo(retentionSeconds));
+            return true;
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " change feed purge failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Points a page's slots at blobs, then deletes its per-slot rows, in one write. Blob
+     * references written since the switch to the deduplicated layout are newer; they are
+     * kept and the per-slot rows are only deleted.
+     */
+    private void moveToBlobRefs(VaultKey key, Map<Integer, byte[]> slots, String where) throws SQLException {
+        List<String> statements = new ArrayList<>();
+        String refs = db().getValue("SELECT " + dialect.asText("COUNT(*)") + " FROM essential_vault_slot_ref" + where, String.class);
+        if (!slots.isEmpty() && refs != null && Integer.parseInt(refs.trim()) == 0) {
+            String uuid = q(key.playerId().toString());
+            VaultBlobRefs blobs = new VaultBlobRefs();
+            VaultSqlBatch rows = new VaultSqlBatch(
+                    "INSERT INTO essential_vault_slot_ref (player_uuid, page, slot, blob_hash) VALUES ",
+                    dialect.onConflictIgnore("player_uuid, page, slot"));
+            for (Map.Entry<Integer, byte[]> e : slots.entrySet()) {
+                rows.addRow("(" + uuid + ", " + key.page() + ", " + e.getKey() + ", '" + blobs.add(e.getValue()) + "')");
+            }
+            statements.addAll(rows.statements());
+            addBlobRows(blobs, statements);
+        }
+        statements.add("DELETE FROM essential_vault_item" + where);
+        execute(statements);
+    }
+
+    /**
+     * Loads meta and items in one statement over the JDBC connection.
+     *
+     * @return loaded vault, or {@code null} if the read failed and the facade should be used
+     */
+    private PlayerVault loadStreamed(UUID playerId, int page, int defaultRows, String defaultTitle) {
+        try {
+            // Items stay serialized until the vault is shown
+            VaultRowStream.LoadedPage loaded = rowStream.load(playerId, page, layout, (slot, data) -> {
+                if (metrics != null) metrics.recordBytesRead(data.length);
+            });
+            int rows = defaultRows;
+            String title = defaultTitle;
+            if (loaded.hasMeta()) {
+                String t = loaded.title();
+                rows = loaded.rows();
+                if (t != null && !t.isBlank()) title = t;
+                tracker.recordLoadedMeta(playerId, rows, t == null || t.isEmpty() ? null : t, loaded.version());
+            } else {
+                tracker.recordLoadedMeta(playerId, -1, null, VaultSlotTracker.NO_ROW);
+            }
+            // Baseline includes undecodable rows so a later save never deletes them by accident;
+            // per-slot rows the deduplicated layout has not taken over get none, forcing a full rewrite
+            if (!loaded.legacy()) tracker.recordLoaded(new VaultKey(playerId, page), loaded.stored());
+            PlayerVault vault = new PlayerVault(playerId, rows, title, page, VaultSlots.of(loaded.stored()));
+            vault.setVersion(loaded.hasMeta() ? loaded.version() : VaultSlotTracker.NO_ROW);
+            return vault;
+        } catch (SQLException e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " streaming load failed, using shared connection: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the stored payload of every occupied slot of a page. With the page and
+     * deduplicated layouts, pages that have not been migrated yet are read from their
+     * per-slot rows. {@code onSlot} sees every slot of the returned map as it is read.
+     *
+     * @return slot to stored payload, or {@code null} if the deduplicated layout read the page
+     *         from per-slot rows (it has no usable baseline and must be rewritten fully)
+     */
+    private Map<Integer, byte[]> readStoredSlots(UUID playerId, int page, BiConsumer<Integer, byte[]> onSlot) {
+        if (layout == VaultStorageLayout.DEDUP) return readDedupSlots(playerId, page, onSlot);
+        if (layout != VaultStorageLayout.PAGE) return readSlotRows(playerId, page, onSlot);
+
+        Map<Integer, byte[]> stored = readPageRow(playerId, page, onSlot);
+        if (stored != null) return stored;
+        stored = readSlotRows(playerId, page, onSlot);
+        if (!stored.isEmpty()) return stored;
+        // The page may have been migrated between the two reads
+        Map<Integer, byte[]> migrated = readPageRow(playerId, page, onSlot);
+        return migrated != null ? migrated : stored;
+    }
+
+    /** Deduplicated layout part of {@link #readStoredSlots}. */
+    private Map<Integer, byte[]> readDedupSlots(UUID playerId, int page, BiConsumer<Integer, byte[]> onSlot) {
+        Map<Integer, byte[]> stored = readBlobRefs(playerId, page, onSlot);
+        if (!stored.isEmpty()) return stored;
+        Map<Integer, byte[]> legacy = readSlotRows(playerId, page, onSlot);
+        if (!legacy.isEmpty()) return null;
+        // The page may have been migrated between the two reads
+        return readBlobRefs(playerId, page, onSlot);
+    }
+
+    /** Reads a page's per-slot rows through the facade (slot:HEX packed with ';'). */
+    private Map<Integer, byte[]> readSlotRows(UUID playerId, int page, BiConsumer<Integer, byte[]> onSlot) {
+        return parseSlotList(readSlotList(dialect.concat(":", "slot", dialect.hex("item_bytes")), "slot",
+                "essential_vault_item WHERE player_uuid = " + q(playerId.toString()) + " AND page = " + page), onSlot);
+    }
+
+    /** Reads a page's blob references joined to their blobs through the facade (slot:HEX packed with ';'). */
+    private Map<Integer, byte[]> readBlobRefs(UUID playerId, int page, BiConsumer<Integer, byte[]> onSlot) {
+        return parseSlotList(readSlotList(dialect.concat(":", "r.slot", dialect.hex("b.item_bytes")), "r.slot",
+                "essential_vault_slot_ref r JOIN essential_vault_blob b ON b.hash = r.blob_hash " +
+                "WHERE r.player_uuid = " + q(playerId.toString()) + " AND r.page = " + page), onSlot);
+    }
+
+    /**
+     * Reads {@code entry} for every row of {@code source} (a FROM clause ending in its WHERE
+     * condition) as one ';'-separated string, in checked chunks where aggregates truncate.
+     */
+    private String readSlotList(String entry, String slotColumn, String source) {
+        if (dialect.truncatesAggregates()) {
+            return String.join(";", readChunked(entry, slotColumn, after -> source + " AND " + slotColumn + " > " + after, -1L, Integer.MAX_VALUE));
+        }
+        return db().getValue("SELECT " + dialect.aggregate(entry, ";") + " FROM " + source, String.class);
+    }
+
+    /**
+     * Reads rows through the facade in chunks, for dialects whose aggregates truncate. Each
+     * chunk aggregates up to a number of rows in key order, together with the length the
+     * aggregate must have. A chunk that came back cut keeps its complete rows and the next
+     * chunk asks for that many; a row too long for the aggregate on its own is read alone.
+     * Each row starts with its numeric key, followed by {@code |} or {@code :} if it carries more.
+     *
+     * @param entry     text expression of a row
+     * @param key       numeric key column the rows are ordered by
+     * @param rowsAfter FROM clause, with its WHERE condition, of the rows after the given key
+     * @param start     key to start after
+     * @param limit     maximum number of rows
+     * @return rows in key order
+     */
+    private List<String> readChunked(String entry, String key, LongFunction<String> rowsAfter, long start, int limit) {
+        List<String> rows = new ArrayList<>();
+        long cursor = start;
+        int chunk = READ_CHUNK_ROWS;
+        while (rows.size() < limit) {
+            int wanted = Math.min(chunk, limit - rows.size());
+            // expected length|row;row;...
+            String packed = db().getValue(
+                "SELECT " + dialect.concat("|", "SUM(" + dialect.textLength("e") + ") + COUNT(*) - 1", dialect.aggregate("e", ";", "k")) +
+                " FROM (SELECT " + key + " AS k, " + entry + " AS e FROM " + rowsAfter.apply(cursor) + " ORDER BY " + key + " LIMIT " + wanted + ") c",
+                String.class
+            );
+            if (packed == null || packed.isBlank()) break;
+            int sep = packed.indexOf('|');
+            long expected = Long.parseLong(packed.substring(0, sep).trim());
+            String body = packed.substring(sep + 1);
+            List<String> read = new ArrayList<>(List.of(body.split(";")));
+            boolean cut = body.codePointCount(0, body.length()) < expected;
+            if (cut) {
+                // Only the last row can be incomplete
+                read.remove(read.size() - 1);
+                chunk = Math.max(1, read.size());
+                if (read.isEmpty()) {
+                    String row = db().getValue("SELECT " + entry + " FROM " + rowsAfter.apply(cursor) + " ORDER BY " + key + " LIMIT 1", String.class);
+                    if (row == null || row.isBlank()) break;
+                    read.add(row);
+                }
+            }
+            for (String row : read) {
+                int end = 0;
+                while (end < row.length() && row.charAt(end) != '|' && row.charAt(end) != ':') end++;
+                cursor = Long.parseLong(row.substring(0, end).trim());
+                rows.add(row);
+            }
+            if (!cut && read.size() < wanted) break;
+        }
+        return rows;
+    }
+
+    /**
+     * Runs a query over a pooled connection and maps every row.
+     *
+     * @return mapped rows, or {@code null} if no pool is configured or the read failed and the facade should be used
+     */
+    private <T> List<T> readPooled(String sql, RowReader<T> reader, String what) {
+        if (connections == null) return null;
+        try {
+            return connections.withConnection(c -> {
+                try (Statement st = c.createStatement()) {
+                    st.setQueryTimeout(connections.queryTimeoutSeconds());
+                    try (ResultSet rs = st.executeQuery(sql)) {
+                        List<T> rows = new ArrayList<>();
+                        while (rs.next()) rows.add(reader.read(rs));
+                        return rows;
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " pooled " + what + " failed, using shared connection: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Maps the current row of a result set. */
+    @FunctionalInterface
+    private interface RowReader<T> {
+
+        /**
+         * @param rs result set positioned on a row
+         * @return mapped row
+         * @throws SQLException on database errors
+         */
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    /** Parses a ';'-separated list of slot:HEX pairs. */
+    private static Map<Integer, byte[]> parseSlotList(String packed, BiConsumer<Integer, byte[]> onSlot) {
+        Map<Integer, byte[]> stored = new HashMap<>();
+        if (packed != null && !packed.isBlank()) {
+            for (String pair : packed.split(";")) {
+                int idx = pair.indexOf(':');
+                if (idx > 0) {
+                    int slot = Integer.parseInt(pair.substring(0, idx));
+                    byte[] data = HexCodec.fromHex(pair.substring(idx + 1));
+                    stored.put(slot, data);
+                    onSlot.accept(slot, data);
+                }
+            }
+        }
+        return stored;
+    }
+
+    /** Reads a page's packed row through the facade (bitmap:HEX), or {@code null} if it has none. */
+    private Map<Integer, byte[]> readPageRow(UUID playerId, int page, BiConsumer<Integer, byte[]> onSlot) {
+        String packed = db().getValue(
+                "SELECT " + dialect.concat(":", "slot_bitmap", dialect.hex("payload")) + " FROM essential_vault_page WHERE player_uuid = " + q(playerId.toString()) + " AND page = " + page,
+                String.class
+        );
+        if (packed == null || packed.isBlank()) return null;
+        int idx = packed.indexOf(':');
+        Map<Integer, byte[]> stored = VaultPagePacker.unpack(Long.parseLong(packed.substring(0, idx)), HexCodec.fromHex(packed.substring(idx + 1)));
+        stored.forEach(onSlot);
+        return stored;
+    }
+
+    /**
+     * Adds statements that upsert one packed row per page. Pages left empty lose their row
+     * instead, along with any per-slot rows not migrated yet, so emptied items cannot reappear.
+     */
+    private void writePageRows(List<VaultSnapshot> pages, List<String> statements) {
+        VaultSqlBatch rows = new VaultSqlBatch(
+                "INSERT INTO essential_vault_page (player_uuid, page, slot_bitmap, payload) VALUES ",
+                dialect.onConflictUpdate("player_uuid, page", "slot_bitmap=" + dialect.excluded("slot_bitmap") + ", payload=" + dialect.excluded("payload")));
+        StringBuilder empty = new StringBuilder();
+        for (VaultSnapshot s : pages) {
+            Map<Integer, byte[]> slots = s.getSlotBytes();
+            String uuid = q(s.getPlayerId().toString());
+            if (slots.isEmpty()) {
+                if (empty.length() > 0) empty.append(" OR ");
+                empty.append("(player_uuid = ").append(uuid).append(" AND page = ").append(s.getPage()).append(')');
+            } else {
+                rows.addRow("(" + uuid + ", " + s.getPage() + ", " + VaultPagePacker.bitmap(slots) + ", " + dialect.blobLiteral(VaultPagePacker.pack(slots)) + ")");
+            }
+        }
+        if (empty.length() > 0) {
+            statements.add("DELETE FROM essential_vault_page WHERE " + empty);
+            statements.add("DELETE FROM essential_vault_item WHERE " + empty);
+        }
+        statements.addAll(rows.statements());
+    }
+
+    /**
+     * Adds statements that point the changed slots of each page at content-addressed blobs.
+     * References being replaced or removed release their blob first; each distinct payload is
+     * then inserted once or gains the new references. Pages without a baseline are rewritten,
+     * along with any per-slot rows not migrated yet, so removed items cannot reappear.
+     */
+    private void writeBlobRefs(List<VaultSnapshot> pages, List<VaultSlotTracker.Diff> diffs, List<String> statements) {
+        StringBuilder released = new StringBuilder();
+        StringBuilder removed = new StringBuilder();
+        StringBuilder rewritten = new StringBuilder();
+        VaultBlobRefs blobs = new VaultBlobRefs();
+        VaultSqlBatch refs = new VaultSqlBatch(
+                "INSERT INTO essential_vault_slot_ref (player_uuid, page, slot, blob_hash) VALUES ",
+                dialect.onConflictUpdate("player_uuid, page, slot", "blob_hash=" + dialect.excluded("blob_hash")));
+        for (int i = 0; i < pages.size(); i++) {
+            VaultSnapshot s = pages.get(i);
+            VaultSlotTracker.Diff d = diffs.get(i);
+            String uuid = q(s.getPlayerId().toString());
+            String pageWhere = "player_uuid = " + uuid + " AND page = " + s.getPage();
+            if (d.full()) {
+                appendOr(released, pageWhere);
+                appendOr(removed, pageWhere);
+                appendOr(rewritten, pageWhere);
+            } else {
+                Set<Integer> touched = new TreeSet<>(d.upserts().keySet());
+                touched.addAll(d.deletes());
+                if (!touched.isEmpty()) appendOr(released, pageWhere + " AND slot IN (" + joinSlots(touched) + ")");
+                if (!d.deletes().isEmpty()) appendOr(removed, pageWhere + " AND slot IN (" + joinSlots(d.deletes()) + ")");
+            }
+            for (Map.Entry<Integer, byte[]> e : d.upserts().entrySet()) {
+                refs.addRow("(" + uuid + ", " + s.getPage() + ", " + e.getKey() + ", '" + blobs.add(e.getValue()) + "')");
+            }
+        }
+        if (released.length() > 0) statements.add(VaultBlobRefs.releaseStatement(released.toString()));
+        if (removed.length() > 0) statements.add("DELETE FROM essential_vault_slot_ref WHERE " + removed);
+        if (rewritten.length() > 0) statements.add("DELETE FROM essential_vault_item WHERE " + rewritten);
+        statements.addAll(refs.statements());
+        addBlobRows(blobs, statements);
+    }
+
+    /** Adds statements that insert each blob or add its new references to the stored count. */
+    private void addBlobRows(VaultBlobRefs blobs, List<String> statements) {
+        VaultSqlBatch rows = new VaultSqlBatch(
+                "INSERT INTO essential_vault_blob (hash, refcount, item_bytes) VALUES ",
+                dialect.onConflictUpdate("hash", "refcount=essential_vault_blob.refcount + " + dialect.excluded("refcount")));
+        for (VaultBlobRefs.Blob b : blobs.blobs()) {
+            rows.addRow("('" + b.hash() + "', " + b.refs() + ", " + dialect.blobLiteral(b.bytes()) + ")");
+        }
+        statements.addAll(rows.statements());
+    }
+
+    /** Appends a parenthesized condition to an OR list. */
+    private static void appendOr(StringBuilder where, String condition) {
+        if (where.length() > 0) where.append(" OR ");
+        where.append('(').append(condition).append(')');
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import io.github.mcengine.extension.addon.essential.vault.util.ContentHash;
+import io.github.mcengine.extension.addon.essential.vault.util.HexCodec;
+
+import java.util.Collection;
+import java.util.TreeMap;
+
+/**
+ * Collects the item blobs referenced by one write in the deduplicated layout
+ * ({@link VaultStorageLayout#DEDUP}).
+ *
+ * <p>Blobs are keyed by the hex SHA-256 of their payload. Each distinct payload is kept
+ * once with the number of slots that reference it, so a write inserts or updates every
+ * blob row exactly once. Blobs are ordered by hash, which keeps the row lock order of
+ * concurrent writes consistent.</p>
+ */
+public final class VaultBlobRefs {
+
+    /** Blobs by hash. */
+    private final TreeMap<String, Blob> blobs = new TreeMap<>();
+
+    /**
+     * Adds one reference to a payload.
+     *
+     * @param bytes serialized item
+     * @return hash the slot row should point at
+     */
+    public String add(byte[] bytes) {
+        String hash = hash(bytes);
+        blobs.computeIfAbsent(hash, h -> new Blob(h, bytes)).refs++;
+        return hash;
+    }
+
+    /**
+     * @return distinct blobs in hash order
+     */
+    public Collection<Blob> blobs() {
+        return blobs.values();
+    }
+
+    /**
+     * @return {@code true} if no reference was added
+     */
+    public boolean isEmpty() {
+        return blobs.isEmpty();
+    }
+
+    /**
+     * Computes the blob key of a payload.
+     *
+     * @param bytes serialized item
+     * @return 64-character upper-case hex SHA-256
+     */
+    public static String hash(byte[] bytes) {
+        return HexCodec.toHex(ContentHash.sha256(bytes));
+    }
+
+    /**
+     * Builds the statement that releases the blob references of the slot rows matching
+     * {@code where} before those rows are replaced or deleted. Uses only standard SQL and
+     * works unchanged on every supported dialect.
+     *
+     * @param where condition on {@code essential_vault_slot_ref} columns
+     * @return {@code UPDATE} decrementing each referenced blob once per matching row
+     */
+    public static String releaseStatement(String where) {
+        return "UPDATE essential_vault_blob SET refcount = refcount - " +
+                "(SELECT COUNT(*) FROM essential_vault_slot_ref r WHERE r.blob_hash = essential_vault_blob.hash AND (" + where + ")) " +
+                "WHERE hash IN (SELECT blob_hash FROM essential_vault_slot_ref WHERE " + where + ")";
+    }
+
+    /** One distinct payload and the number of new references to it. */
+    public static final class Blob {
+
+        /** Hex SHA-256 of {@link #bytes}. */
+        private final String hash;
+
+        /** Serialized item. */
+        private final byte[] bytes;
+
+        /** References added by this write. */
+        private int refs;
+
+        private Blob(String hash, byte[] bytes) {
+            this.hash = hash;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return hex SHA-256 of the payload
+         */
+        public String hash() {
+            return hash;
+        }
+
+        /**
+         * @return serialized item
+         */
+        public byte[] bytes() {
+            return bytes;
+        }
+
+        /**
+         * @return references added by this write
+         */
+        public int refs() {
+            return refs;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import java.util.UUID;
+
+/**
+ * One entry of the vault change feed ({@code essential_vault_change}), appended by every
+ * save of a server that has the feed enabled.
+ *
+ * @param id       feed position; ascending in insertion order, but committed out of order under concurrency
+ * @param playerId vault owner
+ * @param page     saved page, or {@code -1} if the whole vault was cleared
+ * @param origin   node id of the server that wrote the change
+ */
+public record VaultChange(long id, UUID playerId, int page, String origin) {}
@@ -0,0 +1,17 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when a versioned save finds that another server changed the vault since it was
+ * loaded. Nothing of the save was applied.
+ */
+public class VaultConflictException extends SQLException {
+
+    /**
+     * @param message detail message
+     */
+    public VaultConflictException(String message) {
+        super(message);
+    }
+}
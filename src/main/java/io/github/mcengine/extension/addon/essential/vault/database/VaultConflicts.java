@@ -0,0 +1,181 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import io.github.mcengine.extension.addon.essential.vault.util.ContentHash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * How backends resolve a versioned save that lost against a write from another server,
+ * and who hears about it.
+ *
+ * <p>With {@link Resolution#MERGE} the page is reloaded and merged three ways per slot
+ * against the baseline the save started from: a slot only one side changed takes that
+ * side's content. If both sides put an item into a slot that was empty, the stored item
+ * stays and this server's item moves to a free slot of the page, so neither is lost.
+ * Stacks are not additive, so a slot that held an item and was changed on both sides
+ * cannot be merged without duplicating or losing items; such a merge, like one whose
+ * displaced items do not fit, falls back to reloading. With {@link Resolution#RELOAD} this server's change is
+ * dropped and the stored page is kept. Either way listeners are told, so caches can drop
+ * the player and the player can be notified.</p>
+ */
+public final class VaultConflicts {
+
+    /** Conflict resolution strategies. */
+    public enum Resolution {
+
+        /** Three-way merge with the stored page; falls back to {@link #RELOAD} if an occupied slot changed on both sides or items do not fit. */
+        MERGE,
+
+        /** Keep the stored page and drop this server's change. */
+        RELOAD;
+
+        /**
+         * Parses a config value.
+         *
+         * @param value {@code merge} or {@code reload} (case-insensitive)
+         * @return matching strategy; {@link #MERGE} for anything else
+         */
+        public static Resolution fromConfig(String value) {
+            return "reload".equalsIgnoreCase(value == null ? "" : value.trim()) ? RELOAD : MERGE;
+        }
+    }
+
+    /**
+     * Outcome of one resolved conflict.
+     *
+     * @param playerId vault owner
+     * @param page     page whose save conflicted
+     * @param merged   {@code true} if this server's change was merged, {@code false} if it was dropped
+     */
+    public record Outcome(UUID playerId, int page, boolean merged) {}
+
+    /** Configured strategy. */
+    private final Resolution resolution;
+
+    /** Notified after each resolved conflict, on the thread that saved. */
+    private final List<Consumer<Outcome>> listeners = new CopyOnWriteArrayList<>();
+
+    /** Conflicts detected, merged and resolved by reloading. */
+    private final AtomicLong detected = new AtomicLong(), merged = new AtomicLong(), reloaded = new AtomicLong();
+
+    /**
+     * @param resolution configured strategy
+     */
+    public VaultConflicts(Resolution resolution) {
+        this.resolution = resolution == null ? Resolution.MERGE : resolution;
+    }
+
+    /**
+     * @return configured strategy
+     */
+    public Resolution resolution() {
+        return resolution;
+    }
+
+    /**
+     * Adds a listener for resolved conflicts.
+     *
+     * @param listener called on the saving thread; must not block
+     */
+    public void addListener(Consumer<Outcome> listener) {
+        listeners.add(listener);
+    }
+
+    /** Counts a detected conflict. */
+    public void recordDetected() {
+        detected.incrementAndGet();
+    }
+
+    /**
+     * Counts a resolved conflict and notifies the listeners.
+     *
+     * @param playerId vault owner
+     * @param page     page whose save conflicted
+     * @param merged   whether this server's change was merged
+     */
+    public void resolved(UUID playerId, int page, boolean merged) {
+        (merged ? this.merged : reloaded).incrementAndGet();
+        Outcome outcome = new Outcome(playerId, page, merged);
+        for (Consumer<Outcome> listener : listeners) listener.accept(outcome);
+    }
+
+    /**
+     * @return conflicts detected so far
+     */
+    public long detectedCount() {
+        return detected.get();
+    }
+
+    /**
+     * @return conflicts resolved by merging so far
+     */
+    public long mergedCount() {
+        return merged.get();
+    }
+
+    /**
+     * @return conflicts resolved by dropping this server's change so far
+     */
+    public long reloadedCount() {
+        return reloaded.get();
+    }
+
+    /**
+     * Merges this server's page with the stored one, slot by slot.
+     *
+     * @param base     slot digests both sides started from ({@link VaultSlotTracker#baseline}), or
+     *                 {@code null} if unknown, in which case this server's page wins as before versioning
+     * @param ours     slot to payload this server wants to store
+     * @param theirs   slot to payload currently stored
+     * @param capacity number of slots of the page
+     * @return merged slot to payload, or {@code null} if a slot occupied in {@code base} was changed
+     *         on both sides or displaced items do not fit
+     */
+    public static Map<Integer, byte[]> merge(Map<Integer, byte[]> base, Map<Integer, byte[]> ours, Map<Integer, byte[]> theirs, int capacity) {
+        if (base == null) return new TreeMap<>(ours);
+        Map<Integer, byte[]> result = new TreeMap<>();
+        List<byte[]> displaced = new ArrayList<>();
+        TreeSet<Integer> slots = new TreeSet<>(base.keySet());
+        slots.addAll(ours.keySet());
+        slots.addAll(theirs.keySet());
+        for (int slot : slots) {
+            byte[] o = ours.get(slot);
+            byte[] t = theirs.get(slot);
+            byte[] b = base.get(slot);
+            if (!changed(b, o)) {
+                if (t != null) result.put(slot, t);
+            } else if (!changed(b, t)) {
+                if (o != null) result.put(slot, o);
+            } else if (b != null) {
+                // Both sides changed an existing stack; keeping either or both would duplicate items
+                return null;
+            } else {
+                // Both sides put a new item into an empty slot: the stored item stays, ours moves
+                result.put(slot, t);
+                if (!Arrays.equals(o, t)) displaced.add(o);
+            }
+        }
+        int free = 0;
+        for (byte[] item : displaced) {
+            while (free < capacity && result.containsKey(free)) free++;
+            if (free >= capacity) return null;
+            result.put(free, item);
+        }
+        return result;
+    }
+
+    /** @return {@code true} if {@code bytes} differs from the slot digest {@code digest} */
+    private static boolean changed(byte[] digest, byte[] bytes) {
+        if (digest == null || bytes == null) return digest != bytes;
+        return !Arrays.equals(digest, ContentHash.sha256(bytes));
+    }
+}
@@ -0,0 +1,233 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vault-owned JDBC connection pool.
+ *
+ * <p>The shared database facade only returns single string values and gives the AddOn
+ * no say over connection reuse, pool size or timeouts. When {@code database.jdbc.url}
+ * is configured, {@link io.github.mcengine.extension.addon.essential.vault.util.VaultConfigUtil#createDataSource}
+ * builds a dedicated pool and backends route loads and saves through it: rows are
+ * streamed with blobs read as binary, and each save runs as one transaction. Several
+ * connections can be used in parallel, so vault traffic neither waits on nor delays
+ * the rest of the plugin. Backends fall back to the facade if the pool fails.</p>
+ */
+public final class VaultConnectionSource {
+
+    /**
+     * Pooled data source.
+     */
+    private final HikariDataSource dataSource;
+
+    /**
+     * Per-statement timeout in seconds (0 = none).
+     */
+    private final int queryTimeoutSeconds;
+
+    /**
+     * Logger for connection problems.
+     */
+    private final MCEngineExtensionLogger logger;
+
+    /**
+     * Connections handed out so far.
+     */
+    private final AtomicLong borrows = new AtomicLong();
+
+    /**
+     * Work units that failed with an exception.
+     */
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Total time spent waiting for a connection, in nanoseconds.
+     */
+    private final AtomicLong borrowWaitNanos = new AtomicLong();
+
+    /**
+     * Creates the source over an already configured pool.
+     *
+     * @param dataSource          pooled data source; closed by {@link #close()}
+     * @param queryTimeoutSeconds per-statement timeout in seconds (0 = none)
+     * @param logger              logger wrapper
+     */
+    public VaultConnectionSource(HikariDataSource dataSource, int queryTimeoutSeconds, MCEngineExtensionLogger logger) {
+        this.dataSource = dataSource;
+        this.queryTimeoutSeconds = Math.max(0, queryTimeoutSeconds);
+        this.logger = logger;
+    }
+
+    /**
+     * Runs work on a pooled connection, which is returned to the pool afterwards.
+     *
+     * @param work work to run
+     * @param <T>  result type
+     * @return result of {@code work}
+     * @throws SQLException if no connection could be obtained or the work fails
+     */
+    public <T> T withConnection(SqlFunction<T> work) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            borrowWaitNanos.addAndGet(System.nanoTime() - start);
+            borrows.incrementAndGet();
+            return work.apply(connection);
+        } catch (SQLException | RuntimeException e) {
+            // A version conflict is an answer, not a connection problem
+            if (!(e instanceof VaultConflictException)) failures.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Executes write statements as a single JDBC batch in one transaction. Either every
+     * statement takes effect or none does.
+     *
+     * @param statements SQL statements in execution order
+     * @throws SQLException if any statement fails (the transaction is rolled back)
+     */
+    public void executeInTransaction(List<String> statements) throws SQLException {
+        if (statements.isEmpty()) return;
+        withConnection(c -> {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement()) {
+                st.setQueryTimeout(queryTimeoutSeconds);
+                apply(st, List.of(), statements);
+                c.commit();
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    c.rollback();
+                } catch (SQLException rollback) {
+                    e.addSuppressed(rollback);
+                }
+                throw e;
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Executes write statements in one transaction after version guards. Each guard must
+     * change at least one row; if one does not, the transaction is rolled back before the
+     * remaining statements run.
+     *
+     * @param guards     compare-and-set statements, run one by one first
+     * @param statements SQL statements run as one JDBC batch after the guards
+     * @throws VaultConflictException if a guard changed no row (nothing was applied)
+     * @throws SQLException           if any statement fails (the transaction is rolled back)
+     */
+    public void executeGuarded(List<String> guards, List<String> statements) throws SQLException {
+        withConnection(c -> {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement()) {
+                st.setQueryTimeout(queryTimeoutSeconds);
+                apply(st, guards, statements);
+                c.commit();
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    c.rollback();
+                } catch (SQLException rollback) {
+                    e.addSuppressed(rollback);
+                }
+                throw e;
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs guards one by one, then the statements as one JDBC batch, inside the caller's transaction.
+     *
+     * @throws VaultConflictException if a guard changed no row
+     */
+    static void apply(Statement st, List<String> guards, List<String> statements) throws SQLException {
+        st.clearBatch();
+        for (String guard : guards) {
+            if (st.executeUpdate(guard) == 0) throw new VaultConflictException("Vault was changed by another server");
+        }
+        for (String sql : statements) st.addBatch(sql);
+        if (!statements.isEmpty()) st.executeBatch();
+    }
+
+    /**
+     * @return per-statement timeout in seconds to apply to statements (0 = none)
+     */
+    public int queryTimeoutSeconds() {
+        return queryTimeoutSeconds;
+    }
+
+    /**
+     * Returns a point-in-time view of pool usage.
+     *
+     * @return pool metrics
+     */
+    public PoolStats stats() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        long n = borrows.get();
+        double avgWaitMillis = n == 0 ? 0.0 : borrowWaitNanos.get() / 1_000_000.0 / n;
+        if (pool == null) return new PoolStats(0, 0, 0, 0, n, failures.get(), avgWaitMillis);
+        return new PoolStats(pool.getActiveConnections(), pool.getIdleConnections(), pool.getTotalConnections(),
+                pool.getThreadsAwaitingConnection(), n, failures.get(), avgWaitMillis);
+    }
+
+    /**
+     * Closes the pool and all of its connections.
+     */
+    public void close() {
+        try {
+            dataSource.close();
+        } catch (RuntimeException e) {
+            if (logger != null) logger.warning("[VaultDB] Closing connection pool failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Work that runs on a JDBC connection.
+     *
+     * @param <T> result type
+     */
+    @FunctionalInterface
+    public interface SqlFunction<T> {
+
+        /**
+         * @param connection open connection; must not be closed by the callee
+         * @return result
+         * @throws SQLException on database errors
+         */
+        T apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Pool usage metrics.
+     *
+     * @param active        connections currently in use
+     * @param idle          connections open and idle
+     * @param total         connections open
+     * @param waiting       threads waiting for a connection
+     * @param borrows       connections handed out since start
+     * @param failures      work units that failed since start
+     * @param avgWaitMillis mean time spent waiting for a connection, in milliseconds
+     */
+    public record PoolStats(int active, int idle, int total, int waiting, long borrows, long failures, double avgWaitMillis) {
+
+        @Override
+        public String toString() {
+            return String.format("active=%d idle=%d total=%d waiting=%d borrows=%d failures=%d avgWait=%.2fms",
+                    active, idle, total, waiting, borrows, failures, avgWaitMillis);
+        }
+    }
+}
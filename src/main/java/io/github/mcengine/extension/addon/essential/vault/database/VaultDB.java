@@ -1,12 +1,16 @@
 package io.github.mcengine.extension.addon.essential.vault.database;
 
 import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.StoredItem;
 import io.github.mcengine.extension.addon.essential.vault.model.VaultItem;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
 import org.bukkit.Bukkit;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -15,8 +19,10 @@ import java.util.UUID;
  *
  * <p>Implementations must create/ensure the following logical schema:</p>
  * <ul>
- *   <li><strong>essential_vault_meta</strong>(player_uuid PK, rows, title, updated_at)</li>
+ *   <li><strong>essential_vault_meta</strong>(player_uuid PK, rows, title, updated_at, version)</li>
  *   <li><strong>essential_vault_item</strong>(player_uuid, page, slot, item_bytes, PK(player_uuid,page,slot))</li>
+ *   <li><strong>essential_vault_change</strong>(id, player_uuid, page, origin, changed_at), appended by saves when a change origin is set</li>
+ *   <li><strong>essential_vault_schema_version</strong>(version PK, description, applied_at), maintained by {@link VaultSchemaMigrator}</li>
  * </ul>
  */
 public interface VaultDB {
@@ -24,15 +30,177 @@ public interface VaultDB {
     /** Creates required tables if they don't already exist. */
     void ensureSchema();
 
-    /** Loads a player's vault or synthesizes one with defaults. */
-    PlayerVault loadPlayerVault(UUID playerId, int defaultRows, String defaultTitle);
+    /**
+     * Loads one page of a player's vault or synthesizes it with defaults.
+     * Only that page's items are read.
+     *
+     * @param playerId     player UUID
+     * @param page         page index (0-based)
+     * @param defaultRows  rows to use if the player has no vault yet
+     * @param defaultTitle title to use if the player has no vault yet
+     * @return loaded page
+     * @throws VaultLoadException if the stored page could not be read; defaults are only
+     *                            used for players that have no vault
+     */
+    PlayerVault loadPlayerVault(UUID playerId, int page, int defaultRows, String defaultTitle);
+
+    /** Loads the first page of a player's vault or synthesizes one with defaults. */
+    default PlayerVault loadPlayerVault(UUID playerId, int defaultRows, String defaultTitle) {
+        return loadPlayerVault(playerId, 0, defaultRows, defaultTitle);
+    }
+
+    /**
+     * Persists meta and items for the page described by an immutable snapshot.
+     * Safe to call from a background thread; must not touch live Bukkit inventories.
+     *
+     * @param snapshot captured vault page
+     * @return {@code true} if the write succeeded
+     */
+    boolean savePlayerVault(VaultSnapshot snapshot);
 
-    /** Persists meta and items for a given vault page. */
-    boolean savePlayerVault(PlayerVault vault, Inventory inventory);
+    /**
+     * Persists several vault pages in as few statements as the dialect allows.
+     * Callers must not pass two snapshots of the same page in one batch.
+     *
+     * <p>The default implementation saves each snapshot individually.</p>
+     *
+     * @param snapshots captured vault pages with distinct {@code (player, page)} keys
+     * @return {@code true} if every snapshot was persisted
+     */
+    default boolean saveBatch(List<VaultSnapshot> snapshots) {
+        boolean ok = true;
+        for (VaultSnapshot snapshot : snapshots) {
+            ok &= savePlayerVault(snapshot);
+        }
+        return ok;
+    }
+
+    /**
+     * Persists meta and items for a given vault page straight from a live inventory.
+     * Must be called on the main server thread.
+     *
+     * @param vault     the player vault model (owner, rows, title, page, loaded version)
+     * @param inventory inventory to read from
+     * @return {@code true} if the write succeeded
+     */
+    default boolean savePlayerVault(PlayerVault vault, Inventory inventory) {
+        return savePlayerVault(VaultSnapshot.capture(
+                vault.getPlayerId(), vault.getRows(), vault.getTitle(), vault.getPage(), vault.getVersion(), inventory));
+    }
 
     /** Deletes a player's vault meta and all items. */
     boolean clearPlayerVault(UUID playerId);
 
+    /**
+     * Replaces a player's whole vault with the given pages, regardless of what other
+     * servers stored. The pages are written before anything not among them is removed, in
+     * one transaction where the backend has one, so a failed write never leaves the player
+     * with an empty vault.
+     *
+     * @param playerId vault owner
+     * @param pages    every page of the new vault (rows and title are taken from the first)
+     * @return {@code true} if the vault was replaced
+     */
+    boolean replacePlayerVault(UUID playerId, List<VaultSnapshot> pages);
+
+    /**
+     * Finds the next item row still stored in the legacy Java-serialization format.
+     * Rows are ordered by {@code (player_uuid, page, slot)}.
+     *
+     * @param after cursor; only rows sorting after it are considered ({@code null} to start)
+     * @return next legacy row, or {@code null} if there is none
+     */
+    default StoredItem nextLegacyItem(StoredItem after) {
+        return null;
+    }
+
+    /**
+     * Replaces an item row's payload, but only if the row still holds {@code row.bytes()}.
+     * A concurrent save of the same slot therefore always wins.
+     *
+     * @param row         row as previously read
+     * @param replacement new payload encoding the same item
+     * @return {@code true} if the statement was executed
+     */
+    default boolean replaceItemBytes(StoredItem row, byte[] replacement) {
+        return false;
+    }
+
+    /**
+     * Moves one vault page from per-slot rows into the configured layout (a packed page row
+     * for {@link VaultStorageLayout#PAGE}, blob references for {@link VaultStorageLayout#DEDUP}),
+     * then deletes its per-slot rows. A page already stored in the new layout is newer and is kept.
+     *
+     * @return the migrated page, or {@code null} if no per-slot rows remain or the step failed
+     */
+    default VaultKey migrateNextSlotPage() {
+        return null;
+    }
+
+    /**
+     * Deletes item blobs that no slot references any more ({@link VaultStorageLayout#DEDUP}).
+     * Reference counts only select candidates; a blob is deleted only if no slot row points at it.
+     *
+     * @param limit maximum number of blobs to delete
+     * @return number of unreferenced blobs found and deleted, or {@code -1} if the step failed
+     */
+    default int collectUnreferencedBlobs(int limit) {
+        return 0;
+    }
+
+    /**
+     * Finds the next player that has a vault, in the database's order of {@code player_uuid}.
+     * Used to walk all vaults, or a range of them, one player at a time.
+     *
+     * @param lower     lower bound, or {@code null} to start at the first player
+     * @param inclusive whether a vault of {@code lower} itself qualifies
+     * @param upper     inclusive upper bound, or {@code null} for none
+     * @return player UUID, or {@code null} if no further player is in range or the read failed
+     */
+    default UUID nextVaultOwner(UUID lower, boolean inclusive, UUID upper) {
+        return null;
+    }
+
+    /**
+     * Lists the pages of a player's vault that hold items, whatever layout stores them.
+     *
+     * @param playerId player UUID
+     * @return page indexes in ascending order; empty if the player has no items or the read failed
+     */
+    default List<Integer> storedPages(UUID playerId) {
+        return List.of();
+    }
+
+    /**
+     * Returns the position of the newest change-feed entry, where a feed poller starts.
+     *
+     * @return newest entry id, {@code 0} if the feed is empty, or {@code -1} if unsupported or the read failed
+     */
+    default long latestChangeId() {
+        return -1L;
+    }
+
+    /**
+     * Reads change-feed entries after a position, oldest first.
+     *
+     * @param afterId position already read
+     * @param limit   maximum number of entries
+     * @return entries with {@code id > afterId} in ascending id order; empty if none or the read failed
+     */
+    default List<VaultChange> changesSince(long afterId, int limit) {
+        return List.of();
+    }
+
+    /**
+     * Deletes change-feed entries older than a retention period.
+     *
+     * @param retentionSeconds age after which entries are deleted
+     * @return {@code true} if the delete succeeded
+     */
+    default boolean purgeChanges(long retentionSeconds) {
+        return false;
+    }
+
     /**
      * Constructs a Bukkit {@link Inventory} using vault rows/title and fills items.
      *
@@ -45,13 +213,15 @@ public interface VaultDB {
                 Math.max(9, Math.min(54, vault.getRows() * 9)),
                 vault.getTitle() == null ? "Vault" : vault.getTitle()
         );
-        vault.getItems().forEach((slot, vItem) -> inv.setItem(slot, vItem.getItem()));
+        // Stored payloads are decoded straight into the inventory
+        vault.forEachItem(inv::setItem);
         return inv;
     }
 
     /**
      * Captures an {@link Inventory} into a {@link PlayerVault}'s item map (in-memory only).
-     * Call {@link #savePlayerVault(PlayerVault, Inventory)} to persist.
+     * Call {@link #savePlayerVault(PlayerVault, Inventory)} to persist, or capture a
+     * {@link VaultSnapshot} to persist off the main thread.
      *
      * @param vault player vault model
      * @param inv   inventory to read from
@@ -0,0 +1,61 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import io.github.mcengine.extension.addon.essential.vault.metrics.VaultMetrics;
+
+/**
+ * Settings of a database backend (see {@link AbstractVaultDB}). Start from
+ * {@link #DEFAULTS} and replace what differs, e.g.
+ * {@code VaultDBOptions.DEFAULTS.withLayout(layout).withConnections(pool)}.
+ *
+ * @param layout       item storage layout (nullable: per-slot)
+ * @param connections  optional vault-owned connection pool for loads and saves (nullable)
+ * @param metrics      receives bytes read and load failures (nullable)
+ * @param conflicts    resolution of saves that lost against another server (nullable: merge)
+ * @param changeOrigin node id appended to the change feed with every save (nullable: no feed entries)
+ */
+public record VaultDBOptions(VaultStorageLayout layout, VaultConnectionSource connections, VaultMetrics metrics,
+                             VaultConflicts conflicts, String changeOrigin) {
+
+    /** Per-slot layout through the shared facade, without metrics or feed entries, merging conflicts. */
+    public static final VaultDBOptions DEFAULTS = new VaultDBOptions(VaultStorageLayout.SLOT, null, null, null, null);
+
+    /**
+     * @param layout item storage layout
+     * @return these options with the layout replaced
+     */
+    public VaultDBOptions withLayout(VaultStorageLayout layout) {
+        return new VaultDBOptions(layout, connections, metrics, conflicts, changeOrigin);
+    }
+
+    /**
+     * @param connections vault-owned connection pool (nullable)
+     * @return these options with the pool replaced
+     */
+    public VaultDBOptions withConnections(VaultConnectionSource connections) {
+        return new VaultDBOptions(layout, connections, metrics, conflicts, changeOrigin);
+    }
+
+    /**
+     * @param metrics metrics sink (nullable)
+     * @return these options with the metrics sink replaced
+     */
+    public VaultDBOptions withMetrics(VaultMetrics metrics) {
+        return new VaultDBOptions(layout, connections, metrics, conflicts, changeOrigin);
+    }
+
+    /**
+     * @param conflicts conflict resolution policy (nullable)
+     * @return these options with the policy replaced
+     */
+    public VaultDBOptions withConflicts(VaultConflicts conflicts) {
+        return new VaultDBOptions(layout, connections, metrics, conflicts, changeOrigin);
+    }
+
+    /**
+     * @param changeOrigin node id for change feed entries (nullable)
+     * @return these options with the node id replaced
+     */
+    public VaultDBOptions withChangeOrigin(String changeOrigin) {
+        return new VaultDBOptions(layout, connections, metrics, conflicts, changeOrigin);
+    }
+}
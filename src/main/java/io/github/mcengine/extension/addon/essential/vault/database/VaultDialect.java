@@ -0,0 +1,304 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import io.github.mcengine.extension.addon.essential.vault.util.HexCodec;
+
+/**
+ * SQL dialects supported by the vault backends.
+ *
+ * <p>Holds the SQL fragments that differ between databases, so that {@link AbstractVaultDB}
+ * can build every statement once, and the table definitions needed by code that talks to a
+ * database directly over JDBC instead of through a {@link VaultDB}.</p>
+ */
+public enum VaultDialect {
+
+    /** SQLite ({@code jdbc:sqlite:}). */
+    SQLITE("SQLite", "BLOB", "TIMESTAMP", ""),
+
+    /** MySQL or MariaDB ({@code jdbc:mysql:}, {@code jdbc:mariadb:}). */
+    MYSQL("MySQL", "BLOB", "TIMESTAMP NULL", " ENGINE=InnoDB"),
+
+    /** PostgreSQL ({@code jdbc:postgresql:}). */
+    POSTGRESQL("PostgreSQL", "BYTEA", "TIMESTAMP", "");
+
+    /** Name used in log messages. */
+    private final String displayName;
+
+    /** Column type of item payloads. */
+    private final String blobType;
+
+    /** Column type of {@code updated_at}. */
+    private final String timestampType;
+
+    /** Text appended to {@code CREATE TABLE} statements. */
+    private final String tableOptions;
+
+    VaultDialect(String displayName, String blobType, String timestampType, String tableOptions) {
+        this.displayName = displayName;
+        this.blobType = blobType;
+        this.timestampType = timestampType;
+        this.tableOptions = tableOptions;
+    }
+
+    /**
+     * Detects the dialect of a JDBC URL.
+     *
+     * @param url JDBC URL (nullable)
+     * @return dialect, or {@code null} if the URL is not for a supported database
+     */
+    public static VaultDialect fromJdbcUrl(String url) {
+        if (url == null) return null;
+        String u = url.trim().toLowerCase();
+        if (u.startsWith("jdbc:sqlite:")) return SQLITE;
+        if (u.startsWith("jdbc:mysql:") || u.startsWith("jdbc:mariadb:")) return MYSQL;
+        if (u.startsWith("jdbc:postgresql:")) return POSTGRESQL;
+        return null;
+    }
+
+    /**
+     * @return name used in log messages
+     */
+    public String displayName() {
+        return displayName;
+    }
+
+    /**
+     * @return {@code CREATE TABLE IF NOT EXISTS} statement for {@code essential_vault_meta}
+     */
+    public String createMetaTable() {
+        return "CREATE TABLE IF NOT EXISTS essential_vault_meta (" +
+                "player_uuid VARCHAR(36) PRIMARY KEY, " +
+                "rows INT NOT NULL, " +
+                "title TEXT, " +
+                "updated_at " + timestampType + ", " +
+                "version BIGINT NOT NULL DEFAULT 0, " +
+                "save_token VARCHAR(36)" +
+                ")" + tableOptions;
+    }
+
+    /**
+     * @return {@code CREATE TABLE IF NOT EXISTS} statement for {@code essential_vault_schema_version}
+     */
+    public String createSchemaVersionTable() {
+        return "CREATE TABLE IF NOT EXISTS essential_vault_schema_version (" +
+                "version INT PRIMARY KEY, " +
+                "description VARCHAR(255) NOT NULL, " +
+                "applied_at " + timestampType +
+                ")" + tableOptions;
+    }
+
+    /**
+     * Casts an SQL expression to text, for reading numbers through string lookups.
+     *
+     * @param expression SQL expression
+     * @return expression cast to the dialect's text type
+     */
+    public String asText(String expression) {
+        return switch (this) {
+            case MYSQL -> "CAST(" + expression + " AS CHAR)";
+            case POSTGRESQL -> "(" + expression + ")::text";
+            default -> "CAST(" + expression + " AS TEXT)";
+        };
+    }
+
+    /**
+     * Builds a single-row insert that does nothing if the row's key already exists.
+     *
+     * @param table   table name
+     * @param columns comma-separated column list
+     * @param values  comma-separated SQL literals
+     * @return insert statement
+     */
+    public String insertIgnore(String table, String columns, String values) {
+        return switch (this) {
+            case MYSQL -> "INSERT IGNORE INTO " + table + " (" + columns + ") VALUES (" + values + ")";
+            case POSTGRESQL -> "INSERT INTO " + table + " (" + columns + ") VALUES (" + values + ") ON CONFLICT DO NOTHING";
+            default -> "INSERT OR IGNORE INTO " + table + " (" + columns + ") VALUES (" + values + ")";
+        };
+    }
+
+    /**
+     * Formats bytes as a blob literal.
+     *
+     * @param bytes blob contents
+     * @return SQL literal
+     */
+    public String blobLiteral(byte[] bytes) {
+        return switch (this) {
+            case MYSQL -> "x'" + HexCodec.toHex(bytes) + "'";
+            case POSTGRESQL -> "decode('" + HexCodec.toHex(bytes) + "','hex')";
+            default -> "X'" + HexCodec.toHex(bytes) + "'";
+        };
+    }
+
+    /**
+     * Hex-encodes a blob expression, for reading blobs through string lookups.
+     *
+     * @param expression blob expression
+     * @return text expression of the blob's hex digits
+     */
+    public String hex(String expression) {
+        return switch (this) {
+            case MYSQL -> "HEX(" + expression + ")";
+            case POSTGRESQL -> "encode(" + expression + ",'hex')";
+            default -> "hex(" + expression + ")";
+        };
+    }
+
+    /**
+     * Joins expressions into one text value, for reading several columns through one string lookup.
+     * None of the expressions may be {@code NULL}.
+     *
+     * @param separator   literal placed between the values; must not contain quotes
+     * @param expressions SQL expressions
+     * @return text expression
+     */
+    public String concat(String separator, String... expressions) {
+        if (this == MYSQL) return "CONCAT_WS('" + separator + "', " + String.join(", ", expressions) + ")";
+        StringBuilder sb = new StringBuilder();
+        for (String expression : expressions) {
+            if (sb.length() > 0) sb.append(" || '").append(separator).append("' || ");
+            sb.append(asText(expression));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Aggregates the values of a text expression over all rows into one string.
+     *
+     * @param expression text expression
+     * @param separator  literal placed between the values; must not contain quotes
+     * @return aggregate expression (value order unspecified)
+     */
+    public String aggregate(String expression, String separator) {
+        return switch (this) {
+            case MYSQL -> "GROUP_CONCAT(" + expression + " SEPARATOR '" + separator + "')";
+            case POSTGRESQL -> "string_agg(" + expression + ", '" + separator + "')";
+            default -> "GROUP_CONCAT(" + expression + ", '" + separator + "')";
+        };
+    }
+
+    /**
+     * Aggregates the values of a text expression over all rows into one string, in order.
+     * SQLite cannot order an aggregate; there the order follows the rows of the source.
+     *
+     * @param expression text expression
+     * @param separator  literal placed between the values; must not contain quotes
+     * @param orderBy    expression to order the values by
+     * @return aggregate expression
+     */
+    public String aggregate(String expression, String separator, String orderBy) {
+        return switch (this) {
+            case MYSQL -> "GROUP_CONCAT(" + expression + " ORDER BY " + orderBy + " SEPARATOR '" + separator + "')";
+            case POSTGRESQL -> "string_agg(" + expression + ", '" + separator + "' ORDER BY " + orderBy + ")";
+            default -> "GROUP_CONCAT(" + expression + ", '" + separator + "')";
+        };
+    }
+
+    /**
+     * @param expression text expression
+     * @return expression of its length in characters
+     */
+    public String textLength(String expression) {
+        return this == SQLITE ? "LENGTH(" + expression + ")" : "CHAR_LENGTH(" + expression + ")";
+    }
+
+    /**
+     * Whether {@link #aggregate} may silently cut its result. MySQL truncates
+     * {@code GROUP_CONCAT} at {@code group_concat_max_len} (1024 bytes by default), so
+     * multi-row reads on it go in chunks that are checked for truncation instead.
+     *
+     * @return {@code true} if aggregated reads can lose rows
+     */
+    public boolean truncatesAggregates() {
+        return this == MYSQL;
+    }
+
+    /**
+     * @return statement raising the aggregate limit of the session, or {@code null} if the
+     *         dialect has none (see {@link #truncatesAggregates()})
+     */
+    public String raiseAggregateLimit() {
+        return this == MYSQL ? "SET SESSION group_concat_max_len = 1048576" : null;
+    }
+
+    /**
+     * @param expression blob expression
+     * @param length     number of leading bytes
+     * @return expression of the blob's first {@code length} bytes
+     */
+    public String prefix(String expression, int length) {
+        return switch (this) {
+            case MYSQL -> "LEFT(" + expression + ", " + length + ")";
+            case POSTGRESQL -> "substring(" + expression + " from 1 for " + length + ")";
+            default -> "substr(" + expression + ", 1, " + length + ")";
+        };
+    }
+
+    /**
+     * @param seconds age in seconds
+     * @return timestamp expression for the current time minus {@code seconds}
+     */
+    public String secondsAgo(long seconds) {
+        return switch (this) {
+            case MYSQL -> "CURRENT_TIMESTAMP - INTERVAL " + seconds + " SECOND";
+            case POSTGRESQL -> "CURRENT_TIMESTAMP - INTERVAL '" + seconds + " seconds'";
+            default -> "datetime('now', '-" + seconds + " seconds')";
+        };
+    }
+
+    /**
+     * Builds the clause that turns an insert into an upsert.
+     *
+     * @param keyColumns  comma-separated columns of the conflicting key
+     * @param assignments comma-separated {@code column=expression} updates; see {@link #excluded(String)}
+     * @return clause appended to an {@code INSERT}
+     */
+    public String onConflictUpdate(String keyColumns, String assignments) {
+        return switch (this) {
+            case MYSQL -> " ON DUPLICATE KEY UPDATE " + assignments;
+            case POSTGRESQL -> " ON CONFLICT (" + keyColumns + ") DO UPDATE SET " + assignments;
+            default -> " ON CONFLICT(" + keyColumns + ") DO UPDATE SET " + assignments;
+        };
+    }
+
+    /**
+     * Builds the clause that makes an insert do nothing if the row's key already exists.
+     *
+     * @param keyColumns comma-separated columns of the conflicting key; the first is assigned
+     *                   to itself where the dialect has no explicit no-op
+     * @return clause appended to an {@code INSERT}
+     */
+    public String onConflictIgnore(String keyColumns) {
+        String first = keyColumns.split(",")[0].trim();
+        return switch (this) {
+            case MYSQL -> " ON DUPLICATE KEY UPDATE " + first + "=" + first;
+            case POSTGRESQL -> " ON CONFLICT (" + keyColumns + ") DO NOTHING";
+            default -> " ON CONFLICT(" + keyColumns + ") DO NOTHING";
+        };
+    }
+
+    /**
+     * @param column column of the table being inserted into
+     * @return expression for the value the conflicting insert proposed for {@code column}
+     */
+    public String excluded(String column) {
+        return switch (this) {
+            case MYSQL -> "VALUES(" + column + ")";
+            case POSTGRESQL -> "EXCLUDED." + column;
+            default -> "excluded." + column;
+        };
+    }
+
+    /**
+     * @return {@code CREATE TABLE IF NOT EXISTS} statement for {@code essential_vault_item}
+     */
+    public String createItemTable() {
+        return "CREATE TABLE IF NOT EXISTS essential_vault_item (" +
+                "player_uuid VARCHAR(36) NOT NULL, " +
+                "page INT NOT NULL DEFAULT 0, " +
+                "slot INT NOT NULL, " +
+                "item_bytes " + blobType + " NOT NULL, " +
+                "PRIMARY KEY (player_uuid, page, slot)" +
+                ")" + tableOptions;
+    }
+}
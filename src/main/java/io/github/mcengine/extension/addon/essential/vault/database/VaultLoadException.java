@@ -0,0 +1,16 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+/**
+ * Thrown when a vault page could not be read. No page is returned in its place, so an
+ * empty default can never be shown, cached or saved over the stored items.
+ */
+public class VaultLoadException extends RuntimeException {
+
+    /**
+     * @param message detail message
+     * @param cause   underlying failure
+     */
+    public VaultLoadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Packs the slots of one vault page into a single value for the
+ * {@link VaultStorageLayout#PAGE} layout.
+ *
+ * <p>The occupied slots are stored as a 64-bit bitmap (bit {@code n} set means slot
+ * {@code n} is occupied). The payload holds, for each set bit in ascending order,
+ * a varint length followed by that slot's item bytes.</p>
+ */
+public final class VaultPagePacker {
+
+    /**
+     * Highest slot index a page can hold (one bit per slot).
+     */
+    public static final int MAX_SLOT = 63;
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    private VaultPagePacker() {}
+
+    /**
+     * @param slots slot to payload
+     * @return bitmap of occupied slots
+     */
+    public static long bitmap(Map<Integer, byte[]> slots) {
+        long bits = 0L;
+        for (Integer slot : slots.keySet()) {
+            if (slot < 0 || slot > MAX_SLOT) throw new IllegalArgumentException("Slot out of range: " + slot);
+            bits |= 1L << slot;
+        }
+        return bits;
+    }
+
+    /**
+     * @param slots slot to payload
+     * @return length-prefixed payloads in ascending slot order
+     */
+    public static byte[] pack(Map<Integer, byte[]> slots) {
+        int size = 0;
+        for (byte[] b : slots.values()) size += b.length + 5;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        for (byte[] b : new TreeMap<>(slots).values()) {
+            int len = b.length;
+            while ((len & ~0x7F) != 0) {
+                out.write((len & 0x7F) | 0x80);
+                len >>>= 7;
+            }
+            out.write(len);
+            out.write(b, 0, b.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reverses {@link #bitmap(Map)} and {@link #pack(Map)}.
+     *
+     * @param bitmap  occupied slots
+     * @param payload packed payloads
+     * @return slot (ascending) to payload
+     * @throws IllegalArgumentException if the payload does not match the bitmap
+     */
+    public static Map<Integer, byte[]> unpack(long bitmap, byte[] payload) {
+        Map<Integer, byte[]> slots = new TreeMap<>();
+        int pos = 0;
+        long bits = bitmap;
+        while (bits != 0) {
+            int slot = Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+
+            int len = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (pos >= payload.length || shift > 28) throw new IllegalArgumentException("Truncated page payload");
+                int b = payload[pos++] & 0xFF;
+                len |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) break;
+            }
+            if (len < 0 || len > payload.length - pos) throw new IllegalArgumentException("Truncated page payload");
+            byte[] item = new byte[len];
+            System.arraycopy(payload, pos, item, 0, len);
+            pos += len;
+            slots.put(slot, item);
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.common.essential.MCEngineEssentialCommon;
+
+import java.util.List;
+
+/**
+ * Runs the ordered schema migrations of a vault backend through the shared database facade.
+ *
+ * <p>The applied version is recorded in {@code essential_vault_schema_version}, one row per
+ * step, and each step runs once per database. Steps must be idempotent ({@code IF NOT EXISTS}
+ * or an explicit existence check): databases created before schema versioning start at
+ * version 0 and replay every step over tables that already exist, and servers sharing a
+ * database may start at the same time. A failing step stops the run; it and every later
+ * step are retried on the next start.</p>
+ */
+public final class VaultSchemaMigrator {
+
+    /**
+     * One schema change.
+     *
+     * @param version     schema version after the step; ascending, starting at 1
+     * @param description what the step changes, for the log and the version table
+     * @param action      statements of the step
+     */
+    public record Step(int version, String description, Action action) {}
+
+    /**
+     * Statements of a step.
+     */
+    @FunctionalInterface
+    public interface Action {
+
+        /**
+         * Applies the step.
+         *
+         * @throws Exception if a statement fails
+         */
+        void apply() throws Exception;
+    }
+
+    /**
+     * Statements the migration itself runs; the shared facade outside of tests.
+     */
+    interface Database {
+
+        /**
+         * @param sql statement to execute
+         * @throws Exception if it fails
+         */
+        void execute(String sql) throws Exception;
+
+        /**
+         * @param sql query returning one value
+         * @return first column of the first row as text, or {@code null} without rows
+         * @throws Exception if it fails
+         */
+        String value(String sql) throws Exception;
+    }
+
+    private VaultSchemaMigrator() {}
+
+    /**
+     * Applies every step newer than the recorded version, in order.
+     *
+     * @param dialect dialect of the shared database
+     * @param steps   steps in ascending version order
+     * @param logger  logger wrapper (nullable)
+     * @return schema version afterwards
+     * @throws Exception if the version cannot be read or a step fails
+     */
+    public static int migrate(VaultDialect dialect, List<Step> steps, MCEngineExtensionLogger logger) throws Exception {
+        return migrate(new Database() {
+            @Override
+            public void execute(String sql) {
+                db().executeQuery(sql);
+            }
+
+            @Override
+            public String value(String sql) {
+                return db().getValue(sql, String.class);
+            }
+        }, dialect, steps, logger);
+    }
+
+    /** {@link #migrate(VaultDialect, List, MCEngineExtensionLogger)} over the given statements. */
+    static int migrate(Database database, VaultDialect dialect, List<Step> steps, MCEngineExtensionLogger logger) throws Exception {
+        database.execute(dialect.createSchemaVersionTable());
+        String recorded = database.value("SELECT " + dialect.asText("COALESCE(MAX(version), 0)") +
+                " FROM essential_vault_schema_version");
+        int current = recorded == null || recorded.isBlank() ? 0 : Integer.parseInt(recorded.trim());
+        int latest = steps.isEmpty() ? 0 : steps.get(steps.size() - 1).version();
+        if (current > latest) {
+            if (logger != null) logger.warning("[VaultDB] " + dialect.displayName() + " schema version " + current +
+                    " is newer than this build knows (" + latest + "); leaving it unchanged.");
+            return current;
+        }
+
+        int previous = 0;
+        for (Step step : steps) {
+            if (step.version() <= previous) {
+                throw new IllegalStateException("schema steps out of order at version " + step.version());
+            }
+            previous = step.version();
+            if (step.version() <= current) continue;
+
+            step.action().apply();
+            // Another server may have applied and recorded the same step meanwhile
+            database.execute(dialect.insertIgnore("essential_vault_schema_version", "version, description, applied_at",
+                    step.version() + ", '" + step.description().replace("'", "''") + "', CURRENT_TIMESTAMP"));
+            current = step.version();
+            if (logger != null) logger.info("[VaultDB] " + dialect.displayName() + " schema migrated to version " +
+                    current + ": " + step.description() + ".");
+        }
+        return current;
+    }
+
+    /** DB facade shortcut. */
+    private static MCEngineEssentialCommon db() {
+        return MCEngineEssentialCommon.getApi();
+    }
+}
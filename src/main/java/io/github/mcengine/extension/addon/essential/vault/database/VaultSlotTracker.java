@@ -0,0 +1,254 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import io.github.mcengine.extension.addon.essential.vault.util.ContentHash;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Remembers what each vault page looked like the last time it was read from or
+ * written to the database, so saves only touch slots that actually changed.
+ *
+ * <p>For every tracked page the tracker keeps a SHA-256 digest per occupied slot,
+ * plus the last persisted rows/title and meta version per player. Pages without a
+ * baseline (never loaded, evicted, or invalidated after a failed write) are reported
+ * as a full rewrite. The number of tracked pages is bounded; the least recently used
+ * baseline is dropped first.</p>
+ *
+ * <p>The version is what makes saves safe when several servers share one database:
+ * every save is conditional on it. A load that sees a newer version than the tracked
+ * one means another server wrote the vault, so the player's baselines are replaced.
+ * Besides the current version the tracker remembers the version this server last read
+ * rather than wrote itself, so a save can tell whether its page was loaded before or
+ * after another server's write (see {@link #expectedVersion(UUID, Long)}).</p>
+ */
+public final class VaultSlotTracker {
+
+    /** Version recorded for a player that has no meta row yet. */
+    public static final long NO_ROW = -1L;
+
+    /** Maximum number of tracked pages (and players for meta). */
+    private final int maxEntries;
+
+    /** Per-page slot digests; guarded by {@code this}. */
+    private final Map<VaultKey, Map<Integer, byte[]>> slots;
+
+    /** Per-player persisted meta; guarded by {@code this}. */
+    private final Map<UUID, Meta> metas;
+
+    /**
+     * Creates a tracker.
+     *
+     * @param maxEntries maximum number of tracked pages
+     */
+    public VaultSlotTracker(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.slots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<VaultKey, Map<Integer, byte[]>> eldest) {
+                return size() > VaultSlotTracker.this.maxEntries;
+            }
+        };
+        this.metas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Meta> eldest) {
+                return size() > VaultSlotTracker.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Records the raw slot payloads just read from the database as the page baseline.
+     * An existing baseline is kept, since it reflects a write at least as new as this read.
+     *
+     * @param key       vault page
+     * @param slotBytes slot to stored payload
+     */
+    public synchronized void recordLoaded(VaultKey key, Map<Integer, byte[]> slotBytes) {
+        if (!slots.containsKey(key)) slots.put(key, digest(slotBytes));
+    }
+
+    /**
+     * Records the rows/title and version just read from the database for a player. An
+     * existing entry is kept unless the read saw a newer version; then every baseline of
+     * the player is stale and is dropped.
+     *
+     * @param playerId player UUID
+     * @param rows     stored rows
+     * @param title    stored title (nullable)
+     * @param version  stored version, or {@link #NO_ROW} if the player has no meta row
+     */
+    public synchronized void recordLoadedMeta(UUID playerId, int rows, String title, long version) {
+        Meta known = metas.get(playerId);
+        if (known != null && known.version >= version) return;
+        if (known != null) slots.keySet().removeIf(k -> k.playerId().equals(playerId));
+        metas.put(playerId, new Meta(rows, title, version, version));
+    }
+
+    /**
+     * @param playerId player UUID
+     * @return version the next save of the player must find, or {@code null} if unknown
+     */
+    public synchronized Long version(UUID playerId) {
+        Meta m = metas.get(playerId);
+        return m == null ? null : m.version;
+    }
+
+    /**
+     * Picks the version a save must find. A page loaded no earlier than the last version
+     * this server read has only been changed by this server since, so the tracked version
+     * applies. A page loaded earlier keeps its own version, so the save fails if another
+     * server wrote in between; so does a page without a tracked version.
+     *
+     * @param playerId player UUID
+     * @param loaded   version the saved page was loaded at, or {@code null} if unknown
+     * @return version to expect, or {@code null} if neither is known
+     */
+    public synchronized Long expectedVersion(UUID playerId, Long loaded) {
+        Meta m = metas.get(playerId);
+        if (m == null) return loaded;
+        return loaded == null || loaded >= m.read ? m.version : loaded;
+    }
+
+    /**
+     * Records the version a save left behind while its other statements are still pending.
+     *
+     * @param playerId player UUID
+     * @param version  stored version
+     */
+    public synchronized void advanceVersion(UUID playerId, long version) {
+        Meta m = metas.get(playerId);
+        if (m != null) metas.put(playerId, new Meta(m.rows, m.title, version, m.read));
+    }
+
+    /**
+     * @param key vault page
+     * @return copy of the page's slot digests, or {@code null} if it has no baseline
+     */
+    public synchronized Map<Integer, byte[]> baseline(VaultKey key) {
+        Map<Integer, byte[]> base = slots.get(key);
+        return base == null ? null : new HashMap<>(base);
+    }
+
+    /**
+     * Computes the statements needed to bring the stored page in line with {@code current}.
+     *
+     * @param key       vault page
+     * @param current   slot to payload that should be stored
+     * @return diff against the baseline, or a full rewrite if none is known
+     */
+    public synchronized Diff diff(VaultKey key, Map<Integer, byte[]> current) {
+        Map<Integer, byte[]> base = slots.get(key);
+        if (base == null) return new Diff(true, new TreeMap<>(current), Collections.emptySet());
+
+        Map<Integer, byte[]> upserts = new TreeMap<>();
+        for (Map.Entry<Integer, byte[]> e : current.entrySet()) {
+            byte[] prev = base.get(e.getKey());
+            if (prev == null || !Arrays.equals(prev, ContentHash.sha256(e.getValue()))) {
+                upserts.put(e.getKey(), e.getValue());
+            }
+        }
+        Set<Integer> deletes = new TreeSet<>();
+        for (Integer slot : base.keySet()) {
+            if (!current.containsKey(slot)) deletes.add(slot);
+        }
+        return new Diff(false, upserts, deletes);
+    }
+
+    /**
+     * @param playerId player UUID
+     * @param rows     rows about to be stored
+     * @param title    title about to be stored (nullable)
+     * @return {@code true} if the stored meta is unknown or differs
+     */
+    public synchronized boolean metaChanged(UUID playerId, int rows, String title) {
+        Meta m = metas.get(playerId);
+        return m == null || m.rows != rows || !Objects.equals(m.title, title);
+    }
+
+    /**
+     * Marks a page (and its owner's meta) as persisted with the given contents.
+     *
+     * @param key     vault page
+     * @param current slot to payload that was stored
+     * @param rows    rows that were stored
+     * @param title    title that was stored (nullable)
+     * @param expected version the write found
+     * @param version  version the write left behind
+     */
+    public synchronized void commit(VaultKey key, Map<Integer, byte[]> current, int rows, String title, long expected, long version) {
+        slots.put(key, digest(current));
+        Meta m = metas.get(key.playerId());
+        // The version found was read by this server unless this server wrote it (or this write, for another page)
+        long read = m != null && (m.version == expected || m.version == version) ? m.read : expected;
+        metas.put(key.playerId(), new Meta(rows, title, version, read));
+    }
+
+    /**
+     * Drops the baseline of a page, forcing the next save to rewrite it fully.
+     * Used when a write failed part-way and the stored state is unknown.
+     *
+     * @param key vault page
+     */
+    public synchronized void forget(VaultKey key) {
+        slots.remove(key);
+        metas.remove(key.playerId());
+    }
+
+    /**
+     * Drops every baseline of a player.
+     *
+     * @param playerId player UUID
+     */
+    public synchronized void forget(UUID playerId) {
+        slots.keySet().removeIf(k -> k.playerId().equals(playerId));
+        metas.remove(playerId);
+    }
+
+    /**
+     * Hashes each payload of a slot map the way baselines are stored.
+     *
+     * @param slotBytes slot to payload
+     * @return slot to SHA-256 digest
+     */
+    public static Map<Integer, byte[]> digest(Map<Integer, byte[]> slotBytes) {
+        Map<Integer, byte[]> out = new HashMap<>(Math.max(4, slotBytes.size() * 2));
+        slotBytes.forEach((slot, bytes) -> out.put(slot, ContentHash.sha256(bytes)));
+        return out;
+    }
+
+    /**
+     * Last persisted rows/title and version of a player.
+     *
+     * @param version current version
+     * @param read    last version read from the database rather than left by this server's own writes
+     */
+    private record Meta(int rows, String title, long version, long read) {}
+
+    /**
+     * Statements needed to persist a page.
+     *
+     * @param full    {@code true} if the page must be deleted and rewritten entirely
+     * @param upserts slots (ascending) whose payload must be inserted or replaced;
+     *                every occupied slot when {@code full}
+     * @param deletes slots (ascending) whose row must be deleted; empty when {@code full}
+     */
+    public record Diff(boolean full, Map<Integer, byte[]> upserts, Set<Integer> deletes) {
+
+        /**
+         * @return {@code true} if nothing needs to be written
+         */
+        public boolean isEmpty() {
+            return !full && upserts.isEmpty() && deletes.isEmpty();
+        }
+    }
+}
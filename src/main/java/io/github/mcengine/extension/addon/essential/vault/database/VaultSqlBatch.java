@@ -0,0 +1,86 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds multi-row {@code INSERT ... VALUES (...), (...)} statements from individual
+ * row tuples, splitting them so no statement exceeds a row or size bound.
+ *
+ * <p>The bounds stay below the defaults of all supported dialects (SQLite's
+ * {@code SQLITE_MAX_SQL_LENGTH}, MySQL's {@code max_allowed_packet}).</p>
+ */
+public final class VaultSqlBatch {
+
+    /** Maximum number of row tuples per statement. */
+    public static final int MAX_ROWS = 500;
+
+    /** Maximum statement length in characters. */
+    public static final int MAX_CHARS = 512 * 1024;
+
+    /** Statement head up to and including {@code VALUES }. */
+    private final String prefix;
+
+    /** Statement tail appended after the last tuple (e.g., upsert clause). */
+    private final String suffix;
+
+    /** Completed statements. */
+    private final List<String> statements = new ArrayList<>();
+
+    /** Statement under construction, or {@code null}. */
+    private StringBuilder current;
+
+    /** Tuples in {@link #current}. */
+    private int rows;
+
+    /**
+     * Creates a builder.
+     *
+     * @param prefix statement head, e.g. {@code "INSERT INTO t (a, b) VALUES "}
+     * @param suffix statement tail, e.g. an {@code ON CONFLICT} clause (may be empty)
+     */
+    public VaultSqlBatch(String prefix, String suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix == null ? "" : suffix;
+    }
+
+    /**
+     * Appends a row tuple such as {@code "('uuid', 0, 3, X'AB')"}.
+     *
+     * @param tuple parenthesized row literal
+     */
+    public void addRow(String tuple) {
+        if (current != null && (rows >= MAX_ROWS || current.length() + tuple.length() + suffix.length() + 2 > MAX_CHARS)) {
+            finish();
+        }
+        if (current == null) {
+            current = new StringBuilder(Math.min(MAX_CHARS, prefix.length() + tuple.length() * 8)).append(prefix);
+        } else {
+            current.append(", ");
+        }
+        current.append(tuple);
+        rows++;
+    }
+
+    /**
+     * @return {@code true} if no tuple was added
+     */
+    public boolean isEmpty() {
+        return statements.isEmpty() && current == null;
+    }
+
+    /**
+     * @return all statements, in the order their tuples were added
+     */
+    public List<String> statements() {
+        if (current != null) finish();
+        return statements;
+    }
+
+    /** Closes the statement under construction. */
+    private void finish() {
+        statements.add(current.append(suffix).toString());
+        current = null;
+        rows = 0;
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+/**
+ * Physical layout used to store vault items.
+ */
+public enum VaultStorageLayout {
+
+    /** One {@code essential_vault_item} row per occupied slot. */
+    SLOT,
+
+    /** One {@code essential_vault_page} row per page: slot bitmap plus packed payload. */
+    PAGE,
+
+    /**
+     * One {@code essential_vault_slot_ref} row per occupied slot pointing at a shared,
+     * reference-counted {@code essential_vault_blob} row keyed by the payload's SHA-256.
+     */
+    DEDUP;
+
+    /**
+     * Parses the {@code storage.layout} config value.
+     *
+     * @param value config value (case-insensitive); unknown or {@code null} values mean {@link #SLOT}
+     * @return layout
+     */
+    public static VaultStorageLayout fromConfig(String value) {
+        if (value == null) return SLOT;
+        return switch (value.trim().toLowerCase()) {
+            case "page", "blob" -> PAGE;
+            case "dedup", "content" -> DEDUP;
+            default -> SLOT;
+        };
+    }
+}
@@ -0,0 +1,330 @@
+package io.github.mcengine.extension.addon.essential.vault.database.cache;
+
+import io.github.mcengine.extension.addon.essential.vault.database.VaultChange;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.StoredItem;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caching decorator for a {@link VaultDB}.
+ *
+ * <p>Keeps the last known contents of recently used vault pages in memory so that
+ * repeated opens are served without touching the database. Entries are refreshed on
+ * every save, and evicted once idle for longer than {@code expireAfterAccessMillis}
+ * or when more than {@code maxEntries} pages are cached (least recently used first).</p>
+ *
+ * <p>Cached pages are stored as immutable {@link VaultSnapshot}s holding only serialized
+ * payloads, so idle entries keep no decoded stacks; every hit returns a fresh
+ * {@link PlayerVault} (decoded on first use) whose item map may be modified freely.</p>
+ *
+ * <p>A load is only cached if nothing touched the player while it ran: saves and
+ * {@link #invalidate(UUID)} bump a per-player generation, and a load that sees it change
+ * returns what it read without caching it. Failed loads are never cached.</p>
+ */
+public class VaultDBCache implements VaultDB {
+
+    /** Backing database accessor. */
+    private final VaultDB delegate;
+
+    /** Maximum number of cached vault pages. */
+    private final int maxEntries;
+
+    /** Idle time after which an entry is evicted, in milliseconds. */
+    private final long expireAfterAccessMillis;
+
+    /** Access-ordered entries; guarded by {@code this}. */
+    private final LinkedHashMap<VaultKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Generations of players with a load in progress; guarded by {@code this}. */
+    private final Map<UUID, Generation> generations = new HashMap<>();
+
+    /** Loads served from memory. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Loads that went to the database. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Entries dropped because of size or idle time. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates the cache.
+     *
+     * @param delegate                backing database accessor
+     * @param maxEntries              maximum number of cached vault pages
+     * @param expireAfterAccessMillis idle time before eviction, in milliseconds
+     */
+    public VaultDBCache(VaultDB delegate, int maxEntries, long expireAfterAccessMillis) {
+        this.delegate = delegate;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.expireAfterAccessMillis = Math.max(1000L, expireAfterAccessMillis);
+    }
+
+    @Override
+    public void ensureSchema() {
+        delegate.ensureSchema();
+    }
+
+    @Override
+    public PlayerVault loadPlayerVault(UUID playerId, int page, int defaultRows, String defaultTitle) {
+        VaultKey key = new VaultKey(playerId, page);
+        VaultSnapshot cached = get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.toPlayerVault();
+        }
+        misses.incrementAndGet();
+
+        long generation = startLoad(playerId);
+        PlayerVault loaded;
+        try {
+            loaded = delegate.loadPlayerVault(playerId, page, defaultRows, defaultTitle);
+        } catch (RuntimeException | Error e) {
+            finishLoad(key, null, generation);
+            throw e;
+        }
+        VaultSnapshot snapshot = VaultSnapshot.of(loaded, System.currentTimeMillis());
+        // A save that raced with this load wins; never replace it with what was read before it.
+        VaultSnapshot winner = finishLoad(key, snapshot, generation);
+        return winner == null || winner == snapshot ? loaded : winner.toPlayerVault();
+    }
+
+    @Override
+    public boolean savePlayerVault(VaultSnapshot snapshot) {
+        // Cache first: if the write fails, the player still sees what they stored
+        // and the next close retries the save.
+        putSaved(snapshot);
+        return delegate.savePlayerVault(snapshot);
+    }
+
+    @Override
+    public boolean saveBatch(List<VaultSnapshot> snapshots) {
+        for (VaultSnapshot snapshot : snapshots) {
+            putSaved(snapshot);
+        }
+        return delegate.saveBatch(snapshots);
+    }
+
+    @Override
+    public boolean clearPlayerVault(UUID playerId) {
+        invalidate(playerId);
+        return delegate.clearPlayerVault(playerId);
+    }
+
+    @Override
+    public boolean replacePlayerVault(UUID playerId, List<VaultSnapshot> pages) {
+        invalidate(playerId);
+        boolean ok = delegate.replacePlayerVault(playerId, pages);
+        // A load that ran during the replace may have cached the old pages
+        invalidate(playerId);
+        return ok;
+    }
+
+    @Override
+    public StoredItem nextLegacyItem(StoredItem after) {
+        return delegate.nextLegacyItem(after);
+    }
+
+    @Override
+    public boolean replaceItemBytes(StoredItem row, byte[] replacement) {
+        // Same item, different encoding: cached contents stay valid
+        return delegate.replaceItemBytes(row, replacement);
+    }
+
+    @Override
+    public VaultKey migrateNextSlotPage() {
+        // Same items, different layout: cached contents stay valid
+        return delegate.migrateNextSlotPage();
+    }
+
+    @Override
+    public int collectUnreferencedBlobs(int limit) {
+        // Only blobs no slot points at are removed: cached contents stay valid
+        return delegate.collectUnreferencedBlobs(limit);
+    }
+
+    @Override
+    public UUID nextVaultOwner(UUID lower, boolean inclusive, UUID upper) {
+        return delegate.nextVaultOwner(lower, inclusive, upper);
+    }
+
+    @Override
+    public List<Integer> storedPages(UUID playerId) {
+        return delegate.storedPages(playerId);
+    }
+
+    @Override
+    public long latestChangeId() {
+        return delegate.latestChangeId();
+    }
+
+    @Override
+    public List<VaultChange> changesSince(long afterId, int limit) {
+        return delegate.changesSince(afterId, limit);
+    }
+
+    @Override
+    public boolean purgeChanges(long retentionSeconds) {
+        return delegate.purgeChanges(retentionSeconds);
+    }
+
+    /**
+     * Drops every cached page of a player.
+     *
+     * @param playerId player UUID
+     */
+    public synchronized void invalidate(UUID playerId) {
+        entries.keySet().removeIf(k -> k.playerId().equals(playerId));
+        bump(playerId);
+    }
+
+    /**
+     * @return number of loads served from memory
+     */
+    public long hitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of loads that went to the database
+     */
+    public long missCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of entries evicted for size or idle time
+     */
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return fraction of loads served from memory (0 when nothing was loaded yet)
+     */
+    public double hitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * @return number of cached vault pages
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Looks up a live entry and refreshes its access time. */
+    private synchronized VaultSnapshot get(VaultKey key) {
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+        Entry e = entries.get(key);
+        if (e == null) return null;
+        e.lastAccess = now;
+        return e.snapshot;
+    }
+
+    /** Inserts or replaces an entry. */
+    private synchronized void put(VaultKey key, VaultSnapshot snapshot) {
+        long now = System.currentTimeMillis();
+        entries.put(key, new Entry(snapshot, now));
+        evictExpired(now);
+        evictOverflow();
+    }
+
+    /** Caches a page about to be saved; loads of the player still running are not cached. */
+    private synchronized void putSaved(VaultSnapshot snapshot) {
+        put(VaultKey.of(snapshot), snapshot.compact());
+        bump(snapshot.getPlayerId());
+    }
+
+    /** Registers a load of the player's vault; returns the generation it starts at. */
+    private synchronized long startLoad(UUID playerId) {
+        Generation g = generations.computeIfAbsent(playerId, id -> new Generation());
+        g.loads++;
+        return g.value;
+    }
+
+    /**
+     * Ends a load started with {@link #startLoad(UUID)}. The loaded page is cached unless an
+     * entry is present or the player's generation changed while it ran.
+     *
+     * @param snapshot   loaded page, or {@code null} if the load failed
+     * @param generation generation the load started at
+     * @return the cached snapshot afterwards, or {@code null} if nothing is cached
+     */
+    private synchronized VaultSnapshot finishLoad(VaultKey key, VaultSnapshot snapshot, long generation) {
+        Generation g = generations.get(key.playerId());
+        boolean current = g.value == generation;
+        if (--g.loads == 0) generations.remove(key.playerId());
+        if (snapshot == null) return null;
+
+        Entry existing = entries.get(key);
+        if (existing != null) return existing.snapshot;
+        if (!current) return null;
+        put(key, snapshot);
+        return snapshot;
+    }
+
+    /** Marks loads of the player still running as stale. */
+    private void bump(UUID playerId) {
+        Generation g = generations.get(playerId);
+        if (g != null) g.value++;
+    }
+
+    /** Removes idle entries; iteration starts at the least recently accessed one. */
+    private void evictExpired(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().lastAccess < expireAfterAccessMillis) break;
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /** Removes least recently accessed entries above the size bound. */
+    private void evictOverflow() {
+        Iterator<Map.Entry<VaultKey, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /** Generation of a player plus the number of its loads in progress. */
+    private static final class Generation {
+
+        /** Bumped by every save and invalidation of the player. */
+        private long value;
+
+        /** Loads in progress; the generation is dropped when none are left. */
+        private int loads;
+    }
+
+    /** Cached page plus its last access time. */
+    private static final class Entry {
+
+        /** Cached contents. */
+        private final VaultSnapshot snapshot;
+
+        /** Last access in milliseconds. */
+        private long lastAccess;
+
+        private Entry(VaultSnapshot snapshot, long lastAccess) {
+            this.snapshot = snapshot;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
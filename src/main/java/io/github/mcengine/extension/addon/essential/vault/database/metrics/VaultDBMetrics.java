@@ -0,0 +1,169 @@
+package io.github.mcengine.extension.addon.essential.vault.database.metrics;
+
+import io.github.mcengine.extension.addon.essential.vault.database.VaultChange;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.metrics.VaultMetrics;
+import io.github.mcengine.extension.addon.essential.vault.metrics.VaultMetrics.Operation;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.StoredItem;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Instrumenting decorator for a {@link VaultDB}.
+ *
+ * <p>Times every load, save and clear that reaches the backend and records the outcome,
+ * slot counts and saved item bytes in a {@link VaultMetrics}. It sits directly on the
+ * backend, below the cache, so the numbers describe real database work; bytes read are
+ * reported by the backends themselves as rows arrive.</p>
+ */
+public class VaultDBMetrics implements VaultDB {
+
+    /** Backing database accessor. */
+    private final VaultDB delegate;
+
+    /** Metrics sink. */
+    private final VaultMetrics metrics;
+
+    /**
+     * Creates the decorator.
+     *
+     * @param delegate backing database accessor
+     * @param metrics  metrics sink
+     */
+    public VaultDBMetrics(VaultDB delegate, VaultMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void ensureSchema() {
+        delegate.ensureSchema();
+    }
+
+    @Override
+    public PlayerVault loadPlayerVault(UUID playerId, int page, int defaultRows, String defaultTitle) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            PlayerVault loaded = delegate.loadPlayerVault(playerId, page, defaultRows, defaultTitle);
+            metrics.recordSlotsRead(loaded.getItemCount());
+            ok = true;
+            return loaded;
+        } finally {
+            metrics.record(Operation.LOAD, System.nanoTime() - start, ok);
+        }
+    }
+
+    @Override
+    public boolean savePlayerVault(VaultSnapshot snapshot) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            ok = delegate.savePlayerVault(snapshot);
+            if (ok) recordWritten(List.of(snapshot));
+            return ok;
+        } finally {
+            metrics.record(Operation.SAVE, System.nanoTime() - start, ok);
+        }
+    }
+
+    @Override
+    public boolean saveBatch(List<VaultSnapshot> snapshots) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            ok = delegate.saveBatch(snapshots);
+            if (ok) recordWritten(snapshots);
+            return ok;
+        } finally {
+            metrics.record(Operation.SAVE, System.nanoTime() - start, ok);
+        }
+    }
+
+    @Override
+    public boolean clearPlayerVault(UUID playerId) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            ok = delegate.clearPlayerVault(playerId);
+            return ok;
+        } finally {
+            metrics.record(Operation.CLEAR, System.nanoTime() - start, ok);
+        }
+    }
+
+    @Override
+    public boolean replacePlayerVault(UUID playerId, List<VaultSnapshot> pages) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            ok = delegate.replacePlayerVault(playerId, pages);
+            if (ok) recordWritten(pages);
+            return ok;
+        } finally {
+            metrics.record(Operation.SAVE, System.nanoTime() - start, ok);
+        }
+    }
+
+    @Override
+    public StoredItem nextLegacyItem(StoredItem after) {
+        return delegate.nextLegacyItem(after);
+    }
+
+    @Override
+    public boolean replaceItemBytes(StoredItem row, byte[] replacement) {
+        return delegate.replaceItemBytes(row, replacement);
+    }
+
+    @Override
+    public VaultKey migrateNextSlotPage() {
+        return delegate.migrateNextSlotPage();
+    }
+
+    @Override
+    public int collectUnreferencedBlobs(int limit) {
+        return delegate.collectUnreferencedBlobs(limit);
+    }
+
+    @Override
+    public UUID nextVaultOwner(UUID lower, boolean inclusive, UUID upper) {
+        return delegate.nextVaultOwner(lower, inclusive, upper);
+    }
+
+    @Override
+    public List<Integer> storedPages(UUID playerId) {
+        return delegate.storedPages(playerId);
+    }
+
+    @Override
+    public long latestChangeId() {
+        return delegate.latestChangeId();
+    }
+
+    @Override
+    public List<VaultChange> changesSince(long afterId, int limit) {
+        return delegate.changesSince(afterId, limit);
+    }
+
+    @Override
+    public boolean purgeChanges(long retentionSeconds) {
+        return delegate.purgeChanges(retentionSeconds);
+    }
+
+    /** Counts the pages, slots and item bytes of saved snapshots. */
+    private void recordWritten(List<VaultSnapshot> snapshots) {
+        long slots = 0;
+        long bytes = 0;
+        for (VaultSnapshot snapshot : snapshots) {
+            for (byte[] data : snapshot.getSlotBytes().values()) {
+                slots++;
+                bytes += data.length;
+            }
+        }
+        metrics.recordWritten(snapshots.size(), slots, bytes);
+    }
+}
@@ -1,72 +1,31 @@
 package io.github.mcengine.extension.addon.essential.vault.database.sqlite;
 
 import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
-import io.github.mcengine.common.essential.MCEngineEssentialCommon;
+import io.github.mcengine.extension.addon.essential.vault.database.AbstractVaultDB;
 import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
-import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
-import io.github.mcengine.extension.addon.essential.vault.model.VaultItem;
-import io.github.mcengine.extension.addon.essential.vault.util.ItemIO;
-import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.ItemStack;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDBOptions;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDialect;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultSchemaMigrator;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.List;
 
 /**
- * SQLite implementation of {@link VaultDB}.
+ * SQLite implementation of {@link VaultDB}; the shared logic lives in {@link AbstractVaultDB}.
  */
-public class VaultDBSQLite implements VaultDB {
-
-    /** Logger for reporting status and problems. */
-    private final MCEngineExtensionLogger logger;
+public class VaultDBSQLite extends AbstractVaultDB {
 
     /**
      * Constructs the DB helper.
      *
-     * @param logger logger wrapper
+     * @param logger  logger wrapper
+     * @param options backend settings (nullable: {@link VaultDBOptions#DEFAULTS})
      */
-    public VaultDBSQLite(MCEngineExtensionLogger logger) {
-        this.logger = logger;
-    }
-
-    /** DB facade shortcut. */
-    private static MCEngineEssentialCommon db() {
-        return MCEngineEssentialCommon.getApi();
-    }
-
-    /** Escape single quotes for SQL string literal. */
-    private static String q(String s) {
-        if (s == null) return "NULL";
-        return "'" + s.replace("'", "''") + "'";
-    }
-
-    /** Convert bytes to upper-hex. */
-    private static String toHex(byte[] b) {
-        char[] hexArray = "0123456789ABCDEF".toCharArray();
-        char[] out = new char[b.length * 2];
-        for (int i = 0; i < b.length; i++) {
-            int v = b[i] & 0xFF;
-            out[i * 2] = hexArray[v >>> 4];
-            out[i * 2 + 1] = hexArray[v & 0x0F];
-        }
-        return new String(out);
-    }
-
-    /** Parse hex to bytes. */
-    private static byte[] fromHex(String hex) {
-        if (hex == null || hex.isEmpty()) return new byte[0];
-        int len = hex.length();
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
-                    + Character.digit(hex.charAt(i + 1), 16));
-        }
-        return data;
+    public VaultDBSQLite(MCEngineExtensionLogger logger, VaultDBOptions options) {
+        super(VaultDialect.SQLITE, logger, options);
     }
 
     @Override
-    public void ensureSchema() {
+    protected List<VaultSchemaMigrator.Step> schemaSteps() {
         final String createMeta = """
             CREATE TABLE IF NOT EXISTS essential_vault_meta (
                 player_uuid VARCHAR(36) PRIMARY KEY,
@@ -84,104 +43,71 @@ public class VaultDBSQLite implements VaultDB {
                 PRIMARY KEY (player_uuid, page, slot)
             );
             """;
-        try {
-            db().executeQuery(createMeta);
-            db().executeQuery(createItem);
-            if (logger != null) logger.info("[VaultDB] SQLite schema ensured.");
-        } catch (Exception e) {
-            if (logger != null) logger.warning("[VaultDB] SQLite schema ensure failed: " + e.getMessage());
-        }
-    }
-
-    @Override
-    public PlayerVault loadPlayerVault(UUID playerId, int defaultRows, String defaultTitle) {
-        int rows = defaultRows;
-        String title = defaultTitle;
-        Map<Integer, VaultItem> items = new HashMap<>();
-
-        try {
-            String packed = db().getValue(
-                "SELECT (CAST(rows AS TEXT) || '|' || IFNULL(title,'')) FROM essential_vault_meta WHERE player_uuid = " + q(playerId.toString()),
-                String.class
+        final String createPage = """
+            CREATE TABLE IF NOT EXISTS essential_vault_page (
+                player_uuid VARCHAR(36) NOT NULL,
+                page INT NOT NULL DEFAULT 0,
+                slot_bitmap BIGINT NOT NULL,
+                payload BLOB NOT NULL,
+                PRIMARY KEY (player_uuid, page)
             );
-            if (packed != null) {
-                int sep = packed.indexOf('|');
-                if (sep >= 0) {
-                    rows = Integer.parseInt(packed.substring(0, sep));
-                    String t = packed.substring(sep + 1);
-                    if (t != null && !t.isBlank()) title = t;
-                }
-            }
-        } catch (Exception e) {
-            if (logger != null) logger.warning("[VaultDB] SQLite load meta failed: " + e.getMessage());
-        }
-
-        try {
-            String packed = db().getValue(
-                "SELECT GROUP_CONCAT(slot || ':' || hex(item_bytes), ';') " +
-                "FROM essential_vault_item WHERE player_uuid = " + q(playerId.toString()) + " AND page = 0",
-                String.class
+            """;
+        final String createBlob = """
+            CREATE TABLE IF NOT EXISTS essential_vault_blob (
+                hash CHAR(64) PRIMARY KEY,
+                refcount INT NOT NULL,
+                item_bytes BLOB NOT NULL
+            );
+            """;
+        final String createSlotRef = """
+            CREATE TABLE IF NOT EXISTS essential_vault_slot_ref (
+                player_uuid VARCHAR(36) NOT NULL,
+                page INT NOT NULL DEFAULT 0,
+                slot INT NOT NULL,
+                blob_hash CHAR(64) NOT NULL,
+                PRIMARY KEY (player_uuid, page, slot)
+            );
+            """;
+        final String createSlotRefIndex = """
+            CREATE INDEX IF NOT EXISTS idx_essential_vault_slot_ref_blob ON essential_vault_slot_ref (blob_hash);
+            """;
+        final String createChange = """
+            CREATE TABLE IF NOT EXISTS essential_vault_change (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                player_uuid VARCHAR(36) NOT NULL,
+                page INT NOT NULL,
+                origin VARCHAR(64) NOT NULL,
+                changed_at TIMESTAMP
             );
-            if (packed != null && !packed.isBlank()) {
-                for (String pair : packed.split(";")) {
-                    int idx = pair.indexOf(':');
-                    if (idx > 0) {
-                        int slot = Integer.parseInt(pair.substring(0, idx));
-                        byte[] data = fromHex(pair.substring(idx + 1));
-                        ItemStack stack = ItemIO.fromBytes(data);
-                        if (stack != null) items.put(slot, new VaultItem(slot, stack));
-                    }
+            """;
+        return List.of(
+            new VaultSchemaMigrator.Step(1, "vault tables", () -> {
+                db().executeQuery(createMeta);
+                db().executeQuery(createItem);
+                db().executeQuery(createPage);
+                db().executeQuery(createBlob);
+                db().executeQuery(createSlotRef);
+                db().executeQuery(createSlotRefIndex);
+            }),
+            new VaultSchemaMigrator.Step(2, "meta version column for optimistic saves", () -> {
+                String hasVersion = db().getValue("SELECT CAST(COUNT(*) AS TEXT) FROM pragma_table_info('essential_vault_meta') WHERE name = 'version'", String.class);
+                if (hasVersion != null && "0".equals(hasVersion.trim())) {
+                    db().executeQuery("ALTER TABLE essential_vault_meta ADD COLUMN version BIGINT NOT NULL DEFAULT 0");
                 }
-            }
-        } catch (Exception e) {
-            if (logger != null) logger.warning("[VaultDB] SQLite load items failed: " + e.getMessage());
-        }
-
-        return new PlayerVault(playerId, rows, title, 0, items);
-    }
-
-    @Override
-    public boolean savePlayerVault(PlayerVault vault, Inventory inventory) {
-        try {
-            // Upsert meta (SQLite ON CONFLICT)
-            String upsert = "INSERT INTO essential_vault_meta (player_uuid, rows, title, updated_at) VALUES (" +
-                    q(vault.getPlayerId().toString()) + ", " + vault.getRows() + ", " + q(vault.getTitle()) + ", CURRENT_TIMESTAMP) " +
-                    "ON CONFLICT(player_uuid) DO UPDATE SET rows=excluded.rows, title=excluded.title, updated_at=excluded.updated_at";
-            db().executeQuery(upsert);
-
-            // Clear page items
-            db().executeQuery("DELETE FROM essential_vault_item WHERE player_uuid = " +
-                    q(vault.getPlayerId().toString()) + " AND page = " + vault.getPage());
-
-            // Insert items; SQLite blob literal X'...'
-            for (int slot = 0; slot < inventory.getSize(); slot++) {
-                ItemStack stack = inventory.getItem(slot);
-                if (stack == null || stack.getType().isAir()) continue;
-                byte[] bytes = ItemIO.toBytes(stack);
-                if (bytes == null || bytes.length == 0) continue;
-                String sql = "INSERT INTO essential_vault_item (player_uuid, page, slot, item_bytes) VALUES (" +
-                        q(vault.getPlayerId().toString()) + ", " + vault.getPage() + ", " + slot +
-                        ", X'" + toHex(bytes) + "')";
-                db().executeQuery(sql);
-            }
-
-            if (logger != null) logger.info("[VaultDB] SQLite saved vault for " + vault.getPlayerId());
-            return true;
-        } catch (Exception e) {
-            if (logger != null) logger.warning("[VaultDB] SQLite save failed: " + e.getMessage());
-            return false;
-        }
-    }
-
-    @Override
-    public boolean clearPlayerVault(UUID playerId) {
-        try {
-            db().executeQuery("DELETE FROM essential_vault_item WHERE player_uuid = " + q(playerId.toString()));
-            db().executeQuery("DELETE FROM essential_vault_meta WHERE player_uuid = " + q(playerId.toString()));
-            return true;
-        } catch (Exception e) {
-            if (logger != null) logger.warning("[VaultDB] SQLite clear failed: " + e.getMessage());
-            return false;
-        }
+            }),
+            new VaultSchemaMigrator.Step(3, "change feed", () -> {
+                db().executeQuery(createChange);
+            }),
+            new VaultSchemaMigrator.Step(4, "indexes for time-based lookups and purges", () -> {
+                db().executeQuery("CREATE INDEX IF NOT EXISTS idx_essential_vault_meta_updated_at ON essential_vault_meta (updated_at)");
+                db().executeQuery("CREATE INDEX IF NOT EXISTS idx_essential_vault_change_changed_at ON essential_vault_change (changed_at)");
+            }),
+            new VaultSchemaMigrator.Step(5, "meta save token for facade version checks", () -> {
+                String hasToken = db().getValue("SELECT CAST(COUNT(*) AS TEXT) FROM pragma_table_info('essential_vault_meta') WHERE name = 'save_token'", String.class);
+                if (hasToken != null && "0".equals(hasToken.trim())) {
+                    db().executeQuery("ALTER TABLE essential_vault_meta ADD COLUMN save_token VARCHAR(36)");
+                }
+            })
+        );
     }
 }
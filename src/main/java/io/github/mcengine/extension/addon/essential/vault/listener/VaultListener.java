@@ -1,90 +1,147 @@
-package io.github.mcengine.extension.addon.essential.vault.listener;
-
-import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
-import io.github.mcengine.extension.addon.essential.vault.command.VaultCommand;
-import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
-import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
-import org.bukkit.ChatColor;
-import org.bukkit.entity.Player;
-import org.bukkit.event.Listener;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.inventory.InventoryCloseEvent;
-import org.bukkit.metadata.MetadataValue;
-import org.bukkit.plugin.Plugin;
-import org.bukkit.inventory.Inventory;
-
-import java.util.List;
-
-/**
- * Event listener for the Vault extension.
- */
-public class VaultListener implements Listener {
-
-    /**
-     * Plugin instance used by this listener for task scheduling and metadata context.
-     */
-    private final Plugin plugin;
-
-    /**
-     * Logger instance for the Vault extension.
-     * <p>
-     * Used for lightweight diagnostics around open/close persistence.
-     */
-    private final MCEngineExtensionLogger logger;
-
-    /**
-     * Database accessor for vault persistence.
-     */
-    private final VaultDB vaultDB;
-
-    /**
-     * Constructs a new {@link VaultListener}.
-     *
-     * @param plugin The plugin instance.
-     * @param logger The logger instance.
-     * @param vaultDB Database accessor to use.
-     */
-    public VaultListener(Plugin plugin, MCEngineExtensionLogger logger, VaultDB vaultDB) {
-        this.plugin = plugin;
-        this.logger = logger;
-        this.vaultDB = vaultDB;
-    }
-
-    /**
-     * Persists the player's vault contents when they close a vault inventory.
-     *
-     * <p>Detection is based on a metadata flag set by {@code /vault} command:
-     * the first inventory closed after opening is treated as the vault and saved.</p>
-     *
-     * @param event inventory close event
-     */
-    @EventHandler
-    public void onInventoryClose(InventoryCloseEvent event) {
-        if (!(event.getPlayer() instanceof Player player)) return;
-
-        // Check vault-open metadata
-        List<MetadataValue> meta = player.getMetadata(VaultCommand.metaKey());
-        boolean flagged = meta.stream().anyMatch(m -> m != null && m.asBoolean());
-        if (!flagged) return;
-
-        // Clear flag immediately to avoid double-saves on other closes
-        player.removeMetadata(VaultCommand.metaKey(), plugin);
-
-        // Persist this inventory as the player's vault
-        Inventory inv = event.getInventory();
-        int rows = Math.max(1, Math.min(6, inv.getSize() / 9));
-        String title = event.getView().getTitle();
-
-        PlayerVault pv = new PlayerVault(player.getUniqueId(), rows, title, 0, java.util.Collections.emptyMap());
-        vaultDB.captureInventory(pv, inv);
-        boolean ok = vaultDB.savePlayerVault(pv, inv);
-
-        if (ok) {
-            player.sendMessage(ChatColor.GREEN + "Vault saved.");
-            logger.info("Persisted vault for " + player.getName() + " (" + (rows * 9) + " slots).");
-        } else {
-            player.sendMessage(ChatColor.RED + "Vault could not be saved. Please contact an admin.");
-            logger.warning("Failed to persist vault for " + player.getName() + ".");
-        }
-    }
-}
+package io.github.mcengine.extension.addon.essential.vault.listener;
+
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.extension.addon.essential.vault.command.VaultCommand;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import io.github.mcengine.extension.addon.essential.vault.persistence.VaultWriteBehind;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Listener;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.metadata.MetadataValue;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+
+/**
+ * Event listener for the Vault extension.
+ */
+public class VaultListener implements Listener {
+
+    /**
+     * Plugin instance used by this listener for task scheduling and metadata context.
+     */
+    private final Plugin plugin;
+
+    /**
+     * Logger instance for the Vault extension.
+     * <p>
+     * Used for lightweight diagnostics around open/close persistence.
+     */
+    private final MCEngineExtensionLogger logger;
+
+    /**
+     * Write-behind queue that persists vault snapshots off the main thread.
+     */
+    private final VaultWriteBehind writeBehind;
+
+    /**
+     * Constructs a new {@link VaultListener}.
+     *
+     * @param plugin The plugin instance.
+     * @param logger The logger instance.
+     * @param writeBehind Write-behind queue used to persist vaults.
+     */
+    public VaultListener(Plugin plugin, MCEngineExtensionLogger logger, VaultWriteBehind writeBehind) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * Persists the player's vault contents when they close a vault inventory.
+     *
+     * <p>Detection is based on a metadata flag set by {@code /vault} command holding the
+     * open page: the first inventory closed after opening is treated as that page and saved.
+     * The inventory is snapshotted here on the main thread and written in the
+     * background; the player is told the outcome once the write completes.</p>
+     *
+     * @param event inventory close event
+     */
+    @EventHandler
+    public void onInventoryClose(InventoryCloseEvent event) {
+        if (!(event.getPlayer() instanceof Player player)) return;
+
+        Integer page = openPage(player);
+        if (page == null) return;
+
+        // Clear flag immediately to avoid double-saves on other closes
+        Long version = loadedVersion(player);
+        player.removeMetadata(VaultCommand.metaKey(), plugin);
+        player.removeMetadata(VaultCommand.versionKey(), plugin);
+
+        persist(player, event.getInventory(), event.getView().getTitle(), page, version);
+    }
+
+    /**
+     * Saves every vault that is still open and closes it. Used on shutdown: once the
+     * plugin is disabled no close event reaches this listener, so these vaults would
+     * otherwise never be saved.
+     *
+     * @return number of open vaults submitted for saving
+     */
+    public int saveOpenVaults() {
+        int saved = 0;
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            Integer page = openPage(player);
+            if (page == null) continue;
+            Long version = loadedVersion(player);
+            player.removeMetadata(VaultCommand.metaKey(), plugin);
+            player.removeMetadata(VaultCommand.versionKey(), plugin);
+
+            InventoryView view = player.getOpenInventory();
+            if (view.getType() == InventoryType.CRAFTING || view.getType() == InventoryType.CREATIVE) continue;
+            persist(player, view.getTopInventory(), view.getTitle(), page, version);
+            player.closeInventory();
+            saved++;
+        }
+        return saved;
+    }
+
+    /**
+     * @param player the player
+     * @return page of the vault the player has open, or {@code null} if none
+     */
+    private static Integer openPage(Player player) {
+        // Check vault-open metadata; its value is the open page
+        Integer page = null;
+        for (MetadataValue m : player.getMetadata(VaultCommand.metaKey())) {
+            if (m != null && m.value() instanceof Integer p) page = p;
+        }
+        return page;
+    }
+
+    /**
+     * @param player the player
+     * @return meta version the open vault page was loaded at, or {@code null} if unknown
+     */
+    private static Long loadedVersion(Player player) {
+        Long version = null;
+        for (MetadataValue m : player.getMetadata(VaultCommand.versionKey())) {
+            if (m != null && m.value() instanceof Long v) version = v;
+        }
+        return version;
+    }
+
+    /**
+     * Snapshots an inventory as the player's vault page and persists it in the background.
+     */
+    private void persist(Player player, Inventory inv, String title, int page, Long version) {
+        int rows = Math.max(1, Math.min(6, inv.getSize() / 9));
+        String name = player.getName();
+
+        VaultSnapshot snapshot = VaultSnapshot.capture(player.getUniqueId(), rows, title, page, version, inv);
+        writeBehind.submit(snapshot, ok -> {
+            if (ok) {
+                if (player.isOnline()) player.sendMessage(ChatColor.GREEN + "Vault saved.");
+                logger.info("Persisted vault page " + (page + 1) + " for " + name + " (" + (rows * 9) + " slots).");
+            } else {
+                if (player.isOnline()) player.sendMessage(ChatColor.RED + "Vault could not be saved. Please contact an admin.");
+                logger.warning("Failed to persist vault page " + (page + 1) + " for " + name + ".");
+            }
+        });
+    }
+}
@@ -0,0 +1,128 @@
+package io.github.mcengine.extension.addon.essential.vault.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets.
+ *
+ * <p>Samples are recorded in microseconds. Each power of two is split into four
+ * buckets, so reported percentiles are within about 25% of the true value while the
+ * whole histogram stays a fixed array of counters that any thread can update without
+ * locking. Values above about 38 hours land in the last bucket.</p>
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Buckets per power of two (2 bits of sub-bucket precision).
+     */
+    private static final int SUB_BUCKETS = 4;
+
+    /**
+     * Highest power of two with its own buckets.
+     */
+    private static final int MAX_EXPONENT = 36;
+
+    /**
+     * Number of buckets; the last one collects everything above {@link #MAX_EXPONENT}.
+     */
+    private static final int BUCKETS = MAX_EXPONENT * SUB_BUCKETS + 1;
+
+    /**
+     * Samples per bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Number of samples.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Sum of all samples, in microseconds.
+     */
+    private final AtomicLong sumMicros = new AtomicLong();
+
+    /**
+     * Largest sample, in microseconds.
+     */
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records one sample.
+     *
+     * @param nanos elapsed time in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0L, nanos / 1_000L);
+        counts.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * @return number of recorded samples
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * @return mean sample in milliseconds (0 when empty)
+     */
+    public double meanMillis() {
+        long n = count.get();
+        return n == 0 ? 0.0 : sumMicros.get() / 1_000.0 / n;
+    }
+
+    /**
+     * @return largest sample in milliseconds
+     */
+    public double maxMillis() {
+        return maxMicros.get() / 1_000.0;
+    }
+
+    /**
+     * Returns the value below which the given fraction of samples fall, as the upper
+     * bound of the bucket that holds it.
+     *
+     * @param quantile fraction between 0 and 1, e.g. 0.99
+     * @return percentile in milliseconds (0 when empty)
+     */
+    public double percentileMillis(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0.0;
+
+        long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(upperBound(i), maxMicros.get()) / 1_000.0;
+        }
+        return maxMillis();
+    }
+
+    /** Bucket index of a value in microseconds. */
+    private static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (micros >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return (exponent - 1) * SUB_BUCKETS + sub;
+    }
+
+    /** Largest value in microseconds that falls into a bucket. */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + 1;
+        long width = 1L << (exponent - 2);
+        long lower = (SUB_BUCKETS + bucket % SUB_BUCKETS) * width;
+        return lower + width - 1;
+    }
+}
@@ -0,0 +1,314 @@
+package io.github.mcengine.extension.addon.essential.vault.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runtime metrics for the vault hot paths.
+ *
+ * <p>Database loads, saves and clears are timed into {@link LatencyHistogram}s and
+ * counted together with their failures, item bytes and slots moved. Components that
+ * own a live value (write-behind queue depth, cache, pool, journal) register it as a
+ * gauge, which is read only when metrics are shown. Everything is safe to update from
+ * any thread.</p>
+ *
+ * <p>Shown in chat by {@code /vault stats}; {@link #dump()} writes the same values as
+ * JSON for scripts and dashboards.</p>
+ */
+public final class VaultMetrics {
+
+    /**
+     * File written by {@link #dump()}.
+     */
+    private final File dumpFile;
+
+    /**
+     * Creation time in milliseconds.
+     */
+    private final long startedAt = System.currentTimeMillis();
+
+    /**
+     * Latency and failure counts per operation.
+     */
+    private final Map<Operation, OperationStats> operations = new EnumMap<>(Operation.class);
+
+    /**
+     * Item payload bytes read by loads.
+     */
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    /**
+     * Item payload bytes in saved snapshots.
+     */
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /**
+     * Occupied slots returned by loads.
+     */
+    private final AtomicLong slotsRead = new AtomicLong();
+
+    /**
+     * Occupied slots in saved snapshots.
+     */
+    private final AtomicLong slotsWritten = new AtomicLong();
+
+    /**
+     * Vault pages saved.
+     */
+    private final AtomicLong vaultsSaved = new AtomicLong();
+
+    /**
+     * Registered gauges, in registration order.
+     */
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates an empty registry.
+     *
+     * @param dumpFile file written by {@link #dump()}
+     */
+    public VaultMetrics(File dumpFile) {
+        this.dumpFile = dumpFile;
+        for (Operation op : Operation.values()) operations.put(op, new OperationStats());
+    }
+
+    /**
+     * Records one completed operation.
+     *
+     * @param op    operation
+     * @param nanos elapsed time in nanoseconds
+     * @param ok    {@code false} if the operation failed
+     */
+    public void record(Operation op, long nanos, boolean ok) {
+        OperationStats stats = operations.get(op);
+        stats.latency.record(nanos);
+        if (!ok) stats.errors.incrementAndGet();
+    }
+
+    /**
+     * Counts a failure that did not fail the whole operation (e.g. a load that fell back to defaults).
+     *
+     * @param op operation
+     */
+    public void recordError(Operation op) {
+        operations.get(op).errors.incrementAndGet();
+    }
+
+    /**
+     * Counts item bytes read from storage.
+     *
+     * @param bytes payload length
+     */
+    public void recordBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    /**
+     * Counts slots returned by a load.
+     *
+     * @param slots occupied slots
+     */
+    public void recordSlotsRead(int slots) {
+        slotsRead.addAndGet(slots);
+    }
+
+    /**
+     * Counts saved vault pages.
+     *
+     * @param vaults vault pages saved
+     * @param slots  occupied slots across those pages
+     * @param bytes  item payload bytes across those pages
+     */
+    public void recordWritten(int vaults, long slots, long bytes) {
+        vaultsSaved.addAndGet(vaults);
+        slotsWritten.addAndGet(slots);
+        bytesWritten.addAndGet(bytes);
+    }
+
+    /**
+     * Registers a live value to report alongside the counters.
+     *
+     * @param name  dotted name, e.g. {@code write-behind.queue-depth}
+     * @param value supplier read whenever metrics are shown or dumped
+     */
+    public void registerGauge(String name, Supplier<?> value) {
+        gauges.add(new Gauge(name, value));
+    }
+
+    /**
+     * Formats the metrics for chat or console, one entry per line.
+     *
+     * @return human-readable lines
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add("uptime: " + formatDuration(System.currentTimeMillis() - startedAt));
+        for (Map.Entry<Operation, OperationStats> e : operations.entrySet()) {
+            LatencyHistogram h = e.getValue().latency;
+            lines.add(String.format(Locale.ROOT, "%s: n=%d err=%d p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                    e.getKey().key(), h.count(), e.getValue().errors.get(), h.percentileMillis(0.50),
+                    h.percentileMillis(0.95), h.percentileMillis(0.99), h.maxMillis()));
+        }
+        lines.add("read: " + formatBytes(bytesRead.get()) + " in " + slotsRead.get() + " slots");
+        lines.add("written: " + formatBytes(bytesWritten.get()) + " in " + slotsWritten.get() + " slots, "
+                + vaultsSaved.get() + " pages");
+        for (Gauge gauge : gauges) {
+            Object value = read(gauge);
+            if (value instanceof Double d) value = String.format(Locale.ROOT, "%.3f", d);
+            lines.add(gauge.name + ": " + value);
+        }
+        return lines;
+    }
+
+    /**
+     * Formats the metrics as a single JSON object.
+     *
+     * @return JSON document
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"timestamp_ms\":").append(System.currentTimeMillis());
+        sb.append(",\"uptime_ms\":").append(System.currentTimeMillis() - startedAt);
+        sb.append(",\"operations\":{");
+        boolean first = true;
+        for (Map.Entry<Operation, OperationStats> e : operations.entrySet()) {
+            LatencyHistogram h = e.getValue().latency;
+            if (!first) sb.append(',');
+            first = false;
+            sb.append('"').append(e.getKey().key()).append("\":{")
+                    .append("\"count\":").append(h.count())
+                    .append(",\"errors\":").append(e.getValue().errors.get())
+                    .append(",\"mean_ms\":").append(number(h.meanMillis()))
+                    .append(",\"p50_ms\":").append(number(h.percentileMillis(0.50)))
+                    .append(",\"p95_ms\":").append(number(h.percentileMillis(0.95)))
+                    .append(",\"p99_ms\":").append(number(h.percentileMillis(0.99)))
+                    .append(",\"max_ms\":").append(number(h.maxMillis()))
+                    .append('}');
+        }
+        sb.append("},\"io\":{")
+                .append("\"bytes_read\":").append(bytesRead.get())
+                .append(",\"slots_read\":").append(slotsRead.get())
+                .append(",\"bytes_written\":").append(bytesWritten.get())
+                .append(",\"slots_written\":").append(slotsWritten.get())
+                .append(",\"vaults_saved\":").append(vaultsSaved.get())
+                .append("},\"gauges\":{");
+        first = true;
+        for (Gauge gauge : gauges) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(quote(gauge.name)).append(':');
+            Object value = read(gauge);
+            if (value instanceof Double d) {
+                sb.append(number(d));
+            } else if (value instanceof Number || value instanceof Boolean) {
+                sb.append(value);
+            } else {
+                sb.append(value == null ? "null" : quote(value.toString()));
+            }
+        }
+        return sb.append("}}").toString();
+    }
+
+    /**
+     * Writes {@link #toJson()} to the dump file, replacing it atomically.
+     *
+     * @return file written
+     * @throws IOException if the file cannot be written
+     */
+    public File dump() throws IOException {
+        Path path = dumpFile.toPath();
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(tmp, toJson(), StandardCharsets.UTF_8);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return dumpFile;
+    }
+
+    /** Reads a gauge, turning a failure into {@code null}. */
+    private static Object read(Gauge gauge) {
+        try {
+            return gauge.value.get();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** Formats a double for JSON with fixed precision. */
+    private static String number(double value) {
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%.3f", value) : "null";
+    }
+
+    /** Quotes a string for JSON. */
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /** Formats a byte count with a binary unit. */
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024.0);
+        if (bytes < 1024L * 1024 * 1024) return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024.0 * 1024));
+        return String.format(Locale.ROOT, "%.2f GiB", bytes / (1024.0 * 1024 * 1024));
+    }
+
+    /** Formats a duration as hours, minutes and seconds. */
+    private static String formatDuration(long millis) {
+        long seconds = millis / 1000;
+        return String.format(Locale.ROOT, "%dh %02dm %02ds", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+
+    /**
+     * Timed database operations.
+     */
+    public enum Operation {
+        /** Loading one vault page. */
+        LOAD,
+        /** Saving one or more vault pages in one call. */
+        SAVE,
+        /** Clearing all pages of a player. */
+        CLEAR;
+
+        /**
+         * @return lowercase name used in output
+         */
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /** Latency and failures of one operation. */
+    private static final class OperationStats {
+
+        /** Latency distribution. */
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        /** Failures. */
+        private final AtomicLong errors = new AtomicLong();
+    }
+
+    /** Named live value. */
+    private record Gauge(String name, Supplier<?> value) {}
+}
@@ -1,10 +1,23 @@
 package io.github.mcengine.extension.addon.essential.vault.model;
 
+import org.bukkit.inventory.ItemStack;
+
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.BiConsumer;
 
 /**
  * Mutable model representing a player's vault configuration and contents.
+ *
+ * <p>A vault read from storage keeps its items as compact {@link VaultSlots} and only
+ * decodes them when they are first needed, so vaults that are cached or prefetched but
+ * never opened hold no {@link ItemStack}s.</p>
+ *
+ * <p>Decoding may happen on any thread and happens once: the decoded map is published
+ * through a volatile field before the payloads are released, so every thread sees either
+ * the payloads or the finished map. The decoded map itself is only changed on the main
+ * thread.</p>
  */
 public class PlayerVault {
 
@@ -24,14 +37,26 @@ public class PlayerVault {
     private final String title;
 
     /**
-     * Page index (reserved for future multi-page vaults).
+     * Page index (0-based).
      */
     private final int page;
 
     /**
-     * Map of slot index to item, representing the current contents.
+     * Map of slot index to item, representing the current contents; {@code null} until
+     * {@link #slots} is decoded.
+     */
+    private volatile Map<Integer, VaultItem> items;
+
+    /**
+     * Stored payloads not decoded yet, or {@code null} once {@link #items} is set.
+     */
+    private volatile VaultSlots slots;
+
+    /**
+     * Meta version the contents were read at, {@code -1} if the player had no meta row, or
+     * {@code null} if unknown. Saves of this page are conditional on it.
      */
-    private Map<Integer, VaultItem> items;
+    private Long version;
 
     /**
      * Constructs a new player vault model.
@@ -50,6 +75,23 @@ public class PlayerVault {
         this.items = items;
     }
 
+    /**
+     * Constructs a player vault whose items are decoded on first use.
+     *
+     * @param playerId player UUID
+     * @param rows     number of rows (1..6 typical)
+     * @param title    inventory title (nullable)
+     * @param page     page index (default 0)
+     * @param slots    stored payloads
+     */
+    public PlayerVault(UUID playerId, int rows, String title, int page, VaultSlots slots) {
+        this.playerId = playerId;
+        this.rows = rows;
+        this.title = title;
+        this.page = page;
+        this.slots = slots;
+    }
+
     /**
      * @return owner player UUID
      */
@@ -79,9 +121,28 @@ public class PlayerVault {
     }
 
     /**
+     * @return meta version the contents were read at, {@code -1} without a meta row, or {@code null} if unknown
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Records the meta version the contents were read at.
+     *
+     * @param version stored version, {@code -1} without a meta row, or {@code null} if unknown
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    /**
+     * Returns the current items, decoding the stored payloads first if needed.
+     *
      * @return current items map
      */
     public Map<Integer, VaultItem> getItems() {
+        decode();
         return items;
     }
 
@@ -90,7 +151,70 @@ public class PlayerVault {
      *
      * @param items new item map
      */
-    public void setItems(Map<Integer, VaultItem> items) {
+    public synchronized void setItems(Map<Integer, VaultItem> items) {
         this.items = items;
+        this.slots = null;
+    }
+
+    /**
+     * Decodes the stored payloads now, e.g. on a background thread right before the vault
+     * is shown. Does nothing if the items are already decoded; concurrent calls decode once.
+     */
+    public void decode() {
+        if (items != null) return;
+        synchronized (this) {
+            if (items != null) return;
+            VaultSlots stored = slots;
+            // Publish the map before releasing the payloads, so a reader always finds one of them
+            items = stored == null ? new HashMap<>() : stored.decode();
+            slots = null;
+        }
+    }
+
+    /**
+     * @return {@code true} if the items are held as decoded stacks
+     */
+    public boolean isDecoded() {
+        return items != null;
+    }
+
+    /**
+     * @return stored payloads not decoded yet, or {@code null} if the items are decoded
+     */
+    public VaultSlots getSlots() {
+        return slots;
+    }
+
+    /**
+     * @return number of occupied slots, without decoding
+     */
+    public int getItemCount() {
+        Map<Integer, VaultItem> decoded = items;
+        if (decoded != null) return decoded.size();
+        VaultSlots stored = slots;
+        if (stored != null) return stored.size();
+        // Decoded in the meantime
+        decoded = items;
+        return decoded == null ? 0 : decoded.size();
+    }
+
+    /**
+     * Visits every item, decoding stored payloads straight into the callback without
+     * keeping them. Used to fill an inventory.
+     *
+     * @param action receives the slot and its item
+     */
+    public void forEachItem(BiConsumer<Integer, ItemStack> action) {
+        Map<Integer, VaultItem> decoded = items;
+        if (decoded == null) {
+            VaultSlots stored = slots;
+            if (stored != null) {
+                stored.forEachItem(action);
+                return;
+            }
+            // Decoded in the meantime
+            decoded = items;
+        }
+        if (decoded != null) decoded.forEach((slot, item) -> action.accept(slot, item.getItem()));
     }
 }
@@ -0,0 +1,13 @@
+package io.github.mcengine.extension.addon.essential.vault.model;
+
+import java.util.UUID;
+
+/**
+ * A single {@code essential_vault_item} row exactly as stored, without decoding.
+ *
+ * @param playerId owner player UUID
+ * @param page     page index
+ * @param slot     zero-based slot index
+ * @param bytes    stored item payload
+ */
+public record StoredItem(UUID playerId, int page, int slot, byte[] bytes) {}
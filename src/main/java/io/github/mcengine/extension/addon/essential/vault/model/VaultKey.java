@@ -0,0 +1,20 @@
+package io.github.mcengine.extension.addon.essential.vault.model;
+
+import java.util.UUID;
+
+/**
+ * Identifies a single vault page of a player.
+ *
+ * @param playerId owner player UUID
+ * @param page     page index
+ */
+public record VaultKey(UUID playerId, int page) {
+
+    /**
+     * @param snapshot captured vault page
+     * @return key of the page the snapshot belongs to
+     */
+    public static VaultKey of(VaultSnapshot snapshot) {
+        return new VaultKey(snapshot.getPlayerId(), snapshot.getPage());
+    }
+}
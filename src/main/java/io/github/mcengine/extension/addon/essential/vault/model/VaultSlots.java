@@ -0,0 +1,136 @@
+package io.github.mcengine.extension.addon.essential.vault.model;
+
+import io.github.mcengine.extension.addon.essential.vault.util.ItemIO;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable, compact store of the serialized items of one vault page.
+ *
+ * <p>Occupied slots are kept as a 64-bit bitmap (bit {@code n} set means slot {@code n}
+ * is occupied) and their payloads as a dense array in ascending slot order, so a page
+ * costs one small array instead of a map of boxed keys and decoded stacks. Items are
+ * only decoded when asked for; payloads that cannot be decoded are kept unchanged so
+ * they are never lost by a later write.</p>
+ */
+public final class VaultSlots {
+
+    /**
+     * Highest slot index the store can hold (one bit per slot).
+     */
+    public static final int MAX_SLOT = 63;
+
+    /**
+     * Store without items.
+     */
+    public static final VaultSlots EMPTY = new VaultSlots(0L, new byte[0][]);
+
+    /**
+     * Bitmap of occupied slots.
+     */
+    private final long occupied;
+
+    /**
+     * Payload per set bit of {@link #occupied}, in ascending slot order.
+     */
+    private final byte[][] payloads;
+
+    private VaultSlots(long occupied, byte[][] payloads) {
+        this.occupied = occupied;
+        this.payloads = payloads;
+    }
+
+    /**
+     * Builds a store from stored payloads. The payload arrays are shared, not copied.
+     *
+     * @param slotBytes slot to payload
+     * @return compact store of {@code slotBytes}
+     * @throws IllegalArgumentException if a slot is outside {@code 0..MAX_SLOT}
+     */
+    public static VaultSlots of(Map<Integer, byte[]> slotBytes) {
+        if (slotBytes.isEmpty()) return EMPTY;
+        long bits = 0L;
+        for (Integer slot : slotBytes.keySet()) {
+            if (slot < 0 || slot > MAX_SLOT) throw new IllegalArgumentException("Slot out of range: " + slot);
+            bits |= 1L << slot;
+        }
+        byte[][] payloads = new byte[Long.bitCount(bits)][];
+        int i = 0;
+        for (long rest = bits; rest != 0; rest &= rest - 1) {
+            payloads[i++] = slotBytes.get(Long.numberOfTrailingZeros(rest));
+        }
+        return new VaultSlots(bits, payloads);
+    }
+
+    /**
+     * @return bitmap of occupied slots
+     */
+    public long bitmap() {
+        return occupied;
+    }
+
+    /**
+     * @return number of occupied slots
+     */
+    public int size() {
+        return payloads.length;
+    }
+
+    /**
+     * @param slot slot index
+     * @return stored payload of {@code slot}, or {@code null} if it is empty; must not be modified
+     */
+    public byte[] get(int slot) {
+        if (slot < 0 || slot > MAX_SLOT || (occupied & (1L << slot)) == 0) return null;
+        return payloads[Long.bitCount(occupied & ((1L << slot) - 1))];
+    }
+
+    /**
+     * Visits every occupied slot in ascending order.
+     *
+     * @param action receives the slot and its payload; payloads must not be modified
+     */
+    public void forEach(BiConsumer<Integer, byte[]> action) {
+        int i = 0;
+        for (long rest = occupied; rest != 0; rest &= rest - 1) {
+            action.accept(Long.numberOfTrailingZeros(rest), payloads[i++]);
+        }
+    }
+
+    /**
+     * Decodes every slot, skipping payloads that cannot be decoded.
+     *
+     * @param action receives the slot and a freshly decoded item owned by the caller
+     */
+    public void forEachItem(BiConsumer<Integer, ItemStack> action) {
+        forEach((slot, bytes) -> {
+            ItemStack stack = ItemIO.fromBytes(bytes);
+            if (stack != null) action.accept(slot, stack);
+        });
+    }
+
+    /**
+     * @return unmodifiable slot (ascending) to payload map
+     */
+    public Map<Integer, byte[]> toMap() {
+        Map<Integer, byte[]> map = new TreeMap<>();
+        forEach(map::put);
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Decodes every slot into a new item map, skipping payloads that cannot be decoded.
+     *
+     * @return mutable slot to item map
+     */
+    public Map<Integer, VaultItem> decode() {
+        Map<Integer, VaultItem> items = new HashMap<>();
+        forEachItem((slot, stack) -> items.put(slot, new VaultItem(slot, stack)));
+        return items;
+    }
+}
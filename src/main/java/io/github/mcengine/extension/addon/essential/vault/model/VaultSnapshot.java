@@ -0,0 +1,307 @@
+package io.github.mcengine.extension.addon.essential.vault.model;
+
+import io.github.mcengine.extension.addon.essential.vault.util.ItemIO;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Immutable point-in-time copy of a vault page, safe to hand to a background thread.
+ *
+ * <p>Snapshots are captured on the main server thread (the only thread allowed to
+ * read a live {@link Inventory}); every stack is cloned so later changes to the
+ * inventory cannot leak into a pending write.</p>
+ *
+ * <p>Snapshots rebuilt from stored payloads keep them as compact {@link VaultSlots}
+ * and only decode items when {@link #getItems()} is called.</p>
+ */
+public final class VaultSnapshot {
+
+    /**
+     * Unique identifier of the player owning the vault.
+     */
+    private final UUID playerId;
+
+    /**
+     * Number of inventory rows at capture time.
+     */
+    private final int rows;
+
+    /**
+     * Inventory title at capture time (nullable).
+     */
+    private final String title;
+
+    /**
+     * Page index the snapshot belongs to.
+     */
+    private final int page;
+
+    /**
+     * Unmodifiable map of slot index to cloned item; decoded from {@link #stored} on first use.
+     */
+    private volatile Map<Integer, VaultItem> items;
+
+    /**
+     * Stored payloads the snapshot was rebuilt from, or {@code null} if it was captured from items.
+     */
+    private final VaultSlots stored;
+
+    /**
+     * Wall-clock time of capture in milliseconds.
+     */
+    private final long capturedAt;
+
+    /**
+     * Meta version the page was loaded at before it was changed, {@code -1} if the player had
+     * no meta row, or {@code null} if unknown.
+     */
+    private final Long version;
+
+    /**
+     * Serialized payload per slot, computed on first use (off the main thread).
+     */
+    private volatile Map<Integer, byte[]> slotBytes;
+
+    /**
+     * Creates a snapshot from already-copied items.
+     *
+     * @param playerId   player UUID
+     * @param rows       number of rows
+     * @param title      inventory title (nullable)
+     * @param page       page index
+     * @param items      slot to item map; wrapped as unmodifiable
+     * @param capturedAt capture time in milliseconds
+     */
+    public VaultSnapshot(UUID playerId, int rows, String title, int page, Map<Integer, VaultItem> items, long capturedAt) {
+        this(playerId, rows, title, page, items, null, capturedAt);
+    }
+
+    /**
+     * Creates a snapshot from already-copied items of a page loaded at a known version.
+     *
+     * @param playerId   player UUID
+     * @param rows       number of rows
+     * @param title      inventory title (nullable)
+     * @param page       page index
+     * @param items      slot to item map; wrapped as unmodifiable
+     * @param version    meta version the page was loaded at, {@code -1} without a meta row, or {@code null} if unknown
+     * @param capturedAt capture time in milliseconds
+     */
+    public VaultSnapshot(UUID playerId, int rows, String title, int page, Map<Integer, VaultItem> items, Long version, long capturedAt) {
+        this.playerId = playerId;
+        this.rows = rows;
+        this.title = title;
+        this.page = page;
+        this.items = Collections.unmodifiableMap(items);
+        this.stored = null;
+        this.version = version;
+        this.capturedAt = capturedAt;
+    }
+
+    /**
+     * Creates a snapshot from stored payloads; items are decoded on first use.
+     */
+    private VaultSnapshot(UUID playerId, int rows, String title, int page, VaultSlots stored, Long version, long capturedAt) {
+        this.playerId = playerId;
+        this.rows = rows;
+        this.title = title;
+        this.page = page;
+        this.stored = stored;
+        this.version = version;
+        this.capturedAt = capturedAt;
+    }
+
+    /**
+     * Copies the non-air contents of an inventory into a new snapshot.
+     * Must be called on the main server thread.
+     *
+     * @param playerId player UUID
+     * @param rows     number of rows
+     * @param title    inventory title (nullable)
+     * @param page     page index
+     * @param inv      inventory to read from
+     * @return immutable snapshot of {@code inv}
+     */
+    public static VaultSnapshot capture(UUID playerId, int rows, String title, int page, Inventory inv) {
+        return capture(playerId, rows, title, page, null, inv);
+    }
+
+    /**
+     * Copies the non-air contents of an inventory opened from a page loaded at a known
+     * version. Must be called on the main server thread.
+     *
+     * @param playerId player UUID
+     * @param rows     number of rows
+     * @param title    inventory title (nullable)
+     * @param page     page index
+     * @param version  meta version the page was loaded at, {@code -1} without a meta row, or {@code null} if unknown
+     * @param inv      inventory to read from
+     * @return immutable snapshot of {@code inv}
+     */
+    public static VaultSnapshot capture(UUID playerId, int rows, String title, int page, Long version, Inventory inv) {
+        Map<Integer, VaultItem> map = new HashMap<>();
+        for (int i = 0; i < inv.getSize(); i++) {
+            ItemStack stack = inv.getItem(i);
+            if (stack == null || stack.getType().isAir()) continue;
+            map.put(i, new VaultItem(i, stack.clone()));
+        }
+        return new VaultSnapshot(playerId, rows, title, page, map, version, System.currentTimeMillis());
+    }
+
+    /**
+     * Rebuilds a snapshot from stored payloads, e.g. when replaying the local journal.
+     * Payloads that cannot be decoded have no item but are still written back unchanged.
+     *
+     * @param playerId   player UUID
+     * @param rows       number of rows
+     * @param title      inventory title (nullable)
+     * @param page       page index
+     * @param slotBytes  slot to stored payload
+     * @param capturedAt original capture time in milliseconds
+     * @return snapshot whose {@link #getSlotBytes()} returns {@code slotBytes}
+     */
+    public static VaultSnapshot fromStored(UUID playerId, int rows, String title, int page, Map<Integer, byte[]> slotBytes, long capturedAt) {
+        return fromStored(playerId, rows, title, page, slotBytes, null, capturedAt);
+    }
+
+    /**
+     * Rebuilds a snapshot of a page loaded at a known version from stored payloads.
+     *
+     * @param playerId   player UUID
+     * @param rows       number of rows
+     * @param title      inventory title (nullable)
+     * @param page       page index
+     * @param slotBytes  slot to stored payload
+     * @param version    meta version the page was loaded at, {@code -1} without a meta row, or {@code null} if unknown
+     * @param capturedAt original capture time in milliseconds
+     * @return snapshot whose {@link #getSlotBytes()} returns {@code slotBytes}
+     */
+    public static VaultSnapshot fromStored(UUID playerId, int rows, String title, int page, Map<Integer, byte[]> slotBytes, Long version, long capturedAt) {
+        return new VaultSnapshot(playerId, rows, title, page, VaultSlots.of(slotBytes), version, capturedAt);
+    }
+
+    /**
+     * Copies a vault into a snapshot, keeping its stored payloads if it was never decoded.
+     *
+     * @param vault      vault to copy
+     * @param capturedAt capture time in milliseconds
+     * @return snapshot of {@code vault}
+     */
+    public static VaultSnapshot of(PlayerVault vault, long capturedAt) {
+        VaultSlots slots = vault.getSlots();
+        if (slots != null) {
+            return new VaultSnapshot(vault.getPlayerId(), vault.getRows(), vault.getTitle(), vault.getPage(), slots, vault.getVersion(), capturedAt);
+        }
+        return new VaultSnapshot(vault.getPlayerId(), vault.getRows(), vault.getTitle(), vault.getPage(),
+                new HashMap<>(vault.getItems()), vault.getVersion(), capturedAt);
+    }
+
+    /**
+     * @return owner player UUID
+     */
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    /**
+     * @return number of inventory rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return inventory title (may be null)
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return page index
+     */
+    public int getPage() {
+        return page;
+    }
+
+    /**
+     * @return unmodifiable slot to item map
+     */
+    public Map<Integer, VaultItem> getItems() {
+        Map<Integer, VaultItem> result = items;
+        if (result == null) {
+            // Racing callers decode the same payloads; either result is equivalent
+            result = Collections.unmodifiableMap(stored.decode());
+            items = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return meta version the page was loaded at, {@code -1} without a meta row, or {@code null} if unknown
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return capture time in milliseconds
+     */
+    public long getCapturedAt() {
+        return capturedAt;
+    }
+
+    /**
+     * Serializes every item with {@link ItemIO#toBytes(ItemStack)}. The result is computed
+     * once and shared by later callers; items that fail to serialize are omitted. Snapshots
+     * rebuilt from stored payloads return those payloads unchanged.
+     *
+     * @return unmodifiable slot (ascending) to payload map; payloads must not be modified
+     */
+    public Map<Integer, byte[]> getSlotBytes() {
+        // Not kept for stored payloads: the map would cost more than the compact store
+        if (stored != null) return stored.toMap();
+        Map<Integer, byte[]> result = slotBytes;
+        if (result == null) {
+            Map<Integer, byte[]> map = new TreeMap<>();
+            for (VaultItem item : getItems().values()) {
+                byte[] bytes = ItemIO.toBytes(item.getItem());
+                if (bytes == null || bytes.length == 0) continue;
+                map.put(item.getSlot(), bytes);
+            }
+            result = Collections.unmodifiableMap(map);
+            slotBytes = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a snapshot holding only serialized payloads, so it can be kept in memory
+     * without its decoded stacks. Items are serialized now if they were not yet.
+     *
+     * @return this snapshot if it holds no decoded items, otherwise a compact copy
+     */
+    public VaultSnapshot compact() {
+        if (stored != null) return items == null ? this : new VaultSnapshot(playerId, rows, title, page, stored, version, capturedAt);
+        return new VaultSnapshot(playerId, rows, title, page, VaultSlots.of(getSlotBytes()), version, capturedAt);
+    }
+
+    /**
+     * Builds a mutable {@link PlayerVault} view of this snapshot.
+     *
+     * @return player vault carrying a copy of the item map, or the stored payloads if not decoded yet
+     */
+    public PlayerVault toPlayerVault() {
+        Map<Integer, VaultItem> decoded = items;
+        PlayerVault vault = decoded == null ? new PlayerVault(playerId, rows, title, page, stored)
+                : new PlayerVault(playerId, rows, title, page, new HashMap<>(decoded));
+        vault.setVersion(version);
+        return vault;
+    }
+}
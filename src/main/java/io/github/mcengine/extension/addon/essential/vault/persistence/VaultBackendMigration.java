@@ -0,0 +1,604 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultBlobRefs;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDialect;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultPagePacker;
+import io.github.mcengine.extension.addon.essential.vault.util.VaultConfigUtil;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copies every vault from one database to another, e.g. when moving off SQLite.
+ *
+ * <p>Players are read from the source in {@code player_uuid} order, {@code chunkPlayers}
+ * at a time, together with their items in whichever layout the source stores them (packed
+ * page rows, blob references or per-slot rows). Each chunk is written to the target as meta
+ * and per-slot item rows in one transaction, using batched statements, by a pool of writer
+ * threads. At most two chunks per writer are in memory at once. A target server using the
+ * page or deduplicated layout converts the per-slot rows with its background layout migration.</p>
+ *
+ * <p>Writing a chunk first deletes whatever the target holds for its uuid range, so a chunk
+ * can safely be written again. Whenever the chunks written so far form a contiguous run, the
+ * last uuid is saved to a checkpoint file, and a restarted migration resumes after it. At the
+ * end, the row counts of both databases are compared with what was copied. The source should
+ * not be in use while the migration runs.</p>
+ */
+public final class VaultBackendMigration {
+
+    /**
+     * Attempts per chunk before the migration stops.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Rows fetched per round trip when reading the source.
+     */
+    private static final int FETCH_SIZE = 500;
+
+    /**
+     * Logger for progress and results.
+     */
+    private final MCEngineExtensionLogger logger;
+
+    /**
+     * AddOn configuration holding the {@code migration.*} keys.
+     */
+    private final ConfigurationSection config;
+
+    /**
+     * File holding the resume checkpoint.
+     */
+    private final File checkpointFile;
+
+    /**
+     * Thread running the current migration, or {@code null}; guarded by {@code this}.
+     */
+    private Thread coordinator;
+
+    /**
+     * Set to stop the current migration after the chunks already read.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Human-readable state of the last or current run.
+     */
+    private volatile String state = "idle";
+
+    /**
+     * Players in the source when the current run started.
+     */
+    private volatile long totalPlayers;
+
+    /**
+     * Players and slots written by the current run.
+     */
+    private final AtomicLong players = new AtomicLong(), slots = new AtomicLong();
+
+    /**
+     * Start of the current run in milliseconds.
+     */
+    private volatile long startedAt;
+
+    /**
+     * Creates the migration tool; nothing runs until {@link #start(boolean)}.
+     *
+     * @param logger         logger wrapper
+     * @param config         AddOn configuration
+     * @param checkpointFile file holding the resume checkpoint
+     */
+    public VaultBackendMigration(MCEngineExtensionLogger logger, ConfigurationSection config, File checkpointFile) {
+        this.logger = logger;
+        this.config = config;
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Starts copying in the background.
+     *
+     * @param fresh {@code true} to ignore the checkpoint and copy everything again
+     * @return {@code false} if a migration is already running
+     */
+    public synchronized boolean start(boolean fresh) {
+        if (isRunning()) return false;
+        cancelled = false;
+        state = "starting";
+        coordinator = new Thread(() -> run(fresh), "MCEngineVault-Migration");
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return true;
+    }
+
+    /**
+     * Stops the current migration once the chunks already read are written; it can be resumed later.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return {@code true} while a migration is running
+     */
+    public synchronized boolean isRunning() {
+        return coordinator != null && coordinator.isAlive();
+    }
+
+    /**
+     * Cancels the current migration and waits for its in-flight chunks.
+     *
+     * @param timeoutMillis maximum time to wait
+     */
+    public void shutdown(long timeoutMillis) {
+        Thread t;
+        synchronized (this) {
+            t = coordinator;
+        }
+        if (t == null) return;
+        cancel();
+        try {
+            t.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return status lines for {@code /vault migrate status}
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add("state: " + state);
+        if (startedAt > 0) lines.add(progress());
+        return lines;
+    }
+
+    /** Runs one migration on the coordinator thread. */
+    private void run(boolean fresh) {
+        players.set(0);
+        slots.set(0);
+        totalPlayers = 0;
+        startedAt = System.currentTimeMillis();
+        HikariDataSource source = null;
+        HikariDataSource target = null;
+        ExecutorService writers = null;
+        try {
+            String sourceUrl = config.getString("migration.source.jdbc.url", "").trim();
+            String targetUrl = config.getString("migration.target.jdbc.url", "").trim();
+            VaultDialect sourceDialect = VaultDialect.fromJdbcUrl(sourceUrl);
+            VaultDialect targetDialect = VaultDialect.fromJdbcUrl(targetUrl);
+            if (sourceDialect == null || targetDialect == null) {
+                throw new IllegalStateException("migration.source.jdbc.url and migration.target.jdbc.url must be SQLite, MySQL or PostgreSQL JDBC URLs");
+            }
+            if (sourceUrl.equals(targetUrl)) throw new IllegalStateException("source and target are the same database");
+
+            Checkpoint checkpoint = fresh ? new Checkpoint(sourceUrl, targetUrl) : Checkpoint.load(checkpointFile, sourceUrl, targetUrl);
+            int chunkPlayers = Math.max(1, config.getInt("migration.chunk-players", 500));
+            int writerCount = Math.max(1, config.getInt("migration.writer-threads", 4));
+            long progressMillis = Math.max(1L, config.getLong("migration.progress-interval-seconds", 10L)) * 1000L;
+
+            source = VaultConfigUtil.createMigrationDataSource(config, "source", 1);
+            target = VaultConfigUtil.createMigrationDataSource(config, "target", writerCount);
+            try (Connection src = source.getConnection()) {
+                Set<String> sourceTables = existingTables(src);
+                Set<String> targetTables;
+                try (Connection tgt = target.getConnection(); Statement st = tgt.createStatement()) {
+                    st.execute(targetDialect.createMetaTable());
+                    st.execute(targetDialect.createItemTable());
+                    targetTables = existingTables(tgt);
+                }
+                totalPlayers = count(src, "essential_vault_meta");
+                log("Copying " + totalPlayers + " players from " + sourceDialect.displayName() + " to " + targetDialect.displayName() +
+                        (checkpoint.lastUuid.isEmpty() ? "" : ", resuming after " + checkpoint.lastUuid) + ".");
+                state = "running";
+
+                AtomicInteger threadIds = new AtomicInteger();
+                writers = Executors.newFixedThreadPool(writerCount, r -> {
+                    Thread t = new Thread(r, "MCEngineVault-MigrationWriter-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+                Semaphore inFlight = new Semaphore(writerCount * 2);
+                AtomicReference<Exception> failure = new AtomicReference<>();
+                Completion completion = new Completion(checkpoint);
+                HikariDataSource targetPool = target;
+
+                String after = checkpoint.lastUuid;
+                long seq = 0;
+                long nextReport = System.currentTimeMillis() + progressMillis;
+                while (!cancelled && failure.get() == null) {
+                    List<Meta> metas = readPlayers(src, after, chunkPlayers);
+                    if (metas.isEmpty()) break;
+                    Chunk chunk = new Chunk(seq++, metas, readSlots(src, sourceTables, metas.get(0).uuid, metas.get(metas.size() - 1).uuid));
+                    after = chunk.last();
+
+                    inFlight.acquire();
+                    writers.execute(() -> {
+                        try {
+                            if (failure.get() == null) {
+                                writeWithRetry(targetPool, targetTables, chunk);
+                                players.addAndGet(chunk.metas.size());
+                                slots.addAndGet(chunk.slots.size());
+                                completion.done(chunk);
+                            }
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+
+                    if (System.currentTimeMillis() >= nextReport) {
+                        log(progress());
+                        nextReport = System.currentTimeMillis() + progressMillis;
+                    }
+                }
+                writers.shutdown();
+                writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+                if (failure.get() != null) throw failure.get();
+                if (cancelled) {
+                    state = "cancelled after " + checkpoint.lastUuid + "; /vault migrate start resumes";
+                    log("Cancelled. " + progress());
+                    return;
+                }
+
+                // Compare both databases with what was copied, including earlier runs
+                long sourcePlayers = count(src, "essential_vault_meta");
+                long targetPlayers;
+                long targetSlots;
+                try (Connection tgt = target.getConnection()) {
+                    targetPlayers = count(tgt, "essential_vault_meta");
+                    targetSlots = count(tgt, "essential_vault_item");
+                }
+                boolean verified = sourcePlayers == checkpoint.players && targetPlayers == checkpoint.players && targetSlots == checkpoint.slots;
+                String counts = checkpoint.players + " players and " + checkpoint.slots + " slots copied; source has " + sourcePlayers +
+                        " players, target has " + targetPlayers + " players and " + targetSlots + " slots";
+                state = (verified ? "done, verified: " : "done, COUNTS DIFFER: ") + counts;
+                if (verified) log("Done in " + seconds(System.currentTimeMillis() - startedAt) + ", verified: " + counts + ".");
+                else if (logger != null) logger.warning("[VaultMigration] Done, but counts differ: " + counts + ".");
+            }
+        } catch (Exception e) {
+            state = "failed: " + e.getMessage();
+            if (logger != null) logger.warning("[VaultMigration] Failed: " + e.getMessage() + ". /vault migrate start resumes from the checkpoint.");
+        } finally {
+            if (writers != null) writers.shutdownNow();
+            if (source != null) source.close();
+            if (target != null) target.close();
+        }
+    }
+
+    /** Reads the next players after {@code after}, in uuid order. */
+    private static List<Meta> readPlayers(Connection src, String after, int limit) throws SQLException {
+        List<Meta> metas = new ArrayList<>();
+        try (PreparedStatement ps = src.prepareStatement(
+                "SELECT player_uuid, rows, title, updated_at FROM essential_vault_meta WHERE player_uuid > ? ORDER BY player_uuid LIMIT " + limit)) {
+            ps.setString(1, after);
+            ps.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) metas.add(new Meta(rs.getString(1), rs.getInt(2), rs.getString(3), rs.getTimestamp(4)));
+            }
+        }
+        return metas;
+    }
+
+    /**
+     * Reads the items of every page in {@code [first, last]}. As for loads, a packed page row
+     * supersedes blob references, which supersede per-slot rows not migrated yet.
+     */
+    private static List<Slot> readSlots(Connection src, Set<String> tables, String first, String last) throws SQLException {
+        Map<String, Map<Integer, byte[]>> pages = new HashMap<>();
+        Set<String> owned = new HashSet<>();
+        if (tables.contains("essential_vault_page")) {
+            try (PreparedStatement ps = rangeQuery(src, "SELECT player_uuid, page, slot_bitmap, payload FROM essential_vault_page", first, last);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String key = rs.getString(1) + ':' + rs.getInt(2);
+                    pages.put(key, VaultPagePacker.unpack(rs.getLong(3), rs.getBytes(4)));
+                    owned.add(key);
+                }
+            }
+        }
+        if (tables.contains("essential_vault_slot_ref") && tables.contains("essential_vault_blob")) {
+            readSlotRows(src, "SELECT r.player_uuid, r.page, r.slot, b.item_bytes FROM essential_vault_slot_ref r " +
+                    "JOIN essential_vault_blob b ON b.hash = r.blob_hash", "r.player_uuid", first, last, pages, owned);
+        }
+        readSlotRows(src, "SELECT player_uuid, page, slot, item_bytes FROM essential_vault_item", "player_uuid", first, last, pages, owned);
+
+        List<Slot> result = new ArrayList<>();
+        pages.forEach((key, slotBytes) -> {
+            int sep = key.lastIndexOf(':');
+            String uuid = key.substring(0, sep);
+            int page = Integer.parseInt(key.substring(sep + 1));
+            slotBytes.forEach((slot, bytes) -> result.add(new Slot(uuid, page, slot, bytes)));
+        });
+        return result;
+    }
+
+    /** Adds per-slot rows of pages not already read from a preferred source; marks their pages as read. */
+    private static void readSlotRows(Connection src, String select, String uuidColumn, String first, String last,
+            Map<String, Map<Integer, byte[]>> pages, Set<String> owned) throws SQLException {
+        Set<String> seen = new HashSet<>();
+        try (PreparedStatement ps = src.prepareStatement(select + " WHERE " + uuidColumn + " >= ? AND " + uuidColumn + " <= ?")) {
+            ps.setString(1, first);
+            ps.setString(2, last);
+            ps.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String key = rs.getString(1) + ':' + rs.getInt(2);
+                    if (owned.contains(key)) continue;
+                    byte[] bytes = rs.getBytes(4);
+                    if (bytes == null) continue;
+                    seen.add(key);
+                    pages.computeIfAbsent(key, k -> new TreeMap<>()).put(rs.getInt(3), bytes);
+                }
+            }
+        }
+        owned.addAll(seen);
+    }
+
+    /** Prepares a query over the uuid range {@code [first, last]}. */
+    private static PreparedStatement rangeQuery(Connection c, String select, String first, String last) throws SQLException {
+        PreparedStatement ps = c.prepareStatement(select + " WHERE player_uuid >= ? AND player_uuid <= ?");
+        ps.setString(1, first);
+        ps.setString(2, last);
+        ps.setFetchSize(FETCH_SIZE);
+        return ps;
+    }
+
+    /** Writes a chunk, retrying a few times (deadlocks, dropped connections). */
+    private void writeWithRetry(HikariDataSource target, Set<String> tables, Chunk chunk) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write(target, tables, chunk);
+                return;
+            } catch (SQLException e) {
+                if (attempt >= MAX_ATTEMPTS || cancelled) throw e;
+                if (logger != null) logger.warning("[VaultMigration] Chunk ending at " + chunk.last() + " failed (attempt " + attempt + "), retrying: " + e.getMessage());
+                Thread.sleep(1000L * attempt);
+            }
+        }
+    }
+
+    /** Replaces the target's rows for the chunk's uuid range in one transaction. */
+    private static void write(HikariDataSource target, Set<String> tables, Chunk chunk) throws SQLException {
+        String first = chunk.metas.get(0).uuid;
+        String last = chunk.last();
+        String range = "player_uuid >= ? AND player_uuid <= ?";
+        try (Connection c = target.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                List<String> deletes = new ArrayList<>();
+                if (tables.contains("essential_vault_slot_ref") && tables.contains("essential_vault_blob")) {
+                    deletes.add(VaultBlobRefs.releaseStatement(range));
+                    deletes.add("DELETE FROM essential_vault_slot_ref WHERE " + range);
+                }
+                if (tables.contains("essential_vault_page")) deletes.add("DELETE FROM essential_vault_page WHERE " + range);
+                deletes.add("DELETE FROM essential_vault_item WHERE " + range);
+                deletes.add("DELETE FROM essential_vault_meta WHERE " + range);
+                for (String sql : deletes) {
+                    try (PreparedStatement ps = c.prepareStatement(sql)) {
+                        // The range appears twice in the blob release
+                        int params = (int) sql.chars().filter(ch -> ch == '?').count();
+                        for (int i = 1; i <= params; i += 2) {
+                            ps.setString(i, first);
+                            ps.setString(i + 1, last);
+                        }
+                        ps.executeUpdate();
+                    }
+                }
+
+                try (PreparedStatement ps = c.prepareStatement(
+                        "INSERT INTO essential_vault_meta (player_uuid, rows, title, updated_at) VALUES (?, ?, ?, ?)")) {
+                    for (Meta m : chunk.metas) {
+                        ps.setString(1, m.uuid);
+                        ps.setInt(2, m.rows);
+                        ps.setString(3, m.title);
+                        ps.setTimestamp(4, m.updatedAt);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                try (PreparedStatement ps = c.prepareStatement(
+                        "INSERT INTO essential_vault_item (player_uuid, page, slot, item_bytes) VALUES (?, ?, ?, ?)")) {
+                    int batched = 0;
+                    for (Slot s : chunk.slots) {
+                        ps.setString(1, s.uuid);
+                        ps.setInt(2, s.page);
+                        ps.setInt(3, s.slot);
+                        ps.setBytes(4, s.bytes);
+                        ps.addBatch();
+                        if (++batched % 1000 == 0) ps.executeBatch();
+                    }
+                    ps.executeBatch();
+                }
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        }
+    }
+
+    /** Names of the vault tables present in a database. */
+    private static Set<String> existingTables(Connection c) {
+        Set<String> tables = new HashSet<>();
+        for (String table : List.of("essential_vault_meta", "essential_vault_item", "essential_vault_page",
+                "essential_vault_blob", "essential_vault_slot_ref")) {
+            try (Statement st = c.createStatement()) {
+                st.executeQuery("SELECT 1 FROM " + table + " WHERE 1 = 0").close();
+                tables.add(table);
+            } catch (SQLException e) {
+                // Missing table
+            }
+        }
+        return tables;
+    }
+
+    /** Counts the rows of a table. */
+    private static long count(Connection c, String table) throws SQLException {
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    /** Formats the progress of the current run. */
+    private String progress() {
+        long done = players.get();
+        long elapsed = Math.max(1L, System.currentTimeMillis() - startedAt);
+        double rate = done * 1000.0 / elapsed;
+        String line = done + "/" + totalPlayers + " players, " + slots.get() + " slots in " + seconds(elapsed) +
+                String.format(" (%.0f players/s", rate);
+        if (rate > 0 && totalPlayers > done) line += ", ~" + seconds((long) ((totalPlayers - done) * 1000 / rate)) + " left";
+        return line + ")";
+    }
+
+    /** Formats milliseconds as whole seconds. */
+    private static String seconds(long millis) {
+        return (millis / 1000) + "s";
+    }
+
+    /** Logs an info message. */
+    private void log(String message) {
+        if (logger != null) logger.info("[VaultMigration] " + message);
+    }
+
+    /** Tracks written chunks and advances the checkpoint over the contiguous prefix. */
+    private final class Completion {
+
+        /** Checkpoint to advance. */
+        private final Checkpoint checkpoint;
+
+        /** Written chunks that are not contiguous yet, by sequence number. */
+        private final TreeMap<Long, Chunk> written = new TreeMap<>();
+
+        /** Sequence number of the next chunk the checkpoint waits for. */
+        private long next;
+
+        private Completion(Checkpoint checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        /** Records a written chunk; saves the checkpoint if it moved. */
+        private synchronized void done(Chunk chunk) throws IOException {
+            written.put(chunk.seq, chunk);
+            boolean moved = false;
+            Chunk c;
+            while ((c = written.remove(next)) != null) {
+                next++;
+                checkpoint.lastUuid = c.last();
+                checkpoint.players += c.metas.size();
+                checkpoint.slots += c.slots.size();
+                moved = true;
+            }
+            if (moved) checkpoint.save(checkpointFile);
+        }
+    }
+
+    /**
+     * Resume point of a migration between one source and one target.
+     */
+    private static final class Checkpoint {
+
+        /** Source JDBC URL. */
+        private final String sourceUrl;
+
+        /** Target JDBC URL. */
+        private final String targetUrl;
+
+        /** Last player whose chunk and all before it were written. */
+        private String lastUuid = "";
+
+        /** Players and slots written up to {@link #lastUuid}. */
+        private long players, slots;
+
+        private Checkpoint(String sourceUrl, String targetUrl) {
+            this.sourceUrl = sourceUrl;
+            this.targetUrl = targetUrl;
+        }
+
+        /**
+         * Reads the checkpoint, or starts a new one if there is none.
+         *
+         * @throws IllegalStateException if the checkpoint belongs to other databases
+         */
+        private static Checkpoint load(File file, String sourceUrl, String targetUrl) throws IOException {
+            Checkpoint checkpoint = new Checkpoint(sourceUrl, targetUrl);
+            if (!file.exists()) return checkpoint;
+            Properties p = new Properties();
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                p.load(in);
+            }
+            if (!sourceUrl.equals(p.getProperty("source")) || !targetUrl.equals(p.getProperty("target"))) {
+                throw new IllegalStateException("checkpoint " + file.getName() + " is for other databases; use /vault migrate start fresh");
+            }
+            checkpoint.lastUuid = p.getProperty("last-uuid", "");
+            checkpoint.players = Long.parseLong(p.getProperty("players", "0"));
+            checkpoint.slots = Long.parseLong(p.getProperty("slots", "0"));
+            return checkpoint;
+        }
+
+        /** Writes the checkpoint atomically. */
+        private void save(File file) throws IOException {
+            Properties p = new Properties();
+            p.setProperty("source", sourceUrl);
+            p.setProperty("target", targetUrl);
+            p.setProperty("last-uuid", lastUuid);
+            p.setProperty("players", Long.toString(players));
+            p.setProperty("slots", Long.toString(slots));
+            Path path = file.toPath();
+            Files.createDirectories(path.getParent());
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                p.store(out, "Vault backend migration checkpoint");
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /** Meta row of one player. */
+    private record Meta(String uuid, int rows, String title, Timestamp updatedAt) {}
+
+    /** Stored payload of one slot. */
+    private record Slot(String uuid, int page, int slot, byte[] bytes) {}
+
+    /** Players read together and all their slots. */
+    private record Chunk(long seq, List<Meta> metas, List<Slot> slots) {
+
+        /** @return uuid of the last player in the chunk */
+        String last() {
+            return metas.get(metas.size() - 1).uuid;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Exports vaults to, and restores them from, backup files in {@link VaultBackupFormat}.
+ *
+ * <p>Both directions run on their own background thread and handle one player at a time, so
+ * memory use does not depend on the number of players and the database only sees the short
+ * statements of single loads and saves; no table is locked for the length of a backup. An
+ * export covers all players, one player or an inclusive uuid range, and includes saves still
+ * queued by the write-behind writer. An import first verifies every checksum of the file, then
+ * replaces the vaults of the selected players. Players who are online or have saves queued are
+ * skipped so a restore never races with a vault in use.</p>
+ */
+public final class VaultBackup {
+
+    /**
+     * File name suffix of uncompressed backups.
+     */
+    public static final String SUFFIX = ".mcvb";
+
+    /**
+     * Plugin used to report back to command senders on the main thread.
+     */
+    private final Plugin plugin;
+
+    /**
+     * Logger for results.
+     */
+    private final MCEngineExtensionLogger logger;
+
+    /**
+     * Database below the cache; exports read what is stored without filling the cache.
+     */
+    private final VaultDB storeDB;
+
+    /**
+     * Database used by the rest of the AddOn; imports write through it so cached pages stay current.
+     */
+    private final VaultDB vaultDB;
+
+    /**
+     * Write-behind writer whose queued saves exports include and imports wait for.
+     */
+    private final VaultWriteBehind writeBehind;
+
+    /**
+     * Directory holding the backup files.
+     */
+    private final File directory;
+
+    /**
+     * Thread running the current export or import, or {@code null}; guarded by {@code this}.
+     */
+    private Thread worker;
+
+    /**
+     * Human-readable state of the last or current run.
+     */
+    private volatile String state = "idle";
+
+    /**
+     * Set on shutdown; a running export or import stops before its next player.
+     */
+    private volatile boolean stopping;
+
+    /**
+     * Creates the backup service; nothing runs until an export or import is started.
+     *
+     * @param plugin      plugin used for scheduling
+     * @param logger      logger wrapper
+     * @param storeDB     database below the cache
+     * @param vaultDB     database used by the rest of the AddOn
+     * @param writeBehind write-behind writer
+     * @param directory   directory holding the backup files
+     */
+    public VaultBackup(Plugin plugin, MCEngineExtensionLogger logger, VaultDB storeDB, VaultDB vaultDB,
+            VaultWriteBehind writeBehind, File directory) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.storeDB = storeDB;
+        this.vaultDB = vaultDB;
+        this.writeBehind = writeBehind;
+        this.directory = directory;
+    }
+
+    /**
+     * Starts writing the vaults of the players in {@code [lower, upper]} to a new backup file.
+     *
+     * @param lower  first player, or {@code null} to start at the first
+     * @param upper  last player, or {@code null} to go to the end
+     * @param gzip   whether to compress the file
+     * @param sender receives the result (nullable)
+     * @return {@code false} if an export or import is already running
+     */
+    public boolean startExport(UUID lower, UUID upper, boolean gzip, CommandSender sender) {
+        String name = "vault-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) +
+                (lower != null && lower.equals(upper) ? "-" + lower : "") + SUFFIX + (gzip ? ".gz" : "");
+        return start("export " + name, () -> export(new File(directory, name), lower, upper, gzip, sender));
+    }
+
+    /**
+     * Starts restoring the vaults of the players in {@code [lower, upper]} from a backup file.
+     *
+     * @param fileName file name inside the backup directory
+     * @param lower    first player, or {@code null} to start at the first
+     * @param upper    last player, or {@code null} to go to the end
+     * @param sender   receives the result (nullable)
+     * @return {@code false} if an export or import is already running
+     * @throws IllegalArgumentException if {@code fileName} is not a backup file in the directory
+     */
+    public boolean startImport(String fileName, UUID lower, UUID upper, CommandSender sender) {
+        File file = resolve(fileName);
+        return start("import " + fileName, () -> restore(file, lower, upper, sender));
+    }
+
+    /**
+     * @return {@code true} while an export or import is running
+     */
+    public synchronized boolean isRunning() {
+        return worker != null && worker.isAlive();
+    }
+
+    /**
+     * @return human-readable state of the last or current run
+     */
+    public String describe() {
+        return state;
+    }
+
+    /**
+     * @return names of the backup files in the directory, newest name first
+     */
+    public List<String> listFiles() {
+        String[] names = directory.list((dir, name) -> name.endsWith(SUFFIX) || name.endsWith(SUFFIX + ".gz"));
+        if (names == null) return List.of();
+        List<String> sorted = new ArrayList<>(Arrays.asList(names));
+        sorted.sort((a, b) -> b.compareTo(a));
+        return sorted;
+    }
+
+    /**
+     * Stops a running export or import before its next player and waits for it.
+     *
+     * @param timeoutMillis maximum time to wait
+     */
+    public void shutdown(long timeoutMillis) {
+        Thread t;
+        synchronized (this) {
+            t = worker;
+        }
+        if (t == null) return;
+        stopping = true;
+        try {
+            t.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Runs {@code task} on a new worker thread unless one is running. */
+    private synchronized boolean start(String description, Runnable task) {
+        if (isRunning()) return false;
+        state = "running " + description;
+        worker = new Thread(task, "MCEngineVault-Backup");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    /** Writes the selected vaults to {@code file} through a temporary file. */
+    private void export(File file, UUID lower, UUID upper, boolean gzip, CommandSender sender) {
+        long started = System.currentTimeMillis();
+        Path path = file.toPath();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            long players;
+            long slots;
+            try (OutputStream out = Files.newOutputStream(tmp);
+                 VaultBackupFormat.Writer writer = new VaultBackupFormat.Writer(out, gzip)) {
+                UUID next = storeDB.nextVaultOwner(lower, true, upper);
+                while (next != null) {
+                    if (stopping) throw new IOException("stopped by shutdown");
+                    writer.write(read(next));
+                    next = storeDB.nextVaultOwner(next, false, upper);
+                }
+                writer.finish();
+                players = writer.players();
+                slots = writer.slots();
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finish(sender, true, "Exported " + players + " vaults (" + slots + " slots, " + (Files.size(path) >> 10) + " KiB) to " +
+                    file.getName() + " in " + (System.currentTimeMillis() - started) + " ms.");
+        } catch (Exception e) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // Best effort
+            }
+            finish(sender, false, "Vault export failed: " + e.getMessage());
+        }
+    }
+
+    /** Reads one player's vault, preferring saves still queued over what is stored. */
+    private VaultBackupFormat.PlayerRecord read(UUID playerId) {
+        Set<Integer> pages = new TreeSet<>(storeDB.storedPages(playerId));
+        for (VaultKey key : writeBehind.unflushed()) {
+            if (key.playerId().equals(playerId)) pages.add(key.page());
+        }
+
+        int rows = 0;
+        String title = null;
+        Map<Integer, Map<Integer, byte[]>> stored = new TreeMap<>();
+        // Meta is per player; the first page also yields it for players without items
+        if (pages.isEmpty()) pages.add(0);
+        for (int page : pages) {
+            VaultSnapshot pending = writeBehind.pending(new VaultKey(playerId, page));
+            if (pending != null) {
+                rows = pending.getRows();
+                title = pending.getTitle();
+                if (!pending.getSlotBytes().isEmpty()) stored.put(page, new TreeMap<>(pending.getSlotBytes()));
+                continue;
+            }
+            PlayerVault vault = storeDB.loadPlayerVault(playerId, page, 0, null);
+            if (rows == 0) {
+                rows = vault.getRows();
+                title = vault.getTitle();
+            }
+            Map<Integer, byte[]> slotBytes = VaultSnapshot.of(vault, 0L).getSlotBytes();
+            if (!slotBytes.isEmpty()) stored.put(page, slotBytes);
+        }
+        return new VaultBackupFormat.PlayerRecord(playerId, rows, title, stored);
+    }
+
+    /** Verifies {@code file}, then restores the selected vaults from it. */
+    private void restore(File file, UUID lower, UUID upper, CommandSender sender) {
+        long started = System.currentTimeMillis();
+        try {
+            // Nothing is written unless the whole file checks out
+            long total;
+            try (InputStream in = Files.newInputStream(file.toPath()); VaultBackupFormat.Reader reader = new VaultBackupFormat.Reader(in)) {
+                while (reader.next() != null) {
+                    // Frames are verified as they are read
+                }
+                total = reader.players();
+            }
+
+            long restored = 0;
+            long slots = 0;
+            List<UUID> skipped = new ArrayList<>();
+            try (InputStream in = Files.newInputStream(file.toPath()); VaultBackupFormat.Reader reader = new VaultBackupFormat.Reader(in)) {
+                VaultBackupFormat.PlayerRecord record;
+                while ((record = reader.next()) != null) {
+                    if (stopping) throw new IOException("stopped by shutdown after " + restored + " vaults");
+                    if (!inRange(record.playerId(), lower, upper)) continue;
+                    if (inUse(record.playerId()) || !write(record)) {
+                        skipped.add(record.playerId());
+                        continue;
+                    }
+                    restored++;
+                    slots += record.slotCount();
+                }
+            }
+
+            String message = "Restored " + restored + " of " + total + " vaults (" + slots + " slots) from " + file.getName() +
+                    " in " + (System.currentTimeMillis() - started) + " ms.";
+            if (!skipped.isEmpty()) {
+                message += " Skipped " + skipped.size() + " online, busy or failed: " + skipped.subList(0, Math.min(5, skipped.size())) +
+                        (skipped.size() > 5 ? " ..." : "");
+            }
+            finish(sender, skipped.isEmpty(), message);
+        } catch (Exception e) {
+            finish(sender, false, "Vault import failed: " + e.getMessage());
+        }
+    }
+
+    /** Replaces one player's vault with a backup record; a failed write keeps the stored vault. */
+    private boolean write(VaultBackupFormat.PlayerRecord record) {
+        UUID playerId = record.playerId();
+        long now = System.currentTimeMillis();
+        Map<Integer, Map<Integer, byte[]>> pages = record.pages().isEmpty() ? Map.of(0, Map.of()) : record.pages();
+        List<VaultSnapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<Integer, Map<Integer, byte[]>> page : pages.entrySet()) {
+            snapshots.add(VaultSnapshot.fromStored(playerId, record.rows(), record.title(), page.getKey(), page.getValue(), now));
+        }
+        return vaultDB.replacePlayerVault(playerId, snapshots);
+    }
+
+    /** @return {@code true} if the player is online or has saves queued */
+    private boolean inUse(UUID playerId) {
+        if (Bukkit.getPlayer(playerId) != null) return true;
+        for (VaultKey key : writeBehind.unflushed()) {
+            if (key.playerId().equals(playerId)) return true;
+        }
+        return false;
+    }
+
+    /** @return {@code true} if {@code playerId} lies in {@code [lower, upper]} by uuid text */
+    private static boolean inRange(UUID playerId, UUID lower, UUID upper) {
+        String id = playerId.toString();
+        return (lower == null || id.compareTo(lower.toString()) >= 0) && (upper == null || id.compareTo(upper.toString()) <= 0);
+    }
+
+    /** Resolves a backup file name inside the directory. */
+    private File resolve(String fileName) {
+        if (fileName.contains("/") || fileName.contains("\\") || fileName.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid backup name: " + fileName);
+        }
+        File file = new File(directory, fileName);
+        if (!file.isFile()) throw new IllegalArgumentException("No such backup: " + fileName);
+        return file;
+    }
+
+    /** Records and reports the result of a run. */
+    private void finish(CommandSender sender, boolean ok, String message) {
+        state = message;
+        if (logger != null) {
+            if (ok) logger.info("[VaultBackup] " + message);
+            else logger.warning("[VaultBackup] " + message);
+        }
+        if (sender != null && plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage((ok ? ChatColor.GREEN : ChatColor.RED) + message));
+        }
+    }
+}
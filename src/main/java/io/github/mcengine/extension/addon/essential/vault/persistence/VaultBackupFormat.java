@@ -0,0 +1,315 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary format of vault backups written by {@code /vault export}.
+ *
+ * <p>A backup is a 6-byte header ({@code "MCVB"}, version, flags) followed by frames. Each
+ * frame is an {@code int} length, that many payload bytes and the CRC-32 of the payload, so a
+ * reader needs memory for one frame only and detects corruption frame by frame. A payload is
+ * one player (uuid, rows, title, then every page with its slots and stored item bytes) or the
+ * end marker, which repeats the player and slot counts and holds the CRC-32 of every payload
+ * before it; a backup without it is incomplete. A compressed backup is the gzip stream of
+ * the same bytes; readers detect it by the gzip magic.</p>
+ */
+public final class VaultBackupFormat {
+
+    /** {@code "MCVB"}. */
+    private static final int MAGIC = 0x4D435642;
+
+    /** Format version written and understood. */
+    private static final int VERSION = 1;
+
+    /** Payload type of the end marker. */
+    private static final byte END = 0;
+
+    /** Payload type of one player's vault. */
+    private static final byte PLAYER = 1;
+
+    /** Largest frame a reader accepts; guards against allocating garbage lengths. */
+    private static final int MAX_FRAME = 64 << 20;
+
+    private VaultBackupFormat() {}
+
+    /**
+     * One player's vault as stored in a backup.
+     *
+     * @param playerId owner
+     * @param rows     inventory rows
+     * @param title    inventory title (nullable)
+     * @param pages    page to (slot to stored item bytes), both ascending
+     */
+    public record PlayerRecord(UUID playerId, int rows, String title, Map<Integer, Map<Integer, byte[]>> pages) {
+
+        /**
+         * @return number of occupied slots over all pages
+         */
+        public int slotCount() {
+            int n = 0;
+            for (Map<Integer, byte[]> slots : pages.values()) n += slots.size();
+            return n;
+        }
+    }
+
+    /**
+     * Writes a backup one player at a time. Call {@link #finish()} after the last player;
+     * a backup closed without it is recognized as incomplete.
+     */
+    public static final class Writer implements Closeable {
+
+        /** Underlying stream, possibly gzip. */
+        private final DataOutputStream out;
+
+        /** Reused buffer for one payload. */
+        private final ByteArrayOutputStream frame = new ByteArrayOutputStream(4096);
+
+        /** Checksum of every payload written so far. */
+        private final CRC32 total = new CRC32();
+
+        /** Players and slots written so far. */
+        private long players, slots;
+
+        /**
+         * Writes the header.
+         *
+         * @param raw  destination; closed with the writer
+         * @param gzip whether to compress
+         * @throws IOException if the header cannot be written
+         */
+        public Writer(OutputStream raw, boolean gzip) throws IOException {
+            OutputStream buffered = new BufferedOutputStream(raw, 64 * 1024);
+            this.out = new DataOutputStream(gzip ? new BufferedOutputStream(new GZIPOutputStream(buffered, 64 * 1024), 64 * 1024) : buffered);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(gzip ? 1 : 0);
+        }
+
+        /**
+         * Appends one player's vault.
+         *
+         * @param record vault to write
+         * @throws IOException if writing fails
+         */
+        public void write(PlayerRecord record) throws IOException {
+            frame.reset();
+            DataOutputStream payload = new DataOutputStream(frame);
+            payload.writeByte(PLAYER);
+            payload.writeLong(record.playerId().getMostSignificantBits());
+            payload.writeLong(record.playerId().getLeastSignificantBits());
+            payload.writeByte(record.rows());
+            writeString(payload, record.title());
+            payload.writeShort(record.pages().size());
+            for (Map.Entry<Integer, Map<Integer, byte[]>> page : record.pages().entrySet()) {
+                payload.writeInt(page.getKey());
+                payload.writeByte(page.getValue().size());
+                for (Map.Entry<Integer, byte[]> slot : page.getValue().entrySet()) {
+                    payload.writeByte(slot.getKey());
+                    payload.writeInt(slot.getValue().length);
+                    payload.write(slot.getValue());
+                }
+            }
+            writeFrame();
+            players++;
+            slots += record.slotCount();
+        }
+
+        /**
+         * Writes the end marker and flushes; the backup is complete afterwards.
+         *
+         * @throws IOException if writing fails
+         */
+        public void finish() throws IOException {
+            long checksum = total.getValue();
+            frame.reset();
+            DataOutputStream payload = new DataOutputStream(frame);
+            payload.writeByte(END);
+            payload.writeLong(players);
+            payload.writeLong(slots);
+            payload.writeInt((int) checksum);
+            writeFrame();
+            out.flush();
+        }
+
+        /**
+         * @return players written so far
+         */
+        public long players() {
+            return players;
+        }
+
+        /**
+         * @return slots written so far
+         */
+        public long slots() {
+            return slots;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        /** Writes {@link #frame} as one length-prefixed, checksummed frame. */
+        private void writeFrame() throws IOException {
+            byte[] bytes = frame.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeInt((int) crc.getValue());
+            total.update(bytes);
+        }
+
+        /** Writes a nullable UTF-8 string with an {@code int} length ({@code -1} for null). */
+        private static void writeString(DataOutputStream payload, String s) throws IOException {
+            if (s == null) {
+                payload.writeInt(-1);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            payload.writeInt(bytes.length);
+            payload.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a backup one player at a time, verifying every frame.
+     */
+    public static final class Reader implements Closeable {
+
+        /** Underlying stream, unwrapped from gzip if needed. */
+        private final DataInputStream in;
+
+        /** Checksum of every payload read so far. */
+        private final CRC32 total = new CRC32();
+
+        /** Players and slots read so far. */
+        private long players, slots;
+
+        /** Set once the end marker was read and verified. */
+        private boolean complete;
+
+        /**
+         * Reads and checks the header.
+         *
+         * @param raw source; closed with the reader
+         * @throws IOException if the stream is not a supported backup
+         */
+        public Reader(InputStream raw) throws IOException {
+            BufferedInputStream buffered = new BufferedInputStream(raw, 64 * 1024);
+            buffered.mark(2);
+            int b1 = buffered.read();
+            int b2 = buffered.read();
+            buffered.reset();
+            boolean gzip = b1 == 0x1f && b2 == 0x8b;
+            this.in = new DataInputStream(gzip ? new BufferedInputStream(new GZIPInputStream(buffered, 64 * 1024), 64 * 1024) : buffered);
+            try {
+                if (in.readInt() != MAGIC) throw new IOException("not a vault backup");
+                int version = in.readUnsignedByte();
+                if (version != VERSION) throw new IOException("unsupported vault backup version " + version);
+                in.readUnsignedByte();
+            } catch (EOFException e) {
+                throw new IOException("not a vault backup");
+            }
+        }
+
+        /**
+         * Reads the next player.
+         *
+         * @return next player, or {@code null} after the verified end marker
+         * @throws IOException if the backup is corrupt or incomplete
+         */
+        public PlayerRecord next() throws IOException {
+            if (complete) return null;
+            byte[] bytes;
+            try {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_FRAME) throw new IOException("corrupt frame length " + length + " after " + players + " players");
+                bytes = new byte[length];
+                in.readFully(bytes);
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                if ((int) crc.getValue() != in.readInt()) throw new IOException("checksum mismatch after " + players + " players");
+            } catch (EOFException e) {
+                throw new IOException("backup is incomplete (ends after " + players + " players)");
+            }
+
+            DataInputStream payload = new DataInputStream(new ByteArrayInputStream(bytes));
+            byte type = payload.readByte();
+            if (type == END) {
+                long expectedPlayers = payload.readLong();
+                long expectedSlots = payload.readLong();
+                int checksum = payload.readInt();
+                if (expectedPlayers != players || expectedSlots != slots || checksum != (int) total.getValue()) {
+                    throw new IOException("backup totals do not match its contents");
+                }
+                complete = true;
+                return null;
+            }
+            if (type != PLAYER) throw new IOException("unknown frame type " + type);
+            total.update(bytes);
+
+            UUID playerId = new UUID(payload.readLong(), payload.readLong());
+            int rows = payload.readUnsignedByte();
+            String title = readString(payload);
+            int pageCount = payload.readUnsignedShort();
+            Map<Integer, Map<Integer, byte[]>> pages = new TreeMap<>();
+            for (int p = 0; p < pageCount; p++) {
+                int page = payload.readInt();
+                int slotCount = payload.readUnsignedByte();
+                Map<Integer, byte[]> slotBytes = new TreeMap<>();
+                for (int s = 0; s < slotCount; s++) {
+                    int slot = payload.readUnsignedByte();
+                    byte[] item = new byte[payload.readInt()];
+                    payload.readFully(item);
+                    slotBytes.put(slot, item);
+                }
+                pages.put(page, Collections.unmodifiableMap(slotBytes));
+            }
+            PlayerRecord record = new PlayerRecord(playerId, rows, title, Collections.unmodifiableMap(pages));
+            players++;
+            slots += record.slotCount();
+            return record;
+        }
+
+        /**
+         * @return players read so far
+         */
+        public long players() {
+            return players;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /** Reads a string written by {@link Writer#writeString}. */
+        private static String readString(DataInputStream payload) throws IOException {
+            int length = payload.readInt();
+            if (length < 0) return null;
+            byte[] bytes = new byte[length];
+            payload.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
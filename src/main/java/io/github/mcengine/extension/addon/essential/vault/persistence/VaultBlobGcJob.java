@@ -0,0 +1,125 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background job that deletes item blobs no vault slot references any more
+ * (deduplicated storage layout).
+ *
+ * <p>Runs on a Bukkit async task every {@code intervalSeconds}. Each run deletes
+ * unreferenced blobs in batches of {@code batchSize} until a batch comes back short,
+ * so a large backlog (e.g. after clearing many vaults) is worked off in one run
+ * without holding long locks.</p>
+ */
+public final class VaultBlobGcJob implements Runnable {
+
+    /**
+     * Plugin used to schedule the job.
+     */
+    private final Plugin plugin;
+
+    /**
+     * Logger for collection results.
+     */
+    private final MCEngineExtensionLogger logger;
+
+    /**
+     * Database accessor that deletes the blobs.
+     */
+    private final VaultDB vaultDB;
+
+    /**
+     * Seconds between runs.
+     */
+    private final long intervalSeconds;
+
+    /**
+     * Maximum blobs deleted per statement.
+     */
+    private final int batchSize;
+
+    /**
+     * Guards against overlapping runs when one takes longer than the period.
+     */
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    /**
+     * Blobs deleted so far.
+     */
+    private final AtomicLong collected = new AtomicLong();
+
+    /**
+     * Scheduled task handle, or {@code null} when not running.
+     */
+    private BukkitTask task;
+
+    /**
+     * Creates the job.
+     *
+     * @param plugin          plugin used for scheduling
+     * @param logger          logger wrapper
+     * @param vaultDB         database accessor
+     * @param intervalSeconds seconds between runs
+     * @param batchSize       maximum blobs deleted per statement
+     */
+    public VaultBlobGcJob(Plugin plugin, MCEngineExtensionLogger logger, VaultDB vaultDB, long intervalSeconds, int batchSize) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.vaultDB = vaultDB;
+        this.intervalSeconds = Math.max(1L, intervalSeconds);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Schedules the job, first running after one interval.
+     */
+    public synchronized void start() {
+        if (task != null) return;
+        long ticks = intervalSeconds * 20L;
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this, ticks, ticks);
+    }
+
+    /**
+     * Cancels the job; it can be started again later.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * @return number of blobs deleted since the job was created
+     */
+    public long collectedCount() {
+        return collected.get();
+    }
+
+    @Override
+    public void run() {
+        if (!busy.compareAndSet(false, true)) return;
+        try {
+            long run = 0;
+            while (true) {
+                int deleted = vaultDB.collectUnreferencedBlobs(batchSize);
+                if (deleted <= 0) break;
+                run += deleted;
+                if (deleted < batchSize) break;
+            }
+            if (run > 0) {
+                collected.addAndGet(run);
+                if (logger != null) logger.info("[VaultBlobGc] Deleted " + run + " unreferenced item blobs.");
+            }
+        } finally {
+            busy.set(false);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultChange;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultConnectionSource;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Follows the vault change feed ({@code essential_vault_change}) so this server drops
+ * cached vaults that another server saved.
+ *
+ * <p>Runs on a Bukkit async task every {@code pollIntervalMillis}. Each run reads the
+ * entries after a high-water mark, one indexed range scan that is empty most of the time,
+ * and hands entries written by other nodes to the callback. Entry ids are assigned at insert but
+ * committed in any order, so an id missing below a newer one is waited for up to
+ * {@code gapTimeoutMillis} before the mark moves past it (ids of rolled back saves never
+ * show up); entries behind a missing id are still read and handed on meanwhile. The mark starts at the newest entry: after a restart the cache is empty, so older
+ * entries are irrelevant. Entries older than {@code retentionSeconds} are purged once a minute.</p>
+ *
+ * <p>On PostgreSQL with a vault connection pool, a listener thread additionally holds one
+ * pooled connection in {@code LISTEN essential_vault_change} and runs a poll as soon as a
+ * save commits, so other nodes see changes within milliseconds instead of one poll interval.
+ * The driver's notification API is reached by reflection because the driver is not a
+ * compile-time dependency; without it the feed keeps polling only.</p>
+ */
+public final class VaultChangeFeed implements Runnable {
+
+    /** Channel the PostgreSQL trigger notifies. */
+    private static final String CHANNEL = "essential_vault_change";
+
+    /** How long one wait for notifications blocks, so the listener notices a stop. */
+    private static final int LISTEN_TIMEOUT_MILLIS = 1000;
+
+    /** Pause before the listener reconnects after a failure. */
+    private static final long LISTEN_RETRY_MILLIS = 5000L;
+
+    /** Time between purges of old entries. */
+    private static final long PURGE_INTERVAL_MILLIS = 60_000L;
+
+    /**
+     * Plugin used to schedule the poll.
+     */
+    private final Plugin plugin;
+
+    /**
+     * Logger for listener state and failures.
+     */
+    private final MCEngineExtensionLogger logger;
+
+    /**
+     * Database accessor that reads and purges the feed.
+     */
+    private final VaultDB vaultDB;
+
+    /**
+     * Node id this server writes entries with; its own entries are skipped.
+     */
+    private final String nodeId;
+
+    /**
+     * Receives entries written by other nodes, on the polling thread.
+     */
+    private final Consumer<VaultChange> onChange;
+
+    /**
+     * Milliseconds between polls.
+     */
+    private final long pollIntervalMillis;
+
+    /**
+     * Maximum entries read per statement.
+     */
+    private final int batchSize;
+
+    /**
+     * Age after which entries are purged.
+     */
+    private final long retentionSeconds;
+
+    /**
+     * How long a missing id is waited for before it is skipped.
+     */
+    private final long gapTimeoutMillis;
+
+    /**
+     * Pool the listener borrows its connection from, or {@code null} to poll only.
+     */
+    private final VaultConnectionSource listenConnections;
+
+    /**
+     * Guards against overlapping polls from the timer and the listener.
+     */
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    /**
+     * Set when a poll was requested while one was running; the running one polls again.
+     */
+    private final AtomicBoolean rerun = new AtomicBoolean();
+
+    /**
+     * Entries from other nodes handed to the callback so far.
+     */
+    private final AtomicLong received = new AtomicLong();
+
+    /**
+     * Every entry up to this id was handled; {@code -1} until the starting position is known.
+     * Only touched by the thread holding {@link #busy}.
+     */
+    private volatile long mark = -1L;
+
+    /**
+     * Handled ids above {@link #mark}, i.e. entries that arrived ahead of a missing one.
+     */
+    private final TreeSet<Long> seen = new TreeSet<>();
+
+    /**
+     * Since when the oldest missing id is waited for, or {@code 0} without a gap.
+     */
+    private long gapSince;
+
+    /**
+     * Time of the last purge.
+     */
+    private long lastPurge;
+
+    /**
+     * Scheduled poll, or {@code null} when not running.
+     */
+    private BukkitTask task;
+
+    /**
+     * Listener thread, or {@code null} when not listening.
+     */
+    private Thread listener;
+
+    /**
+     * Set by {@link #stop()}; ends the listener.
+     */
+    private volatile boolean stopping;
+
+    /**
+     * Creates the feed follower.
+     *
+     * @param plugin             plugin used for scheduling
+     * @param logger             logger wrapper
+     * @param vaultDB            database accessor
+     * @param nodeId             node id this server writes entries with
+     * @param onChange           receives entries written by other nodes; must be thread-safe
+     * @param pollIntervalMillis milliseconds between polls
+     * @param batchSize          maximum entries read per statement
+     * @param retentionSeconds   age after which entries are purged
+     * @param gapTimeoutMillis   how long a missing id is waited for
+     * @param listenConnections  PostgreSQL pool to LISTEN on (nullable: poll only)
+     */
+    public VaultChangeFeed(Plugin plugin, MCEngineExtensionLogger logger, VaultDB vaultDB, String nodeId,
+            Consumer<VaultChange> onChange, long pollIntervalMillis, int batchSize, long retentionSeconds,
+            long gapTimeoutMillis, VaultConnectionSource listenConnections) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.vaultDB = vaultDB;
+        this.nodeId = nodeId;
+        this.onChange = onChange;
+        this.pollIntervalMillis = Math.max(50L, pollIntervalMillis);
+        this.batchSize = Math.max(1, batchSize);
+        this.retentionSeconds = Math.max(60L, retentionSeconds);
+        this.gapTimeoutMillis = Math.max(0L, gapTimeoutMillis);
+        this.listenConnections = listenConnections;
+    }
+
+    /**
+     * Schedules the poll and, if configured, starts the listener.
+     */
+    public synchronized void start() {
+        if (task != null) return;
+        stopping = false;
+        long ticks = Math.max(1L, pollIntervalMillis / 50L);
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this, 0L, ticks);
+        if (listenConnections != null) {
+            listener = new Thread(this::listen, "MCEngineVault-ChangeFeed");
+            listener.setDaemon(true);
+            listener.start();
+        }
+    }
+
+    /**
+     * Cancels the poll and stops the listener, waiting briefly for it to return its connection.
+     */
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            stopping = true;
+            if (task != null) {
+                task.cancel();
+                task = null;
+            }
+            t = listener;
+            listener = null;
+        }
+        if (t == null) return;
+        try {
+            t.join(LISTEN_TIMEOUT_MILLIS * 2L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return entries from other nodes handed to the callback so far
+     */
+    public long receivedCount() {
+        return received.get();
+    }
+
+    /**
+     * @return id up to which every entry was handled, or {@code -1} before the first poll
+     */
+    public long position() {
+        return mark;
+    }
+
+    @Override
+    public void run() {
+        if (!busy.compareAndSet(false, true)) {
+            rerun.set(true);
+            return;
+        }
+        try {
+            // Full batches are followed by reading on after them, not from the mark
+            long after = -1L;
+            do {
+                rerun.set(false);
+                after = poll(after);
+                if (after >= 0) rerun.set(true);
+            } while (rerun.get() && !stopping);
+        } catch (RuntimeException e) {
+            if (logger != null) logger.warning("[VaultChangeFeed] Poll failed: " + e.getMessage());
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    /**
+     * Reads one batch after the mark, or after {@code after} if that is higher. While a
+     * missing id holds the mark back, this pages through the entries behind it.
+     *
+     * @param after highest id read by the previous batch of this run, or {@code -1}
+     * @return highest id read if the batch was full, so more entries may be waiting; otherwise {@code -1}
+     */
+    private long poll(long after) {
+        long now = System.currentTimeMillis();
+        if (mark < 0) {
+            long latest = vaultDB.latestChangeId();
+            if (latest >= 0) {
+                mark = latest;
+                lastPurge = now;
+            }
+            return -1L;
+        }
+
+        List<VaultChange> changes = vaultDB.changesSince(Math.max(mark, after), batchSize);
+        for (VaultChange change : changes) {
+            if (!seen.add(change.id())) continue;
+            if (nodeId.equals(change.origin())) continue;
+            received.incrementAndGet();
+            onChange.accept(change);
+        }
+        advance(now);
+
+        if (now - lastPurge >= PURGE_INTERVAL_MILLIS) {
+            lastPurge = now;
+            vaultDB.purgeChanges(retentionSeconds);
+        }
+        return changes.size() >= batchSize ? changes.get(changes.size() - 1).id() : -1L;
+    }
+
+    /** Moves the mark over contiguous handled ids, skipping a missing id once it timed out. */
+    private void advance(long now) {
+        long m = mark;
+        while (seen.remove(m + 1)) m++;
+        if (!seen.isEmpty() && gapSince != 0 && now - gapSince >= gapTimeoutMillis) {
+            // The save that took the missing id rolled back, or is too slow to wait for
+            m = seen.first() - 1;
+            while (seen.remove(m + 1)) m++;
+            gapSince = 0;
+        }
+        if (seen.isEmpty()) gapSince = 0;
+        else if (gapSince == 0 || m != mark) gapSince = now;
+        mark = m;
+    }
+
+    /** Listener thread: holds a pooled connection in LISTEN and polls on every notification. */
+    private void listen() {
+        while (!stopping) {
+            try {
+                listenConnections.withConnection(c -> {
+                    Object pg;
+                    Method getNotifications;
+                    try {
+                        // Load the driver interface from the driver's own class loader
+                        Connection raw = c.unwrap(Connection.class);
+                        Class<?> pgConnection = Class.forName("org.postgresql.PGConnection", true, raw.getClass().getClassLoader());
+                        pg = c.unwrap(pgConnection);
+                        getNotifications = pgConnection.getMethod("getNotifications", int.class);
+                    } catch (ClassNotFoundException | NoSuchMethodException e) {
+                        throw new SQLException("driver does not support LISTEN", e);
+                    }
+                    try (Statement st = c.createStatement()) {
+                        st.execute("LISTEN " + CHANNEL);
+                    }
+                    if (logger != null) logger.info("[VaultChangeFeed] Listening for vault changes on PostgreSQL.");
+                    // A change may have been committed before LISTEN took effect
+                    run();
+                    try {
+                        while (!stopping) {
+                            Object notifications = getNotifications.invoke(pg, LISTEN_TIMEOUT_MILLIS);
+                            if (notifications != null && Array.getLength(notifications) > 0) run();
+                        }
+                    } catch (IllegalAccessException e) {
+                        throw new SQLException(e);
+                    } catch (InvocationTargetException e) {
+                        Throwable cause = e.getCause();
+                        throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+                    } finally {
+                        try (Statement st = c.createStatement()) {
+                            st.execute("UNLISTEN " + CHANNEL);
+                        } catch (SQLException ignored) {
+                            // The connection is being discarded anyway
+                        }
+                    }
+                    return null;
+                });
+            } catch (SQLException e) {
+                if (e.getCause() instanceof ClassNotFoundException || e.getCause() instanceof NoSuchMethodException) {
+                    if (logger != null) logger.warning("[VaultChangeFeed] PostgreSQL driver has no notification API; polling only.");
+                    return;
+                }
+                if (stopping) return;
+                if (logger != null) logger.warning("[VaultChangeFeed] Listener failed, retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(LISTEN_RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only journal of vault snapshots.
+ *
+ * <p>Every saved vault page is appended here and forced to disk before it is written
+ * to the database, so a crash or a failed database write never loses it: entries that
+ * were not applied are replayed on the next start. Appends are grouped, so one
+ * {@code fsync} covers every snapshot submitted while the previous one was running.</p>
+ *
+ * <p>File layout: a 4-byte magic header, then records of {@code [int length][int crc32][payload]},
+ * each payload starting with a format version byte. A torn or corrupt tail (from a crash
+ * mid-append) ends recovery at the last good record, as does a record that passes its
+ * checksum but cannot be decoded (e.g. written by a newer version); that record and the
+ * ones after it are copied aside rather than replayed.
+ * Once every entry has been applied the file is truncated; if it grows past
+ * {@code maxBytes} with entries still pending, it is compacted to just those entries.</p>
+ */
+public final class VaultJournal {
+
+    /**
+     * File header ("VJN2"); records start with {@link #FORMAT_VERSION}.
+     */
+    private static final int MAGIC = 0x564A4E32;
+
+    /**
+     * File header written before records carried a format version ("VJN1"); still read on recovery.
+     */
+    private static final int MAGIC_UNVERSIONED = 0x564A4E31;
+
+    /**
+     * Format version written as the first byte of every record payload. Version 2 added the
+     * meta version the snapshot was loaded at; version 1 records recover without one.
+     */
+    static final byte FORMAT_VERSION = 2;
+
+    /**
+     * Header length in bytes.
+     */
+    private static final int HEADER_BYTES = 4;
+
+    /**
+     * Journal file.
+     */
+    private final Path path;
+
+    /**
+     * Logger for recovery and I/O problems.
+     */
+    private final MCEngineExtensionLogger logger;
+
+    /**
+     * File size above which pending entries are compacted into a fresh file.
+     */
+    private final long maxBytes;
+
+    /**
+     * Encoded records not yet applied to the database, by sequence; guarded by {@code this}.
+     */
+    private final Map<Long, byte[]> unapplied = new LinkedHashMap<>();
+
+    /**
+     * Open journal channel; guarded by {@code this}.
+     */
+    private FileChannel channel;
+
+    /**
+     * Next sequence number; guarded by {@code this}.
+     */
+    private long nextSeq = 1;
+
+    /**
+     * Creates the journal; call {@link #recover()} before appending.
+     *
+     * @param file     journal file (its directory is created if missing)
+     * @param maxBytes size above which pending entries are compacted
+     * @param logger   logger wrapper
+     */
+    public VaultJournal(File file, long maxBytes, MCEngineExtensionLogger logger) {
+        this.path = file.toPath();
+        this.maxBytes = Math.max(1L << 20, maxBytes);
+        this.logger = logger;
+    }
+
+    /**
+     * Reads entries left by a previous run, keeps the newest one per vault page and
+     * rewrites the journal to hold only those. Must be called once, before any append.
+     * A record that cannot be decoded ends recovery without failing it.
+     *
+     * @return recovered snapshots paired with their new sequence numbers, oldest first
+     * @throws IOException if the journal cannot be read or rewritten
+     */
+    public synchronized List<Entry> recover() throws IOException {
+        Files.createDirectories(path.getParent());
+        Map<VaultKey, VaultSnapshot> latest = new LinkedHashMap<>();
+        int records = 0;
+        if (Files.exists(path)) {
+            byte[] all = Files.readAllBytes(path);
+            ByteBuffer buf = ByteBuffer.wrap(all);
+            int magic = all.length >= HEADER_BYTES ? buf.getInt() : 0;
+            if (magic == MAGIC || magic == MAGIC_UNVERSIONED) {
+                boolean unreadable = false;
+                while (buf.remaining() >= 8) {
+                    int start = buf.position();
+                    int length = buf.getInt();
+                    int crc = buf.getInt();
+                    if (length < 0 || length > buf.remaining()) {
+                        buf.position(start);
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    buf.get(payload);
+                    if (crc32(payload) != crc) {
+                        buf.position(start);
+                        break;
+                    }
+                    VaultSnapshot snapshot;
+                    try {
+                        snapshot = decode(payload, magic == MAGIC);
+                    } catch (IOException | RuntimeException e) {
+                        // Intact but unreadable: keep what was recovered, set the rest aside
+                        buf.position(start);
+                        setAside(all, start, e);
+                        unreadable = true;
+                        break;
+                    }
+                    latest.remove(VaultKey.of(snapshot));
+                    latest.put(VaultKey.of(snapshot), snapshot);
+                    records++;
+                }
+                if (buf.hasRemaining() && !unreadable && logger != null) {
+                    logger.warning("[VaultJournal] Ignored " + buf.remaining() + " bytes of incomplete journal tail.");
+                }
+            } else if (all.length > 0 && logger != null) {
+                logger.warning("[VaultJournal] Unrecognized journal file ignored: " + path);
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>(latest.size());
+        for (VaultSnapshot snapshot : latest.values()) {
+            long seq = nextSeq++;
+            unapplied.put(seq, encode(snapshot));
+            entries.add(new Entry(seq, snapshot));
+        }
+        rewrite();
+        if (logger != null && records > 0) {
+            logger.info("[VaultJournal] Recovered " + entries.size() + " unapplied vault page(s) from " + records + " record(s).");
+        }
+        return entries;
+    }
+
+    /**
+     * Appends snapshots and forces them to disk with a single {@code fsync}.
+     *
+     * @param snapshots snapshots to append
+     * @return sequence numbers, in the same order as {@code snapshots}
+     * @throws IOException if the write or the sync fails; nothing should then be considered durable
+     */
+    public synchronized long[] append(List<VaultSnapshot> snapshots) throws IOException {
+        if (channel == null) throw new IOException("Journal is not open");
+        long[] seqs = new long[snapshots.size()];
+        List<byte[]> records = new ArrayList<>(snapshots.size());
+        int total = 0;
+        for (VaultSnapshot snapshot : snapshots) {
+            byte[] record = encode(snapshot);
+            records.add(record);
+            total += record.length;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(total);
+        for (byte[] record : records) out.put(record);
+        out.flip();
+        long start = channel.position();
+        try {
+            while (out.hasRemaining()) channel.write(out);
+            channel.force(false);
+        } catch (IOException e) {
+            // Drop a partial append so later records do not follow a torn one
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException truncate) {
+                e.addSuppressed(truncate);
+            }
+            throw e;
+        }
+
+        for (int i = 0; i < seqs.length; i++) {
+            seqs[i] = nextSeq++;
+            unapplied.put(seqs[i], records.get(i));
+        }
+        return seqs;
+    }
+
+    /**
+     * Marks an entry as written to the database. Truncates the file once nothing is
+     * pending, or compacts it when it has grown too large.
+     *
+     * @param seq sequence number returned by {@link #append(List)} or {@link #recover()}
+     */
+    public synchronized void markApplied(long seq) {
+        if (unapplied.remove(seq) == null || channel == null) return;
+        try {
+            if (unapplied.isEmpty()) {
+                channel.truncate(HEADER_BYTES);
+                channel.position(HEADER_BYTES);
+            } else if (channel.size() > maxBytes) {
+                rewrite();
+            }
+        } catch (IOException e) {
+            if (logger != null) logger.warning("[VaultJournal] Journal cleanup failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return number of entries not yet applied to the database
+     */
+    public synchronized int pendingCount() {
+        return unapplied.size();
+    }
+
+    /**
+     * Closes the journal. Unapplied entries stay on disk for the next start.
+     */
+    public synchronized void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (logger != null) logger.warning("[VaultJournal] Closing journal failed: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    /**
+     * Copies the journal from an undecodable record onwards next to the journal, so the
+     * rewrite that follows recovery does not destroy it.
+     */
+    private void setAside(byte[] all, int from, Exception cause) {
+        Path aside = path.resolveSibling(path.getFileName() + ".unreadable-" + System.currentTimeMillis());
+        if (logger != null) {
+            logger.warning("[VaultJournal] Stopped recovery at an unreadable record (" + cause + "); "
+                    + (all.length - from) + " bytes copied to " + aside.getFileName() + ".");
+        }
+        try {
+            Files.write(aside, Arrays.copyOfRange(all, from, all.length));
+        } catch (IOException e) {
+            if (logger != null) logger.warning("[VaultJournal] Copying unreadable records failed: " + e.getMessage());
+        }
+    }
+
+    /** Writes the header and all unapplied records to a temp file and swaps it in atomically. */
+    private void rewrite() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC);
+            header.flip();
+            while (header.hasRemaining()) out.write(header);
+            for (byte[] record : unapplied.values()) {
+                ByteBuffer buf = ByteBuffer.wrap(record);
+                while (buf.hasRemaining()) out.write(buf);
+            }
+            out.force(true);
+        }
+        if (channel != null) channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    /** Encodes one snapshot as a complete record (length, CRC, payload). */
+    private static byte[] encode(VaultSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(snapshot.getPlayerId().getMostSignificantBits());
+            out.writeLong(snapshot.getPlayerId().getLeastSignificantBits());
+            out.writeInt(snapshot.getPage());
+            out.writeInt(snapshot.getRows());
+            out.writeBoolean(snapshot.getTitle() != null);
+            if (snapshot.getTitle() != null) out.writeUTF(snapshot.getTitle());
+            out.writeLong(snapshot.getCapturedAt());
+            out.writeBoolean(snapshot.getVersion() != null);
+            if (snapshot.getVersion() != null) out.writeLong(snapshot.getVersion());
+            Map<Integer, byte[]> slots = snapshot.getSlotBytes();
+            out.writeInt(slots.size());
+            for (Map.Entry<Integer, byte[]> e : slots.entrySet()) {
+                out.writeInt(e.getKey());
+                out.writeInt(e.getValue().length);
+                out.write(e.getValue());
+            }
+        }
+        byte[] payload = bytes.toByteArray();
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(payload.length)
+                .putInt(crc32(payload))
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * Decodes a record payload.
+     *
+     * @param versioned whether the payload starts with a format version byte
+     * @throws IOException if the payload is truncated or has an unknown format version
+     */
+    private static VaultSnapshot decode(byte[] payload, boolean versioned) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int format = versioned ? in.readUnsignedByte() : 1;
+            if (format < 1 || format > FORMAT_VERSION) throw new IOException("unknown record format " + format);
+            UUID playerId = new UUID(in.readLong(), in.readLong());
+            int page = in.readInt();
+            int rows = in.readInt();
+            String title = in.readBoolean() ? in.readUTF() : null;
+            long capturedAt = in.readLong();
+            Long version = format >= 2 && in.readBoolean() ? in.readLong() : null;
+            int count = in.readInt();
+            Map<Integer, byte[]> slots = new TreeMap<>();
+            for (int i = 0; i < count; i++) {
+                int slot = in.readInt();
+                int length = in.readInt();
+                if (length < 0 || length > in.available()) throw new IOException("bad slot length " + length);
+                byte[] data = new byte[length];
+                in.readFully(data);
+                slots.put(slot, data);
+            }
+            if (in.available() > 0) throw new IOException(in.available() + " trailing bytes");
+            return VaultSnapshot.fromStored(playerId, rows, title, page, slots, version, capturedAt);
+        }
+    }
+
+    /** CRC-32 of a payload. */
+    private static int crc32(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Recovered journal entry.
+     *
+     * @param seq      sequence number to pass to {@link #markApplied(long)}
+     * @param snapshot recovered snapshot
+     */
+    public record Entry(long seq, VaultSnapshot snapshot) {}
+}
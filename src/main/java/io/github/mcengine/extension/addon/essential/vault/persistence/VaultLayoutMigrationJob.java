@@ -0,0 +1,110 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background job that moves vault pages from per-slot rows into the configured layout
+ * (packed page rows or deduplicated blob references).
+ *
+ * <p>Runs once per second on a Bukkit async task, migrating at most
+ * {@code pagesPerRun} pages each time, and stops by itself when no per-slot rows
+ * remain or a step fails. Until a page is migrated, loads read it from its per-slot
+ * rows, so the server stays usable while the job runs.</p>
+ */
+public final class VaultLayoutMigrationJob implements Runnable {
+
+    /**
+     * Plugin used to schedule the job.
+     */
+    private final Plugin plugin;
+
+    /**
+     * Logger for progress and completion messages.
+     */
+    private final MCEngineExtensionLogger logger;
+
+    /**
+     * Database accessor that performs the migration.
+     */
+    private final VaultDB vaultDB;
+
+    /**
+     * Maximum pages migrated per run.
+     */
+    private final int pagesPerRun;
+
+    /**
+     * Guards against overlapping runs when one takes longer than the period.
+     */
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    /**
+     * Scheduled task handle, or {@code null} when not running.
+     */
+    private BukkitTask task;
+
+    /**
+     * Pages migrated so far.
+     */
+    private long migrated;
+
+    /**
+     * Creates the job.
+     *
+     * @param plugin      plugin used for scheduling
+     * @param logger      logger wrapper
+     * @param vaultDB     database accessor
+     * @param pagesPerRun maximum pages migrated per second
+     */
+    public VaultLayoutMigrationJob(Plugin plugin, MCEngineExtensionLogger logger, VaultDB vaultDB, int pagesPerRun) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.vaultDB = vaultDB;
+        this.pagesPerRun = Math.max(1, pagesPerRun);
+    }
+
+    /**
+     * Schedules the job, starting after a short delay.
+     */
+    public synchronized void start() {
+        if (task != null) return;
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this, 200L, 20L);
+    }
+
+    /**
+     * Cancels the job; it can be started again later.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        if (!busy.compareAndSet(false, true)) return;
+        try {
+            for (int i = 0; i < pagesPerRun; i++) {
+                VaultKey key = vaultDB.migrateNextSlotPage();
+                if (key == null) {
+                    if (logger != null && migrated > 0) {
+                        logger.info("[VaultLayout] Done: " + migrated + " vault pages moved out of per-slot rows.");
+                    }
+                    stop();
+                    return;
+                }
+                migrated++;
+            }
+        } finally {
+            busy.set(false);
+        }
+    }
+}
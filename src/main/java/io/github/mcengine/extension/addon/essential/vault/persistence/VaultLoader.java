@@ -0,0 +1,199 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultLoadException;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Loads vaults off the main server thread and hands the result back to it.
+ *
+ * <p>Queries and item decoding run on a Bukkit async task. The loaded
+ * {@link PlayerVault} is delivered on the main thread only if the request is
+ * still current: the player must be online and must not have issued a newer
+ * load in the meantime.</p>
+ *
+ * <p>Only the requested page is read. When prefetching is enabled, neighbouring pages
+ * can be loaded ahead of time with {@link #prefetch(UUID, int, int, String)} so that
+ * the cache in front of the database already holds them when the player flips.</p>
+ */
+public final class VaultLoader {
+
+    /**
+     * Plugin used to schedule async and main-thread tasks.
+     */
+    private final Plugin plugin;
+
+    /**
+     * Logger for reporting load failures.
+     */
+    private final MCEngineExtensionLogger logger;
+
+    /**
+     * Database accessor used for loads.
+     */
+    private final VaultDB vaultDB;
+
+    /**
+     * Write-behind queue consulted for saves that have not reached the database yet.
+     */
+    private final VaultWriteBehind writeBehind;
+
+    /**
+     * Latest load ticket per player; older tickets are discarded on delivery.
+     */
+    private final Map<UUID, Long> tickets = new ConcurrentHashMap<>();
+
+    /**
+     * Ticket sequence.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Whether {@link #prefetch(UUID, int, int, String)} loads anything; only useful with a cache.
+     */
+    private final boolean prefetchEnabled;
+
+    /**
+     * Pages currently being prefetched, so repeated requests do not stack up.
+     */
+    private final Set<VaultKey> prefetching = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Cleared by {@link #stop()}; loads are then neither started nor delivered.
+     */
+    private volatile boolean accepting = true;
+
+    /**
+     * Creates the loader.
+     *
+     * @param plugin      plugin instance for scheduling
+     * @param logger      logger wrapper
+     * @param vaultDB     database accessor
+     * @param writeBehind write-behind queue holding unsaved snapshots
+     * @param prefetch    {@code true} to honour prefetch requests (requires a caching {@code vaultDB})
+     */
+    public VaultLoader(Plugin plugin, MCEngineExtensionLogger logger, VaultDB vaultDB, VaultWriteBehind writeBehind, boolean prefetch) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.vaultDB = vaultDB;
+        this.writeBehind = writeBehind;
+        this.prefetchEnabled = prefetch;
+    }
+
+    /**
+     * Loads one page of a player's vault asynchronously.
+     *
+     * @param player       player whose vault to load
+     * @param page         page index (0-based)
+     * @param defaultRows  rows to use if no vault exists yet
+     * @param defaultTitle title to use if no vault exists yet
+     * @param onLoaded     invoked on the main thread with the vault, unless the request went stale;
+     *                     if the load fails (see {@link VaultLoadException}) the player is sent
+     *                     an error message instead and nothing is delivered
+     */
+    public void load(Player player, int page, int defaultRows, String defaultTitle, Consumer<PlayerVault> onLoaded) {
+        if (!accepting) return;
+        UUID playerId = player.getUniqueId();
+        long ticket = sequence.incrementAndGet();
+        tickets.put(playerId, ticket);
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            PlayerVault vault;
+            try {
+                vault = loadNow(playerId, page, defaultRows, defaultTitle);
+                // Decode here rather than on the main thread; the inventory is built on delivery
+                vault.decode();
+            } catch (Exception e) {
+                if (logger != null) logger.warning("[VaultLoader] Load failed for " + playerId + ": " + e.getMessage());
+                if (!plugin.isEnabled()) {
+                    tickets.remove(playerId, ticket);
+                    return;
+                }
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    // Only the latest request reports; a newer load may still succeed
+                    if (!tickets.remove(playerId, ticket)) return;
+                    if (!player.isOnline()) return;
+                    player.sendMessage(ChatColor.RED + "Your vault could not be loaded. Please try again later.");
+                });
+                return;
+            }
+            if (!plugin.isEnabled()) return;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                // Drop the result if a newer load superseded it, the player left or we are stopping
+                if (!tickets.remove(playerId, ticket)) return;
+                if (!player.isOnline() || !accepting) return;
+                onLoaded.accept(vault);
+            });
+        });
+    }
+
+    /**
+     * Loads a page in the background so that a later {@link #load} is served from the cache.
+     * Does nothing if prefetching is disabled, the page is already being prefetched,
+     * or it has an unsaved snapshot (which loads read directly anyway).
+     *
+     * @param playerId     owner UUID
+     * @param page         page index (0-based)
+     * @param defaultRows  rows to use if no vault exists yet
+     * @param defaultTitle title to use if no vault exists yet
+     */
+    public void prefetch(UUID playerId, int page, int defaultRows, String defaultTitle) {
+        if (!prefetchEnabled || !accepting || page < 0 || !plugin.isEnabled()) return;
+        VaultKey key = new VaultKey(playerId, page);
+        if (writeBehind.pending(key) != null || !prefetching.add(key)) return;
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                vaultDB.loadPlayerVault(playerId, page, defaultRows, defaultTitle);
+            } catch (Exception e) {
+                if (logger != null) logger.warning("[VaultLoader] Prefetch failed for " + key + ": " + e.getMessage());
+            } finally {
+                prefetching.remove(key);
+            }
+        });
+    }
+
+    /**
+     * Loads a vault page on the calling thread, preferring a snapshot still waiting to be written.
+     *
+     * @param playerId     owner UUID
+     * @param page         page index (0-based)
+     * @param defaultRows  rows to use if no vault exists yet
+     * @param defaultTitle title to use if no vault exists yet
+     * @return loaded vault page
+     */
+    public PlayerVault loadNow(UUID playerId, int page, int defaultRows, String defaultTitle) {
+        VaultSnapshot unsaved = writeBehind.pending(new VaultKey(playerId, page));
+        if (unsaved != null) return unsaved.toPlayerVault();
+        return vaultDB.loadPlayerVault(playerId, page, defaultRows, defaultTitle);
+    }
+
+    /**
+     * Stops opening vaults: new loads are ignored and loads still running are not delivered.
+     * Called first on shutdown so no vault is opened while open ones are being saved.
+     */
+    public void stop() {
+        accepting = false;
+    }
+
+    /**
+     * @return {@code false} once {@link #stop()} has been called
+     */
+    public boolean isAccepting() {
+        return accepting;
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.model.StoredItem;
+import io.github.mcengine.extension.addon.essential.vault.util.ItemIO;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background job that rewrites item rows still stored in the legacy Java-serialization
+ * format using the compact codec.
+ *
+ * <p>Runs once per second on a Bukkit async task, converting at most
+ * {@code rowsPerRun} rows each time, and stops by itself when no legacy rows remain.
+ * Each row is replaced only if it still holds the bytes that were read, so it never
+ * overwrites a save made in the meantime. Rows that cannot be decoded are skipped and
+ * left untouched.</p>
+ */
+public final class VaultReencodeJob implements Runnable {
+
+    /**
+     * Plugin used to schedule the job.
+     */
+    private final Plugin plugin;
+
+    /**
+     * Logger for progress and completion messages.
+     */
+    private final MCEngineExtensionLogger logger;
+
+    /**
+     * Database accessor used to scan and rewrite rows.
+     */
+    private final VaultDB vaultDB;
+
+    /**
+     * Maximum rows converted per run.
+     */
+    private final int rowsPerRun;
+
+    /**
+     * Guards against overlapping runs when one takes longer than the period.
+     */
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    /**
+     * Last row visited; the scan resumes after it.
+     */
+    private StoredItem cursor;
+
+    /**
+     * Scheduled task handle, or {@code null} when not running.
+     */
+    private BukkitTask task;
+
+    /**
+     * Rows rewritten so far.
+     */
+    private long converted;
+
+    /**
+     * Rows left untouched because they could not be decoded or re-encoded.
+     */
+    private long skipped;
+
+    /**
+     * Creates the job.
+     *
+     * @param plugin     plugin used for scheduling
+     * @param logger     logger wrapper
+     * @param vaultDB    database accessor
+     * @param rowsPerRun maximum rows converted per second
+     */
+    public VaultReencodeJob(Plugin plugin, MCEngineExtensionLogger logger, VaultDB vaultDB, int rowsPerRun) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.vaultDB = vaultDB;
+        this.rowsPerRun = Math.max(1, rowsPerRun);
+    }
+
+    /**
+     * Schedules the job, starting after a short delay.
+     */
+    public synchronized void start() {
+        if (task != null) return;
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this, 200L, 20L);
+    }
+
+    /**
+     * Cancels the job; it can be started again later and resumes from the beginning.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        cursor = null;
+    }
+
+    @Override
+    public void run() {
+        if (!busy.compareAndSet(false, true)) return;
+        try {
+            for (int i = 0; i < rowsPerRun; i++) {
+                StoredItem row = vaultDB.nextLegacyItem(cursor);
+                if (row == null) {
+                    if (logger != null && (converted > 0 || skipped > 0)) {
+                        logger.info("[VaultReencode] Done: " + converted + " item rows re-encoded, " + skipped + " skipped.");
+                    }
+                    stop();
+                    return;
+                }
+                cursor = row;
+
+                ItemStack item = ItemIO.fromBytes(row.bytes());
+                byte[] encoded = item == null ? null : ItemIO.toBytes(item);
+                if (encoded == null || ItemIO.isLegacy(encoded)) {
+                    skipped++;
+                    continue;
+                }
+                if (vaultDB.replaceItemBytes(row, encoded)) converted++;
+                else skipped++;
+            }
+        } finally {
+            busy.set(false);
+        }
+    }
+}
@@ -0,0 +1,548 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind queue that persists vault snapshots off the main server thread.
+ *
+ * <p>Snapshots from all players are collected by a single flusher thread and written
+ * in batches through {@link VaultDB#saveBatch(List)}. A batch is flushed as soon as it
+ * holds {@code batchSize} snapshots, or once its oldest snapshot has waited
+ * {@code maxDelayMillis}, so database round trips scale with the flush rate rather
+ * than with the number of players. Because there is one flusher, consecutive saves of
+ * the same vault are applied in the order they were captured. Outcomes are reported
+ * back on the main thread through the Bukkit scheduler.</p>
+ *
+ * <p>Saves are coalesced per vault page: while a page is waiting to be written, a newer
+ * save of it replaces the older one, which is then never written (its callback receives
+ * the outcome of the write that replaced it). A page is held until no save of it has
+ * arrived for {@code debounceMillis}, so a player opening and closing a vault in quick
+ * succession costs one write, but never longer than {@code maxStalenessMillis} after
+ * its first unwritten save.</p>
+ *
+ * <p>With a {@link VaultJournal}, a journal thread first appends submitted snapshots to
+ * the local journal (one {@code fsync} per group) and reports success as soon as they
+ * are durable; the flusher then replays them into the database and marks them applied.
+ * Database failures then lose nothing even across a restart.</p>
+ *
+ * <p>A snapshot whose database write failed is never dropped: its caller is told once, the
+ * snapshot stays pending, so loads still see it, and it is retried until written or
+ * superseded by a newer save of the same page.</p>
+ */
+public final class VaultWriteBehind {
+
+    /**
+     * Plugin used to schedule completion callbacks on the main thread.
+     */
+    private final Plugin plugin;
+
+    /**
+     * Logger for reporting write failures.
+     */
+    private final MCEngineExtensionLogger logger;
+
+    /**
+     * Database accessor that performs the actual writes.
+     */
+    private final VaultDB vaultDB;
+
+    /**
+     * Maximum number of snapshots written per flush.
+     */
+    private final int batchSize;
+
+    /**
+     * Maximum time a snapshot waits before its batch is flushed, in milliseconds.
+     */
+    private final long maxDelayMillis;
+
+    /**
+     * Quiet time after the latest save of a page before it is written, in milliseconds.
+     */
+    private final long debounceMillis;
+
+    /**
+     * Longest the first unwritten save of a page may wait, in milliseconds.
+     */
+    private final long maxStalenessMillis;
+
+    /**
+     * Delay before a snapshot whose database write failed is retried.
+     */
+    private static final long RETRY_DELAY_MILLIS = 5_000L;
+
+    /**
+     * Local journal written before the database, or {@code null} when disabled.
+     */
+    private final VaultJournal journal;
+
+    /**
+     * Snapshots waiting to be journaled; unused without a journal.
+     */
+    private final BlockingQueue<Pending> journalQueue = new LinkedBlockingQueue<>();
+
+    /**
+     * Journal thread, or {@code null} without a journal.
+     */
+    private final Thread journalWriter;
+
+    /**
+     * Schedules retries of failed writes.
+     */
+    private final ScheduledExecutorService retries;
+
+    /**
+     * Failed writes waiting for their retry; whoever removes one stages it.
+     */
+    private final Set<Pending> retrying = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Snapshots waiting for the flusher, one per vault page, in order of first submission;
+     * guarded by itself.
+     */
+    private final LinkedHashMap<VaultKey, Pending> staged = new LinkedHashMap<>();
+
+    /**
+     * Number of snapshots submitted but not yet written.
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * Saves dropped because a newer save of the same page replaced them.
+     */
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Newest submitted snapshot per vault page that has not been written yet.
+     * Lets loads observe a save that is still in flight.
+     */
+    private final Map<VaultKey, VaultSnapshot> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Flusher thread; drains {@link #staged} until stopped and empty.
+     */
+    private final Thread flusher;
+
+    /**
+     * Cleared by {@link #shutdown(long)}; new submissions are then written inline.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Creates the write-behind queue and starts its flusher thread.
+     *
+     * @param plugin         plugin instance for main-thread callbacks
+     * @param logger         logger wrapper
+     * @param vaultDB        database accessor to write through
+     * @param batchSize      maximum snapshots per flush
+     * @param maxDelayMillis     maximum time a snapshot waits for its batch, in milliseconds
+     * @param debounceMillis     quiet time after the latest save of a page before it is written
+     * @param maxStalenessMillis longest the first unwritten save of a page may wait
+     * @param journal            recovered local journal to write through first (nullable)
+     */
+    public VaultWriteBehind(Plugin plugin, MCEngineExtensionLogger logger, VaultDB vaultDB, int batchSize, long maxDelayMillis,
+                            long debounceMillis, long maxStalenessMillis, VaultJournal journal) {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.vaultDB = vaultDB;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelayMillis = Math.max(0L, maxDelayMillis);
+        this.debounceMillis = Math.max(0L, debounceMillis);
+        this.maxStalenessMillis = Math.max(this.maxDelayMillis, maxStalenessMillis);
+        this.journal = journal;
+        this.flusher = new Thread(this::run, "MCEngineVault-Writer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        this.retries = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "MCEngineVault-Retry");
+            t.setDaemon(true);
+            return t;
+        });
+        if (journal != null) {
+            this.journalWriter = new Thread(this::runJournal, "MCEngineVault-Journal");
+            this.journalWriter.setDaemon(true);
+            this.journalWriter.start();
+        } else {
+            this.journalWriter = null;
+        }
+    }
+
+    /**
+     * Queues a snapshot for persistence.
+     *
+     * @param snapshot immutable vault snapshot captured on the main thread
+     * @param callback receives the write outcome on the main thread (nullable)
+     */
+    public void submit(VaultSnapshot snapshot, Consumer<Boolean> callback) {
+        if (!running) {
+            if (logger != null) logger.warning("[VaultWriteBehind] Writer stopped; saving " + snapshot.getPlayerId() + " inline.");
+            complete(callback, vaultDB.savePlayerVault(snapshot));
+            return;
+        }
+        pending.put(VaultKey.of(snapshot), snapshot);
+        queued.incrementAndGet();
+        long now = System.currentTimeMillis();
+        Pending p = new Pending(snapshot, callback, now, now, -1L);
+        if (journal != null) {
+            journalQueue.add(p);
+        } else {
+            stage(p);
+        }
+    }
+
+    /**
+     * Queues entries recovered from the journal for writing. Call once at startup,
+     * before vaults can be opened, so loads see the recovered contents.
+     *
+     * @param entries entries returned by {@link VaultJournal#recover()}
+     */
+    public void replay(List<VaultJournal.Entry> entries) {
+        long now = System.currentTimeMillis();
+        for (VaultJournal.Entry e : entries) {
+            pending.put(VaultKey.of(e.snapshot()), e.snapshot());
+            queued.incrementAndGet();
+            stage(new Pending(e.snapshot(), null, now, now, e.seq()));
+        }
+    }
+
+    /**
+     * Returns the newest snapshot for a vault page that is queued or being written.
+     *
+     * @param key vault page
+     * @return pending snapshot, or {@code null} if the database is up to date
+     */
+    public VaultSnapshot pending(VaultKey key) {
+        return pending.get(key);
+    }
+
+    /**
+     * @return number of snapshots waiting to be written
+     */
+    public int queueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Returns the vault pages whose latest save has not been written to the database.
+     * After {@link #shutdown(long)} these are the saves that did not make it.
+     *
+     * @return pages with an unwritten save
+     */
+    public List<VaultKey> unflushed() {
+        return new ArrayList<>(pending.keySet());
+    }
+
+    /**
+     * @return number of saves replaced by a newer save of the same page before being written
+     */
+    public long coalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Stops accepting work and waits for already queued snapshots to be written. Saves
+     * that could not be written, or not in time, are listed by {@link #unflushed()} afterwards.
+     *
+     * @param timeoutMillis maximum time to wait
+     * @return {@code true} if the queue drained before the timeout
+     */
+    public boolean shutdown(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + Math.max(1L, timeoutMillis);
+        running = false;
+        retries.shutdownNow();
+        // Failed writes waiting for their retry get one last attempt with the rest
+        for (Pending retry : List.copyOf(retrying)) {
+            if (retrying.remove(retry)) stage(retry);
+        }
+        try {
+            // Journal first, so everything it accepted reaches the flusher
+            if (journalWriter != null) {
+                journalWriter.interrupt();
+                journalWriter.join(Math.max(1L, deadline - System.currentTimeMillis()));
+            }
+            synchronized (staged) {
+                staged.notifyAll();
+            }
+            flusher.interrupt();
+            flusher.join(Math.max(1L, deadline - System.currentTimeMillis()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive() || (journalWriter != null && journalWriter.isAlive())) return false;
+
+        // Anything submitted while the threads were exiting is written here
+        List<Pending> rest = new ArrayList<>();
+        journalQueue.drainTo(rest);
+        synchronized (staged) {
+            rest.addAll(staged.values());
+            staged.clear();
+        }
+        if (!rest.isEmpty()) flush(rest);
+        return true;
+    }
+
+    /** Journal loop: append everything submitted since the last group with one sync. */
+    private void runJournal() {
+        List<Pending> group = new ArrayList<>();
+        while (running || !journalQueue.isEmpty()) {
+            try {
+                Pending first = running ? journalQueue.poll(1, TimeUnit.SECONDS) : journalQueue.poll();
+                if (first == null) continue;
+                group.add(first);
+            } catch (InterruptedException e) {
+                // Interrupted by shutdown: journal what is left, then exit
+            }
+            journalQueue.drainTo(group);
+            if (!group.isEmpty()) {
+                journalGroup(group);
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Appends a group to the journal. Once durable, callers are told their save succeeded
+     * and the snapshots move on to the flusher. If the journal fails, the snapshots are
+     * written straight to the database and report that outcome instead.
+     */
+    private void journalGroup(List<Pending> group) {
+        List<VaultSnapshot> snapshots = new ArrayList<>(group.size());
+        for (Pending p : group) snapshots.add(p.snapshot);
+        long[] seqs;
+        try {
+            seqs = journal.append(snapshots);
+        } catch (IOException | RuntimeException e) {
+            if (logger != null) logger.warning("[VaultWriteBehind] Journal append failed; writing " + group.size()
+                    + " vault(s) directly: " + e.getMessage());
+            for (Pending p : group) stage(p);
+            return;
+        }
+        for (int i = 0; i < seqs.length; i++) {
+            Pending p = group.get(i);
+            complete(p.callback, true);
+            stage(new Pending(p.snapshot, null, p.submittedAt, p.firstSubmittedAt, seqs[i]));
+        }
+    }
+
+    /**
+     * Hands a snapshot to the flusher. If a save of the same page is already waiting, the
+     * two are merged: the newest snapshot is kept, both callbacks receive its outcome and
+     * the page keeps the earlier first-submission time for the staleness bound.
+     */
+    private void stage(Pending p) {
+        VaultKey key = VaultKey.of(p.snapshot);
+        long releasedSeq = -1L;
+        synchronized (staged) {
+            Pending prev = staged.get(key);
+            if (prev != null) {
+                // A failed write being retried can be older than what is waiting
+                Pending newer = pending.get(key) == prev.snapshot ? prev : p;
+                Pending older = newer == prev ? p : prev;
+                long seq = newer.journalSeq;
+                if (older.journalSeq >= 0) {
+                    if (seq < 0) {
+                        seq = older.journalSeq;
+                    } else {
+                        releasedSeq = older.journalSeq;
+                    }
+                }
+                p = new Pending(newer.snapshot, chain(prev.callback, p.callback),
+                        Math.max(prev.submittedAt, p.submittedAt), Math.min(prev.firstSubmittedAt, p.firstSubmittedAt), seq);
+                queued.decrementAndGet();
+                coalesced.incrementAndGet();
+            }
+            staged.put(key, p);
+            staged.notifyAll();
+        }
+        // The newer entry is journaled too, so the replaced one is no longer needed
+        if (releasedSeq >= 0) journal.markApplied(releasedSeq);
+    }
+
+    /** Combines two nullable callbacks. */
+    private static Consumer<Boolean> chain(Consumer<Boolean> first, Consumer<Boolean> second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        return first.andThen(second);
+    }
+
+    /** Flusher loop: wait for a due batch, then write it. */
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                if (!takeBatch(batch)) return;
+            } catch (InterruptedException e) {
+                // Interrupted by shutdown: the next pass takes whatever is left
+                continue;
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Waits until a batch is due and moves it out of {@link #staged}. A page is due once it
+     * has been quiet for the debounce window and its first save has waited the batch
+     * delay, or once that first save reaches the staleness bound. When any page is due, or
+     * {@code batchSize} pages are quiet, every quiet page joins the batch. After shutdown
+     * everything is taken without waiting.
+     *
+     * @return {@code false} once stopped with nothing left to write
+     */
+    private boolean takeBatch(List<Pending> batch) throws InterruptedException {
+        synchronized (staged) {
+            while (true) {
+                if (!running && staged.isEmpty()) return false;
+                long now = System.currentTimeMillis();
+                boolean due = !running;
+                int quiet = 0;
+                long wake = Long.MAX_VALUE;
+                for (Pending p : staged.values()) {
+                    long dueAt = dueAt(p);
+                    long quietAt = p.submittedAt + debounceMillis;
+                    if (now >= dueAt) due = true; else wake = Math.min(wake, dueAt);
+                    if (now >= quietAt) quiet++; else wake = Math.min(wake, quietAt);
+                }
+                if (due || quiet >= batchSize) {
+                    Iterator<Pending> it = staged.values().iterator();
+                    while (it.hasNext() && batch.size() < batchSize) {
+                        Pending p = it.next();
+                        if (!running || now >= p.submittedAt + debounceMillis || now >= dueAt(p)) {
+                            batch.add(p);
+                            it.remove();
+                        }
+                    }
+                    return true;
+                }
+                staged.wait(wake == Long.MAX_VALUE ? 0L : wake - now);
+            }
+        }
+    }
+
+    /** Time at which a staged page must be written. */
+    private long dueAt(Pending p) {
+        long settled = Math.max(p.submittedAt + debounceMillis, p.firstSubmittedAt + maxDelayMillis);
+        return Math.min(settled, p.firstSubmittedAt + maxStalenessMillis);
+    }
+
+    /**
+     * Writes a batch. Snapshots of the same page are split into consecutive rounds
+     * (the dialects cannot upsert one row twice per statement). A failed round is
+     * retried one snapshot at a time so each player gets an accurate outcome.
+     */
+    private void flush(List<Pending> batch) {
+        List<Pending> remaining = batch;
+        while (!remaining.isEmpty()) {
+            List<Pending> round = new ArrayList<>();
+            List<Pending> later = new ArrayList<>();
+            Set<VaultKey> seen = new HashSet<>();
+            for (Pending p : remaining) {
+                if (p.callback == null && pending.get(VaultKey.of(p.snapshot)) != p.snapshot) {
+                    // A newer save of this page is queued and nobody waits for this one; never write it after the newer
+                    if (p.journalSeq >= 0) journal.markApplied(p.journalSeq);
+                    queued.decrementAndGet();
+                    continue;
+                }
+                (seen.add(VaultKey.of(p.snapshot)) ? round : later).add(p);
+            }
+            if (round.isEmpty()) break;
+
+            List<VaultSnapshot> snapshots = new ArrayList<>(round.size());
+            for (Pending p : round) snapshots.add(p.snapshot);
+            boolean ok = write(snapshots);
+            for (Pending p : round) {
+                boolean written = ok || round.size() == 1 ? ok : write(List.of(p.snapshot));
+                finish(p, written);
+            }
+            remaining = later;
+        }
+    }
+
+    /** Writes snapshots through the accessor, turning exceptions into a failed outcome. */
+    private boolean write(List<VaultSnapshot> snapshots) {
+        try {
+            return vaultDB.saveBatch(snapshots);
+        } catch (Exception e) {
+            if (logger != null) logger.warning("[VaultWriteBehind] Write of " + snapshots.size() + " vault(s) failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Releases a written snapshot and reports its outcome. A snapshot that failed is
+     * reported once, stays pending so loads keep seeing it, and is retried later; on
+     * shutdown it stays listed by {@link #unflushed()} (and, if journaled, in the journal).
+     */
+    private void finish(Pending p, boolean ok) {
+        if (!ok) {
+            complete(p.callback, false);
+            if (running) {
+                Pending retry = new Pending(p.snapshot, null, p.submittedAt, p.firstSubmittedAt, p.journalSeq);
+                retrying.add(retry);
+                try {
+                    retries.schedule(() -> {
+                        if (retrying.remove(retry)) stage(retry);
+                    }, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down: retry with the final drain
+                    if (retrying.remove(retry)) stage(retry);
+                }
+                return;
+            }
+            queued.decrementAndGet();
+            if (logger != null) logger.warning("[VaultWriteBehind] Vault " + VaultKey.of(p.snapshot) + " was not written before shutdown" +
+                    (p.journalSeq >= 0 ? "; left in the journal for the next start." : "."));
+            return;
+        }
+        if (p.journalSeq >= 0) journal.markApplied(p.journalSeq);
+        pending.remove(VaultKey.of(p.snapshot), p.snapshot);
+        queued.decrementAndGet();
+        complete(p.callback, true);
+    }
+
+    /**
+     * Hands a write outcome to the callback on the main thread, if the plugin is still enabled.
+     */
+    private void complete(Consumer<Boolean> callback, boolean ok) {
+        if (callback == null) return;
+        if (Bukkit.isPrimaryThread()) {
+            callback.accept(ok);
+        } else if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> callback.accept(ok));
+        }
+    }
+
+    /**
+     * Snapshot waiting for the journal or the flusher.
+     *
+     * @param submittedAt      latest submission merged into this entry
+     * @param firstSubmittedAt earliest submission merged into this entry
+     * @param journalSeq       journal sequence number, or -1 if not journaled
+     */
+    private record Pending(VaultSnapshot snapshot, Consumer<Boolean> callback, long submittedAt, long firstSubmittedAt,
+                           long journalSeq) {}
+}
@@ -1,9 +1,11 @@
 package io.github.mcengine.extension.addon.essential.vault.tabcompleter;
 
+import io.github.mcengine.extension.addon.essential.vault.command.VaultCommand;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -30,10 +32,32 @@ public class VaultTabCompleter implements TabCompleter {
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
             // Keep your original extras and include "open"; removed setrows/settitle.
-            List<String> base = Arrays.asList("open");
+            List<String> base = new ArrayList<>(Arrays.asList("open", "next", "prev"));
+            if (sender.hasPermission(VaultCommand.statsPermission())) base.add("stats");
+            if (sender.hasPermission(VaultCommand.migratePermission())) base.add("migrate");
+            if (sender.hasPermission(VaultCommand.backupPermission())) base.addAll(List.of("export", "import"));
             final String prefix = args[0].toLowerCase();
             return base.stream().filter(s -> s.startsWith(prefix)).collect(Collectors.toList());
         }
+        if (args.length == 2 && "stats".equalsIgnoreCase(args[0]) && sender.hasPermission(VaultCommand.statsPermission())) {
+            return "dump".startsWith(args[1].toLowerCase()) ? List.of("dump") : Collections.emptyList();
+        }
+        if ("export".equalsIgnoreCase(args[0]) && sender.hasPermission(VaultCommand.backupPermission())) {
+            if (args.length == 2) return "all".startsWith(args[1].toLowerCase()) ? List.of("all") : Collections.emptyList();
+            if (args.length == 3) return "gzip".startsWith(args[2].toLowerCase()) ? List.of("gzip") : Collections.emptyList();
+        }
+        if ("import".equalsIgnoreCase(args[0]) && args.length == 3 && sender.hasPermission(VaultCommand.backupPermission())) {
+            return "all".startsWith(args[2].toLowerCase()) ? List.of("all") : Collections.emptyList();
+        }
+        if ("migrate".equalsIgnoreCase(args[0]) && sender.hasPermission(VaultCommand.migratePermission())) {
+            if (args.length == 2) {
+                final String prefix = args[1].toLowerCase();
+                return List.of("start", "status", "cancel").stream().filter(s -> s.startsWith(prefix)).collect(Collectors.toList());
+            }
+            if (args.length == 3 && "start".equalsIgnoreCase(args[1])) {
+                return "fresh".startsWith(args[2].toLowerCase()) ? List.of("fresh") : Collections.emptyList();
+            }
+        }
         return Collections.emptyList();
         }
 }
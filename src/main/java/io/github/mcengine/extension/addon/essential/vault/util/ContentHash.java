@@ -0,0 +1,41 @@
+package io.github.mcengine.extension.addon.essential.vault.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content hashing helpers for serialized item payloads.
+ *
+ * <p>Uses SHA-256 so that equal digests can be treated as equal content
+ * without a byte-by-byte comparison.</p>
+ */
+public final class ContentHash {
+
+    /**
+     * Per-thread digest instance; {@link MessageDigest} is not thread-safe.
+     */
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    private ContentHash() {}
+
+    /**
+     * Computes the SHA-256 digest of a payload.
+     *
+     * @param bytes payload
+     * @return 32-byte digest
+     */
+    public static byte[] sha256(byte[] bytes) {
+        MessageDigest md = SHA256.get();
+        md.reset();
+        return md.digest(bytes);
+    }
+}
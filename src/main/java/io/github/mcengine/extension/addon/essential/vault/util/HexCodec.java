@@ -0,0 +1,51 @@
+package io.github.mcengine.extension.addon.essential.vault.util;
+
+/**
+ * Hex encoding used to embed item blobs in SQL literals and to read them back from
+ * the facade, which only returns strings.
+ */
+public final class HexCodec {
+
+    /**
+     * Upper-case hex digits.
+     */
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    private HexCodec() {}
+
+    /**
+     * Converts bytes to upper-case hex.
+     *
+     * @param b bytes to encode
+     * @return hex string, two characters per byte
+     */
+    public static String toHex(byte[] b) {
+        char[] out = new char[b.length * 2];
+        for (int i = 0; i < b.length; i++) {
+            int v = b[i] & 0xFF;
+            out[i * 2] = DIGITS[v >>> 4];
+            out[i * 2 + 1] = DIGITS[v & 0x0F];
+        }
+        return new String(out);
+    }
+
+    /**
+     * Parses hex (either case) to bytes.
+     *
+     * @param hex hex string; {@code null} or empty yields an empty array
+     * @return decoded bytes
+     */
+    public static byte[] fromHex(String hex) {
+        if (hex == null || hex.isEmpty()) return new byte[0];
+        int len = hex.length();
+        byte[] data = new byte[len / 2];
+        for (int i = 0; i < len; i += 2) {
+            data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
+                    + Character.digit(hex.charAt(i + 1), 16));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,315 @@
+package io.github.mcengine.extension.addon.essential.vault.util;
+
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact, versioned binary encoding for {@link ItemStack}s.
+ *
+ * <p>Layout: {@link #MAGIC}, {@link #FORMAT_VERSION}, then the item's data version,
+ * material name and amount as varints/UTF-8, followed by the remaining entries of
+ * {@link ItemStack#serialize()} (notably {@code meta}) as a tagged value tree.
+ * Nested {@link ConfigurationSerializable}s are stored as their alias plus field map
+ * and rebuilt through {@link ConfigurationSerialization}, exactly as Bukkit does for
+ * YAML, so no Java class descriptors are written. Sets (such as the {@code ItemFlags}
+ * of item meta) keep their own tag so they are rebuilt as sets rather than lists.</p>
+ *
+ * <p>Values of a type the format cannot represent make {@link #encode(ItemStack)}
+ * throw {@link IOException}; callers fall back to the legacy encoding.</p>
+ */
+public final class ItemCodec {
+
+    /** First byte of every compact payload; never the first byte of a Java stream (0xAC). */
+    public static final byte MAGIC = (byte) 0xB7;
+
+    /** Current format version, stored in the second byte. */
+    public static final byte FORMAT_VERSION = 1;
+
+    /** Value tags. */
+    private static final int T_NULL = 0, T_STRING = 1, T_INT = 2, T_LONG = 3, T_DOUBLE = 4, T_FLOAT = 5,
+            T_BOOLEAN = 6, T_SHORT = 7, T_BYTE = 8, T_BYTES = 9, T_LIST = 10, T_MAP = 11, T_SERIALIZABLE = 12, T_SET = 13;
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    private ItemCodec() {}
+
+    /**
+     * @param bytes payload
+     * @return {@code true} if the payload carries the compact header
+     */
+    public static boolean isCompact(byte[] bytes) {
+        return bytes != null && bytes.length >= 2 && bytes[0] == MAGIC;
+    }
+
+    /**
+     * Encodes an item.
+     *
+     * @param item item to encode
+     * @return compact payload
+     * @throws IOException if the item holds a value the format cannot represent
+     */
+    public static byte[] encode(ItemStack item) throws IOException {
+        Map<String, Object> fields = new LinkedHashMap<>(item.serialize());
+        Object v = fields.remove("v");
+        Object type = fields.remove("type");
+        Object amount = fields.remove("amount");
+        if (!(type instanceof String)) throw new IOException("Item has no material name");
+
+        Writer w = new Writer();
+        w.out.write(MAGIC);
+        w.out.write(FORMAT_VERSION);
+        w.varint(v instanceof Number n ? n.intValue() + 1 : 0);
+        w.string((String) type);
+        w.varint(amount instanceof Number n ? n.intValue() : 1);
+        w.map(fields);
+        return w.out.toByteArray();
+    }
+
+    /**
+     * Decodes a compact payload.
+     *
+     * @param bytes payload starting with the compact header
+     * @return decoded item
+     * @throws IOException if the payload is malformed or of an unknown version
+     */
+    public static ItemStack decode(byte[] bytes) throws IOException {
+        if (!isCompact(bytes)) throw new IOException("Not a compact item payload");
+        if (bytes[1] != FORMAT_VERSION) throw new IOException("Unsupported item format version " + bytes[1]);
+
+        Reader r = new Reader(bytes, 2);
+        Map<String, Object> fields = new LinkedHashMap<>();
+        int v = r.varint() - 1;
+        if (v >= 0) fields.put("v", v);
+        fields.put("type", r.string());
+        int amount = r.varint();
+        if (amount != 1) fields.put("amount", amount);
+        fields.putAll(r.stringMap());
+        return ItemStack.deserialize(fields);
+    }
+
+    /** Appends tagged values to a growable buffer. */
+    private static final class Writer {
+
+        /** Output buffer. */
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+
+        /** Unsigned LEB128 varint. */
+        private void varint(int value) {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        /** Unsigned LEB128 varlong. */
+        private void varlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        /** Length-prefixed UTF-8. */
+        private void string(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            varint(b.length);
+            out.write(b, 0, b.length);
+        }
+
+        /** Entry count followed by key/value pairs. */
+        private void map(Map<?, ?> map) throws IOException {
+            varint(map.size());
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                value(e.getKey());
+                value(e.getValue());
+            }
+        }
+
+        /** Tagged value. */
+        private void value(Object o) throws IOException {
+            if (o == null) {
+                out.write(T_NULL);
+            } else if (o instanceof String s) {
+                out.write(T_STRING);
+                string(s);
+            } else if (o instanceof Integer i) {
+                out.write(T_INT);
+                varint((i << 1) ^ (i >> 31));
+            } else if (o instanceof Long l) {
+                out.write(T_LONG);
+                varlong((l << 1) ^ (l >> 63));
+            } else if (o instanceof Double d) {
+                out.write(T_DOUBLE);
+                varlong(Long.reverseBytes(Double.doubleToRawLongBits(d)));
+            } else if (o instanceof Float f) {
+                out.write(T_FLOAT);
+                varint(Integer.reverseBytes(Float.floatToRawIntBits(f)));
+            } else if (o instanceof Boolean b) {
+                out.write(T_BOOLEAN);
+                out.write(b ? 1 : 0);
+            } else if (o instanceof Short s) {
+                out.write(T_SHORT);
+                varint((s << 1) ^ (s >> 31));
+            } else if (o instanceof Byte b) {
+                out.write(T_BYTE);
+                out.write(b);
+            } else if (o instanceof byte[] b) {
+                out.write(T_BYTES);
+                varint(b.length);
+                out.write(b, 0, b.length);
+            } else if (o instanceof List<?> list) {
+                out.write(T_LIST);
+                varint(list.size());
+                for (Object e : list) value(e);
+            } else if (o instanceof Set<?> set) {
+                out.write(T_SET);
+                varint(set.size());
+                for (Object e : set) value(e);
+            } else if (o instanceof Map<?, ?> map) {
+                out.write(T_MAP);
+                map(map);
+            } else if (o instanceof ConfigurationSerializable cs) {
+                String alias = ConfigurationSerialization.getAlias(cs.getClass());
+                if (alias == null) throw new IOException("No serialization alias for " + cs.getClass().getName());
+                out.write(T_SERIALIZABLE);
+                string(alias);
+                map(cs.serialize());
+            } else {
+                throw new IOException("Unsupported value type " + o.getClass().getName());
+            }
+        }
+    }
+
+    /** Reads tagged values from a byte array. */
+    private static final class Reader {
+
+        /** Source payload. */
+        private final byte[] buf;
+
+        /** Read position. */
+        private int pos;
+
+        private Reader(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        private int u8() throws IOException {
+            if (pos >= buf.length) throw new IOException("Truncated item payload");
+            return buf[pos++] & 0xFF;
+        }
+
+        private int varint() throws IOException {
+            int result = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = u8();
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private long varlong() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = u8();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+            }
+            throw new IOException("Malformed varlong");
+        }
+
+        private byte[] raw() throws IOException {
+            int len = varint();
+            if (len < 0 || len > buf.length - pos) throw new IOException("Truncated item payload");
+            byte[] b = new byte[len];
+            System.arraycopy(buf, pos, b, 0, len);
+            pos += len;
+            return b;
+        }
+
+        private String string() throws IOException {
+            int len = varint();
+            if (len < 0 || len > buf.length - pos) throw new IOException("Truncated item payload");
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+
+        private Map<Object, Object> map() throws IOException {
+            int n = varint();
+            Map<Object, Object> map = new LinkedHashMap<>(Math.max(4, n * 2));
+            for (int i = 0; i < n; i++) map.put(value(), value());
+            return map;
+        }
+
+        private Map<String, Object> stringMap() throws IOException {
+            int n = varint();
+            Map<String, Object> map = new LinkedHashMap<>(Math.max(4, n * 2));
+            for (int i = 0; i < n; i++) map.put(String.valueOf(value()), value());
+            return map;
+        }
+
+        private Object value() throws IOException {
+            int tag = u8();
+            return switch (tag) {
+                case T_NULL -> null;
+                case T_STRING -> string();
+                case T_INT -> {
+                    int z = varint();
+                    yield (z >>> 1) ^ -(z & 1);
+                }
+                case T_LONG -> {
+                    long z = varlong();
+                    yield (z >>> 1) ^ -(z & 1);
+                }
+                case T_DOUBLE -> Double.longBitsToDouble(Long.reverseBytes(varlong()));
+                case T_FLOAT -> Float.intBitsToFloat(Integer.reverseBytes(varint()));
+                case T_BOOLEAN -> u8() != 0;
+                case T_SHORT -> {
+                    int z = varint();
+                    yield (short) ((z >>> 1) ^ -(z & 1));
+                }
+                case T_BYTE -> (byte) u8();
+                case T_BYTES -> raw();
+                case T_LIST -> {
+                    int n = varint();
+                    List<Object> list = new ArrayList<>(n);
+                    for (int i = 0; i < n; i++) list.add(value());
+                    yield list;
+                }
+                case T_SET -> {
+                    int n = varint();
+                    Set<Object> set = new LinkedHashSet<>(Math.max(4, n * 2));
+                    for (int i = 0; i < n; i++) set.add(value());
+                    yield set;
+                }
+                case T_MAP -> map();
+                case T_SERIALIZABLE -> {
+                    String alias = string();
+                    Map<String, Object> fields = new LinkedHashMap<>();
+                    fields.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, alias);
+                    fields.putAll(stringMap());
+                    ConfigurationSerializable obj = ConfigurationSerialization.deserializeObject(fields);
+                    if (obj == null) throw new IOException("Could not deserialize '" + alias + "'");
+                    yield obj;
+                }
+                default -> throw new IOException("Unknown value tag " + tag);
+            };
+        }
+    }
+}
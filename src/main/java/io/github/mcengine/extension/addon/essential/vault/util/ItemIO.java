@@ -1,6 +1,5 @@
 package io.github.mcengine.extension.addon.essential.vault.util;
 
-import org.bukkit.configuration.serialization.ConfigurationSerialization;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.io.BukkitObjectInputStream;
 import org.bukkit.util.io.BukkitObjectOutputStream;
@@ -8,15 +7,37 @@ import org.bukkit.util.io.BukkitObjectOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Item (de)serialization helpers for storing full Bukkit {@link ItemStack}
  * (including metadata/NBT) as a compact binary blob suitable for DB persistence.
  *
- * <p>Uses {@link BukkitObjectOutputStream} / {@link BukkitObjectInputStream}.</p>
+ * <p>New payloads use the versioned {@link ItemCodec} format. Payloads written by
+ * earlier versions with {@link BukkitObjectOutputStream} (Java serialization) are
+ * still read transparently, and items the compact format cannot represent are
+ * written that way as a fallback.</p>
+ *
+ * <p>When an {@link ItemTemplateCache} is installed, decoding clones a cached
+ * template for payloads seen before instead of deserializing them again.</p>
  */
 public final class ItemIO {
 
+    /**
+     * Decoded-item templates used by {@link #fromBytes(byte[])}, or {@code null} when disabled.
+     */
+    private static volatile ItemTemplateCache templates;
+
+    /**
+     * Items written with the compact codec.
+     */
+    private static final AtomicLong compactWrites = new AtomicLong();
+
+    /**
+     * Items the compact codec rejected and that were written in the legacy format instead.
+     */
+    private static final AtomicLong legacyFallbacks = new AtomicLong();
+
     /**
      * Prevent instantiation of utility class.
      */
@@ -30,24 +51,62 @@ public final class ItemIO {
      */
     public static byte[] toBytes(ItemStack item) {
         if (item == null) return null;
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             BukkitObjectOutputStream oos = new BukkitObjectOutputStream(baos)) {
-            oos.writeObject(item);
-            oos.flush();
-            return baos.toByteArray();
-        } catch (IOException ex) {
-            return null;
+        try {
+            byte[] bytes = ItemCodec.encode(item);
+            compactWrites.incrementAndGet();
+            return bytes;
+        } catch (IOException | RuntimeException ex) {
+            legacyFallbacks.incrementAndGet();
+            return toLegacyBytes(item);
         }
     }
 
+    /**
+     * @return items encoded with the compact codec since startup
+     */
+    public static long compactWriteCount() {
+        return compactWrites.get();
+    }
+
+    /**
+     * @return items that fell back to the legacy encoding since startup
+     */
+    public static long legacyFallbackCount() {
+        return legacyFallbacks.get();
+    }
+
     /**
      * Deserializes a byte array back into an {@link ItemStack}. Returns {@code null} on failure.
      *
-     * @param bytes binary payload
+     * @param bytes binary payload (compact or legacy)
      * @return reconstructed {@link ItemStack} or {@code null} if an error occurred
      */
     public static ItemStack fromBytes(byte[] bytes) {
         if (bytes == null || bytes.length == 0) return null;
+        ItemTemplateCache cache = templates;
+        return cache != null ? cache.decode(bytes, ItemIO::decode) : decode(bytes);
+    }
+
+    /**
+     * Installs or removes the template cache used by {@link #fromBytes(byte[])}.
+     *
+     * @param cache template cache, or {@code null} to always deserialize
+     */
+    public static void setTemplateCache(ItemTemplateCache cache) {
+        templates = cache;
+    }
+
+    /**
+     * Fully deserializes a non-empty payload (compact or legacy).
+     */
+    private static ItemStack decode(byte[] bytes) {
+        if (ItemCodec.isCompact(bytes)) {
+            try {
+                return ItemCodec.decode(bytes);
+            } catch (IOException | RuntimeException ex) {
+                return null;
+            }
+        }
         try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
              BukkitObjectInputStream ois = new BukkitObjectInputStream(bais)) {
             Object obj = ois.readObject();
@@ -56,4 +115,26 @@ public final class ItemIO {
             return null;
         }
     }
+
+    /**
+     * @param bytes binary payload
+     * @return {@code true} if the payload uses the legacy Java serialization format
+     */
+    public static boolean isLegacy(byte[] bytes) {
+        return bytes != null && bytes.length >= 2 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED;
+    }
+
+    /**
+     * Serializes with {@link BukkitObjectOutputStream}; used when the compact codec cannot.
+     */
+    private static byte[] toLegacyBytes(ItemStack item) {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+             BukkitObjectOutputStream oos = new BukkitObjectOutputStream(baos)) {
+            oos.writeObject(item);
+            oos.flush();
+            return baos.toByteArray();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
 }
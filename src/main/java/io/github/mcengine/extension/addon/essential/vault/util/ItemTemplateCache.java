@@ -0,0 +1,169 @@
+package io.github.mcengine.extension.addon.essential.vault.util;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of decoded items keyed by their serialized content.
+ *
+ * <p>Most vault slots hold one of a few common items (full stacks of cobblestone,
+ * diamonds, ...), whose payloads are byte-for-byte identical. The first time a payload
+ * is seen it is decoded and kept as a template; later occurrences get a clone of the
+ * template instead of a full deserialization. Templates are never handed out.</p>
+ *
+ * <p>Keys are the payload bytes with a precomputed content hash, so equal hashes are
+ * always confirmed by comparing bytes. Only payloads up to {@code maxItemBytes} are
+ * cached: large items (books, filled shulker boxes) are rarely duplicated and would
+ * crowd out the common ones. Eviction is least recently used.</p>
+ */
+public final class ItemTemplateCache {
+
+    /**
+     * Maximum number of templates.
+     */
+    private final int maxEntries;
+
+    /**
+     * Largest payload that is cached, in bytes.
+     */
+    private final int maxItemBytes;
+
+    /**
+     * Access-ordered templates; guarded by {@code this}.
+     */
+    private final LinkedHashMap<Key, ItemStack> templates = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ItemStack> eldest) {
+            if (size() <= maxEntries) return false;
+            evictions.incrementAndGet();
+            return true;
+        }
+    };
+
+    /**
+     * Decodes served from a template.
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Decodes that ran the codec (cacheable payloads only).
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Templates dropped for size.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates the cache.
+     *
+     * @param maxEntries   maximum number of templates
+     * @param maxItemBytes largest payload to cache, in bytes
+     */
+    public ItemTemplateCache(int maxEntries, int maxItemBytes) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxItemBytes = Math.max(1, maxItemBytes);
+    }
+
+    /**
+     * Returns a fresh item for a payload, cloning a cached template when there is one.
+     *
+     * @param bytes   serialized item
+     * @param decoder full deserialization, used on a miss
+     * @return decoded item owned by the caller, or {@code null} if it cannot be decoded
+     */
+    public ItemStack decode(byte[] bytes, Function<byte[], ItemStack> decoder) {
+        if (bytes.length > maxItemBytes) return decoder.apply(bytes);
+
+        Key key = new Key(bytes);
+        ItemStack template;
+        synchronized (this) {
+            template = templates.get(key);
+        }
+        if (template != null) {
+            hits.incrementAndGet();
+            return template.clone();
+        }
+
+        misses.incrementAndGet();
+        ItemStack decoded = decoder.apply(bytes);
+        if (decoded == null) return null;
+        synchronized (this) {
+            // Copy the key: the caller may reuse its buffer
+            templates.putIfAbsent(new Key(bytes.clone(), key.hash), decoded.clone());
+        }
+        return decoded;
+    }
+
+    /**
+     * @return number of decodes served from a template
+     */
+    public long hitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of cacheable decodes that ran the codec
+     */
+    public long missCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of templates evicted for size
+     */
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return fraction of cacheable decodes served from a template (0 when none yet)
+     */
+    public double hitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * @return number of cached templates
+     */
+    public synchronized int size() {
+        return templates.size();
+    }
+
+    /** Payload bytes with their content hash. */
+    private static final class Key {
+
+        /** Serialized item. */
+        private final byte[] bytes;
+
+        /** Content hash of {@link #bytes}. */
+        private final int hash;
+
+        private Key(byte[] bytes) {
+            this(bytes, Arrays.hashCode(bytes));
+        }
+
+        private Key(byte[] bytes, int hash) {
+            this.bytes = bytes;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && k.hash == hash && Arrays.equals(k.bytes, bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
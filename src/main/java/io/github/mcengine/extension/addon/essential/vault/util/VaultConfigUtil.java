@@ -1,11 +1,15 @@
 package io.github.mcengine.extension.addon.essential.vault.util;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import io.github.mcengine.api.core.extension.logger.MCEngineExtensionLogger;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Utility class for creating and ensuring the main configuration file
@@ -52,6 +56,104 @@ public final class VaultConfigUtil {
         // Required default: license must be "free"
         config.set("license", "free");
 
+        // In-memory vault cache in front of the database
+        config.set("cache.enabled", true);
+        config.set("cache.max-entries", 1000);
+        config.set("cache.expire-after-access-seconds", 600);
+
+        // Pages per player; only the viewed page is loaded, its neighbours are prefetched
+        config.set("pages.max", 3);
+        config.set("pages.prefetch-adjacent", true);
+
+        // Batched background writes: flush after this many vaults or this delay
+        config.set("write-behind.batch-size", 100);
+        config.set("write-behind.max-delay-ms", 250);
+        // Repeated saves of one vault page are merged: a page is written once no save of it
+        // arrived for debounce-ms, and at the latest max-staleness-ms after its first save
+        config.set("write-behind.debounce-ms", 500);
+        config.set("write-behind.max-staleness-ms", 5000);
+
+        // Local append-only journal: saves are durable once synced here and are replayed
+        // into the database after a crash or a failed write
+        config.set("journal.enabled", true);
+        config.set("journal.max-size-mb", 64);
+
+        // Write /vault stats as JSON to metrics.json every N seconds (0 = only on /vault stats dump)
+        config.set("metrics.dump-interval-seconds", 0);
+
+        // On shutdown, open vaults are saved and queued saves get this long to be written
+        config.set("shutdown.drain-timeout-ms", 10000);
+
+        // Rewrite items stored in the legacy Java-serialization format in the background
+        config.set("codec.reencode-legacy", true);
+        config.set("codec.reencode-rows-per-second", 100);
+        // Identical items are decoded once and cloned afterwards; 0 entries disables this.
+        // Payloads larger than max-item-bytes (books, filled shulkers) are always decoded.
+        config.set("codec.item-cache.max-entries", 2048);
+        config.set("codec.item-cache.max-item-bytes", 1024);
+
+        // Optional vault-owned connection pool to the same database, used for vault loads
+        // and saves. Leave the url empty to go through the shared connection instead.
+        config.set("database.jdbc.url", "");
+        config.set("database.jdbc.username", "");
+        config.set("database.jdbc.password", "");
+        config.set("database.pool.maximum-size", 4);
+        config.set("database.pool.minimum-idle", 1);
+        config.set("database.pool.connection-timeout-ms", 5000);
+        config.set("database.pool.idle-timeout-ms", 600000);
+        config.set("database.pool.max-lifetime-ms", 1800000);
+        config.set("database.pool.leak-detection-threshold-ms", 0);
+        config.set("database.pool.query-timeout-seconds", 10);
+        // SQLite pool (jdbc:sqlite: url): WAL lets loads read while a save writes. synchronous
+        // NORMAL only syncs at checkpoints (a crash may lose the latest commits, never corrupts);
+        // FULL syncs every commit. Concurrent saves queue on the write lock for up to busy-timeout-ms.
+        config.set("database.sqlite.wal", true);
+        config.set("database.sqlite.synchronous", "NORMAL");
+        config.set("database.sqlite.wal-autocheckpoint-pages", 1000);
+        config.set("database.sqlite.busy-timeout-ms", 5000);
+
+        // Item storage layout: "slot" (one row per slot), "page" (one packed row per page) or
+        // "dedup" (one row per slot pointing at a shared, reference-counted item blob).
+        // Switching to "page" or "dedup" migrates existing per-slot rows in the background.
+        config.set("storage.layout", "slot");
+        config.set("storage.migrate-pages-per-second", 20);
+        // Dedup layout: how often unreferenced blobs are deleted, and how many per statement
+        config.set("storage.dedup.gc-interval-seconds", 300);
+        config.set("storage.dedup.gc-batch-size", 500);
+        // Saves are conditional on the version the page was loaded at (a save whose version is
+        // unknown is handled the same way). When another server saved the vault in between:
+        // "merge" keeps both changes where they fit in the page and reloads instead when both
+        // servers changed the same stack, "reload" always keeps the stored vault and drops this
+        // server's change. Without database.jdbc.url, saves run as separate statements: a lost
+        // race is still detected, but the item statements are not guarded, so item writes of two
+        // servers saving at the same moment can interleave (last writer wins). Use the pool for
+        // several servers.
+        config.set("storage.conflict-resolution", "merge");
+
+        // Change feed: for several servers sharing one database. Every save appends an entry to
+        // essential_vault_change, and each server drops cached vaults other servers saved.
+        // node-id: unique per server (blank: random per start). On PostgreSQL with database.pool,
+        // "listen" wakes the poll through LISTEN/NOTIFY instead of waiting for the interval.
+        config.set("change-feed.enabled", false);
+        config.set("change-feed.node-id", "");
+        config.set("change-feed.poll-interval-ms", 1000);
+        config.set("change-feed.batch-size", 200);
+        config.set("change-feed.gap-timeout-ms", 10000);
+        config.set("change-feed.retention-seconds", 3600);
+        config.set("change-feed.listen", true);
+
+        // Backend migration (/vault migrate): copies every vault from source to target over JDBC.
+        // For a MySQL target, rewriteBatchedStatements=true in the URL speeds up the inserts.
+        config.set("migration.source.jdbc.url", "");
+        config.set("migration.source.jdbc.username", "");
+        config.set("migration.source.jdbc.password", "");
+        config.set("migration.target.jdbc.url", "");
+        config.set("migration.target.jdbc.username", "");
+        config.set("migration.target.jdbc.password", "");
+        config.set("migration.chunk-players", 500);
+        config.set("migration.writer-threads", 4);
+        config.set("migration.progress-interval-seconds", 10);
+
         try {
             config.save(configFile);
             if (logger != null) {
@@ -64,4 +166,92 @@ public final class VaultConfigUtil {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Creates the vault-owned connection pool from the {@code database.jdbc.*} and
+     * {@code database.pool.*} keys of the AddOn config.
+     *
+     * @param config AddOn configuration
+     * @param logger Logger for reporting creation outcomes.
+     * @return started pool, or {@code null} if no JDBC URL is configured or the pool could not start
+     */
+    public static HikariDataSource createDataSource(ConfigurationSection config, MCEngineExtensionLogger logger) {
+        String url = config.getString("database.jdbc.url", "");
+        if (url == null || url.isBlank()) return null;
+
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName("MCEngineVault-Pool");
+        hikari.setJdbcUrl(url.trim());
+        String username = config.getString("database.jdbc.username", "");
+        if (username != null && !username.isEmpty()) {
+            hikari.setUsername(username);
+            hikari.setPassword(config.getString("database.jdbc.password", ""));
+        }
+        int maxSize = Math.max(1, config.getInt("database.pool.maximum-size", 4));
+        hikari.setMaximumPoolSize(maxSize);
+        hikari.setMinimumIdle(Math.max(0, Math.min(maxSize, config.getInt("database.pool.minimum-idle", 1))));
+        hikari.setConnectionTimeout(Math.max(250L, config.getLong("database.pool.connection-timeout-ms", 5000L)));
+        hikari.setIdleTimeout(Math.max(0L, config.getLong("database.pool.idle-timeout-ms", 600000L)));
+        hikari.setMaxLifetime(Math.max(0L, config.getLong("database.pool.max-lifetime-ms", 1800000L)));
+        long leak = config.getLong("database.pool.leak-detection-threshold-ms", 0L);
+        // HikariCP rejects thresholds below 2 seconds; 0 disables leak detection
+        hikari.setLeakDetectionThreshold(leak <= 0 ? 0L : Math.max(2000L, leak));
+        if (isSqlite(url)) {
+            // Passed to the driver as connection properties, so every pooled connection gets them
+            hikari.addDataSourceProperty("busy_timeout", String.valueOf(Math.max(0, config.getInt("database.sqlite.busy-timeout-ms", 5000))));
+            if (config.getBoolean("database.sqlite.wal", true)) {
+                String synchronous = config.getString("database.sqlite.synchronous", "NORMAL");
+                synchronous = synchronous == null ? "NORMAL" : synchronous.trim().toUpperCase();
+                if (!List.of("OFF", "NORMAL", "FULL", "EXTRA").contains(synchronous)) synchronous = "NORMAL";
+                hikari.addDataSourceProperty("journal_mode", "WAL");
+                hikari.addDataSourceProperty("synchronous", synchronous);
+                hikari.setConnectionInitSql("PRAGMA wal_autocheckpoint = " + Math.max(0, config.getInt("database.sqlite.wal-autocheckpoint-pages", 1000)));
+            }
+        }
+
+        try {
+            HikariDataSource dataSource = new HikariDataSource(hikari);
+            if (logger != null) logger.info("Vault connection pool started (max " + maxSize + " connections).");
+            return dataSource;
+        } catch (RuntimeException e) {
+            if (logger != null) logger.warning("Vault connection pool could not start, using shared connection: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param url JDBC URL (nullable)
+     * @return {@code true} if the URL points at a SQLite database
+     */
+    public static boolean isSqlite(String url) {
+        return url != null && url.trim().toLowerCase().startsWith("jdbc:sqlite:");
+    }
+
+    /**
+     * Creates a connection pool for one side of a backend migration from the
+     * {@code migration.<side>.jdbc.*} keys of the AddOn config.
+     *
+     * @param config   AddOn configuration
+     * @param side     {@code source} or {@code target}
+     * @param poolSize maximum number of connections
+     * @return started pool
+     * @throws IllegalStateException if no JDBC URL is configured for {@code side}
+     */
+    public static HikariDataSource createMigrationDataSource(ConfigurationSection config, String side, int poolSize) {
+        String url = config.getString("migration." + side + ".jdbc.url", "");
+        if (url == null || url.isBlank()) throw new IllegalStateException("migration." + side + ".jdbc.url is not set");
+
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName("MCEngineVault-Migration-" + side);
+        hikari.setJdbcUrl(url.trim());
+        String username = config.getString("migration." + side + ".jdbc.username", "");
+        if (username != null && !username.isEmpty()) {
+            hikari.setUsername(username);
+            hikari.setPassword(config.getString("migration." + side + ".jdbc.password", ""));
+        }
+        hikari.setMaximumPoolSize(Math.max(1, poolSize));
+        hikari.setMinimumIdle(0);
+        hikari.setConnectionTimeout(30_000L);
+        return new HikariDataSource(hikari);
+    }
 }
@@ -0,0 +1,82 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Three-way slot merge of {@link VaultConflicts#merge}.
+ */
+class VaultConflictsTest {
+
+    private static final byte[] STONE_64 = {1, 64};
+    private static final byte[] STONE_32 = {1, 32};
+    private static final byte[] STONE_16 = {1, 16};
+    private static final byte[] DIAMOND = {2, 1};
+    private static final byte[] EMERALD = {3, 1};
+
+    @Test
+    void keepsChangesToDifferentSlots() {
+        Map<Integer, byte[]> base = VaultSlotTracker.digest(Map.of(0, STONE_64, 1, DIAMOND));
+
+        Map<Integer, byte[]> merged = VaultConflicts.merge(base,
+                Map.of(0, STONE_64, 1, DIAMOND, 2, EMERALD), // ours adds slot 2
+                Map.of(0, STONE_32, 1, DIAMOND), // theirs takes half of slot 0
+                9);
+
+        assertEquals(3, merged.size());
+        assertArrayEquals(STONE_32, merged.get(0));
+        assertArrayEquals(DIAMOND, merged.get(1));
+        assertArrayEquals(EMERALD, merged.get(2));
+    }
+
+    @Test
+    void reloadsWhenBothSidesChangedTheSameStack() {
+        // Both servers took from the same 64: keeping either count, or both, duplicates items
+        Map<Integer, byte[]> base = VaultSlotTracker.digest(Map.of(0, STONE_64));
+
+        assertNull(VaultConflicts.merge(base, Map.of(0, STONE_32), Map.of(0, STONE_16), 9));
+    }
+
+    @Test
+    void relocatesOursWhenBothFilledAnEmptySlot() {
+        Map<Integer, byte[]> base = VaultSlotTracker.digest(Map.of(0, STONE_64));
+
+        Map<Integer, byte[]> merged = VaultConflicts.merge(base,
+                Map.of(0, STONE_64, 1, DIAMOND),
+                Map.of(0, STONE_64, 1, EMERALD),
+                9);
+
+        assertEquals(3, merged.size());
+        assertArrayEquals(EMERALD, merged.get(1));
+        assertArrayEquals(DIAMOND, merged.get(2));
+    }
+
+    @Test
+    void identicalNewItemIsKeptOnce() {
+        Map<Integer, byte[]> merged = VaultConflicts.merge(VaultSlotTracker.digest(Map.of()),
+                Map.of(4, DIAMOND), Map.of(4, DIAMOND), 9);
+
+        assertEquals(1, merged.size());
+        assertArrayEquals(DIAMOND, merged.get(4));
+    }
+
+    @Test
+    void reloadsWhenRelocatedItemsDoNotFit() {
+        Map<Integer, byte[]> base = VaultSlotTracker.digest(Map.of());
+
+        assertNull(VaultConflicts.merge(base, Map.of(0, DIAMOND), Map.of(0, EMERALD), 1));
+    }
+
+    @Test
+    void unknownBaseKeepsOurPage() {
+        Map<Integer, byte[]> merged = VaultConflicts.merge(null, Map.of(0, DIAMOND), Map.of(0, EMERALD, 1, STONE_64), 9);
+
+        assertEquals(1, merged.size());
+        assertArrayEquals(DIAMOND, merged.get(0));
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trips and malformed input of {@link VaultPagePacker}.
+ */
+class VaultPagePackerTest {
+
+    @Test
+    void roundTripsSparsePage() {
+        Map<Integer, byte[]> slots = new TreeMap<>();
+        slots.put(0, new byte[]{1});
+        slots.put(7, new byte[0]);
+        slots.put(53, filled(300, (byte) 9)); // length needs a two-byte varint
+        slots.put(VaultPagePacker.MAX_SLOT, new byte[]{4, 5, 6});
+
+        long bitmap = VaultPagePacker.bitmap(slots);
+        Map<Integer, byte[]> unpacked = VaultPagePacker.unpack(bitmap, VaultPagePacker.pack(slots));
+
+        assertEquals(slots.keySet(), unpacked.keySet());
+        for (Map.Entry<Integer, byte[]> e : slots.entrySet()) {
+            assertArrayEquals(e.getValue(), unpacked.get(e.getKey()), "slot " + e.getKey());
+        }
+    }
+
+    @Test
+    void emptyPageHasNoBitsAndNoPayload() {
+        assertEquals(0L, VaultPagePacker.bitmap(Map.of()));
+        assertEquals(0, VaultPagePacker.pack(Map.of()).length);
+        assertTrue(VaultPagePacker.unpack(0L, new byte[0]).isEmpty());
+    }
+
+    @Test
+    void rejectsSlotsOutsideTheBitmap() {
+        assertThrows(IllegalArgumentException.class, () -> VaultPagePacker.bitmap(Map.of(64, new byte[1])));
+        assertThrows(IllegalArgumentException.class, () -> VaultPagePacker.bitmap(Map.of(-1, new byte[1])));
+    }
+
+    @Test
+    void rejectsTruncatedPayload() {
+        Map<Integer, byte[]> slots = Map.of(0, new byte[]{1, 2, 3}, 1, new byte[]{4, 5});
+        long bitmap = VaultPagePacker.bitmap(slots);
+        byte[] packed = VaultPagePacker.pack(slots);
+
+        assertThrows(IllegalArgumentException.class, () -> VaultPagePacker.unpack(bitmap, Arrays.copyOf(packed, packed.length - 1)));
+        // A bitmap with more slots than the payload holds
+        assertThrows(IllegalArgumentException.class, () -> VaultPagePacker.unpack(bitmap | 1L << 2, packed));
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+}
@@ -0,0 +1,122 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link VaultSchemaMigrator} against an in-memory SQLite database, starting from a
+ * database created before schema versioning (version 0, tables already present).
+ */
+class VaultSchemaMigratorTest {
+
+    private Connection connection;
+    private VaultSchemaMigrator.Database database;
+
+    /** Runs of each step, by version. */
+    private final int[] runs = new int[3];
+
+    @BeforeEach
+    void openDatabase() throws Exception {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        database = new VaultSchemaMigrator.Database() {
+            @Override
+            public void execute(String sql) throws SQLException {
+                try (Statement st = connection.createStatement()) {
+                    st.execute(sql);
+                }
+            }
+
+            @Override
+            public String value(String sql) throws SQLException {
+                try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+                    return rs.next() ? rs.getString(1) : null;
+                }
+            }
+        };
+        // Layout of an unversioned install: item table present, meta without the version column
+        database.execute(VaultDialect.SQLITE.createItemTable());
+        database.execute("CREATE TABLE essential_vault_meta (player_uuid VARCHAR(36) PRIMARY KEY, rows INT NOT NULL, title TEXT, updated_at TIMESTAMP)");
+        database.execute("INSERT INTO essential_vault_meta (player_uuid, rows, title) VALUES ('p', 6, 'Vault')");
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void versionZeroDatabaseReplaysEveryStepOverExistingTables() throws Exception {
+        assertEquals(2, VaultSchemaMigrator.migrate(database, VaultDialect.SQLITE, steps(), null));
+
+        assertEquals(1, runs[1]);
+        assertEquals(1, runs[2]);
+        assertEquals("2", database.value("SELECT COUNT(*) FROM essential_vault_schema_version"));
+        // Existing rows survive and pick up the new column's default
+        assertEquals("0", database.value("SELECT version FROM essential_vault_meta WHERE player_uuid = 'p'"));
+    }
+
+    @Test
+    void appliedStepsDoNotRunAgain() throws Exception {
+        VaultSchemaMigrator.migrate(database, VaultDialect.SQLITE, steps(), null);
+        assertEquals(2, VaultSchemaMigrator.migrate(database, VaultDialect.SQLITE, steps(), null));
+
+        assertEquals(1, runs[1]);
+        assertEquals(1, runs[2]);
+    }
+
+    @Test
+    void failedStepIsRetriedOnTheNextRun() throws Exception {
+        List<VaultSchemaMigrator.Step> failing = List.of(steps().get(0),
+                new VaultSchemaMigrator.Step(2, "broken", () -> database.execute("ALTER TABLE missing ADD COLUMN x INT")));
+        assertThrows(SQLException.class, () -> VaultSchemaMigrator.migrate(database, VaultDialect.SQLITE, failing, null));
+        assertEquals("1", database.value("SELECT MAX(version) FROM essential_vault_schema_version"));
+
+        assertEquals(2, VaultSchemaMigrator.migrate(database, VaultDialect.SQLITE, steps(), null));
+        assertEquals(1, runs[1]);
+        assertEquals(1, runs[2]);
+    }
+
+    @Test
+    void newerRecordedVersionIsLeftUnchanged() throws Exception {
+        database.execute(VaultDialect.SQLITE.createSchemaVersionTable());
+        database.execute("INSERT INTO essential_vault_schema_version (version, description) VALUES (9, 'future')");
+
+        assertEquals(9, VaultSchemaMigrator.migrate(database, VaultDialect.SQLITE, steps(), null));
+        assertEquals(0, runs[1]);
+    }
+
+    @Test
+    void rejectsStepsOutOfOrder() {
+        List<VaultSchemaMigrator.Step> steps = List.of(steps().get(1), steps().get(0));
+
+        assertThrows(IllegalStateException.class, () -> VaultSchemaMigrator.migrate(database, VaultDialect.SQLITE, steps, null));
+    }
+
+    /** Two idempotent steps, as the backends write them. */
+    private List<VaultSchemaMigrator.Step> steps() {
+        return List.of(
+                new VaultSchemaMigrator.Step(1, "meta table", () -> {
+                    runs[1]++;
+                    database.execute(VaultDialect.SQLITE.createMetaTable());
+                }),
+                new VaultSchemaMigrator.Step(2, "meta version", () -> {
+                    runs[2]++;
+                    String present = database.value("SELECT COUNT(*) FROM pragma_table_info('essential_vault_meta') WHERE name = 'version'");
+                    if ("0".equals(present)) {
+                        database.execute("ALTER TABLE essential_vault_meta ADD COLUMN version BIGINT NOT NULL DEFAULT 0");
+                    }
+                })
+        );
+    }
+}
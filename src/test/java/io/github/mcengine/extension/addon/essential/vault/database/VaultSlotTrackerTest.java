@@ -0,0 +1,112 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Slot diffing and version bookkeeping of {@link VaultSlotTracker}.
+ */
+class VaultSlotTrackerTest {
+
+    private final UUID player = UUID.randomUUID();
+    private final VaultKey key = new VaultKey(player, 0);
+
+    @Test
+    void pageWithoutBaselineIsRewrittenFully() {
+        VaultSlotTracker tracker = new VaultSlotTracker(16);
+        Map<Integer, byte[]> current = Map.of(1, bytes(1), 2, bytes(2));
+
+        VaultSlotTracker.Diff diff = tracker.diff(key, current);
+
+        assertTrue(diff.full());
+        assertEquals(current.keySet(), diff.upserts().keySet());
+        assertTrue(diff.deletes().isEmpty());
+    }
+
+    @Test
+    void diffHasOnlyChangedAddedAndRemovedSlots() {
+        VaultSlotTracker tracker = new VaultSlotTracker(16);
+        tracker.recordLoaded(key, Map.of(0, bytes(0), 1, bytes(1), 2, bytes(2)));
+
+        VaultSlotTracker.Diff diff = tracker.diff(key, Map.of(0, bytes(0), 1, bytes(11), 3, bytes(3)));
+
+        assertFalse(diff.full());
+        assertEquals(Set.of(1, 3), diff.upserts().keySet());
+        assertEquals(Set.of(2), diff.deletes());
+    }
+
+    @Test
+    void committedPageIsUnchangedUntilForgotten() {
+        VaultSlotTracker tracker = new VaultSlotTracker(16);
+        Map<Integer, byte[]> current = Map.of(4, bytes(4));
+        tracker.commit(key, current, 6, "Vault", 2L, 3L);
+
+        assertTrue(tracker.diff(key, current).isEmpty());
+        assertFalse(tracker.metaChanged(player, 6, "Vault"));
+        assertTrue(tracker.metaChanged(player, 5, "Vault"));
+        assertEquals(3L, tracker.version(player));
+
+        tracker.forget(player);
+        assertTrue(tracker.diff(key, current).full());
+        assertNull(tracker.version(player));
+    }
+
+    @Test
+    void newerStoredVersionDropsStaleBaselines() {
+        VaultSlotTracker tracker = new VaultSlotTracker(16);
+        tracker.commit(key, Map.of(0, bytes(0)), 6, null, 1L, 2L);
+
+        // An older or equal read keeps what this server wrote
+        tracker.recordLoadedMeta(player, 6, null, 2L);
+        assertFalse(tracker.diff(key, Map.of(0, bytes(0))).full());
+
+        tracker.recordLoadedMeta(player, 6, null, 5L);
+        assertTrue(tracker.diff(key, Map.of(0, bytes(0))).full());
+        assertEquals(5L, tracker.version(player));
+    }
+
+    @Test
+    void expectedVersionFollowsOwnWritesButNotOtherServers() {
+        VaultSlotTracker tracker = new VaultSlotTracker(16);
+        tracker.recordLoadedMeta(player, 6, null, 3L);
+        tracker.commit(key, Map.of(0, bytes(0)), 6, null, 3L, 4L);
+
+        // Loaded at 3, and only this server wrote since
+        assertEquals(4L, tracker.expectedVersion(player, 3L));
+        assertEquals(4L, tracker.expectedVersion(player, null));
+
+        // Another server wrote 6: a page loaded at 3 must fail its guard
+        tracker.recordLoadedMeta(player, 6, null, 6L);
+        assertEquals(3L, tracker.expectedVersion(player, 3L));
+        assertEquals(6L, tracker.expectedVersion(player, 6L));
+
+        // Forgotten or evicted: only the loaded version is known
+        tracker.forget(player);
+        assertEquals(3L, tracker.expectedVersion(player, 3L));
+        assertNull(tracker.expectedVersion(player, null));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedPages() {
+        VaultSlotTracker tracker = new VaultSlotTracker(1);
+        VaultKey other = new VaultKey(player, 1);
+        tracker.recordLoaded(key, Map.of());
+        tracker.recordLoaded(other, Map.of());
+
+        assertNull(tracker.baseline(key));
+        assertTrue(tracker.baseline(other).isEmpty());
+    }
+
+    private static byte[] bytes(int value) {
+        return new byte[]{(byte) value, (byte) (value >> 8), 42};
+    }
+}
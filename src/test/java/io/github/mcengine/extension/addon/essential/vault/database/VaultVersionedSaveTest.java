@@ -0,0 +1,131 @@
+package io.github.mcengine.extension.addon.essential.vault.database;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.mcengine.extension.addon.essential.vault.database.sqlite.VaultDBSQLite;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Versioned saves of {@link AbstractVaultDB} with two servers sharing one SQLite database
+ * through the vault pool. Each server is its own backend instance; a new instance stands in
+ * for a server that restarted and lost what it tracked.
+ */
+class VaultVersionedSaveTest {
+
+    private static final byte[] STONE = {1, 64};
+    private static final byte[] DIAMOND = {2, 1};
+    private static final byte[] EMERALD = {3, 1};
+
+    @TempDir
+    Path directory;
+
+    private HikariDataSource dataSource;
+    private VaultConnectionSource connections;
+
+    private final UUID player = UUID.randomUUID();
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:sqlite:" + directory.resolve("vault.db"));
+        config.setMaximumPoolSize(1);
+        dataSource = new HikariDataSource(config);
+        connections = new VaultConnectionSource(dataSource, 0, null);
+        try (Connection c = dataSource.getConnection(); Statement st = c.createStatement()) {
+            st.execute(VaultDialect.SQLITE.createMetaTable());
+            st.execute(VaultDialect.SQLITE.createItemTable());
+        }
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        dataSource.close();
+    }
+
+    @Test
+    void laterSavesOfThisServerDoNotConflict() {
+        VaultConflicts conflicts = new VaultConflicts(VaultConflicts.Resolution.RELOAD);
+        VaultDB server = server(conflicts);
+        Long loaded = server.loadPlayerVault(player, 0, 6, "Vault").getVersion();
+
+        assertTrue(server.savePlayerVault(snapshot(Map.of(0, STONE), loaded)));
+        // Reopened from a cache that still holds the version it was first loaded at
+        assertTrue(server.savePlayerVault(snapshot(Map.of(0, STONE, 1, DIAMOND), loaded)));
+
+        assertEquals(0, conflicts.detectedCount());
+        assertEquals(2, stored().size());
+    }
+
+    @Test
+    void pageLoadedBeforeAnotherServersSaveIsMerged() {
+        VaultConflicts conflicts = new VaultConflicts(VaultConflicts.Resolution.MERGE);
+        VaultDB ours = server(conflicts);
+        VaultDB theirs = server(null);
+        Long loaded = ours.loadPlayerVault(player, 0, 6, "Vault").getVersion();
+        theirs.savePlayerVault(snapshot(Map.of(0, STONE), theirs.loadPlayerVault(player, 0, 6, "Vault").getVersion()));
+
+        assertTrue(ours.savePlayerVault(snapshot(Map.of(1, DIAMOND), loaded)));
+
+        assertEquals(1, conflicts.detectedCount());
+        Map<Integer, byte[]> stored = stored();
+        assertArrayEquals(STONE, stored.get(0));
+        assertArrayEquals(DIAMOND, stored.get(1));
+    }
+
+    @Test
+    void replayAfterRestartIsGuardedByTheLoadedVersion() {
+        VaultDB theirs = server(null);
+        theirs.savePlayerVault(snapshot(Map.of(0, STONE), theirs.loadPlayerVault(player, 0, 6, "Vault").getVersion()));
+        Long loaded = server(null).loadPlayerVault(player, 0, 6, "Vault").getVersion();
+        theirs.savePlayerVault(snapshot(Map.of(0, EMERALD), loaded));
+
+        // Restarted: nothing tracked, only the version the journal carried
+        VaultConflicts conflicts = new VaultConflicts(VaultConflicts.Resolution.RELOAD);
+        assertTrue(server(conflicts).savePlayerVault(snapshot(Map.of(0, DIAMOND), loaded)));
+
+        assertEquals(1, conflicts.detectedCount());
+        assertArrayEquals(EMERALD, stored().get(0));
+    }
+
+    @Test
+    void unknownVersionIsResolvedAsAConflict() {
+        VaultDB theirs = server(null);
+        theirs.savePlayerVault(snapshot(Map.of(0, STONE), theirs.loadPlayerVault(player, 0, 6, "Vault").getVersion()));
+
+        VaultConflicts conflicts = new VaultConflicts(VaultConflicts.Resolution.RELOAD);
+        assertTrue(server(conflicts).savePlayerVault(snapshot(Map.of(0, DIAMOND), null)));
+
+        assertEquals(1, conflicts.detectedCount());
+        assertArrayEquals(STONE, stored().get(0));
+    }
+
+    private VaultDB server(VaultConflicts conflicts) {
+        return new VaultDBSQLite(null, VaultDBOptions.DEFAULTS.withConnections(connections).withConflicts(conflicts));
+    }
+
+    private VaultSnapshot snapshot(Map<Integer, byte[]> slots, Long version) {
+        return VaultSnapshot.fromStored(player, 6, "Vault", 0, slots, version, System.currentTimeMillis());
+    }
+
+    /** Reads the stored page as a server that has just started. */
+    private Map<Integer, byte[]> stored() {
+        PlayerVault vault = server(null).loadPlayerVault(player, 0, 6, "Vault");
+        return VaultSnapshot.of(vault, 0L).getSlotBytes();
+    }
+}
@@ -0,0 +1,190 @@
+package io.github.mcengine.extension.addon.essential.vault.database.cache;
+
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultLoadException;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link VaultDBCache} in front of a database whose loads can be made to fail or to block
+ * until released, so that saves and invalidations can land while a load runs.
+ */
+class VaultDBCacheTest {
+
+    private static final byte[] STONE = {1, 64};
+    private static final byte[] DIAMOND = {2, 1};
+
+    private final UUID player = UUID.randomUUID();
+    private final FakeDB database = new FakeDB();
+    private final VaultDBCache cache = new VaultDBCache(database, 16, 60_000L);
+
+    @AfterEach
+    void releaseLoads() {
+        database.release();
+    }
+
+    @Test
+    void servesRepeatedLoadsFromMemory() {
+        database.stored = Map.of(0, STONE);
+
+        cache.loadPlayerVault(player, 0, 6, "Vault");
+        PlayerVault second = cache.loadPlayerVault(player, 0, 6, "Vault");
+        cache.loadPlayerVault(player, 1, 6, "Vault");
+
+        assertEquals(2, database.loads.get());
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertArrayEquals(STONE, slots(second).get(0));
+    }
+
+    @Test
+    void idleEntriesExpire() throws InterruptedException {
+        VaultDBCache expiring = new VaultDBCache(database, 16, 1000L);
+        expiring.loadPlayerVault(player, 0, 6, "Vault");
+
+        Thread.sleep(1100L);
+        expiring.loadPlayerVault(player, 0, 6, "Vault");
+
+        assertEquals(2, database.loads.get());
+        assertEquals(1, expiring.evictionCount());
+    }
+
+    @Test
+    void invalidateDropsEveryPageOfThePlayer() {
+        cache.loadPlayerVault(player, 0, 6, "Vault");
+        cache.loadPlayerVault(player, 1, 6, "Vault");
+
+        cache.invalidate(player);
+        cache.loadPlayerVault(player, 0, 6, "Vault");
+
+        assertEquals(3, database.loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        database.failing = true;
+        assertThrows(VaultLoadException.class, () -> cache.loadPlayerVault(player, 0, 6, "Vault"));
+
+        database.failing = false;
+        database.stored = Map.of(0, STONE);
+        PlayerVault loaded = cache.loadPlayerVault(player, 0, 6, "Vault");
+
+        assertEquals(2, database.loads.get());
+        assertArrayEquals(STONE, slots(loaded).get(0));
+    }
+
+    @Test
+    void saveDuringLoadWins() throws Exception {
+        database.stored = Map.of(0, STONE);
+        CompletableFuture<PlayerVault> load = blockedLoad();
+
+        cache.savePlayerVault(VaultSnapshot.fromStored(player, 6, "Vault", 0, Map.of(0, DIAMOND), 1L, System.currentTimeMillis()));
+        database.release();
+
+        // The load read the page before the save; both it and later loads see the save
+        assertArrayEquals(DIAMOND, slots(load.get(5, TimeUnit.SECONDS)).get(0));
+        assertArrayEquals(DIAMOND, slots(cache.loadPlayerVault(player, 0, 6, "Vault")).get(0));
+        assertEquals(1, database.loads.get());
+    }
+
+    @Test
+    void loadRunningDuringInvalidateIsNotCached() throws Exception {
+        database.stored = Map.of(0, STONE);
+        CompletableFuture<PlayerVault> load = blockedLoad();
+
+        cache.invalidate(player);
+        database.release();
+        load.get(5, TimeUnit.SECONDS);
+
+        database.stored = Map.of(0, DIAMOND);
+        assertArrayEquals(DIAMOND, slots(cache.loadPlayerVault(player, 0, 6, "Vault")).get(0));
+        assertEquals(2, database.loads.get());
+    }
+
+    /** Starts a load of page 0 and returns once it is blocked inside the database. */
+    private CompletableFuture<PlayerVault> blockedLoad() throws InterruptedException {
+        database.block();
+        CompletableFuture<PlayerVault> load = CompletableFuture.supplyAsync(() -> cache.loadPlayerVault(player, 0, 6, "Vault"));
+        assertTrue(database.entered.await(5, TimeUnit.SECONDS));
+        return load;
+    }
+
+    private static Map<Integer, byte[]> slots(PlayerVault vault) {
+        return VaultSnapshot.of(vault, 0L).getSlotBytes();
+    }
+
+    /** Database holding one page's slots for every page; loads read them before blocking. */
+    private final class FakeDB implements VaultDB {
+
+        private volatile Map<Integer, byte[]> stored = Map.of();
+        private volatile boolean failing;
+        /** Gate the next load waits at, and the one to open on release. */
+        private volatile CountDownLatch next;
+        private volatile CountDownLatch gate;
+        private volatile CountDownLatch entered = new CountDownLatch(0);
+        private final AtomicInteger loads = new AtomicInteger();
+
+        void block() {
+            entered = new CountDownLatch(1);
+            gate = new CountDownLatch(1);
+            next = gate;
+        }
+
+        void release() {
+            CountDownLatch g = gate;
+            if (g != null) g.countDown();
+        }
+
+        @Override
+        public void ensureSchema() {}
+
+        @Override
+        public PlayerVault loadPlayerVault(UUID playerId, int page, int defaultRows, String defaultTitle) {
+            loads.incrementAndGet();
+            if (failing) throw new VaultLoadException("Could not read the vault of " + playerId, new IllegalStateException("down"));
+            PlayerVault vault = VaultSnapshot.fromStored(playerId, defaultRows, defaultTitle, page, stored, 0L, 0L).toPlayerVault();
+            CountDownLatch g = next;
+            if (g != null) {
+                next = null;
+                entered.countDown();
+                try {
+                    g.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return vault;
+        }
+
+        @Override
+        public boolean savePlayerVault(VaultSnapshot snapshot) {
+            return true;
+        }
+
+        @Override
+        public boolean clearPlayerVault(UUID playerId) {
+            return true;
+        }
+
+        @Override
+        public boolean replacePlayerVault(UUID playerId, List<VaultSnapshot> pages) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trips and corruption handling of {@link VaultBackupFormat}.
+ */
+class VaultBackupFormatTest {
+
+    private static final VaultBackupFormat.PlayerRecord FIRST = new VaultBackupFormat.PlayerRecord(
+            UUID.randomUUID(), 6, "Vault", Map.of(0, Map.of(0, new byte[]{1, 2}, 53, new byte[]{3}), 2, Map.of()));
+    private static final VaultBackupFormat.PlayerRecord SECOND = new VaultBackupFormat.PlayerRecord(
+            UUID.randomUUID(), 3, null, Map.of(0, Map.of(4, new byte[300])));
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void roundTripsPlayers(boolean gzip) throws IOException {
+        byte[] backup = write(gzip, true, FIRST, SECOND);
+
+        try (VaultBackupFormat.Reader reader = new VaultBackupFormat.Reader(new ByteArrayInputStream(backup))) {
+            assertRecord(FIRST, reader.next());
+            assertRecord(SECOND, reader.next());
+            assertNull(reader.next());
+            assertEquals(2, reader.players());
+        }
+    }
+
+    @Test
+    void detectsFlippedByte() throws IOException {
+        byte[] backup = write(false, true, FIRST, SECOND);
+        backup[20] ^= 0x40; // inside the first player's payload
+
+        IOException e = assertThrows(IOException.class, () -> readAll(backup));
+        assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+    }
+
+    @Test
+    void detectsTruncatedBackup() throws IOException {
+        byte[] backup = write(false, true, FIRST, SECOND);
+
+        IOException e = assertThrows(IOException.class, () -> readAll(Arrays.copyOf(backup, backup.length - 10)));
+        assertTrue(e.getMessage().contains("incomplete"), e.getMessage());
+    }
+
+    @Test
+    void detectsMissingEndMarker() throws IOException {
+        byte[] backup = write(true, false, FIRST);
+
+        assertThrows(IOException.class, () -> readAll(backup));
+    }
+
+    @Test
+    void rejectsOtherFiles() {
+        assertThrows(IOException.class, () -> new VaultBackupFormat.Reader(new ByteArrayInputStream("not a backup".getBytes())));
+        assertThrows(IOException.class, () -> new VaultBackupFormat.Reader(new ByteArrayInputStream(new byte[0])));
+    }
+
+    private static byte[] write(boolean gzip, boolean finish, VaultBackupFormat.PlayerRecord... records) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (VaultBackupFormat.Writer writer = new VaultBackupFormat.Writer(out, gzip)) {
+            for (VaultBackupFormat.PlayerRecord record : records) writer.write(record);
+            if (finish) writer.finish();
+        }
+        return out.toByteArray();
+    }
+
+    private static List<VaultBackupFormat.PlayerRecord> readAll(byte[] backup) throws IOException {
+        try (VaultBackupFormat.Reader reader = new VaultBackupFormat.Reader(new ByteArrayInputStream(backup))) {
+            List<VaultBackupFormat.PlayerRecord> records = new ArrayList<>();
+            for (VaultBackupFormat.PlayerRecord r = reader.next(); r != null; r = reader.next()) records.add(r);
+            return records;
+        }
+    }
+
+    /** Compares records by content; item bytes are arrays. */
+    private static void assertRecord(VaultBackupFormat.PlayerRecord expected, VaultBackupFormat.PlayerRecord actual) {
+        assertEquals(expected.playerId(), actual.playerId());
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.title(), actual.title());
+        assertEquals(expected.pages().keySet(), actual.pages().keySet());
+        for (Map.Entry<Integer, Map<Integer, byte[]>> page : expected.pages().entrySet()) {
+            Map<Integer, byte[]> slots = actual.pages().get(page.getKey());
+            assertEquals(page.getValue().keySet(), slots.keySet());
+            page.getValue().forEach((slot, bytes) -> assertArrayEquals(bytes, slots.get(slot)));
+        }
+    }
+}
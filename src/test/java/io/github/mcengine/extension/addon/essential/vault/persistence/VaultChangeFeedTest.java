@@ -0,0 +1,104 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import io.github.mcengine.extension.addon.essential.vault.database.VaultChange;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Polling of {@link VaultChangeFeed} against an in-memory feed, including ids committed
+ * out of order.
+ */
+class VaultChangeFeedTest {
+
+    private static final int BATCH = 4;
+
+    /** Feed entries by id. */
+    private final ConcurrentSkipListMap<Long, VaultChange> feed = new ConcurrentSkipListMap<>();
+
+    /** Entries handed to the callback. */
+    private final List<VaultChange> received = new ArrayList<>();
+
+    private final VaultChangeFeed follower = new VaultChangeFeed(null, null, new FeedDB(), "here", received::add,
+            1000L, BATCH, 3600L, 60_000L, null);
+
+    @Test
+    void handsOnEntriesOfOtherNodesOnly() {
+        follower.run(); // starts at the newest entry
+        add(1, "there");
+        add(2, "here");
+        add(3, "there");
+
+        follower.run();
+
+        assertEquals(List.of(1L, 3L), received.stream().map(VaultChange::id).toList());
+        assertEquals(3, follower.position());
+    }
+
+    @Test
+    void pagesPastAMissingIdThroughMoreThanOneBatch() {
+        follower.run();
+        // Id 1 is still uncommitted; more than a batch of entries follows it
+        for (long id = 2; id <= 3 * BATCH; id++) add(id, "there");
+
+        follower.run();
+
+        assertEquals(3 * BATCH - 1, received.size());
+        assertEquals(0, follower.position());
+
+        add(1, "there");
+        follower.run();
+
+        assertEquals(3 * BATCH, received.size());
+        assertEquals(3 * BATCH, follower.position());
+    }
+
+    private void add(long id, String origin) {
+        feed.put(id, new VaultChange(id, UUID.randomUUID(), 0, origin));
+    }
+
+    /** Database serving the feed only. */
+    private final class FeedDB implements VaultDB {
+
+        @Override
+        public long latestChangeId() {
+            return feed.isEmpty() ? 0L : feed.lastKey();
+        }
+
+        @Override
+        public List<VaultChange> changesSince(long afterId, int limit) {
+            return feed.tailMap(afterId, false).values().stream().limit(limit).toList();
+        }
+
+        @Override
+        public void ensureSchema() {}
+
+        @Override
+        public PlayerVault loadPlayerVault(UUID playerId, int page, int defaultRows, String defaultTitle) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean savePlayerVault(VaultSnapshot snapshot) {
+            return true;
+        }
+
+        @Override
+        public boolean clearPlayerVault(UUID playerId) {
+            return true;
+        }
+
+        @Override
+        public boolean replacePlayerVault(UUID playerId, List<VaultSnapshot> pages) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Crash recovery of {@link VaultJournal}: a journal closed with entries pending stands in
+ * for a server that stopped before its database writes completed.
+ */
+class VaultJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final UUID player = UUID.randomUUID();
+
+    @Test
+    void replaysNewestSnapshotPerPage() throws Exception {
+        File file = directory.resolve("journal/vault.journal").toFile();
+        VaultJournal journal = new VaultJournal(file, 0L, null);
+        assertTrue(journal.recover().isEmpty());
+
+        long[] seqs = journal.append(List.of(snapshot(0, "old", 1), snapshot(1, null, 2)));
+        journal.append(List.of(snapshot(0, "new", 3)));
+        journal.markApplied(seqs[0]);
+        journal.close(); // crash: the newest page 0 was never applied
+
+        VaultJournal reopened = new VaultJournal(file, 0L, null);
+        Map<Integer, VaultSnapshot> recovered = new TreeMap<>();
+        for (VaultJournal.Entry entry : reopened.recover()) recovered.put(entry.snapshot().getPage(), entry.snapshot());
+
+        // Records stay on disk until every entry is applied; replaying an applied one rewrites the same contents
+        assertEquals(Set.of(0, 1), recovered.keySet());
+        VaultSnapshot page0 = recovered.get(0);
+        assertEquals(player, page0.getPlayerId());
+        assertEquals("new", page0.getTitle());
+        assertEquals(1003L, page0.getCapturedAt());
+        assertArrayEquals(new byte[]{3, 3}, page0.getSlotBytes().get(5));
+        assertArrayEquals(new byte[]{2, 2}, recovered.get(1).getSlotBytes().get(5));
+        // Replayed saves stay conditional on the version the page was loaded at
+        assertEquals(7L, page0.getVersion());
+        assertNull(recovered.get(1).getVersion());
+        assertEquals(2, reopened.pendingCount());
+        reopened.close();
+    }
+
+    @Test
+    void tornTailEndsRecoveryAtLastGoodRecord() throws Exception {
+        File file = directory.resolve("vault.journal").toFile();
+        VaultJournal journal = new VaultJournal(file, 0L, null);
+        journal.recover();
+        journal.append(List.of(snapshot(0, "kept", 1)));
+        journal.close();
+        // Half-written record: a length larger than what follows
+        Files.write(file.toPath(), new byte[]{0, 0, 1, 0, 0, 0, 0, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        VaultJournal reopened = new VaultJournal(file, 0L, null);
+        List<VaultJournal.Entry> recovered = reopened.recover();
+
+        assertEquals(1, recovered.size());
+        assertEquals("kept", recovered.get(0).snapshot().getTitle());
+        reopened.close();
+    }
+
+    @Test
+    void appliedJournalRecoversNothing() throws Exception {
+        File file = directory.resolve("vault.journal").toFile();
+        VaultJournal journal = new VaultJournal(file, 0L, null);
+        journal.recover();
+        long[] seqs = journal.append(List.of(snapshot(0, null, 1), snapshot(1, null, 2)));
+        for (long seq : seqs) journal.markApplied(seq);
+        journal.close();
+
+        VaultJournal reopened = new VaultJournal(file, 0L, null);
+        assertTrue(reopened.recover().isEmpty());
+        assertEquals(0, reopened.pendingCount());
+        reopened.close();
+    }
+
+    @Test
+    void recoveryRewritesTheJournal() throws Exception {
+        File file = directory.resolve("vault.journal").toFile();
+        VaultJournal journal = new VaultJournal(file, 0L, null);
+        journal.recover();
+        journal.append(List.of(snapshot(0, null, 1)));
+        journal.append(List.of(snapshot(0, null, 2)));
+        journal.close();
+
+        VaultJournal reopened = new VaultJournal(file, 0L, null);
+        VaultJournal.Entry entry = reopened.recover().get(0);
+        reopened.markApplied(entry.seq());
+        reopened.close();
+
+        // The superseded record is gone along with the applied one
+        VaultJournal third = new VaultJournal(file, 0L, null);
+        assertTrue(third.recover().isEmpty());
+        third.close();
+    }
+
+    @Test
+    void unreadableRecordEndsRecoveryAndIsSetAside() throws Exception {
+        File file = directory.resolve("vault.journal").toFile();
+        VaultJournal journal = new VaultJournal(file, 0L, null);
+        journal.recover();
+        journal.append(List.of(snapshot(0, "kept", 1)));
+        journal.close();
+        // Intact record from an unknown format, followed by one that is readable again
+        Files.write(file.toPath(), record(new byte[]{(byte) (VaultJournal.FORMAT_VERSION + 1), 1, 2, 3}), StandardOpenOption.APPEND);
+        VaultJournal writer = new VaultJournal(directory.resolve("other.journal").toFile(), 0L, null);
+        writer.recover();
+        writer.append(List.of(snapshot(1, "after", 2)));
+        writer.close();
+        byte[] other = Files.readAllBytes(directory.resolve("other.journal"));
+        Files.write(file.toPath(), Arrays.copyOfRange(other, 4, other.length), StandardOpenOption.APPEND);
+
+        VaultJournal reopened = new VaultJournal(file, 0L, null);
+        List<VaultJournal.Entry> recovered = reopened.recover();
+
+        assertEquals(1, recovered.size());
+        assertEquals("kept", recovered.get(0).snapshot().getTitle());
+        reopened.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(p -> p.getFileName().toString().startsWith("vault.journal.unreadable-")).count());
+        }
+    }
+
+    @Test
+    void readsJournalWrittenBeforeRecordsWereVersioned() throws Exception {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeLong(player.getMostSignificantBits());
+            out.writeLong(player.getLeastSignificantBits());
+            out.writeInt(2); // page
+            out.writeInt(6); // rows
+            out.writeBoolean(false);
+            out.writeLong(1234L);
+            out.writeInt(1);
+            out.writeInt(7);
+            out.writeInt(1);
+            out.writeByte(9);
+        }
+        Path file = directory.resolve("vault.journal");
+        ByteArrayOutputStream journal = new ByteArrayOutputStream();
+        journal.write(new byte[]{'V', 'J', 'N', '1'});
+        journal.write(record(payload.toByteArray()));
+        Files.write(file, journal.toByteArray());
+
+        VaultJournal reopened = new VaultJournal(file.toFile(), 0L, null);
+        List<VaultJournal.Entry> recovered = reopened.recover();
+        reopened.close();
+
+        assertEquals(1, recovered.size());
+        VaultSnapshot snapshot = recovered.get(0).snapshot();
+        assertEquals(2, snapshot.getPage());
+        assertArrayEquals(new byte[]{9}, snapshot.getSlotBytes().get(7));
+        assertNull(snapshot.getVersion());
+        // Rewritten in the current format
+        assertEquals('2', Files.readAllBytes(file)[3]);
+    }
+
+    /** Frames a payload as a journal record with a valid checksum. */
+    private static byte[] record(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(8 + payload.length).putInt(payload.length).putInt((int) crc.getValue()).put(payload).array();
+    }
+
+    private VaultSnapshot snapshot(int page, String title, int fill) {
+        // Pages with a title were loaded at version fill + 4, the others at an unknown version
+        Long version = title == null ? null : fill + 4L;
+        return VaultSnapshot.fromStored(player, 6, title, page, Map.of(5, new byte[]{(byte) fill, (byte) fill}), version, 1000L + fill);
+    }
+}
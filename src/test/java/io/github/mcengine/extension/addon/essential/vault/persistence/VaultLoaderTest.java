@@ -0,0 +1,112 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.database.VaultLoadException;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Delivery of {@link VaultLoader} results on a MockBukkit server, with a database that
+ * either answers or fails every load.
+ */
+class VaultLoaderTest {
+
+    private ServerMock server;
+    private Plugin plugin;
+    private VaultWriteBehind writeBehind;
+
+    /** Whether the database fails loads. */
+    private volatile boolean failing;
+
+    /** Vaults handed to the open callback. */
+    private final List<PlayerVault> opened = new ArrayList<>();
+
+    private final VaultDB database = new VaultDB() {
+        @Override
+        public void ensureSchema() {}
+
+        @Override
+        public PlayerVault loadPlayerVault(UUID playerId, int page, int defaultRows, String defaultTitle) {
+            if (failing) throw new VaultLoadException("Could not read the vault of " + playerId, new IllegalStateException("down"));
+            return new PlayerVault(playerId, defaultRows, defaultTitle, page, Map.of());
+        }
+
+        @Override
+        public boolean savePlayerVault(VaultSnapshot snapshot) {
+            return true;
+        }
+
+        @Override
+        public boolean clearPlayerVault(UUID playerId) {
+            return true;
+        }
+
+        @Override
+        public boolean replacePlayerVault(UUID playerId, List<VaultSnapshot> pages) {
+            return true;
+        }
+    };
+
+    @BeforeEach
+    void startServer() {
+        server = MockBukkit.mock();
+        plugin = MockBukkit.createMockPlugin();
+        writeBehind = new VaultWriteBehind(plugin, null, database, 16, 0L, 0L, 0L, null);
+    }
+
+    @AfterEach
+    void stopServer() {
+        writeBehind.shutdown(1000L);
+        MockBukkit.unmock();
+    }
+
+    @Test
+    void failedLoadTellsThePlayerAndOpensNothing() {
+        failing = true;
+        PlayerMock player = server.addPlayer();
+
+        load(player);
+
+        assertTrue(opened.isEmpty());
+        assertEquals(InventoryType.CRAFTING, player.getOpenInventory().getTopInventory().getType());
+        String message = player.nextMessage();
+        assertNotNull(message);
+        assertTrue(message.contains("could not be loaded"), message);
+    }
+
+    @Test
+    void loadedVaultIsDelivered() {
+        PlayerMock player = server.addPlayer();
+
+        load(player);
+
+        assertEquals(1, opened.size());
+        assertEquals(player.getUniqueId(), opened.get(0).getPlayerId());
+        assertNull(player.nextMessage());
+    }
+
+    /** Loads page 0 and runs the async load and the main-thread delivery to completion. */
+    private void load(PlayerMock player) {
+        new VaultLoader(plugin, null, database, writeBehind, false).load(player, 0, 6, "Vault", opened::add);
+        server.getScheduler().waitAsyncTasksFinished();
+        server.getScheduler().performOneTick();
+    }
+}
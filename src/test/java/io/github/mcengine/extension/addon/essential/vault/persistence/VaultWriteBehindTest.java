@@ -0,0 +1,166 @@
+package io.github.mcengine.extension.addon.essential.vault.persistence;
+
+import io.github.mcengine.extension.addon.essential.vault.database.VaultDB;
+import io.github.mcengine.extension.addon.essential.vault.model.PlayerVault;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultKey;
+import io.github.mcengine.extension.addon.essential.vault.model.VaultSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link VaultWriteBehind} in front of an in-memory database that can be made to fail.
+ * Saves are submitted without callbacks, so no server is needed.
+ */
+class VaultWriteBehindTest {
+
+    private final UUID player = UUID.randomUUID();
+    private final FakeDB database = new FakeDB();
+    private VaultWriteBehind writeBehind;
+
+    @AfterEach
+    void stopWriter() {
+        if (writeBehind != null) writeBehind.shutdown(1000L);
+    }
+
+    @Test
+    void lastSaveOfAPageWins() {
+        writeBehind = writer(0L, 300L);
+
+        writeBehind.submit(snapshot(0, "first"), null);
+        writeBehind.submit(snapshot(1, "other"), null);
+        writeBehind.submit(snapshot(0, "second"), null);
+        writeBehind.submit(snapshot(0, "third"), null);
+        assertEquals("third", writeBehind.pending(new VaultKey(player, 0)).getTitle());
+
+        await(() -> writeBehind.queueDepth() == 0);
+        assertEquals("third", database.stored.get(new VaultKey(player, 0)).getTitle());
+        assertEquals("other", database.stored.get(new VaultKey(player, 1)).getTitle());
+        // Two pages, one write each
+        assertEquals(2, database.writes.get());
+        assertEquals(2, writeBehind.coalescedCount());
+    }
+
+    @Test
+    void failedWriteIsRetriedNotDropped() {
+        writeBehind = writer(0L, 0L);
+        database.failures.set(1);
+
+        writeBehind.submit(snapshot(0, "kept"), null);
+
+        await(() -> database.attempts.get() >= 1);
+        // Still pending after the failure, so a load sees it instead of the stored page
+        assertNotNull(writeBehind.pending(new VaultKey(player, 0)));
+        await(() -> database.stored.containsKey(new VaultKey(player, 0)));
+        assertEquals("kept", database.stored.get(new VaultKey(player, 0)).getTitle());
+        assertEquals(2, database.attempts.get());
+        await(() -> writeBehind.unflushed().isEmpty());
+    }
+
+    @Test
+    void shutdownWritesEverythingStillQueued() {
+        // Nothing would be written for a minute on its own
+        writeBehind = writer(60_000L, 60_000L);
+        writeBehind.submit(snapshot(0, "zero"), null);
+        writeBehind.submit(snapshot(1, "one"), null);
+
+        assertTrue(writeBehind.shutdown(5000L));
+
+        assertEquals("zero", database.stored.get(new VaultKey(player, 0)).getTitle());
+        assertEquals("one", database.stored.get(new VaultKey(player, 1)).getTitle());
+        assertTrue(writeBehind.unflushed().isEmpty());
+        assertEquals(0, writeBehind.queueDepth());
+    }
+
+    @Test
+    void shutdownReportsWhatCouldNotBeWritten() {
+        writeBehind = writer(0L, 0L);
+        database.failures.set(-1);
+        writeBehind.submit(snapshot(0, "lost"), null);
+        await(() -> database.attempts.get() >= 1);
+
+        writeBehind.submit(snapshot(1, "also lost"), null);
+        assertTrue(writeBehind.shutdown(5000L));
+
+        // The page waiting for its retry was tried once more
+        assertTrue(database.attempts.get() >= 3);
+        assertEquals(Set.of(new VaultKey(player, 0), new VaultKey(player, 1)), Set.copyOf(writeBehind.unflushed()));
+        assertEquals(0, writeBehind.queueDepth());
+    }
+
+    private VaultWriteBehind writer(long maxDelayMillis, long debounceMillis) {
+        return new VaultWriteBehind(null, null, database, 16, maxDelayMillis, debounceMillis, Math.max(maxDelayMillis, debounceMillis), null);
+    }
+
+    private VaultSnapshot snapshot(int page, String title) {
+        return VaultSnapshot.fromStored(player, 6, title, page, Map.of(0, new byte[]{1}), 1L, System.currentTimeMillis());
+    }
+
+    /** Waits up to ten seconds, longer than one retry delay, for a condition. */
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /** Database keeping the last written snapshot per page; the first {@code failures} writes fail. */
+    private static final class FakeDB implements VaultDB {
+
+        private final Map<VaultKey, VaultSnapshot> stored = new ConcurrentHashMap<>();
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final AtomicInteger writes = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public boolean saveBatch(List<VaultSnapshot> snapshots) {
+            attempts.incrementAndGet();
+            if (failures.getAndUpdate(n -> n > 0 ? n - 1 : n) != 0) return false;
+            for (VaultSnapshot snapshot : snapshots) {
+                writes.incrementAndGet();
+                stored.put(VaultKey.of(snapshot), snapshot);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean savePlayerVault(VaultSnapshot snapshot) {
+            return saveBatch(List.of(snapshot));
+        }
+
+        @Override
+        public void ensureSchema() {}
+
+        @Override
+        public PlayerVault loadPlayerVault(UUID playerId, int page, int defaultRows, String defaultTitle) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean clearPlayerVault(UUID playerId) {
+            return true;
+        }
+
+        @Override
+        public boolean replacePlayerVault(UUID playerId, List<VaultSnapshot> pages) {
+            return true;
+        }
+    }
+}
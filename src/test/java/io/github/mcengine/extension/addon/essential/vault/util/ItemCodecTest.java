@@ -0,0 +1,120 @@
+package io.github.mcengine.extension.addon.essential.vault.util;
+
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemFlag;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockbukkit.mockbukkit.MockBukkit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trips of {@link ItemCodec} through {@link ItemIO}, and the legacy format it replaces.
+ * Items need a server for their factory and registries, so a MockBukkit server runs.
+ */
+class ItemCodecTest {
+
+    @BeforeAll
+    static void startServer() {
+        MockBukkit.mock();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        MockBukkit.unmock();
+    }
+
+    @Test
+    void roundTripsPlainStack() {
+        assertCompactRoundTrip(new ItemStack(Material.DIAMOND, 37));
+    }
+
+    @Test
+    void roundTripsMetaWithEnchantmentsAndItemFlags() {
+        ItemStack item = new ItemStack(Material.DIAMOND_SWORD);
+        ItemMeta meta = item.getItemMeta();
+        meta.setDisplayName("Blade");
+        meta.setLore(List.of("first", "second"));
+        meta.addEnchant(Enchantment.SHARPNESS, 5, true);
+        meta.addItemFlags(ItemFlag.HIDE_ENCHANTS, ItemFlag.HIDE_ATTRIBUTES);
+        item.setItemMeta(meta);
+
+        long fallbacks = ItemIO.legacyFallbackCount();
+        assertCompactRoundTrip(item);
+        assertEquals(fallbacks, ItemIO.legacyFallbackCount(), "item flags must not need the legacy format");
+    }
+
+    @Test
+    void readsLegacyPayload() throws IOException {
+        ItemStack item = new ItemStack(Material.OAK_LOG, 12);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BukkitObjectOutputStream out = new BukkitObjectOutputStream(bytes)) {
+            out.writeObject(item);
+        }
+        byte[] legacy = bytes.toByteArray();
+
+        assertTrue(ItemIO.isLegacy(legacy));
+        assertFalse(ItemCodec.isCompact(legacy));
+        assertEquals(item, ItemIO.fromBytes(legacy));
+    }
+
+    @Test
+    void fallsBackToLegacyForValuesTheCodecCannotWrite() {
+        long compact = ItemIO.compactWriteCount();
+        long fallbacks = ItemIO.legacyFallbackCount();
+
+        byte[] bytes = ItemIO.toBytes(new UnsupportedValueItem());
+
+        assertTrue(ItemIO.isLegacy(bytes));
+        assertEquals(compact, ItemIO.compactWriteCount());
+        assertEquals(fallbacks + 1, ItemIO.legacyFallbackCount());
+    }
+
+    @Test
+    void rejectsMalformedCompactPayload() {
+        byte[] bytes = ItemIO.toBytes(new ItemStack(Material.STONE, 3));
+        bytes[1] = (byte) (ItemCodec.FORMAT_VERSION + 1);
+
+        assertNull(ItemIO.fromBytes(bytes));
+        assertNull(ItemIO.fromBytes(new byte[]{ItemCodec.MAGIC, ItemCodec.FORMAT_VERSION}));
+    }
+
+    private static void assertCompactRoundTrip(ItemStack item) {
+        long compact = ItemIO.compactWriteCount();
+        byte[] bytes = ItemIO.toBytes(item);
+
+        assertTrue(ItemCodec.isCompact(bytes));
+        assertEquals(compact + 1, ItemIO.compactWriteCount());
+        assertEquals(item, ItemIO.fromBytes(bytes));
+    }
+
+    /** Item whose serialized form holds a value type the compact format has no tag for. */
+    private static final class UnsupportedValueItem extends ItemStack {
+
+        UnsupportedValueItem() {
+            super(Material.STONE);
+        }
+
+        @Override
+        public Map<String, Object> serialize() {
+            Map<String, Object> fields = new LinkedHashMap<>(super.serialize());
+            fields.put("extra", BigInteger.TEN);
+            return fields;
+        }
+    }
+}